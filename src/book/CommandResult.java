@@ -0,0 +1,155 @@
+package book;
+
+/**
+ * Result codes returned by the exception-free ("try") command methods of the
+ * ProductService and the UserCommandService. The values are shared constants,
+ * so returning one allocates nothing and builds no stack trace.
+ *
+ * Each value has a fixed code, used where a result leaves the process (for
+ * example in OrderGateway ACKs). Codes are never reused or renumbered; a new
+ * value takes the next free code.
+ *
+ * @author Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public enum CommandResult {
+
+  /**
+   * The command was accepted
+   */
+  OK(0, "OK"),
+
+  /**
+   * An argument was null or empty
+   */
+  INVALID_INPUT(1, "Argument cannot be null or empty."),
+
+  /**
+   * The market is closed
+   */
+  MARKET_CLOSED(2, "Marekt is closed!"),
+
+  /**
+   * A market order was sent while the market is pre-open
+   */
+  MARKET_ORDER_IN_PREOPEN(3, "Market is pre-open, cannot submit MKT orders at this time."),
+
+  /**
+   * The product has no book
+   */
+  NO_PRODUCT(4, "Product does not exist in any book."),
+
+  /**
+   * The quote's sell price is less than or equal to its buy price
+   */
+  CROSSED_QUOTE(5, "Sell Price is less than or equal to buy price."),
+
+  /**
+   * A side of the quote has a price less than or equal to zero
+   */
+  INVALID_QUOTE_PRICE(6, "Buy or Sell Price cannot be less than or equal to zero."),
+
+  /**
+   * A side of the quote has a volume less than or equal to zero
+   */
+  INVALID_QUOTE_VOLUME(7, "Volume of a Buy or Sell side quote cannot be less than or equal to zero,"),
+
+  /**
+   * The order to cancel is neither in the book nor among its old entries
+   */
+  ORDER_NOT_FOUND(8, "The order with the specified order id could not be found."),
+
+  /**
+   * The user is not connected
+   */
+  NOT_CONNECTED(9, "User not connected to the system"),
+
+  /**
+   * The connection id does not match the user's connection
+   */
+  INVALID_CONNECTION_ID(10, "Connection ID is not valid"),
+
+  /**
+   * The order or quote-side volume is over the user's pre-trade limit
+   */
+  ORDER_VOLUME_LIMIT(11, "Volume is over the maximum order size."),
+
+  /**
+   * The order or quote-side price times volume is over the user's pre-trade
+   * limit
+   */
+  NOTIONAL_LIMIT(12, "Notional value is over the maximum order notional."),
+
+  /**
+   * The user already has the most open orders allowed in the product
+   */
+  OPEN_ORDER_LIMIT(13, "Too many open orders for this product."),
+
+  /**
+   * The user is sending orders and quotes faster than allowed
+   */
+  THROTTLED(14, "Message rate is over the allowed messages per second."),
+
+  /**
+   * A market order cannot be checked against the user's notional limit
+   * because its product has not traded yet
+   */
+  NO_MARK_PRICE(15, "No last sale to value a market order against the notional limit.");
+
+  /**
+   * Code sent in place of the result outside the process
+   */
+  private final int code;
+
+  /**
+   * Text used when the result is turned into an exception
+   */
+  private final String message;
+
+  CommandResult(int code, String msg) {
+    this.code = code;
+    message = msg;
+  }
+
+  /**
+   * @return the fixed code of this result
+   */
+  public int getCode() {
+    return code;
+  }
+
+  /**
+   * @param code a code returned by getCode
+   * @return the result with that code, or null if there is none
+   */
+  public static CommandResult fromCode(int code) {
+    for (CommandResult r : values()) {
+      if (r.code == code) {
+        return r;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the text describing this result
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * @return true if the command was accepted
+   */
+  public boolean isOk() {
+    return this == OK;
+  }
+
+  /**
+   * @return true if the command was rejected by the pre-trade risk checks,
+   * which report the rejection to the user as a cancel message
+   */
+  public boolean isRiskReject() {
+    return this == ORDER_VOLUME_LIMIT || this == NOTIONAL_LIMIT || this == OPEN_ORDER_LIMIT
+            || this == THROTTLED || this == NO_MARK_PRICE;
+  }
+}
@@ -0,0 +1,91 @@
+package book;
+
+import java.util.ArrayList;
+
+import constants.global.BookSide;
+import tradable.Tradable;
+import tradable.TradableDTO;
+
+/**
+ * The OpenOrderIndex holds the entries resting in one ProductBook, by user
+ * id, so one user's open orders are found without walking the book. Book
+ * sides add an entry when it enters the book and remove it in recycle,
+ * before the entry is handed back to the TradableStore.
+ *
+ * The index has its own lock and calls nothing while holding it, so it can
+ * be used from under the book or book side locks, and read without them.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+final class OpenOrderIndex {
+
+  /**
+   * Entries by user id; a null slot has none
+   */
+  private final ArrayList<ArrayList<Tradable>> byUser = new ArrayList<>();
+
+  /**
+   * Adds an entry that has entered the book
+   * @param userId UserRegistry id of the entry's user
+   * @param t the entry
+   */
+  synchronized void add(int userId, Tradable t) {
+    if (userId < 0) {
+      return;
+    }
+    while (byUser.size() <= userId) {
+      byUser.add(null);
+    }
+    ArrayList<Tradable> l = byUser.get(userId);
+    if (l == null) {
+      l = new ArrayList<>(4);
+      byUser.set(userId, l);
+    }
+    l.add(t);
+  }
+
+  /**
+   * Removes an entry that has left the book; entries never added are ignored
+   * @param userId UserRegistry id of the entry's user
+   * @param t the entry
+   */
+  synchronized void remove(int userId, Tradable t) {
+    if (userId < 0 || userId >= byUser.size()) {
+      return;
+    }
+    ArrayList<Tradable> l = byUser.get(userId);
+    if (l == null) {
+      return;
+    }
+    for (int i = 0; i < l.size(); i++) {
+      if (l.get(i) == t) {
+        l.remove(i);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Adds a TradableDTO for each of a user's entries on one side with
+   * remaining volume to a list
+   * @param userId UserRegistry id of the user
+   * @param side side of the entries wanted
+   * @param out list the DTOs are added to
+   */
+  synchronized void collect(int userId, BookSide side, ArrayList<TradableDTO> out) {
+    if (userId < 0 || userId >= byUser.size()) {
+      return;
+    }
+    ArrayList<Tradable> l = byUser.get(userId);
+    if (l == null) {
+      return;
+    }
+    for (Tradable t : l) {
+      if (t.getSide() == side && t.getRemainingVolume() > 0) {
+        out.add(new TradableDTO(t.getProduct(), t.getPrice(), t.getOriginalVolume(),
+                t.getRemainingVolume(), t.getCancelledVolume(), t.getUser(),
+                t.getSide(), t.isQuote(), t.getId()));
+      }
+    }
+  }
+}
@@ -17,13 +17,17 @@ import java.util.Map.Entry;
 import price.Price;
 import price.PriceFactory;
 import price.exceptions.*;
+import publishers.BookDepthPublisher;
 import publishers.CurrentMarketPublisher;
 import publishers.LastSalePublisher;
 import publishers.MessagePublisher;
 import publishers.exceptions.MessagePublisherException;
+import messages.BookDepthDTO;
+import messages.BookDepthSnapshotDTO;
 import messages.CancelMessage;
 import messages.FillMessage;
 import messages.MarketDataDTO;
+import messages.MessageDetails;
 import messages.exceptions.InvalidMessageException;
 import tradable.Order;
 import tradable.Quote;
@@ -31,6 +35,8 @@ import tradable.Tradable;
 import tradable.TradableDTO;
 import tradable.exceptions.TradableException;
 import book.exceptions.InvalidProductBookSideValueException;
+import registry.SymbolRegistry;
+import registry.UserRegistry;
 
 /**
  * A ProductBook object maintains the Buy and Sell sides of a stock's "book".
@@ -57,12 +63,34 @@ public class ProductBook {
    */
   private ProductBookSide sellSide;
 
+  /**
+   * The entries resting on both sides of this book, by user id.
+   */
+  private final OpenOrderIndex openOrders = new OpenOrderIndex();
+
   /**
    * A String that will hold the toString results of the latest Market Data
    * values (the prices and the volumes at the top of the buy and sell sides).
    */
   private String latestMarketValues = "";
 
+  /**
+   * The number of the last depth change published for this book.
+   */
+  private long depthSequence;
+
+  /**
+   * Depth changes being published; only used under the book lock.
+   */
+  private final ArrayList<BookDepthDTO> depthChanges = new ArrayList<>();
+
+  /**
+   * The last order key handed out to an entry that came to rest in this
+   * book. Keys start from the book's SymbolRegistry id, plus one, shifted
+   * into the upper 24 bits.
+   */
+  private long orderKey;
+
   /**
    * A list of the current quotes in this book for each user.
    */
@@ -70,11 +98,10 @@ public class ProductBook {
 
   /**
    * A list of Tradables (those that have been completely traded or
-   * cancelled) organized by price and by user. This should be represented like
-   * you represented the book entries for one side of the book in the
-   * ProductBookSide class.
+   * cancelled) organized by price and by user. Entries are archived as
+   * TradableDTO copies so the book's records can go back to the pool.
    */
-  private HashMap<Price, ArrayList<Tradable>> oldEntries = new HashMap<Price, ArrayList<Tradable>>();
+  private HashMap<Price, ArrayList<TradableDTO>> oldEntries = new HashMap<Price, ArrayList<TradableDTO>>();
 
   /**
    * Method used to set the stock symbol data member. 
@@ -86,9 +113,23 @@ public class ProductBook {
    */
   public ProductBook(String stockSymbol) throws ProductBookException, ProductBookSideException,
           InvalidProductBookSideValueException {
+	  this(stockSymbol, "heap");
+  }
+
+  /**
+   * Method used to set the stock symbol data member and to create the Buy and
+   * Sell side books with the passed storage type for their resting entries.
+   * @param stockSymbol Argument to set the stock symbol data member to
+   * @param storageType "heap" or "off-heap", see TradableStoreFactory
+   * @throws ProductBookException
+   * @throws ProductBookSideException if the storage type is unknown
+   * @throws InvalidProductBookSideValueException
+   */
+  public ProductBook(String stockSymbol, String storageType) throws ProductBookException,
+          ProductBookSideException, InvalidProductBookSideValueException {
 	  setSymbol(stockSymbol);
-	  buySide = new ProductBookSide(this, BookSide.BUY);
-	  sellSide = new ProductBookSide(this, BookSide.SELL);
+	  buySide = new ProductBookSide(this, BookSide.BUY, storageType);
+	  sellSide = new ProductBookSide(this, BookSide.SELL, storageType);
   }
   
   /**
@@ -101,6 +142,7 @@ public class ProductBook {
 	      throw new ProductBookException("Symbol cannot be null!");
 	    }
 	    symbol = stockSymbol;
+	    orderKey = ((long) SymbolRegistry.getInstance().register(stockSymbol) + 1) << 40;
   }
 
   /**
@@ -111,24 +153,36 @@ public class ProductBook {
    */
   public synchronized void checkTooLateToCancel(String orderId) throws OrderNotFoundException, 
   	InvalidMessageException, MessagePublisherException {
+    if (!tooLateToCancel(orderId)) {
+    	throw new OrderNotFoundException("The order with the specified order id: " 
+    	+ orderId + "; could not be found.");
+    }
+  }
+
+  /**
+   * Publishes a "too late to cancel" message for each old entry with the
+   * passed id, without throwing when there is none.
+   *
+   * @param orderId Argument passed in to see if its too last to cancel
+   * @return true if an old entry with the id was found, false otherwise
+   */
+  synchronized boolean tooLateToCancel(String orderId) throws InvalidMessageException,
+  	MessagePublisherException {
     boolean isFound = false;
-    for(Entry<Price, ArrayList<Tradable>> row : oldEntries.entrySet()) {
-      ListIterator<Tradable> iterator = row.getValue().listIterator();
+    for(Entry<Price, ArrayList<TradableDTO>> row : oldEntries.entrySet()) {
+      ListIterator<TradableDTO> iterator = row.getValue().listIterator();
       while (iterator.hasNext()) {
-        Tradable t = iterator.next();
-        if (t.getId().equals(orderId)) {
+        TradableDTO t = iterator.next();
+        if (t.id.equals(orderId)) {
           isFound = true;
           MessagePublisher.getInstance().publishCancel(new CancelMessage(
-                  t.getUser(), t.getProduct(), t.getPrice(),
-                  t.getRemainingVolume(), "Too late to cancel order ID: " +
-                  t.getId(), t.getSide(), t.getId()));
+                  t.user, t.product, t.price,
+                  t.remainingVolume, MessageDetails.TOO_LATE_TO_CANCEL,
+                  t.side, t.id));
         }
       }
     }
-    if (!isFound) {
-    	throw new OrderNotFoundException("The order with the specified order id: " 
-    	+ orderId + "; could not be found.");
-    }
+    return isFound;
   }
 
   /**
@@ -145,6 +199,19 @@ public class ProductBook {
     return bd;
   }
 
+  /**
+   * Returns every price level of both sides, with the number of the last
+   * depth change they include, so that a BookDepthPublisher subscriber can
+   * apply the changes numbered after it.
+   *
+   * @return the levels of the book as of the last depth change
+   */
+  public synchronized BookDepthSnapshotDTO getBookDepthSnapshot() {
+    return new BookDepthSnapshotDTO(symbol, depthSequence,
+            buySide.getPublishedDepth(symbol, depthSequence),
+            sellSide.getPublishedDepth(symbol, depthSequence));
+  }
+
   /**
    * This method should create a MarketDataDTO containing the best buy side
    * price and volume, and the best sell side price an volume.
@@ -175,13 +242,44 @@ public class ProductBook {
    */
   public synchronized ArrayList<TradableDTO> getOrdersWithRemainingQty(String userName) {
     ArrayList<TradableDTO> tradableDTOObjects = new ArrayList<>();
-    tradableDTOObjects.addAll(buySide.getOrdersWithRemainingQty(userName));
-    tradableDTOObjects.addAll(sellSide.getOrdersWithRemainingQty(userName));
+    collectOrdersWithRemainingQty(UserRegistry.getInstance().idOf(userName), tradableDTOObjects);
     return tradableDTOObjects;
   }
 
+  /**
+   * Adds a TradableDTO for each of a user's entries with remaining quantity,
+   * buy side first, to a list. Only the open order index is locked, so this
+   * can be called without the book lock.
+   * @param userId UserRegistry id of the user
+   * @param out list the DTOs are added to
+   */
+  void collectOrdersWithRemainingQty(int userId, ArrayList<TradableDTO> out) {
+    openOrders.collect(userId, BookSide.BUY, out);
+    openOrders.collect(userId, BookSide.SELL, out);
+  }
+
+  /**
+   * Hands out the key an entry coming to rest in this book is known by in
+   * the OrderEventPublisher's events: one more than the book's
+   * SymbolRegistry id in the upper 24 bits and a count of the book's entries
+   * below, so keys are unique across books without a shared counter.
+   *
+   * @return the next order key, never 0
+   */
+  synchronized long nextOrderKey() {
+    return ++orderKey;
+  }
+
+  /**
+   * @return the index of the entries resting in this book, by user id
+   */
+  OpenOrderIndex getOpenOrders() {
+    return openOrders;
+  }
+
   /**
    * This method should add the Tradable passed in to the "oldEntries" HashMap.
+   * A TradableDTO copy is archived, not the Tradable itself.
    *
    * @param t 
    * @throws InvalidPriceOperation 
@@ -189,11 +287,13 @@ public class ProductBook {
   public synchronized void addOldEntry(Tradable t) throws TradableException, 
   	InvalidPriceOperation {
     if (!oldEntries.containsKey(t.getPrice())) {
-      oldEntries.put(t.getPrice(), new ArrayList<Tradable>());
+      oldEntries.put(t.getPrice(), new ArrayList<TradableDTO>());
     }
     t.setCancelledVolume(t.getRemainingVolume());
     t.setRemainingVolume(0);
-    oldEntries.get(t.getPrice()).add(t);
+    oldEntries.get(t.getPrice()).add(new TradableDTO(t.getProduct(), t.getPrice(),
+            t.getOriginalVolume(), t.getRemainingVolume(), t.getCancelledVolume(),
+            t.getUser(), t.getSide(), t.isQuote(), t.getId()));
   }
 
   /**
@@ -256,12 +356,32 @@ public class ProductBook {
    */
   public synchronized void cancelOrder(BookSide side, String orderId) throws InvalidMessageException, 
   	OrderNotFoundException, TradableException, InvalidPriceOperation, MessagePublisherException {
+    if (!tryCancelOrder(side, orderId)) {
+    	throw new OrderNotFoundException("The order with the specified order id: " 
+    	+ orderId + "; could not be found.");
+    }
+  }
+
+  /**
+   * Cancels the Order with the provided orderId on the specified side, without
+   * throwing when the order cannot be found.
+   *
+   * @param side Argument telling which side of the BookSide is represented
+   * @param orderId Argument representing the Id of the Order to cancel
+   * @return true if the order was cancelled or found among the old entries
+   */
+  public synchronized boolean tryCancelOrder(BookSide side, String orderId) throws InvalidMessageException, 
+  	TradableException, InvalidPriceOperation, MessagePublisherException {
+    boolean found;
     if (side.equals(BookSide.BUY)) {
-      buySide.submitOrderCancel(orderId);
+      found = buySide.trySubmitOrderCancel(orderId);
     } else {
-      sellSide.submitOrderCancel(orderId);
+      found = sellSide.trySubmitOrderCancel(orderId);
     }
-    updateCurrentMarket();
+    if (found) {
+      updateCurrentMarket();
+    }
+    return found;
   }
 
   /**
@@ -293,20 +413,45 @@ public class ProductBook {
    */
   public synchronized void addToBook(Quote q) throws TradableException, DataValidationException,
           InvalidMessageException, InvalidPriceOperation, MessagePublisherException {
-    if (q.getQuoteSide(BookSide.SELL).getPrice().lessOrEqual(
-            q.getQuoteSide(BookSide.BUY).getPrice())) {
-      throw new DataValidationException("Sell Price is less than or equal to buy price.");
+    CommandResult r = checkQuote(q);
+    if (!r.isOk()) {
+      throw new DataValidationException(r.getMessage());
     }
-    if (q.getQuoteSide(BookSide.SELL).getPrice().lessOrEqual(
-            PriceFactory.makeLimitPrice("0")) ||
-            q.getQuoteSide(BookSide.BUY).getPrice().lessOrEqual(
-            PriceFactory.makeLimitPrice("0"))) {
-      throw new DataValidationException("Buy or Sell Price cannot be less than or equal to zero.");
+    bookQuote(q);
+  }
+
+  /**
+   * Checks the prices and volumes of the provided Quote without throwing.
+   *
+   * @param q Quote object
+   * @return OK, CROSSED_QUOTE, INVALID_QUOTE_PRICE or INVALID_QUOTE_VOLUME
+   */
+  CommandResult checkQuote(Quote q) throws TradableException, InvalidPriceOperation {
+    Price sell = q.getQuoteSide(BookSide.SELL).getPrice();
+    Price buy = q.getQuoteSide(BookSide.BUY).getPrice();
+    if (sell.lessOrEqual(buy)) {
+      return CommandResult.CROSSED_QUOTE;
+    }
+    if ((!sell.isMarket() && sell.getCents() <= 0) || (!buy.isMarket() && buy.getCents() <= 0)) {
+      return CommandResult.INVALID_QUOTE_PRICE;
     }
     if (q.getQuoteSide(BookSide.SELL).getOriginalVolume() <= 0 ||
             q.getQuoteSide(BookSide.BUY).getOriginalVolume() <= 0) {
-      throw new DataValidationException("Volume of a Buy or Sell side quote cannot be less than or equal to zero,");
+      return CommandResult.INVALID_QUOTE_VOLUME;
     }
+    return CommandResult.OK;
+  }
+
+  /**
+   * Adds the sides of a Quote that passed checkQuote to the Buy and Sell
+   * ProductSideBooks, replacing the user's previous Quote.
+   *
+   * @param q Quote object
+   * @throws InvalidPriceOperation 
+   * @throws MessagePublisherException 
+   */
+  synchronized void bookQuote(Quote q) throws TradableException, InvalidMessageException,
+          InvalidPriceOperation, MessagePublisherException {
     if (userQuotes.contains(q.getUserName())) {
       buySide.removeQuote(q.getUserName());
       sellSide.removeQuote(q.getUserName());
@@ -354,6 +499,28 @@ public class ProductBook {
       CurrentMarketPublisher.getInstance().publishCurrentMarket(current);
       latestMarketValues = var;
     }
+    publishDepthChanges();
+  }
+
+  /**
+   * Numbers and publishes the changes to the price levels of both sides since
+   * they were last published. Every change to the book is followed by
+   * updateCurrentMarket, which calls this.
+   */
+  private void publishDepthChanges() throws MessagePublisherException {
+    buySide.collectDepthChanges(symbol, depthChanges);
+    sellSide.collectDepthChanges(symbol, depthChanges);
+    if (depthChanges.isEmpty()) {
+      return;
+    }
+    try {
+      for (BookDepthDTO d : depthChanges) {
+        d.sequence = ++depthSequence;
+        BookDepthPublisher.getInstance().publishBookDepth(d);
+      }
+    } finally {
+      depthChanges.clear();
+    }
   }
 
   /**
@@ -392,8 +559,10 @@ public class ProductBook {
    * @throws InvalidPriceOperation 
    * @throws MessagePublisherException 
    */
-  private synchronized void addToBook(BookSide side, Tradable trd) throws InvalidMessageException, 
+  private synchronized void addToBook(BookSide side, Tradable t) throws InvalidMessageException, 
   	TradableException, InvalidPriceOperation, MessagePublisherException {
+    ProductBookSide own = side.equals(BookSide.BUY) ? buySide : sellSide;
+    Tradable trd = own.acquire(t);
     if (ProductService.getInstance().getMarketState().equals(MarketState.PREOPEN)) {
       if (side.equals(BookSide.BUY)) {
         buySide.addToBook(trd);
@@ -420,8 +589,9 @@ public class ProductBook {
           MessagePublisher.getInstance().publishCancel(new CancelMessage(
                   trd.getUser(), trd.getProduct(), trd.getPrice(),
                   // is this remaining volume or cancelled volume
-                  trd.getRemainingVolume(), "Canceling order with order ID: " +
-                  trd.getId(), trd.getSide(), trd.getId()));
+                  trd.getRemainingVolume(), MessageDetails.ORDER_CANCELLED,
+                  trd.getSide(), trd.getId()));
+          own.recycle(trd);
       } else {
         if (side.equals(BookSide.BUY)) {
           buySide.addToBook(trd);
@@ -429,6 +599,8 @@ public class ProductBook {
           sellSide.addToBook(trd);
         }
       }
+    } else {
+      own.recycle(trd);
     }
   }
 }
\ No newline at end of file
@@ -3,23 +3,34 @@ package book;
 import book.exceptions.OrderNotFoundException;
 import book.exceptions.ProductBookSideException;
 import constants.global.BookSide;
+import constants.global.DepthAction;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.ListIterator;
 import java.util.Map.Entry;
 import price.Price;
 import price.PriceFactory;
 import price.exceptions.InvalidPriceOperation;
 import publishers.MessagePublisher;
+import publishers.OrderEventPublisher;
 import publishers.exceptions.MessagePublisherException;
+import messages.BookDepthDTO;
 import messages.CancelMessage;
 import messages.FillMessage;
+import messages.MessageDetails;
 import messages.exceptions.InvalidMessageException;
+import tradable.BookEntry;
 import tradable.Tradable;
 import tradable.TradableDTO;
+import tradable.TradableStore;
+import tradable.TradableStoreFactory;
 import tradable.exceptions.TradableException;
+import tradable.exceptions.TradableStoreFactoryException;
 import book.exceptions.InvalidProductBookSideValueException;
+import registry.UserRegistry;
+import risk.PreTradeRisk;
 
 /**
  * Class that maintains the content of one side(Buy or Sell) of a Stock(product) "book".
@@ -57,6 +68,23 @@ public class ProductBookSide {
    */
   private ProductBook parent;
 
+  /**
+   * Prices whose level may have changed since the parent book last published
+   * its depth changes.
+   */
+  private final HashSet<Price> touchedPrices = new HashSet<>();
+
+  /**
+   * The total volume at each price level as last published in a depth change.
+   */
+  private final HashMap<Price, Integer> publishedDepth = new HashMap<>();
+
+  /**
+   * Storage for the entries resting on this side (pooled records or an
+   * off-heap store).
+   */
+  private TradableStore entryStore;
+
   /**
    * ProductBookSide accepts a reference to ProductBook object and creates a new
    * TradeProcessorPriceTimeImpl object
@@ -67,10 +95,30 @@ public class ProductBookSide {
    */
   public ProductBookSide(ProductBook p, BookSide s) throws ProductBookSideException,
           InvalidProductBookSideValueException {
+    this(p, s, "heap");
+  }
+
+  /**
+   * ProductBookSide accepts a reference to ProductBook object, creates a new
+   * TradeProcessorPriceTimeImpl object and a TradableStore of the passed type
+   * for its resting entries
+   * @param p ProductBook object passed as argument
+   * @param s BookSide object passed as argument
+   * @param storageType "heap" or "off-heap", see TradableStoreFactory
+   * @throws ProductBookSideException if the storage type is unknown
+   * @throws InvalidProductBookSideValueException
+   */
+  public ProductBookSide(ProductBook p, BookSide s, String storageType) throws ProductBookSideException,
+          InvalidProductBookSideValueException {
     bookEntries = new HashMap<>();
     setBookSide(s);
     setParentProductBook(p);
     processor = TradeProcessorFactory.createTradeProcessor("price-time", self);
+    try {
+      entryStore = TradableStoreFactory.createTradableStore(storageType);
+    } catch (TradableStoreFactoryException e) {
+      throw new ProductBookSideException(e.getMessage());
+    }
   }
 
   /**
@@ -107,19 +155,28 @@ public class ProductBookSide {
    */
   public synchronized ArrayList<TradableDTO> getOrdersWithRemainingQty(String userName) {
     ArrayList<TradableDTO> l = new ArrayList<>();
-    for (Entry<Price, ArrayList<Tradable>> row : bookEntries.entrySet()) {
-      for (Tradable t : row.getValue()) {
-        if (t.getUser().equals(userName) &&
-                t.getRemainingVolume() > 0) {
-          l.add(new TradableDTO(t.getProduct(), t.getPrice(), t.getOriginalVolume(),
-                  t.getRemainingVolume(), t.getCancelledVolume(), t.getUser(),
-                  t.getSide(), false, t.getId()));
-        }
-      }
+    int uid = UserRegistry.getInstance().idOf(userName);
+    if (uid == UserRegistry.NO_ID) {
+      return l;
     }
+    parent.getOpenOrders().collect(uid, side, l);
     return l;
   }
 
+  /**
+   * Returns the UserRegistry id of a Tradable in this book side. Entries are
+   * BookEntries from this side's TradableStore, so no String is hashed.
+   *
+   * @param t Tradable object held by this book side
+   * @return the id of the Tradable's user
+   */
+  private static int userIdOf(Tradable t) {
+    if (t instanceof BookEntry) {
+      return ((BookEntry) t).getUserId();
+    }
+    return UserRegistry.getInstance().idOf(t.getUser());
+  }
+
   /**
    * Helper method to sort prices in the bookEntries HashMap.
    *
@@ -173,6 +230,64 @@ public class ProductBookSide {
     return str.toArray(s);
   }
 
+  /**
+   * Adds a BookDepthDTO for each price level on this side whose total volume
+   * is no longer the one last published, and remembers the new totals. Only
+   * levels touched since the last call are looked at. The sequence numbers
+   * are left for the parent book to fill in.
+   *
+   * @param product stock symbol of the parent book
+   * @param out list the changes are added to
+   */
+  synchronized void collectDepthChanges(String product, ArrayList<BookDepthDTO> out) {
+    if (touchedPrices.isEmpty()) {
+      return;
+    }
+    for (Price p : touchedPrices) {
+      int volume = 0;
+      ArrayList<Tradable> entries = bookEntries.get(p);
+      if (entries != null) {
+        for (Tradable t : entries) {
+          volume += t.getRemainingVolume();
+        }
+      }
+      Integer published = publishedDepth.get(p);
+      if (published == null ? volume != 0 : published != volume) {
+        if (volume == 0) {
+          publishedDepth.remove(p);
+        } else {
+          publishedDepth.put(p, volume);
+        }
+        DepthAction action = volume == 0 ? DepthAction.DELETE
+                : published == null ? DepthAction.ADD : DepthAction.CHANGE;
+        out.add(new BookDepthDTO(product, side, action, p, volume, 0));
+      }
+    }
+    touchedPrices.clear();
+  }
+
+  /**
+   * Returns the price levels of this side as last published, best price
+   * first.
+   *
+   * @param product stock symbol of the parent book
+   * @param sequence number of the last depth change published by the book
+   * @return a BookDepthDTO for each level
+   */
+  synchronized ArrayList<BookDepthDTO> getPublishedDepth(String product, long sequence) {
+    ArrayList<Price> prices = new ArrayList<>(publishedDepth.keySet());
+    Collections.sort(prices);
+    if (side.equals(BookSide.BUY)) {
+      Collections.reverse(prices);
+    }
+    ArrayList<BookDepthDTO> levels = new ArrayList<>(prices.size());
+    for (Price p : prices) {
+      levels.add(new BookDepthDTO(product, side, DepthAction.ADD, p,
+              publishedDepth.get(p), sequence));
+    }
+    return levels;
+  }
+
   /**
    * This method should return all the Tradables in this book side at the
    * specified price.
@@ -284,21 +399,25 @@ public class ProductBookSide {
    */
   public synchronized TradableDTO removeQuote(String user) {
     TradableDTO quote = null;
+    int uid = UserRegistry.getInstance().idOf(user);
+    if (uid == UserRegistry.NO_ID) {
+      return null;
+    }
     for (Entry<Price, ArrayList<Tradable>> row : bookEntries.entrySet()) {
       ListIterator<Tradable> iterator = row.getValue().listIterator();
-      int size = row.getValue().size();
-      if (size == 1) {
-        removeBookEntryKeys.add(row.getKey());
-      }
       while (iterator.hasNext()) {
         Tradable t = iterator.next();
-        if (t.isQuote() && t.getUser().equals(user)) {
+        if (t.isQuote() && userIdOf(t) == uid) {
           quote = new TradableDTO(t.getProduct(), t.getPrice(), t.getOriginalVolume(),
                   t.getRemainingVolume(), t.getCancelledVolume(), t.getUser(),
                   t.getSide(), false, t.getId());
           iterator.remove();
+          recycle(t);
         }
       }
+      if (row.getValue().isEmpty()) {
+        removeBookEntryKeys.add(row.getKey());
+      }
     }
     return quote;
   }
@@ -314,27 +433,47 @@ public class ProductBookSide {
    */
   public synchronized void submitOrderCancel(String orderId) throws InvalidMessageException, 
   OrderNotFoundException, TradableException, InvalidPriceOperation, MessagePublisherException {
+    if (!trySubmitOrderCancel(orderId)) {
+      throw new OrderNotFoundException("The order with the specified order id: "
+              + orderId + "; could not be found.");
+    }
+  }
+
+  /**
+   * Cancels the Order with the specified identifier, without throwing when it
+   * is in neither this side nor the parent's old entries.
+   *
+   * @param orderId
+   * @return true if the order was found, false otherwise
+   * @throws InvalidPriceOperation 
+   * @throws MessagePublisherException 
+   */
+  synchronized boolean trySubmitOrderCancel(String orderId) throws InvalidMessageException, 
+  TradableException, InvalidPriceOperation, MessagePublisherException {
     boolean isFound = false;
     for (Entry<Price, ArrayList<Tradable>> row : bookEntries.entrySet()) {
       ListIterator<Tradable> iterator = row.getValue().listIterator();
-      int size = row.getValue().size();
-      if (size == 1) {
-        removeBookEntryKeys.add(row.getKey());
-      }
       while (iterator.hasNext()) {
         Tradable t = iterator.next();
         if (t.getId().equals(orderId)) {
           isFound = true;
           MessagePublisher.getInstance().publishCancel(new CancelMessage(
                   t.getUser(), t.getProduct(), t.getPrice(),
-                  t.getRemainingVolume(), "Canceling order with order ID: " + t.getId(), t.getSide(), t.getId()));
+                  t.getRemainingVolume(), MessageDetails.ORDER_CANCELLED, t.getSide(), t.getId()));
           addOldEntry(t);
+          iterator.remove();
+          recycle(t);
         }
       }
+      if (row.getValue().isEmpty()) {
+        removeBookEntryKeys.add(row.getKey());
+      }
     }
     if (!isFound) {
-      parent.checkTooLateToCancel(orderId);
+      return parent.tooLateToCancel(orderId);
     }
+    removeEmptyKeys();
+    return true;
   }
 
   /**
@@ -349,7 +488,7 @@ public class ProductBookSide {
     if (quote != null) {
       MessagePublisher.getInstance().publishCancel(new CancelMessage(
               quote.user, quote.product, quote.price, quote.remainingVolume,
-              "Quote " + quote.side + "-Side Cancelled.", quote.side,
+              MessageDetails.QUOTE_SIDE_CANCELLED, quote.side,
               quote.id));
     }
   }
@@ -359,7 +498,10 @@ public class ProductBookSide {
    */
   public synchronized void removeEmptyKeys() {
     for (Price key : removeBookEntryKeys) {
-      bookEntries.remove(key);
+      ArrayList<Tradable> entries = bookEntries.get(key);
+      if (entries != null && entries.isEmpty()) {
+        bookEntries.remove(key);
+      }
     }
     removeBookEntryKeys = new ArrayList<>();
   }
@@ -375,6 +517,40 @@ public class ProductBookSide {
     parent.addOldEntry(t);
   }
 
+  /**
+   * Copies an Order or QuoteSide entering this book side into this side's
+   * TradableStore.
+   *
+   * @param src Tradable object entering the book
+   * @return the stored copy that should be placed in the book
+   */
+  synchronized BookEntry acquire(Tradable src) {
+    return entryStore.acquire(src);
+  }
+
+  /**
+   * Hands a Tradable that has been removed from this book side back to this
+   * side's TradableStore, reporting it to the OrderEventPublisher, dropping
+   * it from the book's open order index and telling the PreTradeRisk stage
+   * when an order has left the book. Callers must not use it afterwards.
+   *
+   * @param t Tradable object no longer held by this book side
+   */
+  synchronized void recycle(Tradable t) {
+    touchedPrices.add(t.getPrice());
+    OrderEventPublisher.getInstance().delete(t);
+    parent.getOpenOrders().remove(userIdOf(t), t);
+    if (!t.isQuote()) {
+      if (t instanceof BookEntry) {
+        BookEntry e = (BookEntry) t;
+        PreTradeRisk.getInstance().orderClosed(e.getUserId(), e.getProductId());
+      } else {
+        PreTradeRisk.getInstance().orderClosed(t.getUser(), t.getProduct());
+      }
+    }
+    entryStore.release(t);
+  }
+
   /**
    * This method should add the Tradable passed in to the book
    * (the "bookEntries" HashMap).
@@ -389,6 +565,12 @@ public class ProductBookSide {
       l.add(trd);
       bookEntries.put(trd.getPrice(), l);
     }
+    touchedPrices.add(trd.getPrice());
+    if (trd instanceof BookEntry) {
+      ((BookEntry) trd).setOrderKey(parent.nextOrderKey());
+    }
+    OrderEventPublisher.getInstance().add(trd);
+    parent.getOpenOrders().add(userIdOf(trd), trd);
   }
 
   /**
@@ -429,6 +611,7 @@ public class ProductBookSide {
     while((trd.getRemainingVolume() > 0 && !bookEntries.isEmpty()) &&
             (trd.getPrice().isMarket() ||
             trd.getPrice().lessOrEqual(topOfBookPrice()))) {
+      touchedPrices.add(topOfBookPrice());
       HashMap<String, FillMessage> temp = processor.doTrade(trd);
       fillMsgs = mergeFills(fillMsgs, temp);
     }
@@ -451,6 +634,7 @@ public class ProductBookSide {
     while((trd.getRemainingVolume() > 0 && !bookEntries.isEmpty()) &&
             (trd.getPrice().isMarket() ||
             trd.getPrice().greaterOrEqual(topOfBookPrice()))) {
+      touchedPrices.add(topOfBookPrice());
       HashMap<String, FillMessage> temp = processor.doTrade(trd);
       fillMsgs = mergeFills(fillMsgs, temp);
     }
@@ -480,7 +664,7 @@ public class ProductBookSide {
         FillMessage fm = results.get(key); // Get the FillMessage from the "results" HashMap
         // NOTE – for the below, you will need to make these 2 FillMessage methods "public"!
         fm.setVolume(newOnes.get(key).getVolume()); // Update the fill volume
-        fm.setDetails(newOnes.get(key).getDetails()); // Update the fill details
+        fm.setDetails(newOnes.get(key)); // Update the fill details
       }
     }
     return results;
@@ -516,5 +700,6 @@ public class ProductBookSide {
     if (entries.isEmpty()) {
       clearIfEmpty(t.getPrice());
     }
+    recycle(t);
   }
 }
\ No newline at end of file
@@ -12,12 +12,11 @@ import constants.global.MarketState;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map.Entry;
 
 import price.exceptions.InvalidPriceOperation;
 import publishers.MessagePublisher;
 import publishers.exceptions.MessagePublisherException;
+import messages.BookDepthSnapshotDTO;
 import messages.MarketDataDTO;
 import messages.MarketMessage;
 import messages.exceptions.InvalidMessageException;
@@ -28,6 +27,9 @@ import tradable.exceptions.TradableException;
 import book.exceptions.InvalidMarketStateException;
 import book.exceptions.InvalidMarketStateTransitionException;
 import book.exceptions.InvalidProductBookSideValueException;
+import registry.SymbolRegistry;
+import registry.UserRegistry;
+import risk.PreTradeRisk;
 
 /**
  *  The ProductService is the Façade to the entities that make up the Products
@@ -42,15 +44,19 @@ public class ProductService {
   private ProductService()	{}
   /**
    * As this class must own all the product books, you will need a structure
-   * that contains all product books, accessible by the stock symbol name.
+   * that contains all product books. Books are indexed by the symbol id the
+   * SymbolRegistry assigned at createProduct; a null slot has no book. The
+   * array is replaced, never changed, when a product is created, so it can
+   * be read without the service lock.
    */
-  private HashMap<String, ProductBook> allBooks = new HashMap<>();
+  private volatile ProductBook[] allBooks = new ProductBook[16];
 
   /**
    * As this class must maintain a data member that holds the current market
-   * state.
+   * state. Changed under the service lock; volatile so orders and quotes can
+   * be checked against it before taking the lock.
    */
-  private MarketState state = MarketState.CLOSED;
+  private volatile MarketState state = MarketState.CLOSED;
 
   /**
    * As this is a Façade, this class should be implemented as a thread-safe
@@ -72,17 +78,49 @@ public class ProductService {
 
   /**
    * This method will return a List of TradableDTOs containing any orders with
-   * remaining quantity for the user and the stock specified.
+   * remaining quantity for the user and the stock specified. Only the book's
+   * open order index is read, so the service lock is not taken.
    *
    * @param userName Name of user passed in as argument
    * @param product Product name passed as argument
    * @return a list of TradeableDTOs
- * @throws ProductServiceException 
+   * @throws NoProductException if the product does not exist
+   * @throws ProductServiceException
    */
-  public synchronized ArrayList<TradableDTO> getOrdersWithRemainingQty(String userName, String product) throws ProductServiceException {
+  public ArrayList<TradableDTO> getOrdersWithRemainingQty(String userName, String product) throws NoProductException, ProductServiceException {
 	  validateInput(product);
 	  validateInput(userName);
-	  return allBooks.get(product).getOrdersWithRemainingQty(userName);
+	  ProductBook book = getBook(product);
+	  if (book == null) {
+	    throw new NoProductException("The product: " + product + "; does not exist in the product book.");
+	  }
+	  return book.getOrdersWithRemainingQty(userName);
+  }
+
+  /**
+   * Returns a List of TradableDTOs for the user's orders with remaining
+   * quantity in every product. Neither the service lock nor any book lock is
+   * taken; each book's open order index is read under its own lock, so the
+   * cost is the number of the user's orders rather than the size of the
+   * books.
+   *
+   * @param userName Name of user passed in as argument
+   * @return a list of TradableDTOs, grouped by product
+   * @throws ProductServiceException
+   */
+  public ArrayList<TradableDTO> getAllOrdersWithRemainingQty(String userName) throws ProductServiceException {
+    validateInput(userName);
+    ArrayList<TradableDTO> l = new ArrayList<>();
+    int uid = UserRegistry.getInstance().idOf(userName);
+    if (uid == UserRegistry.NO_ID) {
+      return l;
+    }
+    for (ProductBook book : allBooks) {
+      if (book != null) {
+        book.collectOrdersWithRemainingQty(uid, l);
+      }
+    }
+    return l;
   }
 
   /**
@@ -96,7 +134,7 @@ public class ProductService {
    */
   public synchronized MarketDataDTO getMarketData(String product) throws InvalidPriceOperation, ProductServiceException {
 	  validateInput(product);
-	  return allBooks.get(product).getMarketData();
+	  return getBook(product).getMarketData();
   }
 
   /**
@@ -117,20 +155,73 @@ public class ProductService {
    */
   public synchronized String[][] getBookDepth(String product) throws NoProductException, ProductServiceException {
 	  validateInput(product);
-	  if (!allBooks.containsKey(product)) {
+	  ProductBook book = getBook(product);
+	  if (book == null) {
        throw new NoProductException("The product: " + product + "; does not exist in the product book.");
     }
-    return allBooks.get(product).getBookDepth();
+    return book.getBookDepth();
+  }
+
+  /**
+   * Returns every price level of the product's book, with the number of the
+   * last depth change they include. Only the book is locked, so a user
+   * starting a BookDepthPublisher subscription does not hold up the rest of
+   * the service.
+   *
+   * @param product String stock symbol
+   * @return the book depth snapshot of the product
+   * @throws NoProductException
+   * @throws ProductServiceException
+   */
+  public BookDepthSnapshotDTO getBookDepthSnapshot(String product) throws NoProductException,
+          ProductServiceException {
+    validateInput(product);
+    ProductBook book = getBook(product);
+    if (book == null) {
+      throw new NoProductException("The product: " + product + "; does not exist in the product book.");
+    }
+    return book.getBookDepthSnapshot();
   }
 
   /**
-   * This method should simply return an Arraylist containing all the keys in
-   * the "allBooks" HashMap.
+   * This method should simply return an Arraylist containing the symbols of
+   * all the books in "allBooks".
    *
    * @return an ArrayList of all Products
    */
   public synchronized ArrayList<String> getProductList() {
-    return new ArrayList<>(allBooks.keySet());
+    ArrayList<String> list = new ArrayList<>();
+    SymbolRegistry symbols = SymbolRegistry.getInstance();
+    for (int id = 0; id < allBooks.length; id++) {
+      if (allBooks[id] != null) {
+        list.add(symbols.nameOf(id));
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Returns the book for the passed product, looked up by its symbol id.
+   *
+   * @param product String stock symbol
+   * @return the product's book, or null if the product was never created
+   */
+  private ProductBook getBook(String product) {
+    return getBook(SymbolRegistry.getInstance().idOf(product));
+  }
+
+  /**
+   * Returns the book for the passed symbol id.
+   *
+   * @param productId Symbol id from the SymbolRegistry
+   * @return the product's book, or null if there is no book for the id
+   */
+  ProductBook getBook(int productId) {
+    ProductBook[] books = allBooks;
+    if (productId < 0 || productId >= books.length) {
+      return null;
+    }
+    return books[productId];
   }
 
   /**
@@ -174,35 +265,59 @@ public class ProductService {
     state = ms;
     MessagePublisher.getInstance().publishMarketMessage(new MarketMessage(state));
     if (state.equals(MarketState.OPEN)) {
-      for (Entry<String, ProductBook> row : allBooks.entrySet()) {
-        row.getValue().openMarket();
+      for (ProductBook book : allBooks) {
+        if (book != null) {
+          book.openMarket();
+        }
       }
     }
     if (state.equals(MarketState.CLOSED)) {
-      for (Entry<String, ProductBook> row : allBooks.entrySet()) {
-        row.getValue().closeMarket();
+      for (ProductBook book : allBooks) {
+        if (book != null) {
+          book.closeMarket();
+        }
       }
     }
   }
 
   /**
    * This method will create a new stock product that can be used for trading.
-   * This will result in the creation of a ProductBook object, and a new entry
-   * in the "allBooks" HashMap.
+   * This will result in a symbol id from the SymbolRegistry, the creation of
+   * a ProductBook object, and a new entry in "allBooks" at that id.
    *
    * @param product Product to be created 
  * @throws ProductServiceException 
    */
   public synchronized void createProduct(String product) throws DataValidationException, ProductExistsException,
           ProductBookException, ProductBookSideException, InvalidProductBookSideValueException, ProductServiceException {
+    createProduct(product, "heap");
+  }
+
+  /**
+   * Creates a new stock product whose book keeps its resting entries in the
+   * passed storage type ("heap" or "off-heap", see TradableStoreFactory).
+   *
+   * @param product Product to be created
+   * @param storageType Storage used by the product's book sides
+   * @throws ProductServiceException
+   * @throws ProductBookSideException if the storage type is unknown
+   */
+  public synchronized void createProduct(String product, String storageType) throws DataValidationException,
+          ProductExistsException, ProductBookException, ProductBookSideException,
+          InvalidProductBookSideValueException, ProductServiceException {
     validateInput(product);
 	if (product == null || product.isEmpty()) {
       throw new DataValidationException("Product symbol cannot be null or empty.");
     }
-    if (allBooks.containsKey(product)) {
+    if (getBook(product) != null) {
       throw new ProductExistsException("Product " + product + " already exists in the ProductBook.");
     }
-    allBooks.put(product, new ProductBook(product));
+    ProductBook book = new ProductBook(product, storageType);
+    int id = SymbolRegistry.getInstance().register(product);
+    ProductBook[] books = Arrays.copyOf(allBooks,
+            id < allBooks.length ? allBooks.length : Math.max(id + 1, allBooks.length * 2));
+    books[id] = book;
+    allBooks = books;
   }
 
   /**
@@ -214,17 +329,70 @@ public class ProductService {
    * @throws MessagePublisherException 
  * @throws ProductServiceException 
    */
-  public synchronized void submitQuote(Quote q) throws InvalidMarketStateException, NoProductException,
+  public void submitQuote(Quote q) throws InvalidMarketStateException, NoProductException,
   	TradableException, DataValidationException, InvalidMessageException, InvalidPriceOperation,
     MessagePublisherException, ProductServiceException {
     validateInput(q);
-	if (state.equals(MarketState.CLOSED)) {
-      throw new InvalidMarketStateException("Marekt is closed!");
+    CommandResult r = trySubmitQuote(q);
+    if (r == CommandResult.MARKET_CLOSED) {
+      throw new InvalidMarketStateException(r.getMessage());
     }
-    if (!allBooks.containsKey(q.getProduct())) {
-      throw new NoProductException("Product does not exist in any book.");
+    if (r == CommandResult.NO_PRODUCT) {
+      throw new NoProductException(r.getMessage());
+    }
+    if (!r.isOk() && !r.isRiskReject()) {
+      throw new DataValidationException(r.getMessage());
     }
-    allBooks.get(q.getProduct()).addToBook(q);
+  }
+
+  /**
+   * Forwards the provided Quote to the appropriate product book, returning a
+   * result code instead of throwing when the quote is rejected. Once the
+   * market state and product are found to take it, the quote is checked by
+   * the PreTradeRisk stage without taking any lock; a risk reject has already
+   * been sent to the user as cancel messages.
+   *
+   * @param q Quote object passed as argument
+   * @return OK, INVALID_INPUT, MARKET_CLOSED, NO_PRODUCT, CROSSED_QUOTE,
+   * INVALID_QUOTE_PRICE, INVALID_QUOTE_VOLUME or a risk reject
+   * @throws InvalidPriceOperation 
+   * @throws MessagePublisherException 
+   */
+  public CommandResult trySubmitQuote(Quote q) throws TradableException, 
+  	InvalidMessageException, InvalidPriceOperation, MessagePublisherException {
+    if (q == null) {
+      return CommandResult.INVALID_INPUT;
+    }
+    CommandResult r = checkBookable(q.getProduct(), false);
+    if (!r.isOk()) {
+      return r;
+    }
+    r = PreTradeRisk.getInstance().checkQuote(q);
+    return r.isOk() ? bookQuote(q) : r;
+  }
+
+  /**
+   * Forwards a Quote that has passed the pre-trade risk checks to its
+   * product book.
+   *
+   * @param q Quote object passed as argument
+   * @return OK, MARKET_CLOSED, NO_PRODUCT, CROSSED_QUOTE, INVALID_QUOTE_PRICE
+   * or INVALID_QUOTE_VOLUME
+   */
+  private synchronized CommandResult bookQuote(Quote q) throws TradableException, 
+  	InvalidMessageException, InvalidPriceOperation, MessagePublisherException {
+    if (state.equals(MarketState.CLOSED)) {
+      return CommandResult.MARKET_CLOSED;
+    }
+    ProductBook book = getBook(q.getProduct());
+    if (book == null) {
+      return CommandResult.NO_PRODUCT;
+    }
+    CommandResult r = book.checkQuote(q);
+    if (r.isOk()) {
+      book.bookQuote(q);
+    }
+    return r;
   }
 
 
@@ -238,20 +406,105 @@ public class ProductService {
    * @throws MessagePublisherException 
  * @throws ProductServiceException 
    */
-  public synchronized String submitOrder(Order o) throws InvalidMarketStateException, NoProductException, 
+  public String submitOrder(Order o) throws InvalidMarketStateException, NoProductException, 
   	InvalidMessageException, TradableException, InvalidPriceOperation, MessagePublisherException, ProductServiceException {
     validateInput(o);
-	if (state.equals(MarketState.CLOSED)) {
-      throw new InvalidMarketStateException("Marekt is closed!");
+    CommandResult r = trySubmitOrder(o);
+    if (r == CommandResult.MARKET_CLOSED || r == CommandResult.MARKET_ORDER_IN_PREOPEN) {
+      throw new InvalidMarketStateException(r.getMessage());
+    }
+    if (r == CommandResult.NO_PRODUCT) {
+      throw new NoProductException(r.getMessage());
+    }
+    return o.getId();
+  }
+
+  /**
+   * Forwards the provided Order to the appropriate product book, returning a
+   * result code instead of throwing when the order is rejected. The order id
+   * is available from the Order itself. Once the market state and product
+   * are found to take it, the order is checked by the PreTradeRisk stage
+   * without taking any lock; a risk reject has already been sent to the user
+   * as a cancel message. An order that passed the risk checks but is not
+   * booked, including when booking throws, stops counting as open.
+   *
+   * @param o Order object passed as argument
+   * @return OK, INVALID_INPUT, MARKET_CLOSED, MARKET_ORDER_IN_PREOPEN,
+   * NO_PRODUCT or a risk reject
+   * @throws InvalidPriceOperation 
+   * @throws MessagePublisherException 
+   */
+  public CommandResult trySubmitOrder(Order o) throws InvalidMessageException, 
+  	TradableException, InvalidPriceOperation, MessagePublisherException {
+    if (o == null) {
+      return CommandResult.INVALID_INPUT;
+    }
+    CommandResult r = checkBookable(o.getProduct(), o.getPrice().isMarket());
+    if (!r.isOk()) {
+      return r;
+    }
+    PreTradeRisk risk = PreTradeRisk.getInstance();
+    r = risk.checkOrder(o);
+    if (!r.isOk()) {
+      return r;
+    }
+    boolean booked = false;
+    try {
+      r = bookOrder(o);
+      booked = r.isOk();
+    } finally {
+      if (!booked) {
+        risk.orderClosed(o.getUser(), o.getProduct());
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Checks the market state and product of an order or quote before the
+   * PreTradeRisk stage, so one that cannot be booked neither uses up its
+   * user's throttle nor counts as open. Takes no lock; bookOrder and
+   * bookQuote check again under the lock.
+   *
+   * @param product Product of the order or quote
+   * @param marketPrice true for a market order
+   * @return OK, MARKET_CLOSED, MARKET_ORDER_IN_PREOPEN or NO_PRODUCT
+   */
+  private CommandResult checkBookable(String product, boolean marketPrice) {
+    MarketState s = state;
+    if (s.equals(MarketState.CLOSED)) {
+      return CommandResult.MARKET_CLOSED;
+    }
+    if (s.equals(MarketState.PREOPEN) && marketPrice) {
+      return CommandResult.MARKET_ORDER_IN_PREOPEN;
+    }
+    if (getBook(product) == null) {
+      return CommandResult.NO_PRODUCT;
+    }
+    return CommandResult.OK;
+  }
+
+  /**
+   * Forwards an Order that has passed the pre-trade risk checks to its
+   * product book.
+   *
+   * @param o Order object passed as argument
+   * @return OK, MARKET_CLOSED, MARKET_ORDER_IN_PREOPEN or NO_PRODUCT
+   */
+  private synchronized CommandResult bookOrder(Order o) throws InvalidMessageException, 
+  	TradableException, InvalidPriceOperation, MessagePublisherException {
+    if (state.equals(MarketState.CLOSED)) {
+      return CommandResult.MARKET_CLOSED;
     }
     if (state.equals(MarketState.PREOPEN) && o.getPrice().isMarket()) {
-      throw new InvalidMarketStateException("Market is pre-open, cannot submit" + " MKT orders at this time.");
+      return CommandResult.MARKET_ORDER_IN_PREOPEN;
     }
-    if (!allBooks.containsKey(o.getProduct())) {
-      throw new NoProductException("Product does not exist in any book.");
+    ProductBook book = getBook(o.getProduct());
+    if (book == null) {
+      return CommandResult.NO_PRODUCT;
     }
-    allBooks.get(o.getProduct()).addToBook(o);
-    return o.getId();
+    book.addToBook(o);
+    return CommandResult.OK;
   }
 
   /**
@@ -277,13 +530,45 @@ public class ProductService {
     validateInput(product);
     validateInput(side);
     validateInput(orderId);
-	if (state.equals(MarketState.CLOSED)) {
-      throw new InvalidMarketStateException("Marekt is closed!");
+    CommandResult r = trySubmitOrderCancel(product, side, orderId);
+    if (r == CommandResult.MARKET_CLOSED) {
+      throw new InvalidMarketStateException(r.getMessage());
+    }
+    if (r == CommandResult.NO_PRODUCT) {
+      throw new NoProductException(r.getMessage());
     }
-    if (!allBooks.containsKey(product)) {
-      throw new NoProductException("Product does not exist in any book.");
+    if (r == CommandResult.ORDER_NOT_FOUND) {
+      throw new OrderNotFoundException("The order with the specified order id: "
+              + orderId + "; could not be found.");
     }
-    allBooks.get(product).cancelOrder(side, orderId);
+  }
+
+  /**
+   * Forwards the provided Order Cancel to the appropriate product book,
+   * returning a result code instead of throwing when the cancel is rejected
+   * or the order cannot be found.
+   *
+   * @param product Product name passed as argument
+   * @param side BookSide object passed as argument representing side (BUY or SELL)
+   * @param orderId Id of the stock passed as argument
+   * @return OK, INVALID_INPUT, MARKET_CLOSED, NO_PRODUCT or ORDER_NOT_FOUND
+   * @throws InvalidPriceOperation 
+   * @throws MessagePublisherException 
+   */
+  public synchronized CommandResult trySubmitOrderCancel(String product, BookSide side,
+          String orderId) throws InvalidMessageException, TradableException,
+          InvalidPriceOperation, MessagePublisherException {
+    if (product == null || product.isEmpty() || side == null || orderId == null || orderId.isEmpty()) {
+      return CommandResult.INVALID_INPUT;
+    }
+    if (state.equals(MarketState.CLOSED)) {
+      return CommandResult.MARKET_CLOSED;
+    }
+    ProductBook book = getBook(product);
+    if (book == null) {
+      return CommandResult.NO_PRODUCT;
+    }
+    return book.tryCancelOrder(side, orderId) ? CommandResult.OK : CommandResult.ORDER_NOT_FOUND;
   }
 
   /**
@@ -300,13 +585,39 @@ public class ProductService {
   	NoProductException, InvalidMessageException, InvalidPriceOperation, MessagePublisherException, ProductServiceException {
     validateInput(userName);
     validateInput(product);
-	if (state.equals(MarketState.CLOSED)) {
-      throw new InvalidMarketStateException("Marekt is closed!");
+    CommandResult r = trySubmitQuoteCancel(userName, product);
+    if (r == CommandResult.MARKET_CLOSED) {
+      throw new InvalidMarketStateException(r.getMessage());
+    }
+    if (r == CommandResult.NO_PRODUCT) {
+      throw new NoProductException(r.getMessage());
+    }
+  }
+
+  /**
+   * Forwards the provided Quote Cancel to the appropriate product book,
+   * returning a result code instead of throwing when the cancel is rejected.
+   *
+   * @param userName Name of user passed as argument
+   * @param product Product name of the stock passed as argument
+   * @return OK, INVALID_INPUT, MARKET_CLOSED or NO_PRODUCT
+   * @throws InvalidPriceOperation 
+   * @throws MessagePublisherException 
+   */
+  public synchronized CommandResult trySubmitQuoteCancel(String userName, String product) throws 
+  	InvalidMessageException, InvalidPriceOperation, MessagePublisherException {
+    if (userName == null || userName.isEmpty() || product == null || product.isEmpty()) {
+      return CommandResult.INVALID_INPUT;
+    }
+    if (state.equals(MarketState.CLOSED)) {
+      return CommandResult.MARKET_CLOSED;
     }
-    if (!allBooks.containsKey(product)) {
-      throw new NoProductException("Product does not exist in any book.");
+    ProductBook book = getBook(product);
+    if (book == null) {
+      return CommandResult.NO_PRODUCT;
     }
-    allBooks.get(product).cancelQuote(userName);
+    book.cancelQuote(userName);
+    return CommandResult.OK;
   }
   
   /**
@@ -7,6 +7,7 @@ import price.Price;
 import price.exceptions.InvalidPriceOperation;
 import messages.FillMessage;
 import messages.exceptions.InvalidMessageException;
+import publishers.OrderEventPublisher;
 import tradable.Tradable;
 import tradable.exceptions.TradableException;
 import book.exceptions.InvalidProductBookSideValueException;
@@ -110,7 +111,7 @@ public class TradeProcessorPriceTimeImpl implements TradeProcessor {
       String key = makeFillKey(fm);
       FillMessage oldFill = fillMessages.get(key);
       oldFill.setVolume(fm.getVolume());
-      oldFill.setDetails(fm.getDetails());
+      oldFill.setDetails(fm);
     }
   }
 
@@ -130,6 +131,7 @@ public class TradeProcessorPriceTimeImpl implements TradeProcessor {
   public HashMap<String, FillMessage> doTrade(Tradable trd) throws InvalidMessageException, TradableException, 
   	InvalidPriceOperation {
     fillMessages = new HashMap<>();
+    OrderEventPublisher events = OrderEventPublisher.getInstance();
     ArrayList<Tradable> tradedOut = new ArrayList<>();
     ArrayList<Tradable> entriesAtPrice = parent.getEntriesAtTopOfBook();
     for (Tradable t : entriesAtPrice) {
@@ -143,16 +145,19 @@ public class TradeProcessorPriceTimeImpl implements TradeProcessor {
             tPrice = t.getPrice();
           }
           FillMessage tFill = new FillMessage(t.getUser(), t.getProduct(),
-                  tPrice, t.getRemainingVolume(), "leaving " + 0 , t.getSide(),
+                  tPrice, t.getRemainingVolume(), 0, t.getSide(),
                   t.getId());
           addFillMessage(tFill);
           FillMessage trdFill = new FillMessage (trd.getUser(), t.getProduct(),
-                  tPrice, t.getRemainingVolume(), "leaving " +
-                  (trd.getRemainingVolume() - t.getRemainingVolume()),
+                  tPrice, t.getRemainingVolume(),
+                  trd.getRemainingVolume() - t.getRemainingVolume(),
                   trd.getSide(), trd.getId());
           addFillMessage(trdFill);
-          trd.setRemainingVolume(trd.getRemainingVolume() - t.getRemainingVolume());
+          int traded = t.getRemainingVolume();
+          trd.setRemainingVolume(trd.getRemainingVolume() - traded);
           t.setRemainingVolume(0);
+          events.execute(trd, tPrice, traded);
+          events.execute(t, tPrice, traded);
           parent.addOldEntry(t);
         } 
         else {
@@ -164,15 +169,18 @@ public class TradeProcessorPriceTimeImpl implements TradeProcessor {
             tPrice = t.getPrice();
           }
           FillMessage tFill = new FillMessage(t.getUser(), t.getProduct(),
-                  tPrice, trd.getRemainingVolume(), "leaving " +
+                  tPrice, trd.getRemainingVolume(),
                   remainder, t.getSide(), t.getId());
           addFillMessage(tFill);
           FillMessage trdFill = new FillMessage(trd.getUser(), t.getProduct(),
                   tPrice, trd.getRemainingVolume(),
-                  "leaving " + 0, trd.getSide(), trd.getId());
+                  0, trd.getSide(), trd.getId());
           addFillMessage(trdFill);
+          int traded = trd.getRemainingVolume();
           trd.setRemainingVolume(0);
           t.setRemainingVolume(remainder);
+          events.execute(trd, tPrice, traded);
+          events.execute(t, tPrice, traded);
           parent.addOldEntry(trd);
         }
       } else {
@@ -181,6 +189,7 @@ public class TradeProcessorPriceTimeImpl implements TradeProcessor {
     }
     for (Tradable t : tradedOut) {
       entriesAtPrice.remove(t);
+      parent.recycle(t);
     }
     if (entriesAtPrice.isEmpty()) {
       parent.clearIfEmpty(parent.topOfBookPrice());
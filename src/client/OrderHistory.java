@@ -0,0 +1,136 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+/**
+ * The OrderHistory class holds the TradableUserData of a user's open orders,
+ * by product and order id, so an order can be found or dropped without
+ * scanning everything the user has ever submitted. An order is dropped when
+ * a fill leaves it no volume or it is cancelled; if a history size was given,
+ * the last orders dropped are kept in a ring.
+ *
+ * A fill or cancel can arrive before submitOrder has returned the order's
+ * id. Orders closed while a submit is under way are remembered until the
+ * submit finishes, so they are not added as open afterwards.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class OrderHistory {
+
+  /**
+   * Open orders by product, then by order id, in the order submitted
+   */
+  private final HashMap<String, LinkedHashMap<String, TradableUserData>> open = new HashMap<>();
+
+  /**
+   * The last orders closed; the oldest is at next once the ring is full
+   */
+  private final TradableUserData[] closed;
+  private int next;
+  private int closedCount;
+
+  /**
+   * Submits under way, and ids closed while one was
+   */
+  private int submitting;
+  private final HashSet<String> closedWhileSubmitting = new HashSet<>();
+
+  /**
+   * @param historySize closed orders to keep; 0 keeps none
+   */
+  OrderHistory(int historySize) {
+    closed = new TradableUserData[Math.max(0, historySize)];
+  }
+
+  /**
+   * Marks the start of a submit
+   */
+  synchronized void beginSubmit() {
+    submitting++;
+  }
+
+  /**
+   * Marks the end of a submit, adding the order it made
+   * @param t the submitted order, or null if the submit failed
+   */
+  synchronized void endSubmit(TradableUserData t) {
+    if (t != null) {
+      if (closedWhileSubmitting.remove(t.getID())) {
+        keep(t);
+      } else {
+        LinkedHashMap<String, TradableUserData> orders = open.get(t.getProduct());
+        if (orders == null) {
+          orders = new LinkedHashMap<>();
+          open.put(t.getProduct(), orders);
+        }
+        orders.put(t.getID(), t);
+      }
+    }
+    if (--submitting == 0) {
+      closedWhileSubmitting.clear();
+    }
+  }
+
+  /**
+   * Drops an order that has been filled or cancelled. Ids that are not open
+   * orders, such as quote-sides, are ignored.
+   * @param product the order's product
+   * @param id the order's id
+   */
+  synchronized void close(String product, String id) {
+    LinkedHashMap<String, TradableUserData> orders = open.get(product);
+    TradableUserData t = orders == null ? null : orders.remove(id);
+    if (t != null) {
+      keep(t);
+    } else if (submitting > 0) {
+      closedWhileSubmitting.add(id);
+    }
+  }
+
+  /**
+   * Puts a closed order in the ring
+   */
+  private void keep(TradableUserData t) {
+    if (closed.length == 0) {
+      return;
+    }
+    closed[next] = t;
+    next = (next + 1) % closed.length;
+    closedCount = Math.min(closedCount + 1, closed.length);
+  }
+
+  /**
+   * @return the open orders in every product
+   */
+  synchronized ArrayList<TradableUserData> getOpen() {
+    ArrayList<TradableUserData> l = new ArrayList<>();
+    for (LinkedHashMap<String, TradableUserData> orders : open.values()) {
+      l.addAll(orders.values());
+    }
+    return l;
+  }
+
+  /**
+   * @param product String stock symbol
+   * @return the open orders in the product, in the order submitted
+   */
+  synchronized ArrayList<TradableUserData> getOpen(String product) {
+    LinkedHashMap<String, TradableUserData> orders = open.get(product);
+    return orders == null ? new ArrayList<TradableUserData>() : new ArrayList<>(orders.values());
+  }
+
+  /**
+   * @return the closed orders kept, oldest first
+   */
+  synchronized ArrayList<TradableUserData> getClosed() {
+    ArrayList<TradableUserData> l = new ArrayList<>(closedCount);
+    int first = (next - closedCount + closed.length) % Math.max(1, closed.length);
+    for (int i = 0; i < closedCount; i++) {
+      l.add(closed[(first + i) % closed.length]);
+    }
+    return l;
+  }
+}
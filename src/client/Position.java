@@ -1,51 +1,139 @@
 package client;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import constants.global.BookSide;
 import client.exceptions.PositionException;
 import price.Price;
 import price.PriceFactory;
 import price.exceptions.InvalidPriceOperation;
 import price.exceptions.PriceException;
+import registry.SymbolRegistry;
 
 /**
  * The Position class is used to hold an individual users profit and loss information, 
  * including how much they have spent buying stock, how much they gained or lost 
  * selling stock, and the value of the stock they currently own.
  * 
+ * Values are kept in cents and updated as fills and last sales arrive, so each
+ * update costs the same however many stocks are held. Updates are made under
+ * the Position's lock; the totals are read from an immutable snapshot
+ * without one.
+ * 
  * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
  */
 public class Position {
 
 	/**
-	 * A HashMap to store the "holdings" of the user. The "key" is the stock, and 
-	 * "value" is the number of shares they own. 
+	 * An array to store the "holdings" of the user. The index is the stock's
+	 * symbol id, and the value is the number of shares they own.
+	 */
+	int[] holdings;
+
+	/**
+	 * True at a symbol id while the user holds a (non-zero) position in it
 	 */
-	HashMap<String, Integer> holdings;
+	boolean[] held;
 	
 	/**
 	 * Price object to hold the "account costs" for this user. This will keep a running
 	 * balance between the "money out" for stock purchases, and the "money in" for stock
 	 * sales. 
 	 */
-	Price accountCosts;
+	volatile Price accountCosts;
 	
 	/**
-	 * a HashMap to store the "last sales" of the stocks this user owns. Last sales indicate
-	 * the current value of the stocks they own.
+	 * An array to store the "last sales" of the stocks this user owns, indexed by
+	 * symbol id. Last sales indicate the current value of the stocks they own.
+	 */
+	Price[] lastSales;
+
+	/**
+	 * The last sale of each stock in cents, indexed by symbol id
+	 */
+	long[] marks;
+
+	/**
+	 * The current value in cents of each holding (volume times last sale),
+	 * indexed by symbol id. Kept up to date as fills and last sales arrive.
+	 */
+	long[] values;
+
+	/**
+	 * Running totals in cents: the sum of values, and the account costs
+	 */
+	long stockValue;
+	long costs;
+
+	/**
+	 * Number of updates applied
+	 */
+	long version;
+
+	/**
+	 * The totals as of the last update, replaced (never changed) by every
+	 * update so readers need no lock
 	 */
-	HashMap<String, Price> lastSales;
+	private volatile PositionSnapshot snapshot = new PositionSnapshot(0, 0, 0);
 	
 	/**
 	 * Constructor
 	 * @throws InvalidPriceOperation
 	 */
 	public Position() throws InvalidPriceOperation	{
-		holdings = new HashMap<>();
+		holdings = new int[16];
+		held = new boolean[16];
 		accountCosts = PriceFactory.makeLimitPrice(0);
-		lastSales = new HashMap<>();
+		lastSales = new Price[16];
+		marks = new long[16];
+		values = new long[16];
+	}
+
+	/**
+	 * Returns the symbol id of the passed product, growing the arrays so the
+	 * id can be used as an index.
+	 *
+	 * @param product String stock symbol
+	 * @return the product's symbol id
+	 */
+	private int slotFor(String product) {
+		int id = SymbolRegistry.getInstance().register(product);
+		if (id >= holdings.length) {
+			int n = Math.max(id + 1, holdings.length * 2);
+			holdings = Arrays.copyOf(holdings, n);
+			held = Arrays.copyOf(held, n);
+			lastSales = Arrays.copyOf(lastSales, n);
+			marks = Arrays.copyOf(marks, n);
+			values = Arrays.copyOf(values, n);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the symbol id of the passed product if this position has a slot
+	 * for it.
+	 *
+	 * @param product String stock symbol
+	 * @return the product's symbol id, or -1 if there is no slot
+	 */
+	private int slotOf(String product) {
+		int id = SymbolRegistry.getInstance().idOf(product);
+		return id < holdings.length ? id : -1;
+	}
+
+	/**
+	 * Sets the value of the holding at the passed symbol id from its volume
+	 * and last sale, moving the total stock value by the difference, and
+	 * publishes a new snapshot of the totals.
+	 *
+	 * @param id symbol id of the stock
+	 */
+	private void revalue(int id) {
+		long value = held[id] ? marks[id] * holdings[id] : 0;
+		stockValue += value - values[id];
+		values[id] = value;
+		snapshot = new PositionSnapshot(stockValue, costs, ++version);
 	}
 	
 	/**
@@ -56,44 +144,53 @@ public class Position {
 	 * @param side "side" of the stock
 	 * @param volume quantity of the stock
 	 */
-	public void updatePosition(String product, Price price, BookSide side, int volume) 
+	public synchronized void updatePosition(String product, Price price, BookSide side, int volume) 
 		throws PositionException, InvalidPriceOperation, PriceException {
 	    validateInput(product);
 	    validateInput(price);
 	    validateInput(side);
+	    if (price.isMarket() || volume == 0) {
+	      throw new InvalidPriceOperation("Invalid Price Operation: "
+	              + "Current Price is a Market Price or p is zero.");
+	    }
 	    int adjustedVolume = (side.equals(BookSide.BUY) ? volume : -volume);
-	    if (!holdings.containsKey(product)) {
-	      holdings.put(product, adjustedVolume);
+	    int id = slotFor(product);
+	    if (!held[id]) {
+	      holdings[id] = adjustedVolume;
+	      held[id] = true;
 	    } else {
-	      int resultingVolume = holdings.get(product) + adjustedVolume;
+	      int resultingVolume = holdings[id] + adjustedVolume;
 	      if (resultingVolume == 0) {
-	        holdings.remove(product);
+	        holdings[id] = 0;
+	        held[id] = false;
 	      } else {
-	        holdings.put(product, resultingVolume);
+	        holdings[id] = resultingVolume;
 	      }
 	    }
-	    Price totalPrice = price.multiply(volume);
-	    if (side.equals(BookSide.BUY)) {
-	      accountCosts = accountCosts.subtract(totalPrice);
-	    } else {
-	      accountCosts = accountCosts.add(totalPrice);
-	    }
+	    long total = price.getCents() * volume;
+	    costs += side.equals(BookSide.BUY) ? -total : total;
+	    accountCosts = PriceFactory.makeLimitPrice(costs);
+	    revalue(id);
 	  }
 
 	  /**
 	   * This method should insert the last sale for the specified stock into the
-	   * "last sales" HashMap (product parameter is the key, Price parameter is
-	   * the value).
+	   * "last sales" array (at the product's symbol id).
 	   *
 	   * @param product String stock symbol
 	   * @param price Price of the stock
 	   * @throws PositionException
 	   */
-	  public void updateLastSale(String product, Price price)
+	  public synchronized void updateLastSale(String product, Price price)
 	          throws PositionException {
 	    validateInput(product);
 	    validateInput(price);
-	    lastSales.put(product, price);
+	    int id = slotFor(product);
+	    lastSales[id] = price;
+	    marks[id] = price.isMarket() ? 0 : price.getCents();
+	    if (held[id]) {
+	      revalue(id);
+	    }
 	  }
 
 	  /**
@@ -103,10 +200,11 @@ public class Position {
 	   * @return the volume of stock this user owns
 	   * @throws PositionException
 	   */
-	  public int getStockPositionVolume(String product) throws PositionException {
+	  public synchronized int getStockPositionVolume(String product) throws PositionException {
 	    validateInput(product);
-	    if (!holdings.containsKey(product)) { return 0; }
-	    return holdings.get(product);
+	    int id = slotOf(product);
+	    if (id < 0 || !held[id]) { return 0; }
+	    return holdings[id];
 	  }
 
 	  /**
@@ -115,8 +213,14 @@ public class Position {
 	   *
 	   * @return a sorted ArrayList of stock symbols this user owns
 	   */
-	  public ArrayList<String> getHoldings() {
-	    ArrayList<String> h = new ArrayList<>(holdings.keySet());
+	  public synchronized ArrayList<String> getHoldings() {
+	    ArrayList<String> h = new ArrayList<>();
+	    SymbolRegistry symbols = SymbolRegistry.getInstance();
+	    for (int id = 0; id < held.length; id++) {
+	      if (held[id]) {
+	        h.add(symbols.nameOf(id));
+	      }
+	    }
 	    Collections.sort(h);
 	    return h;
 	  }
@@ -129,17 +233,11 @@ public class Position {
 	   * @return return the current value of the stock symbol
 	   * @throws PositionException
 	   */
-	  public Price getStockPositionValue(String product)
+	  public synchronized Price getStockPositionValue(String product)
 	          throws PositionException, InvalidPriceOperation {
 	    validateInput(product);
-	    if (!holdings.containsKey(product)) {
-	      return PriceFactory.makeLimitPrice(0);
-	    }
-	    Price lastPrice = lastSales.get(product);
-	    if (lastPrice == null) {
-	      lastPrice = PriceFactory.makeLimitPrice(0);
-	    }
-	    return lastPrice.multiply(holdings.get(product));
+	    int id = slotOf(product);
+	    return PriceFactory.makeLimitPrice(id < 0 ? 0 : values[id]);
 	  }
 
 	  /**
@@ -151,6 +249,16 @@ public class Position {
 	    return accountCosts;
 	  }
 
+	  /**
+	   * Returns the totals as of the last update. Reading takes no lock, and
+	   * the totals in one snapshot always agree with each other.
+	   *
+	   * @return the current snapshot of the totals
+	   */
+	  public PositionSnapshot getSnapshot() {
+	    return snapshot;
+	  }
+
 	  /**
 	   * This method should return the total current value of all stocks this user
 	   * owns.
@@ -161,11 +269,7 @@ public class Position {
 	   */
 	  public Price getAllStockValue()
 	          throws InvalidPriceOperation, PositionException, PriceException {
-	    Price sum = PriceFactory.makeLimitPrice(0);
-	    for (String key : holdings.keySet()) {
-	      sum = sum.add(getStockPositionValue(key));
-	    }
-	    return sum;
+	    return PriceFactory.makeLimitPrice(snapshot.getStockValue());
 	  }
 
 	  /**
@@ -176,7 +280,7 @@ public class Position {
 	   */
 	  public Price getNetAccountValue()
 	          throws PositionException, InvalidPriceOperation, PriceException {
-	    return getAllStockValue().add(getAccountCosts());
+	    return PriceFactory.makeLimitPrice(snapshot.getNetAccountValue());
 	  }
 	  
 	  /**
@@ -0,0 +1,62 @@
+package client;
+
+/**
+ * The PositionSnapshot class holds the profit and loss totals of a Position as
+ * they stood after one update: the value of the stock held, the account costs
+ * and the net account value, all in cents. A snapshot never changes, so the
+ * three totals read from one snapshot always agree with each other.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public final class PositionSnapshot {
+
+	/**
+	 * Current value of all stock held, in cents
+	 */
+	private final long stockValue;
+
+	/**
+	 * Running balance of stock sales less stock purchases, in cents
+	 */
+	private final long accountCosts;
+
+	/**
+	 * Number of updates applied to the Position when this snapshot was taken
+	 */
+	private final long version;
+
+	PositionSnapshot(long stockValue, long accountCosts, long version) {
+		this.stockValue = stockValue;
+		this.accountCosts = accountCosts;
+		this.version = version;
+	}
+
+	/**
+	 * @return the current value of all stock held, in cents
+	 */
+	public long getStockValue() {
+		return stockValue;
+	}
+
+	/**
+	 * @return the account costs, in cents
+	 */
+	public long getAccountCosts() {
+		return accountCosts;
+	}
+
+	/**
+	 * @return the stock value plus the account costs, in cents
+	 */
+	public long getNetAccountValue() {
+		return stockValue + accountCosts;
+	}
+
+	/**
+	 * @return the number of updates applied to the Position when this
+	 * snapshot was taken
+	 */
+	public long getVersion() {
+		return version;
+	}
+}
@@ -0,0 +1,59 @@
+package client;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The SessionRegistry holds the UserSession of every connected user, indexed
+ * by the user id from the UserRegistry. Looking up a session is a single
+ * volatile read of the table and its slot, with no lock, so the
+ * UserCommandService can verify a user on every command. Connects and
+ * disconnects are rare and change the table under the registry's lock.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class SessionRegistry {
+
+  /**
+   * Sessions by user id; replaced by a larger copy when it fills up
+   */
+  private volatile AtomicReferenceArray<UserSession> sessions = new AtomicReferenceArray<>(16);
+
+  /**
+   * @param id user id from the UserRegistry
+   * @return the user's session, or null if the user is not connected
+   */
+  UserSession get(int id) {
+    AtomicReferenceArray<UserSession> s = sessions;
+    return id < 0 || id >= s.length() ? null : s.get(id);
+  }
+
+  /**
+   * Adds a session unless the user already has one
+   * @param id user id from the UserRegistry
+   * @param session the new session
+   * @return false if the user is already connected
+   */
+  synchronized boolean add(int id, UserSession session) {
+    AtomicReferenceArray<UserSession> s = sessions;
+    if (id >= s.length()) {
+      AtomicReferenceArray<UserSession> n = new AtomicReferenceArray<>(Math.max(id + 1, s.length() * 2));
+      for (int i = 0; i < s.length(); i++) {
+        n.set(i, s.get(i));
+      }
+      sessions = n;
+      s = n;
+    }
+    return s.compareAndSet(id, null, session);
+  }
+
+  /**
+   * Removes a session if it is still the user's current one
+   * @param id user id from the UserRegistry
+   * @param session the session to remove
+   * @return false if the user has no such session
+   */
+  synchronized boolean remove(int id, UserSession session) {
+    AtomicReferenceArray<UserSession> s = sessions;
+    return id >= 0 && id < s.length() && s.compareAndSet(id, session, null);
+  }
+}
@@ -20,6 +20,8 @@ import price.Price;
 import price.exceptions.InvalidPriceOperation;
 import price.exceptions.PriceException;
 import publishers.exceptions.MessagePublisherException;
+import messages.BookDepthDTO;
+import messages.BookDepthSnapshotDTO;
 import messages.CancelMessage;
 import messages.FillMessage;
 import messages.exceptions.InvalidMessageException;
@@ -114,6 +116,26 @@ public interface User {
    */
   void acceptCurrentMarket(String product, Price bp, int bv, Price sp,
           int sv);
+
+  /**
+   * This will accept a change to one price level of a stock's book: the new
+   * total volume at a price on one side, numbered in the book's sequence of
+   * depth changes. Applied to a snapshot from getBookDepthSnapshot, the
+   * changes numbered after it keep a live view of the book's depth.
+   *
+   * @param d BookDepthDTO containing the changed level
+   */
+  void acceptBookDepth(BookDepthDTO d);
+
+  /**
+   * This will accept notice that the trading system disconnected the user,
+   * for example for falling too far behind the market data sent to it. The
+   * user's subscriptions are already dropped; it has to connect and
+   * subscribe again to take part in trading.
+   *
+   * @param reason String reason the user was disconnected
+   */
+  void acceptDisconnect(String reason);
   
   /**
    * Instructs a User object to connect to the trading platform.
@@ -269,6 +291,17 @@ public interface User {
   void subscribeMessages(String product) throws UserNotConnectedException, InvalidConnectionIdException, 
   	MessagePublisherException, UserCommandException;
   
+  /**
+   * Allows the User object to subscribe for its own Messages on every Stock.
+   * 
+   * @throws UserCommandException 
+   * @throws MessagePublisherException 
+   * @throws InvalidConnectionIdException 
+   * @throws UserNotConnectedException 
+   */
+  void subscribeAllMessages() throws UserNotConnectedException, InvalidConnectionIdException, 
+  	MessagePublisherException, UserCommandException;
+  
   /**
    * Allows the User object to subscribe for Ticker for the specified Stock.
    * 
@@ -281,6 +314,32 @@ public interface User {
   void subscribeTicker(String product) throws UserNotConnectedException, InvalidConnectionIdException,
   	MessagePublisherException, UserCommandException;
   
+  /**
+   * Allows the User object to subscribe for Book Depth changes for the
+   * specified Stock.
+   * 
+   * @param product String stock symbol
+   * @throws UserCommandException 
+   * @throws MessagePublisherException 
+   * @throws InvalidConnectionIdException 
+   * @throws UserNotConnectedException 
+   */
+  void subscribeBookDepth(String product) throws UserNotConnectedException, InvalidConnectionIdException,
+  	MessagePublisherException, UserCommandException;
+
+  /**
+   * Allows the User object to un-subscribe from Book Depth changes for the
+   * specified Stock.
+   * 
+   * @param product String stock symbol
+   * @throws UserCommandException 
+   * @throws MessagePublisherException 
+   * @throws InvalidConnectionIdException 
+   * @throws UserNotConnectedException 
+   */
+  void unSubscribeBookDepth(String product) throws UserNotConnectedException, InvalidConnectionIdException,
+  	MessagePublisherException, UserCommandException;
+
   /**
    * @return the value of all Stock the User owns (has bought not sold).
    * @throws PriceException 
@@ -301,6 +360,12 @@ public interface User {
    * @throws PositionException 
    */
   Price getNetAccountValue() throws PositionException, InvalidPriceOperation, PriceException;
+
+  /**
+   * @return the stock value, account costs and net account value as of the
+   * last update to the User's position, all taken together
+   */
+  PositionSnapshot getPositionSnapshot();
   
   /**
    * Allows the User object to submit a Book Depth request for the specified Stock.
@@ -315,6 +380,21 @@ public interface User {
    */
   String[][] getBookDepth(String product) throws UserNotConnectedException, InvalidConnectionIdException, 
   	NoProductException, ProductServiceException, UserCommandException;
+
+  /**
+   * Allows the User object to request every price level of the specified
+   * Stock, numbered so Book Depth changes can be applied to it.
+   * 
+   * @param product String stock symbol
+   * @return the Book Depth snapshot
+   * @throws UserCommandException 
+   * @throws ProductServiceException 
+   * @throws NoProductException 
+   * @throws InvalidConnectionIdException 
+   * @throws UserNotConnectedException 
+   */
+  BookDepthSnapshotDTO getBookDepthSnapshot(String product) throws UserNotConnectedException,
+  	InvalidConnectionIdException, NoProductException, ProductServiceException, UserCommandException;
   
   /**
    * Allows the User object to query the market state (OPEN, PREOPEN, CLOSED).
@@ -327,9 +407,17 @@ public interface User {
   String getMarketState() throws UserNotConnectedException, InvalidConnectionIdException, UserCommandException;
   
   /**
-   * @return a list of order id's for the orders this user has submitted.
+   * @return a list of order id's for the orders this user has submitted that
+   * are still open.
    */
   ArrayList<TradableUserData> getOrderIds();
+
+  /**
+   * @param product String stock symbol
+   * @return a list of order id's for the orders this user has submitted for
+   * the product that are still open.
+   */
+  ArrayList<TradableUserData> getOrderIds(String product);
   
   /**
    * @return a list of the stock products available in the trading system.
@@ -366,7 +454,8 @@ public interface User {
    * @throws ProductBookSideException 
    * @throws InvalidConnectionIdException 
    * @throws UserNotConnectedException 
+   * @throws NoProductException 
    */
   ArrayList<TradableDTO> getOrdersWithRemainingQty(String product) throws UserNotConnectedException, 
-  	InvalidConnectionIdException, ProductBookSideException, ProductBookException, ProductServiceException, UserCommandException;
+  	InvalidConnectionIdException, ProductBookSideException, ProductBookException, ProductServiceException, UserCommandException, NoProductException;
 }
\ No newline at end of file
@@ -2,16 +2,18 @@ package client;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import messages.exceptions.InvalidMessageException;
 import constants.global.BookSide;
 import price.Price;
 import price.exceptions.InvalidPriceOperation;
+import publishers.BookDepthPublisher;
 import publishers.CurrentMarketPublisher;
 import publishers.LastSalePublisher;
 import publishers.MessagePublisher;
 import publishers.TickerPublisher;
 import publishers.exceptions.MessagePublisherException;
+import messages.BookDepthSnapshotDTO;
+import book.CommandResult;
 import book.ProductService;
 import book.exceptions.DataValidationException;
 import book.exceptions.InvalidMarketStateException;
@@ -30,6 +32,7 @@ import client.exceptions.AlreadyConnectedException;
 import client.exceptions.InvalidConnectionIdException;
 import client.exceptions.UserCommandException;
 import client.exceptions.UserNotConnectedException;
+import registry.UserRegistry;
 
 
 
@@ -45,20 +48,10 @@ public class UserCommandService {
   private volatile static UserCommandService instance;
 
   /**
-   * A HashMap<String, Long> to hold user name and connection id pairs.
+   * Sessions of the connected users, indexed by the user id from the
+   * UserRegistry. Read without a lock on every command.
    */
-  private HashMap<String, Long> connectedUserIds = new HashMap<>();
-
-  /**
-   * A HashMap<String, User> to hold user name and user object pairs.
-   */
-  private HashMap<String, User> connectedUsers = new HashMap<>();
-
-  /**
-   * A HashMap<String, Long> to hold user name and connection-time pairs
-   * (connection time is stored as a long).
-   */
-  private HashMap<String, Long> connectedTime = new HashMap<>();
+  private final SessionRegistry sessions = new SessionRegistry();
 
   /**
    * Singleton
@@ -83,39 +76,82 @@ public class UserCommandService {
    *
    * @param userName String user to be verified
    * @param connId Connection Id for the passed in user
+   * @return the session of the verified user
    * @throws UserNotConnectedException
    * @throws InvalidConnectionIdExceptions
    */
-  private void verifyUser(String userName, long connId)
+  private UserSession verifyUser(String userName, long connId)
           throws UserNotConnectedException, InvalidConnectionIdException,
           UserCommandException {
     validateInput(userName);
-    if (!connectedUserIds.containsKey(userName)) {
-      throw new UserNotConnectedException("User not connected to the system");
+    UserSession s = sessionOf(userName);
+    CommandResult r = checkUser(s, connId);
+    if (r == CommandResult.NOT_CONNECTED) {
+      throw new UserNotConnectedException(r.getMessage());
     }
-    if (!connectedUserIds.get(userName).equals((Long) connId)) {
-      throw new InvalidConnectionIdException("Connection ID is not valid");
+    if (r == CommandResult.INVALID_CONNECTION_ID) {
+      throw new InvalidConnectionIdException(r.getMessage());
     }
+    return s;
+  }
+
+  /**
+   * Checks a session looked up by sessionOf against the connection id the
+   * same way verifyUser does, but returns a result code instead of throwing.
+   * The command is counted for the session if it passes.
+   *
+   * @param s the session of the user, or null if the user is not connected
+   * @param connId Connection Id for the passed in user
+   * @return OK, NOT_CONNECTED or INVALID_CONNECTION_ID
+   */
+  private CommandResult checkUser(UserSession s, long connId) {
+    if (s == null) {
+      return CommandResult.NOT_CONNECTED;
+    }
+    if (s.getConnectionId() != connId) {
+      return CommandResult.INVALID_CONNECTION_ID;
+    }
+    s.countCommand();
+    return CommandResult.OK;
+  }
+
+  /**
+   * @param userName String user name
+   * @return the user's session, or null if the user is not connected
+   */
+  private UserSession sessionOf(String userName) {
+    return sessions.get(UserRegistry.getInstance().idOf(userName));
+  }
+
+  /**
+   * Returns the session of a connected user, for its connect time and
+   * command counters.
+   *
+   * @param userName String user name
+   * @return the user's session, or null if the user is not connected
+   */
+  public UserSession getSession(String userName) {
+    return userName == null ? null : sessionOf(userName);
   }
 
   /**
-   * This method will connect the user to the trading system.
+   * This method will connect the user to the trading system. The user name
+   * is given a user id by the UserRegistry if it does not have one yet.
    *
    * @param user User object passed in to be connected
    * @return the connectedUserId
    * @throws AlreadyConnectedException
    */
-  public synchronized long connect(User user) throws AlreadyConnectedException,
+  public long connect(User user) throws AlreadyConnectedException,
           UserCommandException {
     validateInput(user);
-    if (connectedUserIds.containsKey(user.getUserName())) {
+    int id = UserRegistry.getInstance().register(user.getUserName());
+    UserSession s = new UserSession(user, System.nanoTime(), System.currentTimeMillis());
+    if (!sessions.add(id, s)) {
       throw new AlreadyConnectedException("User already connected to the"
               + " system.");
     }
-    connectedUserIds.put(user.getUserName(), System.nanoTime());
-    connectedUsers.put(user.getUserName(), user);
-    connectedTime.put(user.getUserName(), System.currentTimeMillis());
-    return connectedUserIds.get(user.getUserName());
+    return s.getConnectionId();
   }
 
   /**
@@ -126,13 +162,33 @@ public class UserCommandService {
    * @throws UserNotConnectedException
    * @throws InvalidConnectionIdException
    */
-  public synchronized void disconnect(String userName, long connId)
+  public void disconnect(String userName, long connId)
           throws UserNotConnectedException, InvalidConnectionIdException,
           UserCommandException {
-    verifyUser(userName, connId);
-    connectedUserIds.remove(userName);
-    connectedUsers.remove(userName);
-    connectedTime.remove(userName);
+    UserSession s = verifyUser(userName, connId);
+    if (!sessions.remove(UserRegistry.getInstance().idOf(userName), s)) {
+      throw new UserNotConnectedException("User is not connected to the system.");
+    }
+  }
+
+  /**
+   * Disconnects the passed user if it is the one connected under its user
+   * name. Used by the MarketDataDispatcher to drop a subscriber that falls
+   * too far behind, since it does not know the user's connection id.
+   *
+   * @param user User to be disconnected
+   * @throws UserNotConnectedException
+   * @throws InvalidConnectionIdException
+   */
+  public void disconnect(User user)
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          UserCommandException {
+    validateInput(user);
+    int id = UserRegistry.getInstance().idOf(user.getUserName());
+    UserSession s = sessions.get(id);
+    if (s == null || s.getUser() != user || !sessions.remove(id, s)) {
+      throw new UserNotConnectedException("User is not connected to the system.");
+    }
   }
 
   /**
@@ -156,6 +212,28 @@ public class UserCommandService {
     return ProductService.getInstance().getBookDepth(product);
   }
 
+  /**
+   * Forwards the call of "getBookDepthSnapshot" to the ProductService.
+   *
+   * @param userName String user passed in as argument
+   * @param connId Connection Id of the user getting the book depth
+   * @param product String stock symbol the appropriate product
+   * @return every price level of the specified stock, with the number of the
+   * last depth change they include
+   * @throws UserNotConnectedException
+   * @throws InvalidConnectionIdException
+   * @throws NoProductException
+   * @throws ProductServiceException
+   */
+  public BookDepthSnapshotDTO getBookDepthSnapshot(String userName, long connId, String product)
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          NoProductException, ProductServiceException,
+          UserCommandException {
+    validateInput(product);
+    verifyUser(userName, connId);
+    return ProductService.getInstance().getBookDepthSnapshot(product);
+  }
+
   /**
    * Forwards the call of "getMarketState" to the ProductService.
    *
@@ -184,18 +262,38 @@ public class UserCommandService {
    * @throws ProductBookSideException
    * @throws ProductBookException
    * @throws ProductServiceException
+   * @throws NoProductException if the product does not exist
    */
-  public synchronized ArrayList<TradableDTO> getOrdersWithRemainingQty(
+  public ArrayList<TradableDTO> getOrdersWithRemainingQty(
           String userName, long connId, String product)
           throws UserNotConnectedException, InvalidConnectionIdException,
           ProductBookSideException, ProductBookException,
-          ProductServiceException, UserCommandException {
+          ProductServiceException, UserCommandException, NoProductException {
     validateInput(product);
     verifyUser(userName, connId);
     return ProductService.getInstance().getOrdersWithRemainingQty(userName,
             product);
   }
 
+  /**
+   * Forwards the call of "getAllOrdersWithRemainingQty" to the
+   * ProductService, which reads every book without the service lock.
+   *
+   * @param userName String user name being looked up
+   * @param connId Connection Id of the user
+   * @return Information on all Orders with remaining volume in every product
+   * @throws UserNotConnectedException
+   * @throws InvalidConnectionIdException
+   * @throws ProductServiceException
+   * @throws UserCommandException
+   */
+  public ArrayList<TradableDTO> getAllOrdersWithRemainingQty(String userName, long connId)
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          ProductServiceException, UserCommandException {
+    verifyUser(userName, connId);
+    return ProductService.getInstance().getAllOrdersWithRemainingQty(userName);
+  }
+
   /**
    * This method should return a sorted list of the available stocks on this
    * system, received from the ProductService.
@@ -359,6 +457,133 @@ public class UserCommandService {
     ProductService.getInstance().submitQuoteCancel(userName, product);
   }
 
+  /**
+   * Verifies the user and forwards an Order built by the caller to the
+   * ProductService's "trySubmitOrder" method. Rejections are returned as
+   * result codes; the order id is available from the Order itself.
+   *
+   * @param userName String user name who is submitting the Order
+   * @param connId Connection Id of the user
+   * @param order Order for the user
+   * @return OK, or the reason the order was rejected
+   * @throws TradableException
+   * @throws InvalidMessageException
+   * @throws InvalidPriceOperation
+   * @throws MessagePublisherException
+   */
+  public CommandResult trySubmitOrder(String userName, long connId, Order order)
+          throws TradableException, InvalidMessageException,
+          InvalidPriceOperation, MessagePublisherException {
+    if (userName == null || userName.isEmpty()) {
+      return CommandResult.INVALID_INPUT;
+    }
+    UserSession s = sessionOf(userName);
+    CommandResult r = checkUser(s, connId);
+    if (!r.isOk()) {
+      return r;
+    }
+    if (order == null || !userName.equals(order.getUser())) {
+      r = CommandResult.INVALID_INPUT;
+    } else {
+      r = ProductService.getInstance().trySubmitOrder(order);
+    }
+    s.countResult(r);
+    return r;
+  }
+
+  /**
+   * Verifies the user and forwards the provided information to the
+   * ProductService's "trySubmitOrderCancel" method. Rejections, and orders
+   * that cannot be found, are returned as result codes.
+   *
+   * @param userName String user name who is canceling the Order
+   * @param connId Connection Id of the user
+   * @param product String stock symbol of the specified product
+   * @param side BookSide of the specified cancel Order
+   * @param orderId String order id passed in
+   * @return OK, or the reason the cancel was rejected
+   * @throws TradableException
+   * @throws InvalidMessageException
+   * @throws InvalidPriceOperation
+   * @throws MessagePublisherException
+   */
+  public CommandResult trySubmitOrderCancel(String userName, long connId, String product,
+          BookSide side, String orderId) throws TradableException,
+          InvalidMessageException, InvalidPriceOperation, MessagePublisherException {
+    if (userName == null || userName.isEmpty()) {
+      return CommandResult.INVALID_INPUT;
+    }
+    UserSession s = sessionOf(userName);
+    CommandResult r = checkUser(s, connId);
+    if (!r.isOk()) {
+      return r;
+    }
+    r = ProductService.getInstance().trySubmitOrderCancel(product, side, orderId);
+    s.countResult(r);
+    return r;
+  }
+
+  /**
+   * Verifies the user and forwards a Quote built by the caller to the
+   * ProductService's "trySubmitQuote" method. Rejections are returned as
+   * result codes.
+   *
+   * @param userName String user name of user submitting the Quote
+   * @param connId Connection Id of the user
+   * @param q Quote for the user
+   * @return OK, or the reason the quote was rejected
+   * @throws TradableException
+   * @throws InvalidMessageException
+   * @throws InvalidPriceOperation
+   * @throws MessagePublisherException
+   */
+  public CommandResult trySubmitQuote(String userName, long connId, Quote q)
+          throws TradableException, InvalidMessageException,
+          InvalidPriceOperation, MessagePublisherException {
+    if (userName == null || userName.isEmpty()) {
+      return CommandResult.INVALID_INPUT;
+    }
+    UserSession s = sessionOf(userName);
+    CommandResult r = checkUser(s, connId);
+    if (!r.isOk()) {
+      return r;
+    }
+    if (q == null || !userName.equals(q.getUserName())) {
+      r = CommandResult.INVALID_INPUT;
+    } else {
+      r = ProductService.getInstance().trySubmitQuote(q);
+    }
+    s.countResult(r);
+    return r;
+  }
+
+  /**
+   * Verifies the user and forwards the provided data to the ProductService's
+   * "trySubmitQuoteCancel" method. Rejections are returned as result codes.
+   *
+   * @param userName String user name of the user submitting the Quote cancel
+   * @param connId Connection Id of the user
+   * @param product String stock symbol for the specified Quote cancel
+   * @return OK, or the reason the cancel was rejected
+   * @throws InvalidMessageException
+   * @throws InvalidPriceOperation
+   * @throws MessagePublisherException
+   */
+  public CommandResult trySubmitQuoteCancel(String userName, long connId, String product)
+          throws InvalidMessageException, InvalidPriceOperation, MessagePublisherException {
+    if (userName == null || userName.isEmpty()) {
+      return CommandResult.INVALID_INPUT;
+    }
+    UserSession s = sessionOf(userName);
+    CommandResult r = checkUser(s, connId);
+    if (!r.isOk()) {
+      return r;
+    }
+    r = ProductService.getInstance().trySubmitQuoteCancel(userName, product);
+    s.countResult(r);
+    return r;
+  }
+
   /**
    * This method will forward the subscription request to the
    * CurrentMarketPublisher.
@@ -375,8 +600,8 @@ public class UserCommandService {
           InvalidConnectionIdException, MessagePublisherException,
           UserCommandException {
     validateInput(product);
-    verifyUser(userName, connId);
-    CurrentMarketPublisher.getInstance().subscribe(connectedUsers.get(userName),
+    UserSession s = verifyUser(userName, connId);
+    CurrentMarketPublisher.getInstance().subscribe(s.getUser(),
             product);
   }
 
@@ -394,8 +619,8 @@ public class UserCommandService {
           throws UserNotConnectedException, InvalidConnectionIdException,
           MessagePublisherException, UserCommandException {
     validateInput(product);
-    verifyUser(userName, connId);
-    LastSalePublisher.getInstance().subscribe(connectedUsers.get(userName),
+    UserSession s = verifyUser(userName, connId);
+    LastSalePublisher.getInstance().subscribe(s.getUser(),
             product);
   }
 
@@ -413,11 +638,28 @@ public class UserCommandService {
           throws UserNotConnectedException, InvalidConnectionIdException,
           MessagePublisherException, UserCommandException {
     validateInput(product);
-    verifyUser(userName, connId);
-    MessagePublisher.getInstance().subscribe(connectedUsers.get(userName),
+    UserSession s = verifyUser(userName, connId);
+    MessagePublisher.getInstance().subscribe(s.getUser(),
             product);
   }
 
+  /**
+   * This method will forward a subscription to the user's own fills and
+   * cancels for every product to the MessagePublisher.
+   *
+   * @param userName String user name of who to subscribe
+   * @param connId Connection Id of the user
+   * @throws UserNotConnectedException
+   * @throws InvalidConnectionIdException
+   * @throws MessagePublisherException
+   */
+  public void subscribeAllMessages(String userName, long connId)
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          MessagePublisherException, UserCommandException {
+    UserSession s = verifyUser(userName, connId);
+    MessagePublisher.getInstance().subscribeAll(s.getUser());
+  }
+
   /**
    * This method will forward the subscription request to the TickerPublisher.
    *
@@ -432,8 +674,8 @@ public class UserCommandService {
           throws UserNotConnectedException, InvalidConnectionIdException,
           MessagePublisherException, UserCommandException {
     validateInput(product);
-    verifyUser(userName, connId);
-    TickerPublisher.getInstance().subscribe(connectedUsers.get(userName),
+    UserSession s = verifyUser(userName, connId);
+    TickerPublisher.getInstance().subscribe(s.getUser(),
             product);
   }
 
@@ -453,8 +695,48 @@ public class UserCommandService {
           InvalidConnectionIdException, MessagePublisherException,
           UserCommandException {
     validateInput(product);
-    verifyUser(userName, connId);
-    CurrentMarketPublisher.getInstance().unSubscribe(connectedUsers.get(userName),
+    UserSession s = verifyUser(userName, connId);
+    CurrentMarketPublisher.getInstance().unSubscribe(s.getUser(),
+            product);
+  }
+
+  /**
+   * This method will forward the subscription request to the
+   * BookDepthPublisher.
+   *
+   * @param userName String user name of who to subscribe
+   * @param connId Connection Id of the user
+   * @param product String stock symbol of which to subscribe the user
+   * @throws UserNotConnectedException
+   * @throws InvalidConnectionIdException
+   * @throws MessagePublisherException
+   */
+  public void subscribeBookDepth(String userName, long connId, String product)
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          MessagePublisherException, UserCommandException {
+    validateInput(product);
+    UserSession s = verifyUser(userName, connId);
+    BookDepthPublisher.getInstance().subscribe(s.getUser(),
+            product);
+  }
+
+  /**
+   * This method will forward the un-subscribe request to the
+   * BookDepthPublisher.
+   *
+   * @param userName String user name of who to unsubscribe
+   * @param connId Connection Id of the user
+   * @param product String stock symbol of which to unsubscribe the user
+   * @throws UserNotConnectedException
+   * @throws InvalidConnectionIdException
+   * @throws MessagePublisherException
+   */
+  public void unSubscribeBookDepth(String userName, long connId, String product)
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          MessagePublisherException, UserCommandException {
+    validateInput(product);
+    UserSession s = verifyUser(userName, connId);
+    BookDepthPublisher.getInstance().unSubscribe(s.getUser(),
             product);
   }
 
@@ -472,8 +754,8 @@ public class UserCommandService {
           String product) throws UserNotConnectedException,
           InvalidConnectionIdException, MessagePublisherException, UserCommandException {
     validateInput(product);
-    verifyUser(userName, connId);
-    LastSalePublisher.getInstance().unSubscribe(connectedUsers.get(userName),
+    UserSession s = verifyUser(userName, connId);
+    LastSalePublisher.getInstance().unSubscribe(s.getUser(),
             product);
   }
 
@@ -491,8 +773,8 @@ public class UserCommandService {
           throws UserNotConnectedException, InvalidConnectionIdException,
           MessagePublisherException, UserCommandException {
     validateInput(product);
-    verifyUser(userName, connId);
-    TickerPublisher.getInstance().unSubscribe(connectedUsers.get(userName),
+    UserSession s = verifyUser(userName, connId);
+    TickerPublisher.getInstance().unSubscribe(s.getUser(),
             product);
   }
 
@@ -511,11 +793,29 @@ public class UserCommandService {
           String product) throws UserNotConnectedException,
           InvalidConnectionIdException, MessagePublisherException, UserCommandException {
     validateInput(product);
-    verifyUser(userName, connId);
-    MessagePublisher.getInstance().unSubscribe(connectedUsers.get(userName),
+    UserSession s = verifyUser(userName, connId);
+    MessagePublisher.getInstance().unSubscribe(s.getUser(),
             product);
   }
 
+  /**
+   * This method will forward the un-subscribe request for the user's own
+   * messages on every product to the MessagePublisher.
+   *
+   * @param userName String user name of who to unsubscribe
+   * @param connId Connection Id of the user
+   * @throws UserNotConnectedException
+   * @throws InvalidConnectionIdException
+   * @throws MessagePublisherException
+   * @throws UserCommandException
+   */
+  public void unSubscribeAllMessages(String userName, long connId)
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          MessagePublisherException, UserCommandException {
+    UserSession s = verifyUser(userName, connId);
+    MessagePublisher.getInstance().unSubscribeAll(s.getUser());
+  }
+
   /**
    * Validates a String input
    * 
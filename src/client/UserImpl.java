@@ -1,8 +1,9 @@
 package client;
 
-import java.sql.Timestamp;
 import java.util.ArrayList;
 
+import messages.BookDepthDTO;
+import messages.BookDepthSnapshotDTO;
 import messages.CancelMessage;
 import messages.FillMessage;
 import messages.exceptions.InvalidMessageException;
@@ -59,10 +60,10 @@ public class UserImpl implements User {
   private ArrayList<String> stocks;
 
   /**
-   * A list of TradableUserData objects that contains information on the orders
-   * this user has submitted (needed for canceling).
+   * TradableUserData objects that contain information on the open orders
+   * this user has submitted (needed for canceling), by product and order id.
    */
-  private ArrayList<TradableUserData> trades;
+  private OrderHistory trades;
 
   /**
    * A reference to a Position object (part of this assignment) which holds
@@ -84,9 +85,22 @@ public class UserImpl implements User {
    * @throws InvalidPriceOperation
    */
   public UserImpl(String userName) throws UserException, InvalidPriceOperation {
+    this(userName, 0);
+  }
+
+  /**
+   * Constructor keeping a history of the user's last filled or cancelled
+   * orders
+   * 
+   * @param userName userName of the user
+   * @param orderHistorySize closed orders to keep; 0 keeps none
+   * @throws UserException
+   * @throws InvalidPriceOperation
+   */
+  public UserImpl(String userName, int orderHistorySize) throws UserException, InvalidPriceOperation {
     setUserName(userName);
     setStocks(new ArrayList<>());
-    setTrades(new ArrayList<TradableUserData>());
+    setTrades(new OrderHistory(orderHistorySize));
     setPosition(new Position());
   }
 
@@ -121,7 +135,7 @@ public class UserImpl implements User {
    * 
    * @param tradableUserData Trades
    */
-  private void setTrades(ArrayList<TradableUserData> tradableUserData)	{
+  private void setTrades(OrderHistory tradableUserData)	{
 	  this.trades = tradableUserData;
   }
   
@@ -160,13 +174,11 @@ public class UserImpl implements User {
    * @param fm FillMessage passed as argument
    */
   public void acceptMessage(FillMessage fm) {
+    if (fm.getLeavingVolume() == 0) {
+      trades.close(fm.getProduct(), fm.getID());
+    }
     try {
-      Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-      StringBuilder sb = new StringBuilder();
-      sb.append(String.format("{%s} Fill Message: %s %s %s at %s", timestamp.toString(), fm.getSide(), fm.getVolume(), fm.getProduct(), fm.getPrice().toString()));
-      sb.append(String.format(" %s [Tradable Id: %s]", fm.getDetails(), fm.getID()));
-      String fillSummary = sb.toString();
-      manager.updateMarketActivity(fillSummary);
+      manager.updateFill(fm);
       position.updatePosition(fm.getProduct(), fm.getPrice(), fm.getSide(), fm.getVolume());
   } catch (Exception e) {
       System.out.println(e.getMessage());
@@ -179,13 +191,9 @@ public class UserImpl implements User {
    * @param cm CancelMessage passed as argument
    */
   public void acceptMessage(CancelMessage cm) {
+    trades.close(cm.getProduct(), cm.getID());
     try {
-      Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-      StringBuilder sb = new StringBuilder();
-      sb.append(String.format("{%s} Cancel Message: %s %s %s at %s", timestamp.toString(), cm.getSide(), cm.getVolume(), cm.getProduct(), cm.getPrice().toString()));
-      sb.append(String.format(" %s [Tradable Id: %s]", cm.getDetails(), cm.getID()));
-      String cancelSummary = sb.toString();
-      manager.updateMarketActivity(cancelSummary);
+      manager.updateCancel(cm);
   } catch (Exception e) {
       System.out.println("Caught error: " + e.getMessage());
   }
@@ -237,6 +245,33 @@ public class UserImpl implements User {
     }
   }
 
+  /**
+   * This method will display a Book Depth change in the market display.
+   *
+   * @param d BookDepthDTO containing the changed level
+   */
+  public void acceptBookDepth(BookDepthDTO d) {
+    try {
+      manager.updateBookDepth(d);
+    } catch(Exception e) {
+        System.out.println("Caught error: " + e.getMessage());
+    }
+  }
+
+  /**
+   * This method will display notice of being disconnected by the trading
+   * system in the market display.
+   *
+   * @param reason String reason the user was disconnected
+   */
+  public void acceptDisconnect(String reason) {
+    try {
+      manager.updateMarketActivity("Disconnected: " + reason);
+    } catch(Exception e) {
+        System.out.println("Caught error: " + e.getMessage());
+    }
+  }
+
   /**
    * This method will connect the user to the trading system.
    */
@@ -246,6 +281,14 @@ public class UserImpl implements User {
 	  stocks = UserCommandService.getInstance().getProducts(userName, connectionId);
   }
 
+  /**
+   * @return the connection id given to this user by the UserCommandService,
+   * or 0 if the user has not connected
+   */
+  protected long getConnectionId() {
+    return connectionId;
+  }
+
   /**
    * This method will disconnect the user from the trading system.
    */
@@ -288,9 +331,15 @@ public class UserImpl implements User {
           ProductBookException, ProductServiceException,
           TradeProcessorPriceTimeImplException, MessagePublisherException,
           UserCommandException, InvalidPriceOperation {
-    String id = UserCommandService.getInstance().submitOrder(userName, connectionId, product, price, volume, side);
-    trades.add(new TradableUserData(userName, product, side, id));
-    return id;
+    trades.beginSubmit();
+    TradableUserData t = null;
+    try {
+      String id = UserCommandService.getInstance().submitOrder(userName, connectionId, product, price, volume, side);
+      t = new TradableUserData(userName, product, side, id);
+      return id;
+    } finally {
+      trades.endSubmit(t);
+    }
   }
 
   /**
@@ -388,6 +437,16 @@ public class UserImpl implements User {
             product);
   }
 
+  /**
+   * This method forwards the subscription to the user's own messages on every
+   * stock to the user command service.
+   */
+  public void subscribeAllMessages()
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          MessagePublisherException, UserCommandException {
+    UserCommandService.getInstance().subscribeAllMessages(userName, connectionId);
+  }
+
   /**
    * This method forwards the ticker subscription to the user command service.
    *
@@ -400,6 +459,32 @@ public class UserImpl implements User {
             product);
   }
 
+  /**
+   * This method forwards the book depth subscription to the user command
+   * service.
+   *
+   * @param product String stock symbol
+   */
+  public void subscribeBookDepth(String product)
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          MessagePublisherException, UserCommandException {
+    UserCommandService.getInstance().subscribeBookDepth(userName, connectionId,
+            product);
+  }
+
+  /**
+   * This method forwards the book depth un-subscription to the user command
+   * service.
+   *
+   * @param product String stock symbol
+   */
+  public void unSubscribeBookDepth(String product)
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          MessagePublisherException, UserCommandException {
+    UserCommandService.getInstance().unSubscribeBookDepth(userName, connectionId,
+            product);
+  }
+
   /**
    * Returns the value of the all Sock the User owns (has bought but not sold).
    *
@@ -428,6 +513,15 @@ public class UserImpl implements User {
     return position.getNetAccountValue();
   }
 
+  /**
+   * Returns the totals of the User's position as of its last update.
+   *
+   * @return the position snapshot
+   */
+  public PositionSnapshot getPositionSnapshot() {
+    return position.getSnapshot();
+  }
+
   /**
    * Allows the User object to submit a Book Depth request for the specified
    * stock.
@@ -443,6 +537,21 @@ public class UserImpl implements User {
             product);
   }
 
+  /**
+   * Allows the User object to request every price level of the specified
+   * stock, numbered so book depth changes can be applied to it.
+   *
+   * @param product String stock symbol
+   * @return the book depth snapshot of the specified stock
+   */
+  public BookDepthSnapshotDTO getBookDepthSnapshot(String product)
+          throws UserNotConnectedException, InvalidConnectionIdException,
+          NoProductException, ProductServiceException,
+          UserCommandException {
+    return UserCommandService.getInstance().getBookDepthSnapshot(userName, connectionId,
+            product);
+  }
+
   /**
    * Allows the User object to query the market state (OPEN, PREOPEN, CLOSED).
    *
@@ -456,13 +565,34 @@ public class UserImpl implements User {
   }
 
   /**
-   * Returns a list of order id’s (a data member) for the orders this user has
-   * submitted.
+   * Returns a list of order id’s for the orders this user has submitted that
+   * are still open. Orders are dropped once filled or cancelled.
    *
    * @return a list of order id's this user has made
    */
   public ArrayList<TradableUserData> getOrderIds() {
-    return trades;
+    return trades.getOpen();
+  }
+
+  /**
+   * Returns a list of order id’s for the orders this user has submitted for
+   * the specified product that are still open.
+   *
+   * @param product String stock symbol
+   * @return a list of the product's open order id's, in the order submitted
+   */
+  public ArrayList<TradableUserData> getOrderIds(String product) {
+    return trades.getOpen(product);
+  }
+
+  /**
+   * Returns the last filled or cancelled orders kept for this user, up to the
+   * history size it was made with.
+   *
+   * @return a list of closed order id's, oldest first
+   */
+  public ArrayList<TradableUserData> getOrderHistory() {
+    return trades.getClosed();
   }
 
   /**
@@ -515,7 +645,7 @@ public class UserImpl implements User {
   public ArrayList<TradableDTO> getOrdersWithRemainingQty(String product)
           throws UserNotConnectedException, InvalidConnectionIdException,
           ProductBookSideException, ProductBookException,
-          ProductServiceException, UserCommandException {
+          ProductServiceException, UserCommandException, NoProductException {
     return UserCommandService.getInstance().getOrdersWithRemainingQty(userName,
             connectionId, product);
   }
@@ -0,0 +1,94 @@
+package client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import book.CommandResult;
+
+/**
+ * The UserSession class holds what the UserCommandService knows about one
+ * connected user: the User object, the connection id it was given, when it
+ * connected, and counters of the commands it has sent. A session is created
+ * at connect and dropped at disconnect; its user, id and time never change,
+ * so a session read from the SessionRegistry is always self-consistent.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class UserSession {
+
+  /**
+   * The connected user
+   */
+  private final User user;
+
+  /**
+   * Connection id handed to the user at connect
+   */
+  private final long connectionId;
+
+  /**
+   * Time of the connect, in milliseconds
+   */
+  private final long connectedTime;
+
+  /**
+   * Commands verified for this session, and commands the ProductService
+   * rejected
+   */
+  private final AtomicLong commands = new AtomicLong();
+  private final AtomicLong rejects = new AtomicLong();
+
+  UserSession(User user, long connectionId, long connectedTime) {
+    this.user = user;
+    this.connectionId = connectionId;
+    this.connectedTime = connectedTime;
+  }
+
+  /**
+   * @return the connected user
+   */
+  public User getUser() {
+    return user;
+  }
+
+  /**
+   * @return the connection id handed to the user at connect
+   */
+  public long getConnectionId() {
+    return connectionId;
+  }
+
+  /**
+   * @return the time of the connect, in milliseconds
+   */
+  public long getConnectedTime() {
+    return connectedTime;
+  }
+
+  /**
+   * @return the number of commands verified for this session
+   */
+  public long getCommandCount() {
+    return commands.get();
+  }
+
+  /**
+   * @return the number of commands the ProductService rejected
+   */
+  public long getRejectCount() {
+    return rejects.get();
+  }
+
+  void countCommand() {
+    commands.incrementAndGet();
+  }
+
+  /**
+   * Counts a rejected command if the result is not OK
+   * @param r the result of the command
+   */
+  void countResult(CommandResult r) {
+    if (!r.isOk()) {
+      rejects.incrementAndGet();
+    }
+  }
+}
@@ -12,4 +12,6 @@ public interface global {
 	
 	public static enum MarketState {CLOSED, PREOPEN, OPEN}
 	
+	public static enum DepthAction {ADD, CHANGE, DELETE}
+	
 }
\ No newline at end of file
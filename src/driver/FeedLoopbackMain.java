@@ -0,0 +1,153 @@
+package driver;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import feed.FeedMessage;
+import feed.FeedRecoveryServer;
+import feed.MulticastFeedPublisher;
+import feed.MulticastFeedReceiver;
+import price.PriceFactory;
+
+/**
+ * Loopback test of the multicast market data feed. A MulticastFeedPublisher
+ * and its FeedRecoveryServer are run on the loopback interface, and
+ * receivers joining at different times check that:
+ * packets arrive in order with no gap; a receiver joining late recovers the
+ * packets it missed through a retransmit; a receiver joining after the
+ * missed packets have left the publisher's history recovers from a snapshot;
+ * and the recovery service drops a connection that never sends a request.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class FeedLoopbackMain {
+
+    private static final String GROUP = "239.1.2.3";
+    private static final int PORT = 45678;
+    private static final int HISTORY = 64;
+    private static final int IN_ORDER = 200;
+    private static final long WAIT_MILLIS = 2000;
+
+    private static NetworkInterface loopback;
+    private static MulticastFeedPublisher publisher;
+    private static FeedRecoveryServer server;
+
+    public static void main(String[] args) {
+        MulticastFeedReceiver first = null;
+        try {
+            loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+            publisher = new MulticastFeedPublisher(GROUP, PORT, loopback, 0, HISTORY);
+            server = new FeedRecoveryServer(publisher, new InetSocketAddress("127.0.0.1", 0));
+            first = join();
+
+            System.out.println("A) " + IN_ORDER + " last sales, received in order");
+            publish("IBM", IN_ORDER);
+            expect(first, "IBM", 1, IN_ORDER);
+            check(first.getGapCount() == 0, "no gap", first);
+
+            System.out.println("B) A receiver joins after 20 packets; the gap is retransmitted");
+            publish("GE", 20);
+            expect(first, "GE", 1, 20);
+            MulticastFeedReceiver late = join();
+            publish("GE", 10);
+            expect(late, "GE", 1, 30);
+            expect(first, "GE", 21, 30);
+            check(late.getGapCount() == 1 && late.getRecoveredCount() == 20 && late.getSnapshotCount() == 0,
+                    "one gap, 20 packets retransmitted", late);
+            late.close();
+
+            int missed = HISTORY + 36;
+            System.out.println("C) A receiver joins after " + (missed + 1)
+                    + " packets, past the history kept; the gap is closed from a snapshot");
+            publish("T", missed);
+            expect(first, "T", 1, missed);
+            publisher.ticker("T", PriceFactory.makeLimitPrice(cents(missed)), '=');
+            FeedMessage tick = first.receive(WAIT_MILLIS);
+            check(tick != null && tick.getType() == FeedMessage.TICKER && tick.getSequence() == missed + 1,
+                    "ticker #" + (missed + 1) + " received", first);
+            MulticastFeedReceiver later = join();
+            publish("T", 5);
+            FeedMessage m = later.receive(WAIT_MILLIS);
+            check(m != null && m.getType() == FeedMessage.TICKER && m.getSequence() == missed + 1,
+                    "the snapshot fills the gap with the last ticker in it: " + m, later);
+            expect(later, "T", missed + 2, missed + 6);
+            check(later.getGapCount() == 1 && later.getSnapshotCount() == 1, "one gap, closed from a snapshot", later);
+            later.close();
+
+            System.out.println("D) A connection that sends no request is dropped after "
+                    + FeedRecoveryServer.REQUEST_TIMEOUT_MILLIS + " ms");
+            long start = System.currentTimeMillis();
+            try (SocketChannel idle = SocketChannel.open(server.getAddress())) {
+                int n = idle.read(ByteBuffer.allocate(1));
+                long took = System.currentTimeMillis() - start;
+                if (n >= 0) {
+                    throw new IllegalStateException("Expected the idle connection to be closed");
+                }
+                System.out.println("   closed after " + took + " ms");
+            }
+
+            System.out.println("Feed loopback checks passed; send failures " + publisher.getSendFailures()
+                    + ", resent " + publisher.getResent());
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (first != null) {
+                first.close();
+            }
+            if (server != null) {
+                server.close();
+            }
+            if (publisher != null) {
+                publisher.close();
+            }
+        }
+    }
+
+    /**
+     * @return a receiver joined to the feed
+     */
+    private static MulticastFeedReceiver join() throws Exception {
+        return new MulticastFeedReceiver(GROUP, PORT, loopback, server.getAddress());
+    }
+
+    /**
+     * Publishes last sales, each priced at its sequence number in dollars
+     */
+    private static void publish(String product, int count) throws Exception {
+        long seq = publisher.getSequence(product);
+        for (int i = 1; i <= count; i++) {
+            publisher.lastSale(product, PriceFactory.makeLimitPrice(cents(seq + i)), 10);
+        }
+    }
+
+    private static long cents(long seq) {
+        return seq * 100;
+    }
+
+    /**
+     * Checks that the next packets a receiver hands out are the product's
+     * last sales from sequence number from to to
+     */
+    private static void expect(MulticastFeedReceiver r, String product, long from, long to) throws Exception {
+        for (long s = from; s <= to; s++) {
+            FeedMessage m = r.receive(WAIT_MILLIS);
+            if (m == null || !m.getProduct().equals(product) || m.getSequence() != s
+                    || m.getType() != FeedMessage.LAST_SALE || m.getPrice() != cents(s)) {
+                throw new IllegalStateException("Expected " + product + " #" + s + ", got " + m);
+            }
+        }
+        System.out.println("   " + product + " #" + from + "-" + to + " in order");
+    }
+
+    private static void check(boolean ok, String what, MulticastFeedReceiver r) {
+        String counts = "gaps " + r.getGapCount() + ", recovered " + r.getRecoveredCount()
+                + ", snapshots " + r.getSnapshotCount() + ", duplicates " + r.getDuplicateCount();
+        if (!ok) {
+            throw new IllegalStateException("Expected " + what + "; " + counts);
+        }
+        System.out.println("   " + what + " (" + counts + ")");
+    }
+}
@@ -0,0 +1,256 @@
+package driver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import book.CommandResult;
+import book.ProductService;
+import constants.global.MarketState;
+import gateway.GatewayProtocol;
+import gateway.OrderGateway;
+
+/**
+ * Loopback test client for the OrderGateway. A seller and a buyer log on
+ * and pipeline orders, cancels and quotes without waiting for each answer,
+ * then check that every request is ACKed in order with the expected
+ * CommandResult code and that the fills and cancels that come back add up.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class OrderGatewayMain {
+
+    private static final String PRODUCT = "IBM";
+    private static final int ORDERS = 500;
+    private static final int VOLUME = 10;
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    /**
+     * One client connection: the requests it sent and what came back
+     */
+    private static class Client {
+        final String name;
+        final Socket socket;
+        final DataOutputStream out;
+        final DataInputStream in;
+        int nextRequest = 1;
+        int nextAck = 1;
+        final ArrayList<Integer> acks = new ArrayList<>();
+        final ArrayList<String> ackTexts = new ArrayList<>();
+        int fills;
+        int filledVolume;
+        int cancels;
+        int cancelledVolume;
+
+        Client(OrderGateway gateway, String name) throws Exception {
+            this.name = name;
+            socket = new Socket("127.0.0.1", gateway.getAddress().getPort());
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        }
+
+        /**
+         * Writes a request frame; nothing is sent until flush
+         */
+        void request(byte type, Object... fields) throws IOException {
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            DataOutputStream body = new DataOutputStream(b);
+            body.writeByte(type);
+            body.writeInt(nextRequest++);
+            for (Object f : fields) {
+                if (f instanceof String) {
+                    byte[] s = ((String) f).getBytes(StandardCharsets.UTF_8);
+                    body.writeShort(s.length);
+                    body.write(s);
+                } else if (f instanceof Long) {
+                    body.writeLong((Long) f);
+                } else if (f instanceof Integer) {
+                    body.writeInt((Integer) f);
+                } else {
+                    body.writeByte((Byte) f);
+                }
+            }
+            out.writeInt(b.size());
+            b.writeTo(out);
+        }
+
+        /**
+         * Sends the pipelined requests and reads until all are ACKed
+         */
+        void flushAndAwaitAcks() throws IOException {
+            out.flush();
+            while (nextAck < nextRequest) {
+                readOne();
+            }
+        }
+
+        /**
+         * Reads until the passed number of fills and cancels have arrived
+         */
+        void awaitExecutions(int fillCount, int cancelCount) throws IOException {
+            while (fills < fillCount || cancels < cancelCount) {
+                readOne();
+            }
+        }
+
+        private void readOne() throws IOException {
+            int len = in.readInt();
+            byte type = in.readByte();
+            if (type == GatewayProtocol.ACK) {
+                int id = in.readInt();
+                int result = in.readByte();
+                String text = readString();
+                if (id != nextAck && id != 0) {
+                    throw new IllegalStateException(name + ": ACK for request " + id + ", expected " + nextAck);
+                }
+                if (id == 0) {
+                    throw new IllegalStateException(name + ": error from the gateway: " + text);
+                }
+                nextAck++;
+                acks.add(result);
+                ackTexts.add(text);
+            } else if (type == GatewayProtocol.FILL || type == GatewayProtocol.CANCEL) {
+                readString();
+                in.readLong();
+                int volume = in.readInt();
+                in.readByte();
+                readString();
+                readString();
+                if (type == GatewayProtocol.FILL) {
+                    fills++;
+                    filledVolume += volume;
+                } else {
+                    cancels++;
+                    cancelledVolume += volume;
+                }
+            } else {
+                in.skipBytes(len - 1);
+            }
+        }
+
+        private String readString() throws IOException {
+            byte[] b = new byte[in.readUnsignedShort()];
+            in.readFully(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Checks the results of the ACKs from request from to request to
+         */
+        void expectAcks(int from, int to, CommandResult expected) {
+            for (int id = from; id <= to; id++) {
+                CommandResult r = CommandResult.fromCode(acks.get(id - 1));
+                if (r != expected) {
+                    throw new IllegalStateException(name + ": request " + id + " answered "
+                            + (r == null ? "code " + acks.get(id - 1) : r) + " (" + ackTexts.get(id - 1)
+                            + "), expected " + expected);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        OrderGateway gateway = null;
+        try {
+            ProductService.getInstance().createProduct(PRODUCT);
+            ProductService.getInstance().setMarketState(MarketState.PREOPEN);
+            ProductService.getInstance().setMarketState(MarketState.OPEN);
+            gateway = new OrderGateway(new InetSocketAddress("127.0.0.1", 0));
+            Client seller = new Client(gateway, "SELLER");
+            Client buyer = new Client(gateway, "BUYER");
+            for (Client c : new Client[] {seller, buyer}) {
+                c.request(GatewayProtocol.LOGON, c.name);
+                c.request(GatewayProtocol.SUBSCRIBE, GatewayProtocol.TOPIC_ALL_MESSAGES, "");
+                c.flushAndAwaitAcks();
+                c.expectAcks(1, 2, CommandResult.OK);
+            }
+
+            System.out.println("A) The seller pipelines " + ORDERS + " sell orders");
+            int sells = seller.nextRequest;
+            for (int i = 0; i < ORDERS; i++) {
+                seller.request(GatewayProtocol.ORDER, PRODUCT, 1000L, VOLUME, GatewayProtocol.SELL_SIDE);
+            }
+            seller.flushAndAwaitAcks();
+            seller.expectAcks(sells, sells + ORDERS - 1, CommandResult.OK);
+            System.out.println("   " + ORDERS + " ACKs in order, all OK");
+
+            System.out.println("B) The buyer pipelines " + ORDERS / 2 + " buy orders that trade with them");
+            int first = buyer.nextRequest;
+            for (int i = 0; i < ORDERS / 2; i++) {
+                buyer.request(GatewayProtocol.ORDER, PRODUCT, 1000L, VOLUME, GatewayProtocol.BUY_SIDE);
+            }
+            buyer.flushAndAwaitAcks();
+            buyer.expectAcks(first, first + ORDERS / 2 - 1, CommandResult.OK);
+            buyer.awaitExecutions(ORDERS / 2, 0);
+            seller.awaitExecutions(ORDERS / 2, 0);
+            check(buyer.filledVolume == ORDERS / 2 * VOLUME && seller.filledVolume == ORDERS / 2 * VOLUME,
+                    "buyer and seller each filled " + ORDERS / 2 * VOLUME);
+
+            System.out.println("C) The seller pipelines cancels of its resting orders, one unknown id and a bad order");
+            first = seller.nextRequest;
+            for (int i = ORDERS / 2; i < ORDERS; i++) {
+                // the ACK text of an accepted order is its id
+                seller.request(GatewayProtocol.ORDER_CANCEL, PRODUCT, GatewayProtocol.SELL_SIDE,
+                        seller.ackTexts.get(sells - 1 + i));
+            }
+            seller.request(GatewayProtocol.ORDER_CANCEL, PRODUCT, GatewayProtocol.SELL_SIDE, "NO-SUCH-ORDER");
+            seller.request(GatewayProtocol.ORDER, "NOSUCH", 1000L, VOLUME, GatewayProtocol.SELL_SIDE);
+            seller.flushAndAwaitAcks();
+            seller.expectAcks(first, first + ORDERS / 2 - 1, CommandResult.OK);
+            seller.expectAcks(first + ORDERS / 2, first + ORDERS / 2, CommandResult.ORDER_NOT_FOUND);
+            seller.expectAcks(first + ORDERS / 2 + 1, first + ORDERS / 2 + 1, CommandResult.NO_PRODUCT);
+            seller.awaitExecutions(ORDERS / 2, ORDERS / 2);
+            check(seller.cancelledVolume == ORDERS / 2 * VOLUME, "seller cancelled " + ORDERS / 2 * VOLUME
+                    + "; unknown id ORDER_NOT_FOUND, unknown product NO_PRODUCT");
+
+            System.out.println("D) The seller quotes, the buyer lifts the offer, the seller cancels the quote");
+            first = seller.nextRequest;
+            seller.request(GatewayProtocol.QUOTE, PRODUCT, 900L, 5, 1100L, 5);
+            seller.flushAndAwaitAcks();
+            seller.expectAcks(first, first, CommandResult.OK);
+            buyer.request(GatewayProtocol.ORDER, PRODUCT, GatewayProtocol.MARKET_PRICE, 5, GatewayProtocol.BUY_SIDE);
+            buyer.flushAndAwaitAcks();
+            buyer.expectAcks(buyer.nextAck - 1, buyer.nextAck - 1, CommandResult.OK);
+            buyer.awaitExecutions(ORDERS / 2 + 1, 0);
+            seller.awaitExecutions(ORDERS / 2 + 1, ORDERS / 2);
+            seller.request(GatewayProtocol.QUOTE_CANCEL, PRODUCT);
+            seller.flushAndAwaitAcks();
+            seller.expectAcks(seller.nextAck - 1, seller.nextAck - 1, CommandResult.OK);
+            seller.awaitExecutions(ORDERS / 2 + 1, ORDERS / 2 + 1);
+            check(buyer.filledVolume == ORDERS / 2 * VOLUME + 5 && seller.cancelledVolume == ORDERS / 2 * VOLUME + 5,
+                    "quote offer filled 5, bid cancelled 5");
+
+            System.out.println("E) Both log out");
+            for (Client c : new Client[] {seller, buyer}) {
+                c.request(GatewayProtocol.LOGOUT);
+                c.flushAndAwaitAcks();
+                c.expectAcks(c.nextAck - 1, c.nextAck - 1, CommandResult.OK);
+                c.socket.close();
+            }
+            System.out.println("Order gateway checks passed: seller " + seller.acks.size() + " ACKs, buyer "
+                    + buyer.acks.size() + " ACKs");
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (gateway != null) {
+                gateway.close();
+            }
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            throw new IllegalStateException("Expected " + what);
+        }
+        System.out.println("   " + what);
+    }
+}
@@ -0,0 +1,338 @@
+package driver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+import book.ProductService;
+import client.User;
+import client.UserImpl;
+import constants.global.BookSide;
+import constants.global.MarketState;
+import messages.BookDepthDTO;
+import messages.CancelMessage;
+import messages.FillMessage;
+import price.Price;
+import price.PriceFactory;
+import tradable.OffHeapTradableStore;
+
+/**
+ * Runs the same trading scenarios against products kept in "heap" storage and
+ * twins of them kept in "off-heap" storage, and checks that both produce the
+ * same fills, cancels, market data and book depth. The scenarios are the
+ * Phase 4 script, a book grown past OffHeapTradableStore.DEFAULT_CAPACITY
+ * resting entries and then swept, and a long random mix of limit and market
+ * orders, cancels, quotes, quote replacements and quote cancels.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class StorageDiffMain {
+
+    private static final String[] SYMBOLS = {"IBM", "GE"};
+    private static final String OFF_HEAP_SUFFIX = "X";
+    private static final int HEAP = 0;
+    private static final int OFF_HEAP = 1;
+    private static final int RANDOM_STEPS = 20000;
+
+    /**
+     * What each storage's products sent the users, in the order it was sent
+     */
+    private static final ArrayList<ArrayList<String>> logs = new ArrayList<>();
+
+    /**
+     * Storage and base symbol of every product
+     */
+    private static final HashMap<String, Integer> storageOf = new HashMap<>();
+    private static final HashMap<String, String> baseOf = new HashMap<>();
+
+    private static final ArrayList<User> users = new ArrayList<>();
+    private static int depthChecks = 0;
+
+    public static void main(String[] args) {
+        try {
+            logs.add(new ArrayList<String>());
+            logs.add(new ArrayList<String>());
+            for (String s : SYMBOLS) {
+                ProductService.getInstance().createProduct(s, "heap");
+                ProductService.getInstance().createProduct(s + OFF_HEAP_SUFFIX, "off-heap");
+                storageOf.put(s, HEAP);
+                storageOf.put(s + OFF_HEAP_SUFFIX, OFF_HEAP);
+                baseOf.put(s, s);
+                baseOf.put(s + OFF_HEAP_SUFFIX, s);
+            }
+            for (String name : new String[]{"REX", "ANN", "RAJ", "SAM", "LEE"}) {
+                User u = new RecordingUser(name);
+                u.connect();
+                u.subscribeAllMessages();
+                for (String p : storageOf.keySet()) {
+                    u.subscribeCurrentMarket(p);
+                    u.subscribeLastSale(p);
+                    u.subscribeTicker(p);
+                    u.subscribeBookDepth(p);
+                }
+                users.add(u);
+            }
+            ProductService.getInstance().setMarketState(MarketState.PREOPEN);
+            ProductService.getInstance().setMarketState(MarketState.OPEN);
+
+            for (String s : SYMBOLS) {
+                phase4Script(s, HEAP);
+                phase4Script(s + OFF_HEAP_SUFFIX, OFF_HEAP);
+                checkDepth(s);
+            }
+            growAndSweep("IBM", HEAP);
+            growAndSweep("IBM" + OFF_HEAP_SUFFIX, OFF_HEAP);
+            checkDepth("IBM");
+            randomMix(new Random(7));
+
+            ProductService.getInstance().setMarketState(MarketState.CLOSED);
+            for (String s : SYMBOLS) {
+                checkDepth(s);
+            }
+            compare();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The steps of Phase4Main.runTests: orders, a quote, a trade, cancels,
+     * then a trade against an order and a quote and a market order
+     */
+    private static void phase4Script(String stock, int storage) throws Exception {
+        int from = logs.get(storage).size();
+        User rex = users.get(0);
+        User ann = users.get(1);
+        User raj = users.get(2);
+        String rexO1 = rex.submitOrder(stock, PriceFactory.makeLimitPrice("$40.00"), 100, BookSide.BUY);
+        ann.submitQuote(stock, PriceFactory.makeLimitPrice("$40.00"), 100, PriceFactory.makeLimitPrice("$40.50"), 100);
+        String o2 = raj.submitOrder(stock, PriceFactory.makeLimitPrice("$40.50"), 135, BookSide.SELL);
+        record(storage, stock, "depth " + Arrays.deepToString(rex.getBookDepth(stock)));
+        try {
+            rex.submitOrderCancel(stock, BookSide.BUY, rexO1);
+        } catch (Exception e) {
+            error(storage, stock, rexO1, e);
+        }
+        ann.submitQuoteCancel(stock);
+        try {
+            raj.submitOrderCancel(stock, BookSide.SELL, o2);
+        } catch (Exception e) {
+            error(storage, stock, o2, e);
+        }
+        rex.submitOrder(stock, PriceFactory.makeLimitPrice("$10.00"), 100, BookSide.BUY);
+        ann.submitQuote(stock, PriceFactory.makeLimitPrice("$10.00"), 100, PriceFactory.makeLimitPrice("$10.10"), 100);
+        raj.submitOrder(stock, PriceFactory.makeLimitPrice("$10.00"), 150, BookSide.SELL);
+        record(storage, stock, "depth " + Arrays.deepToString(rex.getBookDepth(stock)));
+        rex.submitOrder(stock, PriceFactory.makeMarketPrice(), 75, BookSide.BUY);
+        ann.submitQuoteCancel(stock);
+        record(storage, stock, "depth " + Arrays.deepToString(rex.getBookDepth(stock)));
+        settle(storage, from);
+    }
+
+    /**
+     * Rests more buy orders than an off-heap store starts with room for,
+     * spread over many price levels and between quotes, then sells them all
+     */
+    private static void growAndSweep(String stock, int storage) throws Exception {
+        int from = logs.get(storage).size();
+        int count = OffHeapTradableStore.DEFAULT_CAPACITY + 500;
+        for (int i = 0; i < count; i++) {
+            User u = users.get(i % users.size());
+            if (i % 100 == 0) {
+                u.submitQuote(stock, PriceFactory.makeLimitPrice(900 + i % 37), 10,
+                        PriceFactory.makeLimitPrice(5000 + i % 13), 10);
+            } else {
+                u.submitOrder(stock, PriceFactory.makeLimitPrice(900 + i % 37), 1 + i % 9, BookSide.BUY);
+            }
+        }
+        record(storage, stock, "depth " + Arrays.deepToString(users.get(0).getBookDepth(stock)));
+        for (int i = 0; i < 40; i++) {
+            users.get(i % users.size()).submitOrder(stock, PriceFactory.makeLimitPrice(900), 200, BookSide.SELL);
+        }
+        users.get(1).submitOrder(stock, PriceFactory.makeMarketPrice(), 100000, BookSide.SELL);
+        for (User u : users) {
+            u.submitQuoteCancel(stock);
+        }
+        settle(storage, from);
+    }
+
+    /**
+     * Applies the same random steps to the heap product and its off-heap twin
+     */
+    private static void randomMix(Random r) throws Exception {
+        ArrayList<ArrayList<String[]>> open = new ArrayList<>();
+        open.add(new ArrayList<String[]>());
+        open.add(new ArrayList<String[]>());
+        for (int step = 0; step < RANDOM_STEPS; step++) {
+            String base = SYMBOLS[r.nextInt(SYMBOLS.length)];
+            int who = r.nextInt(users.size());
+            int kind = r.nextInt(100);
+            BookSide side = r.nextBoolean() ? BookSide.BUY : BookSide.SELL;
+            long cents = 1000 + r.nextInt(20);
+            long spread = 1 + r.nextInt(5);
+            int volume = 1 + r.nextInt(200);
+            int pick = r.nextInt(1 << 20);
+            for (int storage = HEAP; storage <= OFF_HEAP; storage++) {
+                String stock = storage == HEAP ? base : base + OFF_HEAP_SUFFIX;
+                User u = users.get(who);
+                ArrayList<String[]> ids = open.get(storage);
+                int from = logs.get(storage).size();
+                String cancelled = null;
+                try {
+                    if (kind < 55) {
+                        String id = u.submitOrder(stock, PriceFactory.makeLimitPrice(cents), volume, side);
+                        ids.add(new String[]{Integer.toString(who), stock, side.toString(), id});
+                    } else if (kind < 60) {
+                        u.submitOrder(stock, PriceFactory.makeMarketPrice(), volume, side);
+                    } else if (kind < 75) {
+                        if (!ids.isEmpty()) {
+                            String[] o = ids.remove(pick % ids.size());
+                            cancelled = o[3];
+                            users.get(Integer.parseInt(o[0])).submitOrderCancel(o[1], BookSide.valueOf(o[2]), o[3]);
+                        }
+                    } else if (kind < 95) {
+                        u.submitQuote(stock, PriceFactory.makeLimitPrice(cents - spread), volume,
+                                PriceFactory.makeLimitPrice(cents + spread), volume);
+                    } else {
+                        u.submitQuoteCancel(stock);
+                    }
+                } catch (Exception e) {
+                    error(storage, stock, cancelled, e);
+                }
+                settle(storage, from);
+            }
+            if (step % 250 == 0) {
+                checkDepth(base);
+            }
+        }
+    }
+
+    /**
+     * Records the book depth of a product and of its off-heap twin
+     */
+    private static void checkDepth(String base) throws Exception {
+        record(HEAP, base, "depth " + Arrays.deepToString(ProductService.getInstance().getBookDepth(base)));
+        record(OFF_HEAP, base, "depth "
+                + Arrays.deepToString(ProductService.getInstance().getBookDepth(base + OFF_HEAP_SUFFIX)));
+        depthChecks++;
+    }
+
+    /**
+     * Reports the first difference between the two storages' logs
+     */
+    private static void compare() {
+        ArrayList<String> heap = logs.get(HEAP);
+        ArrayList<String> offHeap = logs.get(OFF_HEAP);
+        int n = Math.min(heap.size(), offHeap.size());
+        for (int i = 0; i < n; i++) {
+            if (!heap.get(i).equals(offHeap.get(i))) {
+                System.out.println("Storage types differ at event " + i + ":");
+                System.out.println("  heap:     " + heap.get(i));
+                System.out.println("  off-heap: " + offHeap.get(i));
+                System.exit(1);
+            }
+        }
+        if (heap.size() != offHeap.size()) {
+            System.out.println("Storage types differ in event count: heap " + heap.size()
+                    + ", off-heap " + offHeap.size());
+            System.exit(1);
+        }
+        int fills = 0;
+        int cancels = 0;
+        for (String s : heap) {
+            if (s.startsWith("fill")) {
+                fills++;
+            } else if (s.startsWith("cancel")) {
+                cancels++;
+            }
+        }
+        System.out.println("Heap and off-heap storage match: " + heap.size() + " events, " + fills
+                + " fills, " + cancels + " cancels, " + depthChecks + " depth checks");
+    }
+
+    private static void record(int storage, String product, String event) {
+        logs.get(storage).add(event);
+    }
+
+    /**
+     * Sorts what one request made a storage's products send. A trade's
+     * fills are sent in the order of their fill keys, which hold the order
+     * ids, so only the set of messages a request made is compared.
+     */
+    private static void settle(int storage, int from) {
+        ArrayList<String> log = logs.get(storage);
+        Collections.sort(log.subList(from, log.size()));
+    }
+
+    private static void error(int storage, String product, String orderId, Exception e) {
+        String text = String.valueOf(e.getMessage());
+        if (orderId != null) {
+            text = text.replace(orderId, "<id>");
+        }
+        record(storage, product, "error " + e.getClass().getSimpleName() + " "
+                + text.replace(product, baseOf.get(product)));
+    }
+
+    /**
+     * Records what the trading system sends it, in the log of the storage of
+     * the product it is about
+     */
+    private static class RecordingUser extends UserImpl {
+
+        RecordingUser(String name) throws Exception {
+            super(name);
+        }
+
+        private void log(String product, String event) {
+            Integer storage = storageOf.get(product);
+            if (storage != null) {
+                record(storage, product, event);
+            }
+        }
+
+        @Override
+        public void acceptLastSale(String product, Price p, int v) {
+            log(product, "last sale " + getUserName() + " " + baseOf.get(product) + " " + p + " " + v);
+        }
+
+        @Override
+        public void acceptMessage(FillMessage fm) {
+            log(fm.getProduct(), "fill " + getUserName() + " " + baseOf.get(fm.getProduct()) + " "
+                    + fm.getSide() + " " + fm.getPrice() + " " + fm.getVolume() + " leaving "
+                    + fm.getLeavingVolume() + " " + fm.getDetails());
+        }
+
+        @Override
+        public void acceptMessage(CancelMessage cm) {
+            log(cm.getProduct(), "cancel " + getUserName() + " " + baseOf.get(cm.getProduct()) + " "
+                    + cm.getSide() + " " + cm.getPrice() + " " + cm.getVolume() + " "
+                    + cm.getDetails().replace(cm.getID(), "<id>"));
+        }
+
+        @Override
+        public void acceptMarketMessage(String message) {}
+
+        @Override
+        public void acceptTicker(String product, Price p, char direction) {
+            log(product, "ticker " + getUserName() + " " + baseOf.get(product) + " " + p + " " + direction);
+        }
+
+        @Override
+        public void acceptCurrentMarket(String product, Price bp, int bv, Price sp, int sv) {
+            log(product, "current market " + getUserName() + " " + baseOf.get(product) + " " + bp + " x "
+                    + bv + " - " + sp + " x " + sv);
+        }
+
+        @Override
+        public void acceptBookDepth(BookDepthDTO d) {
+            log(d.product, "book depth " + getUserName() + " " + baseOf.get(d.product) + " " + d.side + " "
+                    + d.action + " " + d.price + " " + d.volume + " #" + d.sequence);
+        }
+
+        @Override
+        public void acceptDisconnect(String reason) {}
+    }
+}
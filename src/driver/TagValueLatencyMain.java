@@ -0,0 +1,155 @@
+package driver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+import book.ProductService;
+import constants.global.MarketState;
+import gateway.TagValueGateway;
+
+/**
+ * Loopback test client for the TagValueGateway. Logs on, measures the round
+ * trip from a NewOrderSingle to its execution report, then checks that a
+ * resend of the session's messages and a sequence gap are handled.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class TagValueLatencyMain {
+
+    private static final char SOH = '\u0001';
+
+    private static final int WARMUP = 2000;
+    private static final int ROUND_TRIPS = 10000;
+
+    private static SocketChannel channel;
+    private static ByteBuffer in = ByteBuffer.allocate(1 << 16);
+    private static int seq = 1;
+    private static int lastSeqReceived;
+
+    public static void main(String[] args) {
+        try {
+            ProductService.getInstance().createProduct("IBM");
+            ProductService.getInstance().setMarketState(MarketState.PREOPEN);
+            ProductService.getInstance().setMarketState(MarketState.OPEN);
+
+            TagValueGateway gateway = new TagValueGateway(new InetSocketAddress("127.0.0.1", 0), "EXCH");
+            channel = SocketChannel.open(gateway.getAddress());
+            channel.socket().setTcpNoDelay(true);
+
+            System.out.println("A) Logon");
+            send("A", "98=0" + SOH + "108=30" + SOH + "141=Y" + SOH + "553=TVC" + SOH);
+            System.out.println("   " + show(receive()));
+
+            System.out.println("B) Round trips: NewOrderSingle -> ExecutionReport (New), then cancel");
+            long[] rtt = new long[ROUND_TRIPS];
+            for (int i = 0; i < WARMUP + ROUND_TRIPS; i++) {
+                String id = "O" + i;
+                long start = System.nanoTime();
+                send("D", "11=" + id + SOH + "55=IBM" + SOH + "54=1" + SOH + "38=100" + SOH + "40=2" + SOH
+                        + "44=10.00" + SOH);
+                String r = receive();
+                long t = System.nanoTime() - start;
+                if (!r.contains(SOH + "35=8" + SOH) || !r.contains(SOH + "11=" + id + SOH)) {
+                    throw new IllegalStateException("Unexpected reply: " + show(r));
+                }
+                if (i >= WARMUP) {
+                    rtt[i - WARMUP] = t;
+                }
+                send("F", "11=C" + i + SOH + "41=" + id + SOH + "55=IBM" + SOH + "54=1" + SOH);
+                receive();
+            }
+            Arrays.sort(rtt);
+            System.out.printf("   %d round trips: p50 %d us, p99 %d us, max %d us%n", ROUND_TRIPS,
+                    rtt[ROUND_TRIPS / 2] / 1000, rtt[ROUND_TRIPS * 99 / 100] / 1000, rtt[ROUND_TRIPS - 1] / 1000);
+
+            System.out.println("C) Trade against ourselves and show the execution reports");
+            send("D", "11=B1" + SOH + "55=IBM" + SOH + "54=1" + SOH + "38=50" + SOH + "40=2" + SOH + "44=10.25" + SOH);
+            System.out.println("   " + show(receive()));
+            send("D", "11=S1" + SOH + "55=IBM" + SOH + "54=2" + SOH + "38=20" + SOH + "40=1" + SOH);
+            for (int i = 0; i < 3; i++) {
+                System.out.println("   " + show(receive()));
+            }
+            send("q", "11=M1" + SOH + "530=7" + SOH);
+            System.out.println("   " + show(receive()));
+            System.out.println("   " + show(receive()));
+
+            System.out.println("D) Ask for the last 3 messages to be resent");
+            int last = lastSeqReceived;
+            send("2", "7=" + (last - 2) + SOH + "16=0" + SOH);
+            for (int i = 0; i < 3; i++) {
+                System.out.println("   " + show(receive()));
+            }
+
+            System.out.println("E) Skip a sequence number; the gateway asks for a resend");
+            seq++;
+            send("0", "");
+            System.out.println("   " + show(receive()));
+
+            System.out.println("F) Logout");
+            send("4", "123=N" + SOH + "36=" + (seq + 1) + SOH);
+            send("5", "");
+            System.out.println("   " + show(receive()));
+
+            channel.close();
+            gateway.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sends one message with the next sequence number
+     */
+    private static void send(String type, String fields) throws IOException {
+        SimpleDateFormat f = new SimpleDateFormat("yyyyMMdd-HH:mm:ss.SSS");
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String body = "35=" + type + SOH + "49=TVC" + SOH + "56=EXCH" + SOH + "34=" + (seq++) + SOH
+                + "52=" + f.format(new Date()) + SOH + fields;
+        String m = "8=FIX.4.4" + SOH + "9=" + body.length() + SOH + body;
+        int sum = 0;
+        for (int i = 0; i < m.length(); i++) {
+            sum += m.charAt(i);
+        }
+        m += String.format("10=%03d%c", sum % 256, SOH);
+        ByteBuffer b = ByteBuffer.wrap(m.getBytes(StandardCharsets.US_ASCII));
+        while (b.hasRemaining()) {
+            channel.write(b);
+        }
+    }
+
+    /**
+     * Waits for the next message
+     */
+    private static String receive() throws IOException {
+        while (true) {
+            String s = new String(in.array(), 0, in.position(), StandardCharsets.US_ASCII);
+            int end = s.indexOf(SOH + "10=");
+            if (end >= 0 && s.length() >= end + 8) {
+                String m = s.substring(0, end + 8);
+                in.flip();
+                in.position(m.length());
+                in.compact();
+                int k = m.indexOf(SOH + "34=") + 4;
+                lastSeqReceived = Integer.parseInt(m.substring(k, m.indexOf(SOH, k)));
+                return m;
+            }
+            if (channel.read(in) < 0) {
+                throw new IOException("Gateway closed the connection");
+            }
+        }
+    }
+
+    /**
+     * @return the message with SOH shown as '|' and the timestamp left out
+     */
+    private static String show(String m) {
+        return m.replaceAll("52=[^\u0001]*\u0001", "").replaceAll("10=\\d+\u0001", "").replace(SOH, '|');
+    }
+}
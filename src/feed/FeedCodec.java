@@ -0,0 +1,249 @@
+package feed;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import constants.global.BookSide;
+import feed.exceptions.FeedException;
+import messages.BookDepthDTO;
+import messages.MarketDataDTO;
+import price.Price;
+
+/**
+ * Encodes and decodes market data feed packets. Every packet starts with the
+ * same header, followed by a body whose layout depends on the type. All
+ * values are big-endian.
+ *
+ * <pre>
+ * header   short magic, byte version, byte type, long sequence,
+ *          long send time, byte symbol length, symbol (US-ASCII)
+ * CURRENT_MARKET  long buy price, int buy volume, long sell price, int sell volume
+ * LAST_SALE       long price, int volume
+ * TICKER          long price, char direction
+ * DEPTH           byte action, byte side, long price, int volume,
+ *                 long depth sequence
+ * DEPTH_SNAPSHOT  long depth sequence, int buy levels, int sell levels
+ * </pre>
+ *
+ * Prices are sent in cents; FeedMessage.MARKET_PRICE and FeedMessage.NO_PRICE
+ * stand for a market price and a missing price.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public final class FeedCodec {
+
+  /**
+   * First two bytes of every packet ("DX")
+   */
+  public static final short MAGIC = 0x4458;
+
+  /**
+   * Format version sent in every packet
+   */
+  public static final byte VERSION = 1;
+
+  /**
+   * Longest stock symbol a packet can carry
+   */
+  public static final int MAX_SYMBOL = 255;
+
+  /**
+   * Size of the header without the symbol
+   */
+  private static final int HEADER = 21;
+
+  /**
+   * Largest packet the codec produces
+   */
+  public static final int MAX_PACKET = HEADER + MAX_SYMBOL + 24;
+
+  private FeedCodec() {}
+
+  /**
+   * Encodes a current market into the buffer, from its position
+   * @param out buffer with at least MAX_PACKET bytes remaining
+   * @param sequence per-product sequence number
+   * @param m the current market
+   * @throws FeedException if the symbol is too long
+   */
+  public static void encodeCurrentMarket(ByteBuffer out, long sequence, MarketDataDTO m) throws FeedException {
+    header(out, FeedMessage.CURRENT_MARKET, sequence, m.product);
+    out.putLong(cents(m.buyPrice));
+    out.putInt(m.buyVolume);
+    out.putLong(cents(m.sellPrice));
+    out.putInt(m.sellVolume);
+  }
+
+  /**
+   * Encodes a last sale into the buffer, from its position
+   * @param out buffer with at least MAX_PACKET bytes remaining
+   * @param sequence per-product sequence number
+   * @param product stock symbol
+   * @param p price of the last sale
+   * @param volume volume of the last sale
+   * @throws FeedException if the symbol is too long
+   */
+  public static void encodeLastSale(ByteBuffer out, long sequence, String product, Price p, int volume)
+          throws FeedException {
+    header(out, FeedMessage.LAST_SALE, sequence, product);
+    out.putLong(cents(p));
+    out.putInt(volume);
+  }
+
+  /**
+   * Encodes a ticker into the buffer, from its position
+   * @param out buffer with at least MAX_PACKET bytes remaining
+   * @param sequence per-product sequence number
+   * @param product stock symbol
+   * @param p price of the ticker
+   * @param direction direction of the ticker
+   * @throws FeedException if the symbol is too long
+   */
+  public static void encodeTicker(ByteBuffer out, long sequence, String product, Price p, char direction)
+          throws FeedException {
+    header(out, FeedMessage.TICKER, sequence, product);
+    out.putLong(cents(p));
+    out.putChar(direction);
+  }
+
+  /**
+   * Encodes a book depth change into the buffer, from its position
+   * @param out buffer with at least MAX_PACKET bytes remaining
+   * @param sequence per-product sequence number
+   * @param d the depth change
+   * @throws FeedException if the symbol is too long
+   */
+  public static void encodeDepth(ByteBuffer out, long sequence, BookDepthDTO d) throws FeedException {
+    encodeDepth(out, sequence, d.product, (byte) (d.action.ordinal() + 1),
+            d.side == BookSide.BUY ? FeedMessage.BUY : FeedMessage.SELL, cents(d.price), d.volume, d.sequence);
+  }
+
+  /**
+   * Encodes a book depth change into the buffer, from its position
+   * @param out buffer with at least MAX_PACKET bytes remaining
+   * @param sequence per-product sequence number
+   * @param product stock symbol
+   * @param action FeedMessage.ADD, CHANGE or DELETE
+   * @param side FeedMessage.BUY or SELL
+   * @param price price of the level, in cents
+   * @param volume volume now at the level
+   * @param depthSequence the book's depth sequence number of the change
+   * @throws FeedException if the symbol is too long
+   */
+  public static void encodeDepth(ByteBuffer out, long sequence, String product, byte action, byte side,
+          long price, int volume, long depthSequence) throws FeedException {
+    header(out, FeedMessage.DEPTH, sequence, product);
+    out.put(action);
+    out.put(side);
+    out.putLong(price);
+    out.putInt(volume);
+    out.putLong(depthSequence);
+  }
+
+  /**
+   * Encodes the head of a depth snapshot into the buffer, from its position
+   * @param out buffer with at least MAX_PACKET bytes remaining
+   * @param sequence per-product sequence number the snapshot was taken at
+   * @param product stock symbol
+   * @param depthSequence the book's depth sequence number of the last change
+   * included
+   * @param buyLevels number of buy levels that follow
+   * @param sellLevels number of sell levels that follow
+   * @throws FeedException if the symbol is too long
+   */
+  public static void encodeDepthSnapshot(ByteBuffer out, long sequence, String product, long depthSequence,
+          int buyLevels, int sellLevels) throws FeedException {
+    header(out, FeedMessage.DEPTH_SNAPSHOT, sequence, product);
+    out.putLong(depthSequence);
+    out.putInt(buyLevels);
+    out.putInt(sellLevels);
+  }
+
+  /**
+   * Decodes one packet, from the buffer's position to its limit
+   * @param in the packet
+   * @return the decoded packet
+   * @throws FeedException if the packet is malformed
+   */
+  public static FeedMessage decode(ByteBuffer in) throws FeedException {
+    if (in.remaining() < HEADER || in.getShort() != MAGIC) {
+      throw new FeedException("Not a market data feed packet.");
+    }
+    if (in.get() != VERSION) {
+      throw new FeedException("Unsupported market data feed version.");
+    }
+    byte type = in.get();
+    long sequence = in.getLong();
+    long sendTime = in.getLong();
+    int n = in.get() & 0xFF;
+    if (in.remaining() < n) {
+      throw new FeedException("Truncated market data feed packet.");
+    }
+    byte[] sym = new byte[n];
+    in.get(sym);
+    String product = new String(sym, StandardCharsets.US_ASCII);
+    switch (type) {
+      case FeedMessage.CURRENT_MARKET:
+        need(in, 24);
+        return new FeedMessage(type, sequence, sendTime, product, in.getLong(), in.getInt(), in.getLong(),
+                in.getInt(), ' ');
+      case FeedMessage.LAST_SALE:
+        need(in, 12);
+        return new FeedMessage(type, sequence, sendTime, product, in.getLong(), in.getInt(),
+                FeedMessage.NO_PRICE, 0, ' ');
+      case FeedMessage.TICKER:
+        need(in, 10);
+        return new FeedMessage(type, sequence, sendTime, product, in.getLong(), 0, FeedMessage.NO_PRICE, 0,
+                in.getChar());
+      case FeedMessage.DEPTH:
+        need(in, 22);
+        byte action = in.get();
+        byte side = in.get();
+        long price = in.getLong();
+        int volume = in.getInt();
+        return new FeedMessage(type, sequence, sendTime, product, price, volume, FeedMessage.NO_PRICE, 0, ' ',
+                action, side, in.getLong());
+      case FeedMessage.DEPTH_SNAPSHOT:
+        need(in, 16);
+        long depthSequence = in.getLong();
+        int buyLevels = in.getInt();
+        return new FeedMessage(type, sequence, sendTime, product, FeedMessage.NO_PRICE, buyLevels,
+                FeedMessage.NO_PRICE, in.getInt(), ' ', (byte) 0, (byte) 0, depthSequence);
+      default:
+        throw new FeedException("Unknown market data feed packet type: " + type);
+    }
+  }
+
+  /**
+   * Writes the header
+   */
+  private static void header(ByteBuffer out, byte type, long sequence, String product) throws FeedException {
+    byte[] sym = product.getBytes(StandardCharsets.US_ASCII);
+    if (sym.length > MAX_SYMBOL) {
+      throw new FeedException("Stock symbol is too long for the market data feed: " + product);
+    }
+    out.putShort(MAGIC);
+    out.put(VERSION);
+    out.put(type);
+    out.putLong(sequence);
+    out.putLong(System.currentTimeMillis());
+    out.put((byte) sym.length);
+    out.put(sym);
+  }
+
+  /**
+   * @return the wire value of a price
+   */
+  static long cents(Price p) {
+    if (p == null) {
+      return FeedMessage.NO_PRICE;
+    }
+    return p.isMarket() ? FeedMessage.MARKET_PRICE : p.getCents();
+  }
+
+  private static void need(ByteBuffer in, int n) throws FeedException {
+    if (in.remaining() < n) {
+      throw new FeedException("Truncated market data feed packet.");
+    }
+  }
+}
@@ -0,0 +1,269 @@
+package feed;
+
+/**
+ * One decoded market data feed packet. Prices are held in cents, as they
+ * travel on the wire; NO_PRICE and MARKET_PRICE mark a missing price and a
+ * market price.
+ *
+ * DEPTH packets carry a change to one price level of a book, numbered in the
+ * book's own depth sequence as well as in the feed's. A jump in the depth
+ * sequence means changes were missed, and the levels must be rebuilt from a
+ * depth snapshot: a DEPTH_SNAPSHOT packet followed by an ADD for each level.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class FeedMessage {
+
+  /**
+   * Packet types
+   */
+  public static final byte CURRENT_MARKET = 1;
+  public static final byte LAST_SALE = 2;
+  public static final byte TICKER = 3;
+  public static final byte DEPTH = 4;
+  public static final byte DEPTH_SNAPSHOT = 5;
+
+  /**
+   * Depth actions
+   */
+  public static final byte ADD = 1;
+  public static final byte CHANGE = 2;
+  public static final byte DELETE = 3;
+
+  /**
+   * Book sides of a depth change
+   */
+  public static final byte BUY = 'B';
+  public static final byte SELL = 'S';
+
+  /**
+   * Price values standing for a market price and for no price
+   */
+  public static final long MARKET_PRICE = Long.MIN_VALUE;
+  public static final long NO_PRICE = Long.MIN_VALUE + 1;
+
+  /**
+   * Packet type: CURRENT_MARKET, LAST_SALE, TICKER, DEPTH or DEPTH_SNAPSHOT
+   */
+  private final byte type;
+
+  /**
+   * Per-product sequence number, starting at 1
+   */
+  private final long sequence;
+
+  /**
+   * System.currentTimeMillis() on the sender when the packet was built
+   */
+  private final long sendTime;
+
+  /**
+   * Stock symbol
+   */
+  private final String product;
+
+  /**
+   * Buy price and volume of a current market; price and volume of a last
+   * sale or depth change; price of a ticker; number of buy levels of a depth
+   * snapshot
+   */
+  private final long buyPrice;
+  private final int buyVolume;
+
+  /**
+   * Sell price and volume of a current market; number of sell levels of a
+   * depth snapshot
+   */
+  private final long sellPrice;
+  private final int sellVolume;
+
+  /**
+   * Direction of a ticker
+   */
+  private final char direction;
+
+  /**
+   * Action (ADD, CHANGE or DELETE) and side (BUY or SELL) of a depth change
+   */
+  private final byte action;
+  private final byte side;
+
+  /**
+   * Book depth sequence number of a depth change, or of the last change
+   * included in a depth snapshot
+   */
+  private final long depthSequence;
+
+  FeedMessage(byte type, long sequence, long sendTime, String product, long buyPrice, int buyVolume,
+          long sellPrice, int sellVolume, char direction) {
+    this(type, sequence, sendTime, product, buyPrice, buyVolume, sellPrice, sellVolume, direction,
+            (byte) 0, (byte) 0, 0);
+  }
+
+  FeedMessage(byte type, long sequence, long sendTime, String product, long buyPrice, int buyVolume,
+          long sellPrice, int sellVolume, char direction, byte action, byte side, long depthSequence) {
+    this.type = type;
+    this.sequence = sequence;
+    this.sendTime = sendTime;
+    this.product = product;
+    this.buyPrice = buyPrice;
+    this.buyVolume = buyVolume;
+    this.sellPrice = sellPrice;
+    this.sellVolume = sellVolume;
+    this.direction = direction;
+    this.action = action;
+    this.side = side;
+    this.depthSequence = depthSequence;
+  }
+
+  /**
+   * @return the packet type: CURRENT_MARKET, LAST_SALE, TICKER, DEPTH or
+   * DEPTH_SNAPSHOT
+   */
+  public byte getType() {
+    return type;
+  }
+
+  /**
+   * @return the per-product sequence number
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @return the sender's clock when the packet was built, in milliseconds
+   */
+  public long getSendTime() {
+    return sendTime;
+  }
+
+  /**
+   * @return the stock symbol
+   */
+  public String getProduct() {
+    return product;
+  }
+
+  /**
+   * @return the buy price of a current market, or the price of a last sale,
+   * ticker or depth change, in cents
+   */
+  public long getPrice() {
+    return buyPrice;
+  }
+
+  /**
+   * @return the buy volume of a current market, or the volume of a last sale
+   * or depth change
+   */
+  public int getVolume() {
+    return buyVolume;
+  }
+
+  /**
+   * @return the buy price of a current market, in cents
+   */
+  public long getBuyPrice() {
+    return buyPrice;
+  }
+
+  /**
+   * @return the buy volume of a current market
+   */
+  public int getBuyVolume() {
+    return buyVolume;
+  }
+
+  /**
+   * @return the sell price of a current market, in cents
+   */
+  public long getSellPrice() {
+    return sellPrice;
+  }
+
+  /**
+   * @return the sell volume of a current market
+   */
+  public int getSellVolume() {
+    return sellVolume;
+  }
+
+  /**
+   * @return the direction of a ticker
+   */
+  public char getDirection() {
+    return direction;
+  }
+
+  /**
+   * @return the action of a depth change: ADD, CHANGE or DELETE
+   */
+  public byte getAction() {
+    return action;
+  }
+
+  /**
+   * @return the side of a depth change: BUY or SELL
+   */
+  public byte getSide() {
+    return side;
+  }
+
+  /**
+   * @return the book depth sequence number of a depth change or depth
+   * snapshot
+   */
+  public long getDepthSequence() {
+    return depthSequence;
+  }
+
+  /**
+   * @return the number of buy levels that follow a depth snapshot
+   */
+  public int getBuyLevels() {
+    return buyVolume;
+  }
+
+  /**
+   * @return the number of sell levels that follow a depth snapshot
+   */
+  public int getSellLevels() {
+    return sellVolume;
+  }
+
+  /**
+   * Formats a price held in cents the way Price.toString does
+   */
+  private static String format(long cents) {
+    if (cents == MARKET_PRICE) {
+      return "MKT";
+    }
+    if (cents == NO_PRICE) {
+      return "-";
+    }
+    return String.format("$%,.2f", (double) cents / 100.0);
+  }
+
+  /**
+   * @return Formatted String
+   */
+  public String toString() {
+    switch (type) {
+      case CURRENT_MARKET:
+        return String.format("#%d %s %d@%s x %d@%s", sequence, product, buyVolume, format(buyPrice),
+                sellVolume, format(sellPrice));
+      case LAST_SALE:
+        return String.format("#%d %s last sale %d@%s", sequence, product, buyVolume, format(buyPrice));
+      case DEPTH:
+        return String.format("#%d %s depth #%d %s %c %d@%s", sequence, product, depthSequence,
+                action == ADD ? "add" : action == CHANGE ? "change" : "delete", (char) side, buyVolume,
+                format(buyPrice));
+      case DEPTH_SNAPSHOT:
+        return String.format("#%d %s depth snapshot #%d, %d buy and %d sell levels", sequence, product,
+                depthSequence, buyVolume, sellVolume);
+      default:
+        return String.format("#%d %s ticker %s %c", sequence, product, format(buyPrice), direction);
+    }
+  }
+}
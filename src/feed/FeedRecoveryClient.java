@@ -0,0 +1,99 @@
+package feed;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import feed.exceptions.FeedException;
+
+/**
+ * Sends retransmit, snapshot and depth snapshot requests to a
+ * FeedRecoveryServer.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class FeedRecoveryClient {
+
+  /**
+   * Address of the recovery service
+   */
+  private final InetSocketAddress server;
+
+  public FeedRecoveryClient(InetSocketAddress server) {
+    this.server = server;
+  }
+
+  /**
+   * Asks for the kept packets of a product with sequence numbers in
+   * [from, to]
+   * @param product stock symbol
+   * @param from first sequence number
+   * @param to last sequence number
+   * @return the packets still kept by the publisher, in sequence order
+   * @throws FeedException if the request fails
+   */
+  public ArrayList<FeedMessage> retransmit(String product, long from, long to) throws FeedException {
+    return request(FeedRecoveryServer.RETRANSMIT, product, from, to);
+  }
+
+  /**
+   * Asks for the latest packet of each type for a product
+   * @param product stock symbol
+   * @return the packets, in sequence order
+   * @throws FeedException if the request fails
+   */
+  public ArrayList<FeedMessage> snapshot(String product) throws FeedException {
+    return request(FeedRecoveryServer.SNAPSHOT, product, 0, 0);
+  }
+
+  /**
+   * Asks for the price levels of a product
+   * @param product stock symbol
+   * @return a DEPTH_SNAPSHOT packet followed by an ADD packet for each level
+   * @throws FeedException if the request fails
+   */
+  public ArrayList<FeedMessage> depthSnapshot(String product) throws FeedException {
+    ArrayList<FeedMessage> l = request(FeedRecoveryServer.DEPTH_SNAPSHOT, product, 0, 0);
+    if (l.isEmpty() || l.get(0).getType() != FeedMessage.DEPTH_SNAPSHOT) {
+      throw new FeedException("No depth snapshot for stock symbol: " + product);
+    }
+    return l;
+  }
+
+  private ArrayList<FeedMessage> request(byte kind, String product, long from, long to) throws FeedException {
+    byte[] sym = product.getBytes(StandardCharsets.US_ASCII);
+    if (sym.length > FeedCodec.MAX_SYMBOL) {
+      throw new FeedException("Stock symbol is too long for the market data feed: " + product);
+    }
+    ArrayList<FeedMessage> l = new ArrayList<>();
+    try (SocketChannel c = SocketChannel.open(server)) {
+      ByteBuffer req = ByteBuffer.allocate(2 + sym.length + 16);
+      req.put(kind).put((byte) sym.length).put(sym).putLong(from).putLong(to);
+      req.flip();
+      while (req.hasRemaining()) {
+        c.write(req);
+      }
+      ByteBuffer len = ByteBuffer.allocate(4);
+      while (true) {
+        len.clear();
+        FeedRecoveryServer.readFully(c, len);
+        int n = len.getInt();
+        if (n == 0) {
+          break;
+        }
+        if (n < 0 || n > FeedCodec.MAX_PACKET) {
+          throw new FeedException("Bad frame length from the feed recovery service: " + n);
+        }
+        ByteBuffer p = ByteBuffer.allocate(n);
+        FeedRecoveryServer.readFully(c, p);
+        l.add(FeedCodec.decode(p));
+      }
+    } catch (IOException e) {
+      throw new FeedException("Feed recovery request failed: " + e.getMessage());
+    }
+    return l;
+  }
+}
@@ -0,0 +1,211 @@
+package feed;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import feed.exceptions.FeedException;
+
+/**
+ * The TCP service receivers of a MulticastFeedPublisher use to recover lost
+ * packets. A receiver connects, sends one request and reads packets until
+ * an empty frame, then the connection is closed.
+ *
+ * <pre>
+ * request   byte kind (RETRANSMIT, SNAPSHOT or DEPTH_SNAPSHOT), byte symbol length,
+ *           symbol (US-ASCII), long from, long to
+ * response  zero or more frames of int length and packet bytes, then int 0
+ * </pre>
+ *
+ * A RETRANSMIT returns the kept packets with sequence numbers in [from, to].
+ * A SNAPSHOT returns the latest packet of each type. A DEPTH_SNAPSHOT returns
+ * the product's price levels, as MulticastFeedPublisher.depthSnapshot
+ * describes. For both, from and to are ignored.
+ *
+ * At most MAX_CLIENTS receivers are served at once; a receiver connecting
+ * beyond that is disconnected at once. A receiver that does not send its
+ * whole request within REQUEST_TIMEOUT_MILLIS is disconnected.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class FeedRecoveryServer implements Runnable {
+
+  /**
+   * Request kinds
+   */
+  public static final byte RETRANSMIT = 1;
+  public static final byte SNAPSHOT = 2;
+  public static final byte DEPTH_SNAPSHOT = 3;
+
+  /**
+   * Most receivers served at once
+   */
+  public static final int MAX_CLIENTS = 16;
+
+  /**
+   * Time a receiver has to send its request, in milliseconds
+   */
+  public static final int REQUEST_TIMEOUT_MILLIS = 5000;
+
+  /**
+   * The feed the packets are taken from
+   */
+  private final MulticastFeedPublisher feed;
+
+  /**
+   * The listening channel
+   */
+  private final ServerSocketChannel server;
+
+  /**
+   * Threads serving connected receivers, at most MAX_CLIENTS
+   */
+  private final ThreadPoolExecutor workers;
+
+  /**
+   * Starts serving recovery requests for the passed feed
+   * @param feed the feed the packets are taken from
+   * @param address address to listen on, for example 127.0.0.1 and a port;
+   * port 0 picks a free port
+   * @throws FeedException if the address cannot be bound
+   */
+  public FeedRecoveryServer(MulticastFeedPublisher feed, InetSocketAddress address) throws FeedException {
+    this.feed = feed;
+    try {
+      server = ServerSocketChannel.open();
+      server.bind(address);
+    } catch (IOException e) {
+      throw new FeedException("Cannot open the feed recovery service: " + e.getMessage());
+    }
+    workers = new ThreadPoolExecutor(0, MAX_CLIENTS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            new ThreadFactory() {
+              public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "feed-recovery");
+                t.setDaemon(true);
+                return t;
+              }
+            });
+    Thread acceptor = new Thread(this, "feed-recovery-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * @return the address the service listens on
+   * @throws FeedException if the service is closed
+   */
+  public InetSocketAddress getAddress() throws FeedException {
+    try {
+      return (InetSocketAddress) server.getLocalAddress();
+    } catch (IOException e) {
+      throw new FeedException(e.getMessage());
+    }
+  }
+
+  /**
+   * Accepts connections until the service is closed
+   */
+  public void run() {
+    while (server.isOpen()) {
+      try {
+        final SocketChannel c = server.accept();
+        try {
+          workers.execute(new Runnable() {
+            public void run() {
+              serve(c);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          c.close();
+        }
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Stops accepting connections
+   */
+  public void close() {
+    try {
+      server.close();
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+    workers.shutdown();
+  }
+
+  /**
+   * Reads one request and writes its packets. The request is read through
+   * the socket's stream, which, unlike the channel, honours the read
+   * timeout.
+   */
+  private void serve(SocketChannel c) {
+    try {
+      c.socket().setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+      DataInputStream in = new DataInputStream(c.socket().getInputStream());
+      byte kind = in.readByte();
+      byte[] sym = new byte[in.readUnsignedByte()];
+      in.readFully(sym);
+      String product = new String(sym, StandardCharsets.US_ASCII);
+      long from = in.readLong();
+      long to = in.readLong();
+      ArrayList<byte[]> packets;
+      if (kind == SNAPSHOT) {
+        packets = feed.snapshot(product);
+      } else if (kind == DEPTH_SNAPSHOT) {
+        packets = feed.depthSnapshot(product);
+      } else {
+        packets = feed.retransmit(product, from, to);
+      }
+      int size = 4;
+      for (byte[] p : packets) {
+        size += 4 + p.length;
+      }
+      ByteBuffer out = ByteBuffer.allocate(size);
+      for (byte[] p : packets) {
+        out.putInt(p.length);
+        out.put(p);
+      }
+      out.putInt(0);
+      out.flip();
+      while (out.hasRemaining()) {
+        c.write(out);
+      }
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    } finally {
+      try {
+        c.close();
+      } catch (IOException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Reads until the buffer is full, then flips it
+   */
+  static void readFully(SocketChannel c, ByteBuffer b) throws IOException {
+    while (b.hasRemaining()) {
+      if (c.read(b) < 0) {
+        throw new IOException("Connection closed before the message was complete.");
+      }
+    }
+    b.flip();
+  }
+}
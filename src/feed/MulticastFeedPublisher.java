@@ -0,0 +1,595 @@
+package feed;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import constants.global.BookSide;
+import feed.exceptions.FeedException;
+import messages.BookDepthDTO;
+import messages.MarketDataDTO;
+import price.Price;
+import registry.SymbolRegistry;
+import publishers.MarketDataSink;
+
+/**
+ * A MarketDataSink that sends every current market, last sale, ticker and
+ * book depth update as one UDP multicast packet. Each product has its own
+ * sequence number, starting at 1, so receivers can spot lost packets.
+ *
+ * The publisher keeps the last packets of each product, and the latest packet
+ * of each type, so a FeedRecoveryServer can retransmit a gap or send a
+ * snapshot to a receiver that fell too far behind. It also applies each
+ * depth change to its own copy of the product's price levels, so a depth
+ * snapshot for a late joiner is read from that copy, as of a known depth
+ * sequence number, without going back to the book.
+ *
+ * Packets are encoded and numbered on the publishing thread, which may hold
+ * a book lock, and handed to the publisher's own sender thread to go out on
+ * the network. A packet that cannot be sent, or that does not fit in the
+ * sender's queue, is marked as a gap of its product; the sender resends the
+ * gap from the kept packets once sending works again. Receivers that saw the
+ * gap first recover it from the FeedRecoveryServer as usual.
+ *
+ * Register the publisher with MarketDataDispatcher.addSink to start the feed.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class MulticastFeedPublisher implements MarketDataSink {
+
+  /**
+   * Default number of packets kept per product for retransmission
+   */
+  public static final int DEFAULT_HISTORY = 4096;
+
+  /**
+   * Most packets waiting for the sender thread
+   */
+  public static final int SEND_QUEUE = 1 << 16;
+
+  /**
+   * Longest the sender waits for a packet before retrying unsent gaps
+   */
+  private static final long RETRY_MILLIS = 50;
+
+  /**
+   * Multicast group and port the packets are sent to
+   */
+  private final InetSocketAddress group;
+
+  /**
+   * The sending channel
+   */
+  private final DatagramChannel channel;
+
+  /**
+   * Packets kept per product for retransmission
+   */
+  private final int history;
+
+  /**
+   * Feed state of each product, indexed by symbol id. Copied on write.
+   */
+  private volatile ProductFeed[] feeds = new ProductFeed[16];
+
+  /**
+   * Packets waiting for the sender thread, in the order they were numbered
+   */
+  private final ArrayBlockingQueue<Packet> outgoing = new ArrayBlockingQueue<>(SEND_QUEUE);
+
+  /**
+   * Products with packets that were not sent, for the sender to resend
+   */
+  private final ConcurrentLinkedQueue<ProductFeed> unsent = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Packets that could not be sent or queued at first, and packets sent
+   * again after that
+   */
+  private final AtomicLong sendFailures = new AtomicLong();
+  private final AtomicLong resent = new AtomicLong();
+
+  /**
+   * The sender thread
+   */
+  private final Thread sender;
+
+  /**
+   * Set by close; the sender stops once its queue is empty
+   */
+  private volatile boolean closed;
+
+  /**
+   * Creates a publisher sending to the passed group and port through the
+   * passed interface
+   * @param groupAddress multicast group, for example "239.1.1.1"
+   * @param port destination port
+   * @param nif interface to send on, for example the loopback interface; null
+   * for the system default
+   * @param ttl multicast time-to-live; 0 keeps packets on the host
+   * @param historySize packets kept per product for retransmission
+   * @throws FeedException if the channel cannot be opened
+   */
+  public MulticastFeedPublisher(String groupAddress, int port, NetworkInterface nif, int ttl, int historySize)
+          throws FeedException {
+    if (historySize <= 0) {
+      throw new FeedException("History size must be greater than zero.");
+    }
+    try {
+      InetAddress g = InetAddress.getByName(groupAddress);
+      if (!g.isMulticastAddress()) {
+        throw new FeedException("Not a multicast address: " + groupAddress);
+      }
+      group = new InetSocketAddress(g, port);
+      channel = DatagramChannel.open(StandardProtocolFamily.INET);
+      if (nif != null) {
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nif);
+      }
+      channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, ttl);
+      channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+    } catch (IOException e) {
+      throw new FeedException("Cannot open the market data feed: " + e.getMessage());
+    }
+    history = historySize;
+    sender = new Thread(new Runnable() {
+      public void run() {
+        sendLoop();
+      }
+    }, "market-data-feed-sender");
+    sender.setDaemon(true);
+    sender.start();
+  }
+
+  /**
+   * Sends a current market packet
+   * @param m the current market
+   */
+  public void currentMarket(MarketDataDTO m) {
+    ProductFeed f = feedOf(m.product);
+    synchronized (f) {
+      try {
+        FeedCodec.encodeCurrentMarket(f.begin(), f.sequence + 1, m);
+        f.commit(FeedMessage.CURRENT_MARKET);
+      } catch (FeedException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Sends a last sale packet
+   * @param product stock symbol
+   * @param p price of the last sale
+   * @param volume volume of the last sale
+   */
+  public void lastSale(String product, Price p, int volume) {
+    ProductFeed f = feedOf(product);
+    synchronized (f) {
+      try {
+        FeedCodec.encodeLastSale(f.begin(), f.sequence + 1, product, p, volume);
+        f.commit(FeedMessage.LAST_SALE);
+      } catch (FeedException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Sends a ticker packet
+   * @param product stock symbol
+   * @param p price of the ticker
+   * @param direction direction of the ticker
+   */
+  public void ticker(String product, Price p, char direction) {
+    ProductFeed f = feedOf(product);
+    synchronized (f) {
+      try {
+        FeedCodec.encodeTicker(f.begin(), f.sequence + 1, product, p, direction);
+        f.commit(FeedMessage.TICKER);
+      } catch (FeedException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Sends a book depth packet and applies the change to the kept levels. A
+   * change that cannot be encoded is neither sent nor applied, so the depth
+   * snapshot only ever holds changes receivers could have seen.
+   * @param d the changed level
+   */
+  public void bookDepth(BookDepthDTO d) {
+    ProductFeed f = feedOf(d.product);
+    synchronized (f) {
+      try {
+        FeedCodec.encodeDepth(f.begin(), f.sequence + 1, d);
+      } catch (FeedException e) {
+        System.out.println(e.getMessage());
+        return;
+      }
+      f.commit(FeedMessage.DEPTH);
+      TreeMap<Long, Integer> levels = d.side == BookSide.BUY ? f.buyLevels : f.sellLevels;
+      if (d.volume == 0) {
+        levels.remove(FeedCodec.cents(d.price));
+      } else {
+        levels.put(FeedCodec.cents(d.price), d.volume);
+      }
+      f.depthSequence = d.sequence;
+    }
+  }
+
+  /**
+   * Returns the depth snapshot of a product: a DEPTH_SNAPSHOT packet giving
+   * the depth sequence number of the last change included, followed by an
+   * ADD packet for each buy level, best first, then each sell level, best
+   * first. The packets carry the product's current sequence number.
+   * @param product stock symbol
+   * @return the packets, or an empty list if the symbol cannot be encoded
+   */
+  public ArrayList<byte[]> depthSnapshot(String product) {
+    ArrayList<byte[]> l = new ArrayList<>();
+    ByteBuffer b = ByteBuffer.allocate(FeedCodec.MAX_PACKET);
+    try {
+      ProductFeed f = existingFeedOf(product);
+      if (f == null) {
+        FeedCodec.encodeDepthSnapshot(b, 0, product, 0, 0, 0);
+        l.add(Arrays.copyOf(b.array(), b.position()));
+        return l;
+      }
+      synchronized (f) {
+        FeedCodec.encodeDepthSnapshot(b, f.sequence, product, f.depthSequence, f.buyLevels.size(),
+                f.sellLevels.size());
+        l.add(Arrays.copyOf(b.array(), b.position()));
+        addLevels(l, b, f, product, FeedMessage.BUY, f.buyLevels);
+        addLevels(l, b, f, product, FeedMessage.SELL, f.sellLevels);
+      }
+    } catch (FeedException e) {
+      System.out.println(e.getMessage());
+      l.clear();
+    }
+    return l;
+  }
+
+  /**
+   * Adds an ADD packet for each level of one side to a depth snapshot
+   */
+  private void addLevels(ArrayList<byte[]> l, ByteBuffer b, ProductFeed f, String product, byte side,
+          TreeMap<Long, Integer> levels) throws FeedException {
+    for (Map.Entry<Long, Integer> e : levels.entrySet()) {
+      b.clear();
+      FeedCodec.encodeDepth(b, f.sequence, product, FeedMessage.ADD, side, e.getKey(), e.getValue(),
+              f.depthSequence);
+      l.add(Arrays.copyOf(b.array(), b.position()));
+    }
+  }
+
+  /**
+   * Returns copies of the kept packets of a product with sequence numbers in
+   * [from, to]. Packets that are no longer kept are left out.
+   * @param product stock symbol
+   * @param from first sequence number
+   * @param to last sequence number
+   * @return the packets, in sequence order
+   */
+  public ArrayList<byte[]> retransmit(String product, long from, long to) {
+    ArrayList<byte[]> l = new ArrayList<>();
+    ProductFeed f = existingFeedOf(product);
+    if (f == null) {
+      return l;
+    }
+    synchronized (f) {
+      f.kept(l, from, to);
+    }
+    return l;
+  }
+
+  /**
+   * Returns copies of the latest packet of each type for a product. The
+   * highest sequence number among them is the product's current sequence.
+   * @param product stock symbol
+   * @return the packets, in sequence order
+   */
+  public ArrayList<byte[]> snapshot(String product) {
+    ArrayList<byte[]> l = new ArrayList<>();
+    ProductFeed f = existingFeedOf(product);
+    if (f == null) {
+      return l;
+    }
+    synchronized (f) {
+      long[] seqs = f.latestSequence.clone();
+      for (int n = 0; n < seqs.length; n++) {
+        int best = -1;
+        for (int t = 0; t < seqs.length; t++) {
+          if (seqs[t] > 0 && (best < 0 || seqs[t] < seqs[best])) {
+            best = t;
+          }
+        }
+        if (best < 0) {
+          break;
+        }
+        l.add(f.latest[best].clone());
+        seqs[best] = 0;
+      }
+    }
+    return l;
+  }
+
+  /**
+   * @param product stock symbol
+   * @return the sequence number of the last packet sent for the product, or
+   * 0 if none has been sent
+   */
+  public long getSequence(String product) {
+    ProductFeed f = existingFeedOf(product);
+    if (f == null) {
+      return 0;
+    }
+    synchronized (f) {
+      return f.sequence;
+    }
+  }
+
+  /**
+   * @return the number of packets that could not be sent or queued when
+   * first published
+   */
+  public long getSendFailures() {
+    return sendFailures.get();
+  }
+
+  /**
+   * @return the number of packets sent again to close a gap
+   */
+  public long getResent() {
+    return resent.get();
+  }
+
+  /**
+   * Stops the sender once the packets already queued are sent, and closes
+   * the sending channel
+   */
+  public void close() {
+    closed = true;
+    try {
+      sender.join(5000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  /**
+   * The sender loop: sends queued packets and, whenever the queue runs dry,
+   * resends the gaps of products whose packets were not sent
+   */
+  private void sendLoop() {
+    while (true) {
+      Packet p;
+      try {
+        p = outgoing.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (p == null && closed) {
+        return;
+      }
+      if (p != null && !send(p.data)) {
+        sendFailures.incrementAndGet();
+        synchronized (p.feed) {
+          p.feed.markUnsent(p.sequence, p.sequence);
+        }
+      }
+      if (outgoing.isEmpty() && !unsent.isEmpty()) {
+        resendUnsent();
+      }
+    }
+  }
+
+  /**
+   * Resends the unsent packets of each product marked with a gap, as long as
+   * they are still kept. Stops at the first packet that cannot be sent,
+   * leaving it and the rest of its gap marked.
+   */
+  private void resendUnsent() {
+    for (int n = unsent.size(); n > 0; n--) {
+      ProductFeed f = unsent.poll();
+      if (f == null) {
+        return;
+      }
+      ArrayList<byte[]> l = new ArrayList<>();
+      long from;
+      long to;
+      synchronized (f) {
+        from = Math.max(f.unsentFrom, f.sequence - history + 1);
+        to = f.unsentTo;
+        f.unsentFrom = 0;
+        f.unsentTo = 0;
+        f.kept(l, from, to);
+      }
+      for (int i = 0; i < l.size(); i++) {
+        if (!send(l.get(i))) {
+          synchronized (f) {
+            f.markUnsent(from + i, to);
+          }
+          return;
+        }
+        resent.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Sends one packet
+   * @return false if the packet could not be sent
+   */
+  private boolean send(byte[] data) {
+    try {
+      channel.send(ByteBuffer.wrap(data), group);
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the feed state of a product, or null if nothing was sent for it
+   */
+  private ProductFeed existingFeedOf(String product) {
+    int id = SymbolRegistry.getInstance().idOf(product);
+    ProductFeed[] f = feeds;
+    return id < 0 || id >= f.length ? null : f[id];
+  }
+
+  /**
+   * Returns the feed state of a product, creating it if needed
+   */
+  private ProductFeed feedOf(String product) {
+    int id = SymbolRegistry.getInstance().register(product);
+    ProductFeed[] f = feeds;
+    if (id < f.length && f[id] != null) {
+      return f[id];
+    }
+    synchronized (this) {
+      f = feeds;
+      if (id < f.length && f[id] != null) {
+        return f[id];
+      }
+      f = Arrays.copyOf(f, Math.max(f.length, id + 1));
+      f[id] = new ProductFeed();
+      feeds = f;
+      return f[id];
+    }
+  }
+
+  /**
+   * The sequence number, retransmission ring and latest packets of one
+   * product. Guarded by its own lock.
+   */
+  private class ProductFeed {
+
+    /**
+     * Sequence number of the last packet sent
+     */
+    long sequence;
+
+    /**
+     * The last packets sent; packet s sits at (s - 1) % history
+     */
+    final byte[][] ring = new byte[history][];
+    final int[] lengths = new int[history];
+
+    /**
+     * Latest packet, and its sequence number, of each type sent on the feed
+     * (indexed by type - 1)
+     */
+    final byte[][] latest = new byte[FeedMessage.DEPTH][];
+    final long[] latestSequence = new long[FeedMessage.DEPTH];
+
+    /**
+     * Price levels in cents and their volumes, best first, as of the depth
+     * change numbered depthSequence
+     */
+    final TreeMap<Long, Integer> buyLevels = new TreeMap<>(Collections.<Long>reverseOrder());
+    final TreeMap<Long, Integer> sellLevels = new TreeMap<>();
+    long depthSequence;
+
+    /**
+     * First and last sequence numbers of packets not sent, 0 if none
+     */
+    long unsentFrom;
+    long unsentTo;
+
+    /**
+     * Buffer the next packet is encoded into
+     */
+    final ByteBuffer scratch = ByteBuffer.allocate(FeedCodec.MAX_PACKET);
+
+    ByteBuffer begin() {
+      scratch.clear();
+      return scratch;
+    }
+
+    /**
+     * Numbers and keeps the packet just encoded into scratch and queues it
+     * for the sender; a packet that does not fit in the queue is marked
+     * unsent
+     */
+    void commit(byte type) {
+      int len = scratch.position();
+      sequence++;
+      int i = (int) ((sequence - 1) % history);
+      if (ring[i] == null) {
+        ring[i] = new byte[FeedCodec.MAX_PACKET];
+      }
+      System.arraycopy(scratch.array(), 0, ring[i], 0, len);
+      lengths[i] = len;
+      byte[] packet = Arrays.copyOf(scratch.array(), len);
+      latest[type - 1] = packet;
+      latestSequence[type - 1] = sequence;
+      if (!outgoing.offer(new Packet(this, sequence, packet))) {
+        sendFailures.incrementAndGet();
+        markUnsent(sequence, sequence);
+      }
+    }
+
+    /**
+     * Adds copies of the kept packets with sequence numbers in [from, to]
+     */
+    void kept(ArrayList<byte[]> l, long from, long to) {
+      long first = Math.max(Math.max(from, 1), sequence - history + 1);
+      long last = Math.min(to, sequence);
+      for (long s = first; s <= last; s++) {
+        int i = (int) ((s - 1) % history);
+        l.add(Arrays.copyOf(ring[i], lengths[i]));
+      }
+    }
+
+    /**
+     * Marks packets [from, to] as not sent, queueing the product for the
+     * sender to resend them
+     */
+    void markUnsent(long from, long to) {
+      if (unsentFrom == 0) {
+        unsentFrom = from;
+        unsentTo = to;
+        unsent.add(this);
+      } else {
+        unsentFrom = Math.min(unsentFrom, from);
+        unsentTo = Math.max(unsentTo, to);
+      }
+    }
+  }
+
+  /**
+   * A packet queued for the sender. The data is never changed once queued.
+   */
+  private static final class Packet {
+    final ProductFeed feed;
+    final long sequence;
+    final byte[] data;
+
+    Packet(ProductFeed f, long s, byte[] d) {
+      feed = f;
+      sequence = s;
+      data = d;
+    }
+  }
+}
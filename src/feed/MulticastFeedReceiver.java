@@ -0,0 +1,238 @@
+package feed;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import feed.exceptions.FeedException;
+
+/**
+ * Receives a MulticastFeedPublisher's packets and hands them out in sequence
+ * order for each product. When a packet arrives ahead of the expected
+ * sequence number the receiver asks the FeedRecoveryServer for the missing
+ * packets. If they are no longer kept, it takes the snapshot packets that
+ * fall in the gap instead and carries on from the packet that arrived.
+ * Duplicate and late packets are dropped.
+ *
+ * A gap closed from a snapshot may skip book depth changes; the jump shows in
+ * the depth sequence numbers, and depthSnapshot gives the levels to start
+ * again from.
+ *
+ * A receiver is meant to be used by one thread.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class MulticastFeedReceiver {
+
+  /**
+   * Socket receive buffer asked for, so bursts are not dropped by the kernel
+   */
+  private static final int RECEIVE_BUFFER = 1 << 20;
+
+  /**
+   * The receiving channel, joined to the group
+   */
+  private final DatagramChannel channel;
+
+  /**
+   * Waits for packets on the channel
+   */
+  private final Selector selector;
+
+  /**
+   * Buffer packets are received into
+   */
+  private final ByteBuffer in = ByteBuffer.allocate(FeedCodec.MAX_PACKET);
+
+  /**
+   * Client of the publisher's recovery service
+   */
+  private final FeedRecoveryClient recovery;
+
+  /**
+   * Next sequence number expected for each product
+   */
+  private final HashMap<String, Long> expected = new HashMap<>();
+
+  /**
+   * Packets ready to be handed out, in order
+   */
+  private final ArrayDeque<FeedMessage> ready = new ArrayDeque<>();
+
+  /**
+   * Counters: gaps seen, packets recovered, gaps closed from a snapshot,
+   * duplicate or late packets dropped
+   */
+  private long gaps;
+  private long recovered;
+  private long snapshots;
+  private long duplicates;
+
+  /**
+   * Joins the passed group and port on the passed interface
+   * @param groupAddress multicast group, for example "239.1.1.1"
+   * @param port port the publisher sends to
+   * @param nif interface to join on, for example the loopback interface
+   * @param recoveryAddress address of the publisher's FeedRecoveryServer
+   * @throws FeedException if the group cannot be joined
+   */
+  public MulticastFeedReceiver(String groupAddress, int port, NetworkInterface nif,
+          InetSocketAddress recoveryAddress) throws FeedException {
+    if (nif == null || recoveryAddress == null) {
+      throw new FeedException("Network interface and recovery address cannot be null.");
+    }
+    try {
+      InetAddress g = InetAddress.getByName(groupAddress);
+      channel = DatagramChannel.open(StandardProtocolFamily.INET);
+      channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER);
+      channel.bind(new InetSocketAddress(port));
+      channel.join(g, nif);
+      channel.configureBlocking(false);
+      selector = Selector.open();
+      channel.register(selector, SelectionKey.OP_READ);
+    } catch (IOException e) {
+      throw new FeedException("Cannot join the market data feed: " + e.getMessage());
+    }
+    recovery = new FeedRecoveryClient(recoveryAddress);
+  }
+
+  /**
+   * Returns the next packet, waiting up to the passed time for one
+   * @param timeoutMillis longest time to wait, in milliseconds
+   * @return the next packet in sequence order, or null if none arrived in time
+   * @throws FeedException if the channel fails or a recovery request fails
+   */
+  public FeedMessage receive(long timeoutMillis) throws FeedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    try {
+      while (ready.isEmpty()) {
+        long left = deadline - System.currentTimeMillis();
+        if (left <= 0) {
+          return null;
+        }
+        selector.select(left);
+        selector.selectedKeys().clear();
+        while (true) {
+          in.clear();
+          if (channel.receive(in) == null) {
+            break;
+          }
+          in.flip();
+          FeedMessage m;
+          try {
+            m = FeedCodec.decode(in);
+          } catch (FeedException e) {
+            continue;
+          }
+          accept(m);
+        }
+      }
+    } catch (IOException e) {
+      throw new FeedException("Market data feed receive failed: " + e.getMessage());
+    }
+    return ready.poll();
+  }
+
+  /**
+   * Puts a packet in order, recovering any gap in front of it
+   */
+  private void accept(FeedMessage m) throws FeedException {
+    Long e = expected.get(m.getProduct());
+    long next = e == null ? 1 : e;
+    if (m.getSequence() < next) {
+      duplicates++;
+      return;
+    }
+    if (m.getSequence() > next) {
+      gaps++;
+      recover(m.getProduct(), next, m.getSequence() - 1);
+    }
+    deliver(m);
+  }
+
+  /**
+   * Fills the gap [from, to] of a product from the recovery service
+   */
+  private void recover(String product, long from, long to) throws FeedException {
+    ArrayList<FeedMessage> l = recovery.retransmit(product, from, to);
+    if (l.isEmpty() || l.get(0).getSequence() != from) {
+      snapshots++;
+      l = recovery.snapshot(product);
+    }
+    for (FeedMessage m : l) {
+      if (m.getSequence() >= from && m.getSequence() <= to) {
+        recovered++;
+        deliver(m);
+      }
+    }
+  }
+
+  /**
+   * Asks the recovery service for the price levels of a product. DEPTH
+   * packets with a depth sequence number up to the snapshot's are already
+   * included in it.
+   * @param product stock symbol
+   * @return a DEPTH_SNAPSHOT packet followed by an ADD packet for each level
+   * @throws FeedException if the request fails
+   */
+  public ArrayList<FeedMessage> depthSnapshot(String product) throws FeedException {
+    return recovery.depthSnapshot(product);
+  }
+
+  private void deliver(FeedMessage m) {
+    ready.add(m);
+    expected.put(m.getProduct(), m.getSequence() + 1);
+  }
+
+  /**
+   * @return the number of gaps seen
+   */
+  public long getGapCount() {
+    return gaps;
+  }
+
+  /**
+   * @return the number of packets recovered through the recovery service
+   */
+  public long getRecoveredCount() {
+    return recovered;
+  }
+
+  /**
+   * @return the number of gaps closed from a snapshot because the missing
+   * packets were no longer kept
+   */
+  public long getSnapshotCount() {
+    return snapshots;
+  }
+
+  /**
+   * @return the number of duplicate or late packets dropped
+   */
+  public long getDuplicateCount() {
+    return duplicates;
+  }
+
+  /**
+   * Leaves the group and closes the channel
+   */
+  public void close() {
+    try {
+      selector.close();
+      channel.close();
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package feed.exceptions;
+
+/**
+ * The exception class dealing with exceptions which occur in the multicast
+ * market data feed.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class FeedException extends Exception {
+
+  public FeedException(String msg) {
+    super(msg);
+  }
+}
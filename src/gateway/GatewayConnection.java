@@ -0,0 +1,209 @@
+package gateway;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One client connection to a GatewayServer. The server's selector thread
+ * reads the connection and runs its requests; subclasses decode the
+ * protocol.
+ *
+ * Outgoing messages are encoded into a buffer by whichever thread produces
+ * them, then written out by the selector thread. A client that stops reading
+ * until more than the maximum pending bytes are waiting is disconnected.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+abstract class GatewayConnection {
+
+  /**
+   * Initial size of the outgoing buffer
+   */
+  private static final int INITIAL_OUT = 8 * 1024;
+
+  /**
+   * The server that owns the connection
+   */
+  private final GatewayServer server;
+
+  /**
+   * The client connection
+   */
+  protected final SocketChannel channel;
+
+  /**
+   * The connection's key with the server's selector
+   */
+  private SelectionKey key;
+
+  /**
+   * Messages waiting to be written, guarded by this connection's lock
+   */
+  private ByteBuffer out = ByteBuffer.allocate(INITIAL_OUT);
+
+  /**
+   * Most bytes allowed to wait in the outgoing buffer
+   */
+  private final int maxPending;
+
+  /**
+   * True while the connection is queued for the selector thread to flush
+   */
+  private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+  /**
+   * Set when the outgoing buffer overflowed; the connection is then closed
+   */
+  private volatile boolean overflowed;
+
+  /**
+   * Set when the connection should be closed once what is queued for it is
+   * written
+   */
+  private volatile boolean closeRequested;
+
+  /**
+   * Set once the connection is closed
+   */
+  private volatile boolean closed;
+
+  GatewayConnection(GatewayServer server, SocketChannel channel, int maxPending) {
+    this.server = server;
+    this.channel = channel;
+    this.maxPending = maxPending;
+  }
+
+  void setKey(SelectionKey k) {
+    key = k;
+  }
+
+  /**
+   * Reads what the connection has and runs every complete request. Called by
+   * the selector thread only.
+   * @return false if the client closed the connection or broke the protocol
+   * @throws IOException if the read fails
+   */
+  abstract boolean read() throws IOException;
+
+  /**
+   * Logs the client out when the connection closes. Called by the selector
+   * thread only.
+   */
+  abstract void closing();
+
+  /**
+   * Called by the selector thread about once a second, for timers such as
+   * heartbeats
+   * @param now the current time in milliseconds
+   */
+  void tick(long now) {}
+
+  /**
+   * Writes as much of the outgoing buffer as the connection takes. Called by
+   * the selector thread only.
+   * @throws IOException if the write fails
+   */
+  void flush() throws IOException {
+    flushQueued.set(false);
+    if (closed) {
+      return;
+    }
+    synchronized (this) {
+      out.flip();
+      try {
+        channel.write(out);
+      } finally {
+        out.compact();
+      }
+      if (key != null && key.isValid()) {
+        key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                : SelectionKey.OP_READ);
+      }
+    }
+  }
+
+  /**
+   * @return true if the client let too many bytes pile up
+   */
+  boolean isOverflowed() {
+    return overflowed;
+  }
+
+  /**
+   * @return true if the connection asked to be closed
+   */
+  boolean isCloseRequested() {
+    return closeRequested;
+  }
+
+  /**
+   * @return true once the connection is closed
+   */
+  boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Logs the client out and closes the connection
+   */
+  void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    closing();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  /**
+   * Makes room for the passed number of bytes in the outgoing buffer. Must
+   * be called holding this connection's lock; call queued() once the bytes
+   * are written.
+   * @param size bytes about to be written
+   * @return the buffer to write into, or null if the bytes do not fit in the
+   * maximum pending bytes
+   */
+  protected ByteBuffer reserve(int size) {
+    if (closed || overflowed) {
+      return null;
+    }
+    int need = out.position() + size;
+    if (need > maxPending) {
+      overflowed = true;
+      queued();
+      return null;
+    }
+    if (need > out.capacity()) {
+      ByteBuffer b = ByteBuffer.allocate(Math.min(maxPending, Math.max(need, out.capacity() * 2)));
+      out.flip();
+      b.put(out);
+      out = b;
+    }
+    return out;
+  }
+
+  /**
+   * Asks the selector thread to write out what is queued and then close the
+   * connection. May be called from any thread.
+   */
+  protected void requestClose() {
+    closeRequested = true;
+    server.requestFlush(this);
+  }
+
+  /**
+   * Asks the selector thread to write the connection out
+   */
+  protected void queued() {
+    if (flushQueued.compareAndSet(false, true)) {
+      server.requestFlush(this);
+    }
+  }
+}
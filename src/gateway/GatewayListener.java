@@ -0,0 +1,32 @@
+package gateway;
+
+import messages.CancelMessage;
+import messages.FillMessage;
+import price.Price;
+
+/**
+ * Receives what the trading system sends a GatewayUser, so each gateway
+ * connection can encode it in its own protocol.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+interface GatewayListener {
+
+  void fill(FillMessage fm);
+
+  void cancel(CancelMessage cm);
+
+  void currentMarket(String product, Price bp, int bv, Price sp, int sv);
+
+  void lastSale(String product, Price p, int volume);
+
+  void ticker(String product, Price p, char direction);
+
+  void marketState(String state);
+
+  /**
+   * Called when the trading system disconnected the user on its own, after
+   * dropping the user's subscriptions; the connection should be closed.
+   */
+  void disconnected(String reason);
+}
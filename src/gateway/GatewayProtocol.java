@@ -0,0 +1,185 @@
+package gateway;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import constants.global.BookSide;
+import gateway.exceptions.GatewayException;
+import price.Price;
+import price.PriceFactory;
+import price.exceptions.InvalidPriceOperation;
+
+/**
+ * The binary protocol spoken by the OrderGateway. Every message is a frame:
+ * an int body length followed by the body. All values are big-endian;
+ * strings are a short byte count followed by UTF-8 bytes; prices are longs in
+ * cents, with MARKET_PRICE for a market price; sides are BUY_SIDE or
+ * SELL_SIDE.
+ *
+ * <pre>
+ * client to gateway, body = byte type, int request id, then:
+ *   LOGON          string user name
+ *   ORDER          string product, long price, int volume, byte side
+ *   ORDER_CANCEL   string product, byte side, string order id
+ *   QUOTE          string product, long buy price, int buy volume,
+ *                  long sell price, int sell volume
+ *   QUOTE_CANCEL   string product
+ *   SUBSCRIBE      byte topic, string product (empty for ALL_MESSAGES)
+ *   LOGOUT         nothing
+ *
+ * gateway to client, body = byte type, then:
+ *   ACK            int request id, byte result, string text
+ *   FILL, CANCEL   string product, long price, int volume, byte side,
+ *                  string details, string id
+ *   CURRENT_MARKET string product, long buy price, int buy volume,
+ *                  long sell price, int sell volume
+ *   LAST_SALE      string product, long price, int volume
+ *   TICKER         string product, long price, char direction
+ *   MARKET_STATE   string state
+ * </pre>
+ *
+ * An ACK answers every request, in the order the requests were sent, so a
+ * client may pipeline requests. Its result is the CommandResult's fixed
+ * code (CommandResult.getCode), or ERROR with the reason in the text. The
+ * text of an accepted ORDER is the order id; of an accepted LOGON, the
+ * connection id. Fills and market data caused by a request may arrive
+ * before its ACK.
+ * An ERROR ACK for request 0 reports a problem not tied to a request; if
+ * the trading system disconnected the user, the gateway then closes the
+ * connection.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public final class GatewayProtocol {
+
+  /**
+   * Request types
+   */
+  public static final byte LOGON = 1;
+  public static final byte ORDER = 2;
+  public static final byte ORDER_CANCEL = 3;
+  public static final byte QUOTE = 4;
+  public static final byte QUOTE_CANCEL = 5;
+  public static final byte SUBSCRIBE = 6;
+  public static final byte LOGOUT = 7;
+
+  /**
+   * Message types sent by the gateway
+   */
+  public static final byte ACK = 64;
+  public static final byte FILL = 65;
+  public static final byte CANCEL = 66;
+  public static final byte CURRENT_MARKET = 67;
+  public static final byte LAST_SALE = 68;
+  public static final byte TICKER = 69;
+  public static final byte MARKET_STATE = 70;
+
+  /**
+   * Subscription topics
+   */
+  public static final byte TOPIC_CURRENT_MARKET = 1;
+  public static final byte TOPIC_LAST_SALE = 2;
+  public static final byte TOPIC_TICKER = 3;
+  public static final byte TOPIC_MESSAGES = 4;
+  public static final byte TOPIC_ALL_MESSAGES = 5;
+
+  /**
+   * ACK result for requests that failed with an exception rather than a
+   * CommandResult
+   */
+  public static final byte ERROR = 127;
+
+  /**
+   * Side codes
+   */
+  public static final byte BUY_SIDE = 0;
+  public static final byte SELL_SIDE = 1;
+
+  /**
+   * Price value standing for a market price
+   */
+  public static final long MARKET_PRICE = Long.MIN_VALUE;
+
+  /**
+   * Largest frame body either side may send
+   */
+  public static final int MAX_FRAME = 64 * 1024;
+
+  private GatewayProtocol() {}
+
+  /**
+   * Writes a string as a short byte count and UTF-8 bytes
+   * @param out the buffer
+   * @param s the string; null is written as empty
+   */
+  public static void putString(ByteBuffer out, String s) {
+    byte[] b = s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    out.putShort((short) b.length);
+    out.put(b);
+  }
+
+  /**
+   * Reads a string written by putString
+   * @param in the buffer
+   * @return the string
+   * @throws GatewayException if the string runs past the buffer
+   */
+  public static String getString(ByteBuffer in) throws GatewayException {
+    if (in.remaining() < 2) {
+      throw new GatewayException("Truncated message.");
+    }
+    int n = in.getShort() & 0xFFFF;
+    if (in.remaining() < n) {
+      throw new GatewayException("Truncated message.");
+    }
+    String s = new String(in.array(), in.arrayOffset() + in.position(), n, StandardCharsets.UTF_8);
+    in.position(in.position() + n);
+    return s;
+  }
+
+  /**
+   * @return the number of bytes putString writes for the string
+   */
+  public static int sizeOf(String s) {
+    return 2 + (s == null ? 0 : s.getBytes(StandardCharsets.UTF_8).length);
+  }
+
+  /**
+   * @return the wire value of a price
+   */
+  public static long cents(Price p) {
+    if (p == null) {
+      return 0;
+    }
+    return p.isMarket() ? MARKET_PRICE : p.getCents();
+  }
+
+  /**
+   * @return the Price for a wire value
+   * @throws InvalidPriceOperation
+   */
+  public static Price price(long cents) throws InvalidPriceOperation {
+    return cents == MARKET_PRICE ? PriceFactory.makeMarketPrice() : PriceFactory.makeLimitPrice(cents);
+  }
+
+  /**
+   * @return the wire value of a side
+   */
+  public static byte side(BookSide s) {
+    return s == BookSide.BUY ? BUY_SIDE : SELL_SIDE;
+  }
+
+  /**
+   * @return the side for a wire value
+   * @throws GatewayException if the value is not a side
+   */
+  public static BookSide side(byte b) throws GatewayException {
+    if (b == BUY_SIDE) {
+      return BookSide.BUY;
+    }
+    if (b == SELL_SIDE) {
+      return BookSide.SELL;
+    }
+    throw new GatewayException("Invalid side: " + b);
+  }
+}
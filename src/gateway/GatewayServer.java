@@ -0,0 +1,241 @@
+package gateway;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import gateway.exceptions.GatewayException;
+
+/**
+ * The TCP server behind the order-entry gateways. One selector thread serves
+ * every connection: it runs each request as soon as it is complete, and
+ * writes out what other threads queued for its connections, so no thread is
+ * held per connection. Subclasses decide which protocol a new connection
+ * speaks.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public abstract class GatewayServer implements Runnable {
+
+  /**
+   * Default most bytes allowed to wait for a slow client
+   */
+  public static final int DEFAULT_MAX_PENDING = 4 * 1024 * 1024;
+
+  /**
+   * Longest the selector waits before calling the connections' timers
+   */
+  private static final long TICK = 1000;
+
+  /**
+   * The listening channel
+   */
+  private final ServerSocketChannel server;
+
+  /**
+   * Selector for the listening channel and every connection
+   */
+  private final Selector selector;
+
+  /**
+   * Most bytes allowed to wait for each connection
+   */
+  protected final int maxPending;
+
+  /**
+   * Connections with messages waiting to be written
+   */
+  private final ConcurrentLinkedQueue<GatewayConnection> dirty = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Open connections, used by the selector thread only
+   */
+  private final ArrayList<GatewayConnection> connections = new ArrayList<>();
+
+  /**
+   * The selector thread
+   */
+  private Thread thread;
+
+  /**
+   * False once the server is closed
+   */
+  private volatile boolean running = true;
+
+  /**
+   * Binds the passed address. Subclasses call start() once constructed.
+   * @param address address to listen on; port 0 picks a free port
+   * @param maxPendingBytes most bytes allowed to wait for a slow client
+   * before it is disconnected
+   * @param minPending smallest max pending bytes the protocol can work with
+   * @throws GatewayException if the address cannot be bound
+   */
+  protected GatewayServer(InetSocketAddress address, int maxPendingBytes, int minPending)
+          throws GatewayException {
+    if (address == null) {
+      throw new GatewayException("Address cannot be null.");
+    }
+    if (maxPendingBytes < minPending) {
+      throw new GatewayException("Max pending bytes must be at least " + minPending);
+    }
+    maxPending = maxPendingBytes;
+    try {
+      selector = Selector.open();
+      server = ServerSocketChannel.open();
+      server.bind(address);
+      server.configureBlocking(false);
+      server.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      throw new GatewayException("Cannot open the order gateway: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Starts the selector thread
+   * @param name name of the thread
+   */
+  protected void start(String name) {
+    thread = new Thread(this, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Creates the connection for a newly accepted client
+   * @param c the client's channel, already non-blocking
+   * @return the connection
+   */
+  abstract GatewayConnection newConnection(SocketChannel c);
+
+  /**
+   * @return the address the gateway listens on
+   * @throws GatewayException if the gateway is closed
+   */
+  public InetSocketAddress getAddress() throws GatewayException {
+    try {
+      return (InetSocketAddress) server.getLocalAddress();
+    } catch (IOException e) {
+      throw new GatewayException("Order gateway is closed.");
+    }
+  }
+
+  /**
+   * Stops the selector thread, logging out and closing every connection
+   */
+  public void close() {
+    running = false;
+    selector.wakeup();
+    try {
+      thread.join(5000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Queues a connection for the selector thread to write out
+   * @param c the connection
+   */
+  void requestFlush(GatewayConnection c) {
+    dirty.add(c);
+    if (Thread.currentThread() != thread) {
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * The selector loop
+   */
+  public void run() {
+    long lastTick = System.currentTimeMillis();
+    try {
+      while (running) {
+        selector.select(TICK);
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          SelectionKey k = it.next();
+          it.remove();
+          if (!k.isValid()) {
+            continue;
+          }
+          if (k.isAcceptable()) {
+            accept();
+            continue;
+          }
+          GatewayConnection c = (GatewayConnection) k.attachment();
+          try {
+            if (k.isReadable() && !c.read()) {
+              end(c);
+              continue;
+            }
+            if (k.isValid() && k.isWritable()) {
+              c.flush();
+            }
+          } catch (IOException e) {
+            end(c);
+          }
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastTick >= TICK) {
+          lastTick = now;
+          for (GatewayConnection c : new ArrayList<>(connections)) {
+            c.tick(now);
+          }
+        }
+        GatewayConnection c;
+        while ((c = dirty.poll()) != null) {
+          if (c.isOverflowed()) {
+            end(c);
+            continue;
+          }
+          try {
+            c.flush();
+            if (c.isCloseRequested()) {
+              end(c);
+            }
+          } catch (IOException e) {
+            end(c);
+          }
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("Order gateway stopped: " + e.getMessage());
+    } finally {
+      for (GatewayConnection c : new ArrayList<>(connections)) {
+        end(c);
+      }
+      try {
+        server.close();
+        selector.close();
+      } catch (IOException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Accepts a waiting client as a new connection
+   */
+  private void accept() throws IOException {
+    SocketChannel sc = server.accept();
+    if (sc == null) {
+      return;
+    }
+    sc.configureBlocking(false);
+    sc.socket().setTcpNoDelay(true);
+    GatewayConnection c = newConnection(sc);
+    c.setKey(sc.register(selector, SelectionKey.OP_READ, c));
+    connections.add(c);
+  }
+
+  private void end(GatewayConnection c) {
+    connections.remove(c);
+    c.close();
+  }
+}
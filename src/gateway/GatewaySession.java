@@ -0,0 +1,392 @@
+package gateway;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+
+import book.CommandResult;
+import client.UserCommandService;
+import constants.global.BookSide;
+import gateway.exceptions.GatewayException;
+import messages.CancelMessage;
+import messages.FillMessage;
+import price.Price;
+import tradable.Order;
+import tradable.Quote;
+
+/**
+ * One client connection to the OrderGateway, speaking the binary protocol in
+ * GatewayProtocol. Every complete request is run in the order it arrived, so
+ * a client may send many requests without waiting for their
+ * acknowledgements.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class GatewaySession extends GatewayConnection implements GatewayListener {
+
+  /**
+   * Bytes read but not yet decoded into a complete frame
+   */
+  private final ByteBuffer in = ByteBuffer.allocate(4 + GatewayProtocol.MAX_FRAME);
+
+  /**
+   * The logged on user, or null before LOGON and after LOGOUT
+   */
+  private GatewayUser user;
+
+  /**
+   * Topics and products the user subscribed to, undone at LOGOUT
+   */
+  private final ArrayList<Byte> subscribedTopics = new ArrayList<>();
+  private final ArrayList<String> subscribedProducts = new ArrayList<>();
+
+  GatewaySession(OrderGateway gateway, SocketChannel channel, int maxPending) {
+    super(gateway, channel, maxPending);
+  }
+
+  /**
+   * Reads what the connection has and runs every complete request
+   * @return false if the client closed the connection or broke the protocol
+   * @throws IOException if the read fails
+   */
+  boolean read() throws IOException {
+    if (channel.read(in) < 0) {
+      return false;
+    }
+    in.flip();
+    try {
+      while (in.remaining() >= 4) {
+        int start = in.position();
+        int len = in.getInt(start);
+        if (len <= 0 || len > GatewayProtocol.MAX_FRAME) {
+          return false;
+        }
+        if (in.remaining() < 4 + len) {
+          break;
+        }
+        ByteBuffer body = in.duplicate();
+        body.limit(start + 4 + len);
+        body.position(start + 4);
+        in.position(start + 4 + len);
+        handle(body);
+      }
+    } finally {
+      in.compact();
+    }
+    return !isClosed();
+  }
+
+  /**
+   * Runs one request and acknowledges it
+   */
+  private void handle(ByteBuffer body) {
+    if (body.remaining() < 5) {
+      sendAck(0, GatewayProtocol.ERROR, "Truncated message.");
+      return;
+    }
+    byte type = body.get();
+    int requestId = body.getInt();
+    try {
+      switch (type) {
+        case GatewayProtocol.LOGON:
+          logon(requestId, GatewayProtocol.getString(body));
+          return;
+        case GatewayProtocol.LOGOUT:
+          logout();
+          sendAck(requestId, CommandResult.OK, "");
+          return;
+        default:
+          break;
+      }
+      if (user == null) {
+        sendAck(requestId, CommandResult.NOT_CONNECTED, CommandResult.NOT_CONNECTED.getMessage());
+        return;
+      }
+      UserCommandService ucs = UserCommandService.getInstance();
+      String name = user.getUserName();
+      long connId = user.connectionId();
+      CommandResult r;
+      switch (type) {
+        case GatewayProtocol.ORDER: {
+          String product = GatewayProtocol.getString(body);
+          need(body, 13);
+          Price p = GatewayProtocol.price(body.getLong());
+          int volume = body.getInt();
+          BookSide side = GatewayProtocol.side(body.get());
+          Order o = new Order(name, product, p, volume, side);
+          r = ucs.trySubmitOrder(name, connId, o);
+          sendAck(requestId, r, r.isOk() ? o.getId() : r.getMessage());
+          return;
+        }
+        case GatewayProtocol.ORDER_CANCEL: {
+          String product = GatewayProtocol.getString(body);
+          need(body, 1);
+          BookSide side = GatewayProtocol.side(body.get());
+          String orderId = GatewayProtocol.getString(body);
+          r = ucs.trySubmitOrderCancel(name, connId, product, side, orderId);
+          break;
+        }
+        case GatewayProtocol.QUOTE: {
+          String product = GatewayProtocol.getString(body);
+          need(body, 24);
+          Price bp = GatewayProtocol.price(body.getLong());
+          int bv = body.getInt();
+          Price sp = GatewayProtocol.price(body.getLong());
+          int sv = body.getInt();
+          r = ucs.trySubmitQuote(name, connId, new Quote(name, product, bp, bv, sp, sv));
+          break;
+        }
+        case GatewayProtocol.QUOTE_CANCEL:
+          r = ucs.trySubmitQuoteCancel(name, connId, GatewayProtocol.getString(body));
+          break;
+        case GatewayProtocol.SUBSCRIBE: {
+          need(body, 1);
+          byte topic = body.get();
+          String product = GatewayProtocol.getString(body);
+          subscribe(topic, product, true);
+          subscribedTopics.add(topic);
+          subscribedProducts.add(product);
+          r = CommandResult.OK;
+          break;
+        }
+        default:
+          throw new GatewayException("Unknown request type: " + type);
+      }
+      sendAck(requestId, r, r.isOk() ? "" : r.getMessage());
+    } catch (Exception e) {
+      sendAck(requestId, GatewayProtocol.ERROR, e.getMessage());
+    }
+  }
+
+  /**
+   * Connects a new GatewayUser for the session
+   */
+  private void logon(int requestId, String userName) throws Exception {
+    if (user != null) {
+      throw new GatewayException("Session is already logged on as " + user.getUserName());
+    }
+    GatewayUser u = new GatewayUser(userName, this);
+    u.connect();
+    user = u;
+    sendAck(requestId, CommandResult.OK, Long.toString(u.connectionId()));
+  }
+
+  /**
+   * Undoes the user's subscriptions and disconnects it. Does nothing if no
+   * user is logged on.
+   */
+  void closing() {
+    logout();
+  }
+
+  private void logout() {
+    if (user == null) {
+      return;
+    }
+    if (user.isDropped()) {
+      subscribedTopics.clear();
+      subscribedProducts.clear();
+      user = null;
+      return;
+    }
+    for (int i = 0; i < subscribedTopics.size(); i++) {
+      try {
+        subscribe(subscribedTopics.get(i), subscribedProducts.get(i), false);
+      } catch (Exception e) {
+        System.out.println(e.getMessage());
+      }
+    }
+    subscribedTopics.clear();
+    subscribedProducts.clear();
+    try {
+      user.disConnect();
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
+    }
+    user = null;
+  }
+
+  /**
+   * Subscribes the user to, or unsubscribes it from, a topic
+   */
+  private void subscribe(byte topic, String product, boolean on) throws Exception {
+    UserCommandService ucs = UserCommandService.getInstance();
+    String name = user.getUserName();
+    long connId = user.connectionId();
+    switch (topic) {
+      case GatewayProtocol.TOPIC_CURRENT_MARKET:
+        if (on) {
+          ucs.subscribeCurrentMarket(name, connId, product);
+        } else {
+          ucs.unSubscribeCurrentMarket(name, connId, product);
+        }
+        break;
+      case GatewayProtocol.TOPIC_LAST_SALE:
+        if (on) {
+          ucs.subscribeLastSale(name, connId, product);
+        } else {
+          ucs.unSubscribeLastSale(name, connId, product);
+        }
+        break;
+      case GatewayProtocol.TOPIC_TICKER:
+        if (on) {
+          ucs.subscribeTicker(name, connId, product);
+        } else {
+          ucs.unSubscribeTicker(name, connId, product);
+        }
+        break;
+      case GatewayProtocol.TOPIC_MESSAGES:
+        if (on) {
+          ucs.subscribeMessages(name, connId, product);
+        } else {
+          ucs.unSubscribeMessages(name, connId, product);
+        }
+        break;
+      case GatewayProtocol.TOPIC_ALL_MESSAGES:
+        if (on) {
+          ucs.subscribeAllMessages(name, connId);
+        } else {
+          ucs.unSubscribeAllMessages(name, connId);
+        }
+        break;
+      default:
+        throw new GatewayException("Unknown subscription topic: " + topic);
+    }
+  }
+
+  private static void need(ByteBuffer body, int n) throws GatewayException {
+    if (body.remaining() < n) {
+      throw new GatewayException("Truncated message.");
+    }
+  }
+
+  /**
+   * Makes room for a frame with the passed body size and writes its length.
+   * Must be called holding this session's lock.
+   * @return the buffer to write the body into, or null if the frame does not
+   * fit in the maximum pending bytes
+   */
+  private ByteBuffer frame(int bodySize) {
+    ByteBuffer b = reserve(4 + bodySize);
+    if (b != null) {
+      b.putInt(bodySize);
+    }
+    return b;
+  }
+
+  private void sendAck(int requestId, CommandResult r, String text) {
+    sendAck(requestId, (byte) r.getCode(), text);
+  }
+
+  private void sendAck(int requestId, byte result, String text) {
+    synchronized (this) {
+      ByteBuffer b = frame(1 + 4 + 1 + GatewayProtocol.sizeOf(text));
+      if (b == null) {
+        return;
+      }
+      b.put(GatewayProtocol.ACK);
+      b.putInt(requestId);
+      b.put(result);
+      GatewayProtocol.putString(b, text);
+    }
+    queued();
+  }
+
+  public void fill(FillMessage fm) {
+    sendTradeMessage(GatewayProtocol.FILL, fm.getProduct(), fm.getPrice(), fm.getVolume(), fm.getSide(),
+            fm.getDetails(), fm.getID());
+  }
+
+  public void cancel(CancelMessage cm) {
+    sendTradeMessage(GatewayProtocol.CANCEL, cm.getProduct(), cm.getPrice(), cm.getVolume(), cm.getSide(),
+            cm.getDetails(), cm.getID());
+  }
+
+  /**
+   * Sends a FILL or CANCEL frame
+   */
+  private void sendTradeMessage(byte type, String product, Price p, int volume, BookSide side, String details,
+          String id) {
+    synchronized (this) {
+      ByteBuffer b = frame(1 + GatewayProtocol.sizeOf(product) + 13 + GatewayProtocol.sizeOf(details)
+              + GatewayProtocol.sizeOf(id));
+      if (b == null) {
+        return;
+      }
+      b.put(type);
+      GatewayProtocol.putString(b, product);
+      b.putLong(GatewayProtocol.cents(p));
+      b.putInt(volume);
+      b.put(GatewayProtocol.side(side));
+      GatewayProtocol.putString(b, details);
+      GatewayProtocol.putString(b, id);
+    }
+    queued();
+  }
+
+  public void currentMarket(String product, Price bp, int bv, Price sp, int sv) {
+    synchronized (this) {
+      ByteBuffer b = frame(1 + GatewayProtocol.sizeOf(product) + 24);
+      if (b == null) {
+        return;
+      }
+      b.put(GatewayProtocol.CURRENT_MARKET);
+      GatewayProtocol.putString(b, product);
+      b.putLong(GatewayProtocol.cents(bp));
+      b.putInt(bv);
+      b.putLong(GatewayProtocol.cents(sp));
+      b.putInt(sv);
+    }
+    queued();
+  }
+
+  public void lastSale(String product, Price p, int volume) {
+    synchronized (this) {
+      ByteBuffer b = frame(1 + GatewayProtocol.sizeOf(product) + 12);
+      if (b == null) {
+        return;
+      }
+      b.put(GatewayProtocol.LAST_SALE);
+      GatewayProtocol.putString(b, product);
+      b.putLong(GatewayProtocol.cents(p));
+      b.putInt(volume);
+    }
+    queued();
+  }
+
+  public void ticker(String product, Price p, char direction) {
+    synchronized (this) {
+      ByteBuffer b = frame(1 + GatewayProtocol.sizeOf(product) + 10);
+      if (b == null) {
+        return;
+      }
+      b.put(GatewayProtocol.TICKER);
+      GatewayProtocol.putString(b, product);
+      b.putLong(GatewayProtocol.cents(p));
+      b.putChar(direction);
+    }
+    queued();
+  }
+
+  public void marketState(String state) {
+    synchronized (this) {
+      ByteBuffer b = frame(1 + GatewayProtocol.sizeOf(state));
+      if (b == null) {
+        return;
+      }
+      b.put(GatewayProtocol.MARKET_STATE);
+      GatewayProtocol.putString(b, state);
+    }
+    queued();
+  }
+
+  /**
+   * Tells the client why the trading system disconnected its user, with an
+   * ERROR ACK for request 0, and closes the connection once that is written
+   */
+  public void disconnected(String reason) {
+    sendAck(0, GatewayProtocol.ERROR, reason);
+    requestClose();
+  }
+}
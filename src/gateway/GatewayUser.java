@@ -0,0 +1,84 @@
+package gateway;
+
+import client.UserImpl;
+import client.exceptions.UserException;
+import messages.CancelMessage;
+import messages.FillMessage;
+import price.Price;
+import price.exceptions.InvalidPriceOperation;
+
+/**
+ * The User an order-entry gateway connects to the trading system for each
+ * logged on connection. Instead of updating a market display, everything the trading
+ * system sends the user is handed to the connection's GatewayListener.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class GatewayUser extends UserImpl {
+
+  /**
+   * The listener the user's messages are sent to
+   */
+  private final GatewayListener listener;
+
+  GatewayUser(String userName, GatewayListener listener) throws UserException, InvalidPriceOperation {
+    super(userName);
+    this.listener = listener;
+  }
+
+  /**
+   * Set once the trading system disconnected the user on its own
+   */
+  private volatile boolean dropped;
+
+  /**
+   * @return the connection id the UserCommandService gave this user
+   */
+  long connectionId() {
+    return getConnectionId();
+  }
+
+  /**
+   * @return true if the trading system already disconnected the user and
+   * dropped its subscriptions
+   */
+  boolean isDropped() {
+    return dropped;
+  }
+
+  @Override
+  public void acceptLastSale(String product, Price price, int volume) {
+    listener.lastSale(product, price, volume);
+  }
+
+  @Override
+  public void acceptMessage(FillMessage fm) {
+    listener.fill(fm);
+  }
+
+  @Override
+  public void acceptMessage(CancelMessage cm) {
+    listener.cancel(cm);
+  }
+
+  @Override
+  public void acceptMarketMessage(String message) {
+    listener.marketState(message);
+  }
+
+  @Override
+  public void acceptTicker(String product, Price price, char direction) {
+    listener.ticker(product, price, direction);
+  }
+
+  @Override
+  public void acceptCurrentMarket(String product, Price bPrice, int bVolume, Price sPrice, int sVolume) {
+    listener.currentMarket(product, bPrice, bVolume, sPrice, sVolume);
+  }
+
+  @Override
+  public void acceptDisconnect(String reason) {
+    dropped = true;
+    listener.disconnected(reason);
+  }
+}
@@ -0,0 +1,43 @@
+package gateway;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+import gateway.exceptions.GatewayException;
+
+/**
+ * A TCP order-entry gateway in front of the UserCommandService. Clients log
+ * on, enter and cancel orders and quotes, and subscribe to market data using
+ * the binary frames described in GatewayProtocol; fills, cancels and market
+ * data are streamed back on the same connection.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class OrderGateway extends GatewayServer {
+
+  /**
+   * Opens a gateway listening on the passed address and starts its selector
+   * thread
+   * @param address address to listen on; port 0 picks a free port
+   * @param maxPendingBytes most bytes allowed to wait for a slow client
+   * before it is disconnected
+   * @throws GatewayException if the address cannot be bound
+   */
+  public OrderGateway(InetSocketAddress address, int maxPendingBytes) throws GatewayException {
+    super(address, maxPendingBytes, 4 + GatewayProtocol.MAX_FRAME);
+    start("OrderGateway");
+  }
+
+  /**
+   * Opens a gateway with the default max pending bytes
+   * @param address address to listen on; port 0 picks a free port
+   * @throws GatewayException if the address cannot be bound
+   */
+  public OrderGateway(InetSocketAddress address) throws GatewayException {
+    this(address, DEFAULT_MAX_PENDING);
+  }
+
+  GatewayConnection newConnection(SocketChannel c) {
+    return new GatewaySession(this, c, maxPending);
+  }
+}
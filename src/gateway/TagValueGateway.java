@@ -0,0 +1,180 @@
+package gateway;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import gateway.exceptions.GatewayException;
+
+/**
+ * A TCP order-entry gateway speaking the FIX-style tag=value protocol in
+ * TagValueProtocol. Clients log on with their SenderCompID, then enter
+ * orders, cancels, quotes and mass cancels; fills and cancels come back as
+ * execution reports.
+ *
+ * Each SenderCompID has its own session sequence numbers, kept across
+ * reconnects along with the last application messages sent, so a client can
+ * ask for anything it missed to be resent. Logons are not authenticated, so
+ * only a bounded number of sessions is kept: when a new SenderCompID logs on
+ * at the limit, the logged off session claimed least recently is
+ * forgotten, and if every session is logged on the logon is refused.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class TagValueGateway extends GatewayServer {
+
+  /**
+   * Default number of application messages kept per session for resending
+   */
+  public static final int DEFAULT_STORE_SIZE = 8192;
+
+  /**
+   * Default number of sessions kept
+   */
+  public static final int DEFAULT_MAX_SESSIONS = 256;
+
+  /**
+   * The gateway's own CompID, sent as SenderCompID and expected as
+   * TargetCompID
+   */
+  private final byte[] compId;
+
+  /**
+   * Messages kept per session for resending
+   */
+  private final int storeSize;
+
+  /**
+   * Most sessions kept
+   */
+  private final int maxSessions;
+
+  /**
+   * Session state by client SenderCompID, least recently claimed first
+   */
+  private final LinkedHashMap<String, TagValueSessionStore> stores = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Opens a gateway listening on the passed address and starts its selector
+   * thread
+   * @param address address to listen on; port 0 picks a free port
+   * @param gatewayCompId the gateway's CompID
+   * @param maxPendingBytes most bytes allowed to wait for a slow client
+   * before it is disconnected
+   * @param storeSize application messages kept per session for resending
+   * @param maxSessions most sessions kept
+   * @throws GatewayException if the address cannot be bound or an argument
+   * is invalid
+   */
+  public TagValueGateway(InetSocketAddress address, String gatewayCompId, int maxPendingBytes, int storeSize,
+          int maxSessions) throws GatewayException {
+    super(validate(address, gatewayCompId, storeSize, maxSessions), maxPendingBytes, TagValueProtocol.MAX_MESSAGE);
+    this.compId = gatewayCompId.getBytes(StandardCharsets.US_ASCII);
+    this.storeSize = storeSize;
+    this.maxSessions = maxSessions;
+    start("TagValueGateway");
+  }
+
+  /**
+   * Opens a gateway keeping the default number of sessions
+   * @param address address to listen on; port 0 picks a free port
+   * @param gatewayCompId the gateway's CompID
+   * @param maxPendingBytes most bytes allowed to wait for a slow client
+   * before it is disconnected
+   * @param storeSize application messages kept per session for resending
+   * @throws GatewayException if the address cannot be bound or an argument
+   * is invalid
+   */
+  public TagValueGateway(InetSocketAddress address, String gatewayCompId, int maxPendingBytes, int storeSize)
+          throws GatewayException {
+    this(address, gatewayCompId, maxPendingBytes, storeSize, DEFAULT_MAX_SESSIONS);
+  }
+
+  /**
+   * Opens a gateway with the default max pending bytes and store size
+   * @param address address to listen on; port 0 picks a free port
+   * @param gatewayCompId the gateway's CompID
+   * @throws GatewayException if the address cannot be bound
+   */
+  public TagValueGateway(InetSocketAddress address, String gatewayCompId) throws GatewayException {
+    this(address, gatewayCompId, DEFAULT_MAX_PENDING, DEFAULT_STORE_SIZE, DEFAULT_MAX_SESSIONS);
+  }
+
+  /**
+   * Checks the arguments before the address is bound
+   * @return the address
+   */
+  private static InetSocketAddress validate(InetSocketAddress address, String gatewayCompId, int storeSize,
+          int maxSessions) throws GatewayException {
+    if (gatewayCompId == null || gatewayCompId.isEmpty()) {
+      throw new GatewayException("CompID cannot be null or empty.");
+    }
+    if (storeSize <= 0) {
+      throw new GatewayException("Store size must be greater than zero.");
+    }
+    if (maxSessions <= 0) {
+      throw new GatewayException("Session count must be greater than zero.");
+    }
+    return address;
+  }
+
+  GatewayConnection newConnection(SocketChannel c) {
+    return new TagValueSession(this, c, maxPending);
+  }
+
+  /**
+   * @return the gateway's CompID
+   */
+  byte[] getCompId() {
+    return compId;
+  }
+
+  /**
+   * Hands the session state of a SenderCompID to a connection logging on.
+   * A new SenderCompID at the session limit takes the place of the logged
+   * off session claimed least recently.
+   * @param senderCompId the client's SenderCompID
+   * @return the state, or null if another connection is logged on to it or
+   * every kept session is logged on
+   */
+  synchronized TagValueSessionStore claim(String senderCompId) {
+    TagValueSessionStore s = stores.get(senderCompId);
+    if (s == null) {
+      if (stores.size() >= maxSessions && !evictIdle()) {
+        return null;
+      }
+      s = new TagValueSessionStore(storeSize);
+      stores.put(senderCompId, s);
+    }
+    if (s.active) {
+      return null;
+    }
+    s.active = true;
+    return s;
+  }
+
+  /**
+   * Gives back session state claimed by a connection that logged out
+   * @param s the state
+   */
+  synchronized void release(TagValueSessionStore s) {
+    s.active = false;
+  }
+
+  /**
+   * Forgets the logged off session claimed least recently
+   * @return false if every session is logged on
+   */
+  private boolean evictIdle() {
+    Iterator<TagValueSessionStore> it = stores.values().iterator();
+    while (it.hasNext()) {
+      if (!it.next().active) {
+        it.remove();
+        return true;
+      }
+    }
+    return false;
+  }
+}
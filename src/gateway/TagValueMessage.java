@@ -0,0 +1,309 @@
+package gateway;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import gateway.exceptions.GatewayException;
+
+/**
+ * A reusable view of one tag=value message in a ByteBuffer. Parsing records
+ * only where each field starts and ends, so numbers, prices and flags are
+ * read straight from the buffer without creating a String; getString is
+ * only used for the few fields that must become one.
+ *
+ * The view is valid until the buffer's bytes are overwritten.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+final class TagValueMessage {
+
+  /**
+   * Most fields a message may have
+   */
+  private static final int MAX_FIELDS = 128;
+
+  /**
+   * The buffer holding the message
+   */
+  private ByteBuffer buf;
+
+  /**
+   * Tag, value start and value end (exclusive) of each field, in order
+   */
+  private final int[] tags = new int[MAX_FIELDS];
+  private final int[] starts = new int[MAX_FIELDS];
+  private final int[] ends = new int[MAX_FIELDS];
+  private int count;
+
+  /**
+   * Finds the length of the message starting at the passed position
+   * @param b buffer to read, with absolute gets
+   * @param pos position of the message's first byte
+   * @param limit end of the bytes read so far
+   * @return the length of the message, or 0 if not all of it has arrived
+   * @throws GatewayException if the bytes are not a well framed message
+   */
+  static int frame(ByteBuffer b, int pos, int limit) throws GatewayException {
+    int i = pos;
+    i = expectTag(b, i, limit, TagValueProtocol.BEGIN_STRING_TAG);
+    if (i < 0) {
+      return 0;
+    }
+    while (i < limit && b.get(i) != TagValueProtocol.SOH) {
+      i++;
+    }
+    if (++i >= limit) {
+      return 0;
+    }
+    i = expectTag(b, i, limit, TagValueProtocol.BODY_LENGTH);
+    if (i < 0) {
+      return 0;
+    }
+    int bodyLength = 0;
+    while (true) {
+      if (i >= limit) {
+        return 0;
+      }
+      byte c = b.get(i++);
+      if (c == TagValueProtocol.SOH) {
+        break;
+      }
+      if (c < '0' || c > '9' || bodyLength > TagValueProtocol.MAX_MESSAGE) {
+        throw new GatewayException("Invalid BodyLength.");
+      }
+      bodyLength = bodyLength * 10 + (c - '0');
+    }
+    int total = i - pos + bodyLength + 7;
+    if (total > TagValueProtocol.MAX_MESSAGE) {
+      throw new GatewayException("Message is too long.");
+    }
+    if (pos + total > limit) {
+      return 0;
+    }
+    int t = i + bodyLength;
+    if (b.get(t) != '1' || b.get(t + 1) != '0' || b.get(t + 2) != '=' || b.get(pos + total - 1) != TagValueProtocol.SOH) {
+      throw new GatewayException("Message does not end with a CheckSum.");
+    }
+    return total;
+  }
+
+  /**
+   * Checks that the bytes at i are "tag="
+   * @return the index after '=', or -1 if more bytes are needed
+   */
+  private static int expectTag(ByteBuffer b, int i, int limit, int tag) throws GatewayException {
+    int digits = tag < 10 ? 1 : 2;
+    if (i + digits + 1 > limit) {
+      return -1;
+    }
+    int t = 0;
+    for (int n = 0; n < digits; n++) {
+      t = t * 10 + (b.get(i + n) - '0');
+    }
+    if (t != tag || b.get(i + digits) != '=') {
+      throw new GatewayException("Expected tag " + tag + ".");
+    }
+    return i + digits + 1;
+  }
+
+  /**
+   * Points the view at a framed message and checks its checksum
+   * @param b the buffer
+   * @param start position of the message
+   * @param end position after the message
+   * @throws GatewayException if a field is malformed or the checksum is wrong
+   */
+  void wrap(ByteBuffer b, int start, int end) throws GatewayException {
+    buf = b;
+    count = 0;
+    int i = start;
+    int sum = 0;
+    while (i < end) {
+      int fieldStart = i;
+      int tag = 0;
+      byte c;
+      while ((c = b.get(i++)) != '=') {
+        if (c < '0' || c > '9' || i >= end) {
+          throw new GatewayException("Invalid tag.");
+        }
+        tag = tag * 10 + (c - '0');
+      }
+      int vs = i;
+      while (b.get(i) != TagValueProtocol.SOH) {
+        i++;
+      }
+      if (tag == TagValueProtocol.CHECKSUM) {
+        for (int n = start; n < fieldStart; n++) {
+          sum += b.get(n) & 0xFF;
+        }
+        if (parseLong(vs, i) != (sum & 0xFF)) {
+          throw new GatewayException("Invalid CheckSum.");
+        }
+      }
+      if (count == MAX_FIELDS) {
+        throw new GatewayException("Too many fields.");
+      }
+      tags[count] = tag;
+      starts[count] = vs;
+      ends[count] = i;
+      count++;
+      i++;
+    }
+  }
+
+  /**
+   * @return the index of the first field with the tag, or -1
+   */
+  private int indexOf(int tag) {
+    for (int i = 0; i < count; i++) {
+      if (tags[i] == tag) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return true if the message has the tag
+   */
+  boolean has(int tag) {
+    return indexOf(tag) >= 0;
+  }
+
+  /**
+   * @return the first character of the MsgType
+   */
+  char getMsgType() {
+    int i = indexOf(TagValueProtocol.MSG_TYPE);
+    return i < 0 || starts[i] == ends[i] ? 0 : (char) buf.get(starts[i]);
+  }
+
+  /**
+   * @return the first character of the field, or the default if missing
+   */
+  char getChar(int tag, char def) {
+    int i = indexOf(tag);
+    return i < 0 || starts[i] == ends[i] ? def : (char) buf.get(starts[i]);
+  }
+
+  /**
+   * @return the integer value of the field
+   * @throws GatewayException if the field is missing or not a number
+   */
+  long getLong(int tag) throws GatewayException {
+    int i = indexOf(tag);
+    if (i < 0) {
+      throw new GatewayException("Required tag missing: " + tag);
+    }
+    long v = parseLong(starts[i], ends[i]);
+    if (v < 0) {
+      throw new GatewayException("Incorrect value for tag " + tag);
+    }
+    return v;
+  }
+
+  /**
+   * @return the integer value of the field, or the default if missing
+   * @throws GatewayException if the field is not a number
+   */
+  long getLong(int tag, long def) throws GatewayException {
+    return has(tag) ? getLong(tag) : def;
+  }
+
+  /**
+   * @return the non-negative number in [s, e), or -1 if it is not one
+   */
+  private long parseLong(int s, int e) {
+    if (s == e || e - s > 18) {
+      return -1;
+    }
+    long v = 0;
+    for (int i = s; i < e; i++) {
+      byte c = buf.get(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      v = v * 10 + (c - '0');
+    }
+    return v;
+  }
+
+  /**
+   * Reads a price with at most two decimal places as cents
+   * @return the price in cents
+   * @throws GatewayException if the field is missing or not such a price
+   */
+  long getCents(int tag) throws GatewayException {
+    int i = indexOf(tag);
+    if (i < 0) {
+      throw new GatewayException("Required tag missing: " + tag);
+    }
+    int s = starts[i];
+    int e = ends[i];
+    boolean negative = s < e && buf.get(s) == '-';
+    if (negative) {
+      s++;
+    }
+    long units = 0;
+    long cents = 0;
+    int places = -1;
+    if (s == e || e - s > 18) {
+      throw new GatewayException("Incorrect value for tag " + tag);
+    }
+    for (int n = s; n < e; n++) {
+      byte c = buf.get(n);
+      if (c == '.' && places < 0) {
+        places = 0;
+      } else if (c >= '0' && c <= '9') {
+        if (places < 0) {
+          units = units * 10 + (c - '0');
+        } else if (places < 2) {
+          cents = cents * 10 + (c - '0');
+          places++;
+        } else if (c != '0') {
+          throw new GatewayException("Price has more than two decimal places: tag " + tag);
+        }
+      } else {
+        throw new GatewayException("Incorrect value for tag " + tag);
+      }
+    }
+    if (places == 1) {
+      cents *= 10;
+    }
+    long v = units * 100 + cents;
+    return negative ? -v : v;
+  }
+
+  /**
+   * @return true if the field's bytes equal the passed bytes
+   */
+  boolean equals(int tag, byte[] value) {
+    int i = indexOf(tag);
+    if (i < 0 || ends[i] - starts[i] != value.length) {
+      return false;
+    }
+    for (int n = 0; n < value.length; n++) {
+      if (buf.get(starts[i] + n) != value[n]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Creates a String from the field
+   * @return the value
+   * @throws GatewayException if the field is missing
+   */
+  String getString(int tag) throws GatewayException {
+    int i = indexOf(tag);
+    if (i < 0) {
+      throw new GatewayException("Required tag missing: " + tag);
+    }
+    byte[] b = new byte[ends[i] - starts[i]];
+    for (int n = 0; n < b.length; n++) {
+      b[n] = buf.get(starts[i] + n);
+    }
+    return new String(b, StandardCharsets.US_ASCII);
+  }
+}
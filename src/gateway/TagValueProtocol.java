@@ -0,0 +1,163 @@
+package gateway;
+
+/**
+ * Tags and values of the FIX-style tag=value protocol spoken by the
+ * TagValueGateway. A message is a run of tag=value fields, each ended by
+ * SOH, framed as in FIX 4.4:
+ *
+ * <pre>
+ * 8=FIX.4.4 | 9=body length | 35=type | 49=sender | 56=target | 34=seq |
+ * 52=sending time | [43=Y] | fields ... | 10=checksum |
+ * </pre>
+ *
+ * The body length counts the bytes from 35 up to 10; the checksum is the sum
+ * of every byte before 10, modulo 256, as three digits. Prices are decimals
+ * with at most two places.
+ *
+ * Supported messages from the client are Logon, Heartbeat, TestRequest,
+ * ResendRequest, SequenceReset, Logout, NewOrderSingle, OrderCancelRequest,
+ * Quote, QuoteCancel and OrderMassCancelRequest. The gateway answers with
+ * ExecutionReport, OrderCancelReject, QuoteStatusReport,
+ * OrderMassCancelReport, Reject and BusinessMessageReject, besides the
+ * session messages.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public final class TagValueProtocol {
+
+  /**
+   * Field separator
+   */
+  public static final byte SOH = 1;
+
+  /**
+   * Protocol version sent in tag 8
+   */
+  public static final String BEGIN_STRING = "FIX.4.4";
+
+  /**
+   * Longest message either side may send
+   */
+  public static final int MAX_MESSAGE = 4096;
+
+  /**
+   * Session tags
+   */
+  public static final int BEGIN_STRING_TAG = 8;
+  public static final int BODY_LENGTH = 9;
+  public static final int CHECKSUM = 10;
+  public static final int BEGIN_SEQ_NO = 7;
+  public static final int END_SEQ_NO = 16;
+  public static final int MSG_SEQ_NUM = 34;
+  public static final int MSG_TYPE = 35;
+  public static final int NEW_SEQ_NO = 36;
+  public static final int POSS_DUP_FLAG = 43;
+  public static final int REF_SEQ_NUM = 45;
+  public static final int SENDER_COMP_ID = 49;
+  public static final int SENDING_TIME = 52;
+  public static final int TARGET_COMP_ID = 56;
+  public static final int TEXT = 58;
+  public static final int ENCRYPT_METHOD = 98;
+  public static final int HEART_BT_INT = 108;
+  public static final int TEST_REQ_ID = 112;
+  public static final int GAP_FILL_FLAG = 123;
+  public static final int RESET_SEQ_NUM_FLAG = 141;
+  public static final int REF_MSG_TYPE = 372;
+  public static final int BUSINESS_REJECT_REASON = 380;
+  public static final int USERNAME = 553;
+
+  /**
+   * Application tags
+   */
+  public static final int CUM_QTY = 14;
+  public static final int CL_ORD_ID = 11;
+  public static final int EXEC_ID = 17;
+  public static final int LAST_PX = 31;
+  public static final int LAST_QTY = 32;
+  public static final int ORDER_ID = 37;
+  public static final int ORDER_QTY = 38;
+  public static final int ORD_STATUS = 39;
+  public static final int ORD_TYPE = 40;
+  public static final int ORIG_CL_ORD_ID = 41;
+  public static final int PRICE = 44;
+  public static final int SIDE = 54;
+  public static final int SYMBOL = 55;
+  public static final int CXL_REJ_REASON = 102;
+  public static final int QUOTE_ID = 117;
+  public static final int BID_PX = 132;
+  public static final int OFFER_PX = 133;
+  public static final int BID_SIZE = 134;
+  public static final int OFFER_SIZE = 135;
+  public static final int EXEC_TYPE = 150;
+  public static final int LEAVES_QTY = 151;
+  public static final int QUOTE_STATUS = 297;
+  public static final int QUOTE_CANCEL_TYPE = 298;
+  public static final int CXL_REJ_RESPONSE_TO = 434;
+  public static final int MASS_CANCEL_REQUEST_TYPE = 530;
+  public static final int MASS_CANCEL_RESPONSE = 531;
+  public static final int TOTAL_AFFECTED_ORDERS = 533;
+
+  /**
+   * Message types
+   */
+  public static final char HEARTBEAT = '0';
+  public static final char TEST_REQUEST = '1';
+  public static final char RESEND_REQUEST = '2';
+  public static final char REJECT = '3';
+  public static final char SEQUENCE_RESET = '4';
+  public static final char LOGOUT = '5';
+  public static final char EXECUTION_REPORT = '8';
+  public static final char ORDER_CANCEL_REJECT = '9';
+  public static final char LOGON = 'A';
+  public static final char NEW_ORDER_SINGLE = 'D';
+  public static final char ORDER_CANCEL_REQUEST = 'F';
+  public static final char QUOTE = 'S';
+  public static final char QUOTE_CANCEL = 'Z';
+  public static final char BUSINESS_MESSAGE_REJECT = 'j';
+  public static final char ORDER_MASS_CANCEL_REQUEST = 'q';
+  public static final char ORDER_MASS_CANCEL_REPORT = 'r';
+
+  /**
+   * QuoteStatusReport is the only two character message type used; it is
+   * written as its own string
+   */
+  public static final String QUOTE_STATUS_REPORT = "AI";
+
+  /**
+   * Side values
+   */
+  public static final char BUY = '1';
+  public static final char SELL = '2';
+
+  /**
+   * OrdType values
+   */
+  public static final char MARKET = '1';
+  public static final char LIMIT = '2';
+
+  /**
+   * ExecType and OrdStatus values
+   */
+  public static final char NEW = '0';
+  public static final char PARTIALLY_FILLED = '1';
+  public static final char FILLED = '2';
+  public static final char CANCELED = '4';
+  public static final char REJECTED = '8';
+  public static final char TRADE = 'F';
+
+  /**
+   * QuoteStatus values
+   */
+  public static final int QUOTE_ACCEPTED = 0;
+  public static final int QUOTE_REJECTED = 5;
+  public static final int QUOTE_CANCELED = 17;
+
+  /**
+   * QuoteCancelType and MassCancelRequestType values
+   */
+  public static final int CANCEL_FOR_SYMBOL = 1;
+  public static final int CANCEL_ALL_QUOTES = 4;
+  public static final int CANCEL_ALL_ORDERS = 7;
+
+  private TagValueProtocol() {}
+}
@@ -0,0 +1,1007 @@
+package gateway;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import book.CommandResult;
+import client.UserCommandService;
+import constants.global.BookSide;
+import gateway.exceptions.GatewayException;
+import messages.CancelMessage;
+import messages.FillMessage;
+import price.Price;
+import price.PriceFactory;
+import tradable.Order;
+import tradable.Quote;
+import tradable.TradableDTO;
+
+/**
+ * One client connection to the TagValueGateway. Messages are parsed in place
+ * from a direct buffer; session messages keep the sequence numbers in step,
+ * and application messages become UserCommandService calls answered with
+ * execution reports.
+ *
+ * Fills and cancels of an order or quote side are held back until its New
+ * report or quote status has been sent, whatever thread they arrive on, so a
+ * client always sees an order's New report before its fills.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class TagValueSession extends GatewayConnection implements GatewayListener {
+
+  /**
+   * Heartbeat interval used when the client does not ask for one, in seconds
+   */
+  private static final int DEFAULT_HEART_BT_INT = 30;
+
+  /**
+   * Most stock symbols remembered by the session
+   */
+  private static final int SYMBOL_CACHE = 64;
+
+  /**
+   * Longest Text sent
+   */
+  private static final int MAX_TEXT = 256;
+
+  /**
+   * The gateway that owns the session
+   */
+  private final TagValueGateway gateway;
+
+  /**
+   * Bytes read but not yet parsed into a complete message
+   */
+  private final ByteBuffer in = ByteBuffer.allocateDirect(16 * TagValueProtocol.MAX_MESSAGE);
+
+  /**
+   * View of the message being handled
+   */
+  private final TagValueMessage msg = new TagValueMessage();
+
+  /**
+   * Builds outgoing messages, under this session's lock
+   */
+  private final TagValueWriter writer = new TagValueWriter();
+
+  /**
+   * Sequence numbers and kept messages, once logged on
+   */
+  private TagValueSessionStore store;
+
+  /**
+   * The client's CompID, sent as TargetCompID
+   */
+  private byte[] target;
+
+  /**
+   * The logged on user
+   */
+  private GatewayUser user;
+
+  /**
+   * Heartbeat interval in milliseconds, and when a message was last sent
+   */
+  private long heartBtMillis;
+  private volatile long lastSent;
+
+  /**
+   * True once a ResendRequest was sent for a gap that is not yet filled
+   */
+  private boolean resendRequested;
+
+  /**
+   * Set when the client broke the session rules and must be disconnected
+   */
+  private boolean disconnect;
+
+  /**
+   * Open orders and quote sides by order id, and order ids by ClOrdID;
+   * guarded by this session's lock
+   */
+  private final HashMap<String, OrderState> orders = new HashMap<>();
+  private final HashMap<String, String> orderIds = new HashMap<>();
+
+  /**
+   * Ids of the quote sides last entered for each product
+   */
+  private final HashMap<String, String[]> quoteSides = new HashMap<>();
+
+  /**
+   * Stock symbols seen, so a repeated symbol is not decoded again
+   */
+  private final byte[][] symbolBytes = new byte[SYMBOL_CACHE][];
+  private final String[] symbols = new String[SYMBOL_CACHE];
+  private int symbolCount;
+
+  TagValueSession(TagValueGateway gateway, SocketChannel channel, int maxPending) {
+    super(gateway, channel, maxPending);
+    this.gateway = gateway;
+  }
+
+  /**
+   * What the session knows of an open order or quote side
+   */
+  private static class OrderState {
+    final String clOrdId;
+    final String product;
+    final char side;
+    final int orderQty;
+    int cumQty;
+    String cancelClOrdId;
+
+    /**
+     * True once the New report or quote status has been sent; until then
+     * fills and cancels are kept in held
+     */
+    boolean reported;
+    ArrayList<Object> held;
+
+    OrderState(String clOrdId, String product, char side, int orderQty) {
+      this.clOrdId = clOrdId;
+      this.product = product;
+      this.side = side;
+      this.orderQty = orderQty;
+    }
+  }
+
+  boolean read() throws IOException {
+    if (channel.read(in) < 0) {
+      return false;
+    }
+    in.flip();
+    try {
+      while (in.hasRemaining()) {
+        int start = in.position();
+        int len;
+        try {
+          len = TagValueMessage.frame(in, start, in.limit());
+        } catch (GatewayException e) {
+          return false;
+        }
+        if (len == 0) {
+          break;
+        }
+        in.position(start + len);
+        try {
+          msg.wrap(in, start, start + len);
+        } catch (GatewayException e) {
+          continue;
+        }
+        handle();
+        if (disconnect) {
+          flush();
+          return false;
+        }
+      }
+    } finally {
+      in.compact();
+    }
+    return !isClosed();
+  }
+
+  /**
+   * Handles the message in msg
+   */
+  private void handle() {
+    char type = msg.getMsgType();
+    long seq;
+    try {
+      seq = msg.getLong(TagValueProtocol.MSG_SEQ_NUM);
+    } catch (GatewayException e) {
+      if (store != null) {
+        sendLogout("MsgSeqNum missing");
+      }
+      disconnect = true;
+      return;
+    }
+    if (store == null) {
+      if (type == TagValueProtocol.LOGON) {
+        logon(seq);
+      } else {
+        disconnect = true;
+      }
+      return;
+    }
+    try {
+      if (type == TagValueProtocol.SEQUENCE_RESET
+              && msg.getChar(TagValueProtocol.GAP_FILL_FLAG, 'N') != 'Y') {
+        long n = msg.getLong(TagValueProtocol.NEW_SEQ_NO);
+        if (n > store.nextIncoming) {
+          store.nextIncoming = n;
+        }
+        resendRequested = false;
+        return;
+      }
+      if (!inSequence(seq)) {
+        return;
+      }
+      switch (type) {
+        case TagValueProtocol.HEARTBEAT:
+          break;
+        case TagValueProtocol.TEST_REQUEST:
+          sendHeartbeat(msg.getString(TagValueProtocol.TEST_REQ_ID));
+          break;
+        case TagValueProtocol.RESEND_REQUEST:
+          resend(msg.getLong(TagValueProtocol.BEGIN_SEQ_NO), msg.getLong(TagValueProtocol.END_SEQ_NO));
+          break;
+        case TagValueProtocol.SEQUENCE_RESET: {
+          long n = msg.getLong(TagValueProtocol.NEW_SEQ_NO);
+          if (n > store.nextIncoming) {
+            store.nextIncoming = n;
+          }
+          break;
+        }
+        case TagValueProtocol.LOGOUT:
+          sendLogout(null);
+          logout();
+          break;
+        case TagValueProtocol.LOGON:
+          sendReject(seq, "Already logged on");
+          break;
+        case TagValueProtocol.NEW_ORDER_SINGLE:
+          newOrder();
+          break;
+        case TagValueProtocol.ORDER_CANCEL_REQUEST:
+          cancelOrder();
+          break;
+        case TagValueProtocol.QUOTE:
+          quote();
+          break;
+        case TagValueProtocol.QUOTE_CANCEL:
+          cancelQuote();
+          break;
+        case TagValueProtocol.ORDER_MASS_CANCEL_REQUEST:
+          massCancel();
+          break;
+        default:
+          sendBusinessReject(seq, type, "Unsupported message type");
+          break;
+      }
+    } catch (GatewayException e) {
+      sendReject(seq, e.getMessage());
+    }
+  }
+
+  /**
+   * Checks the MsgSeqNum of an incoming message
+   * @return true if the message is the next one expected and should be
+   * handled
+   */
+  private boolean inSequence(long seq) {
+    long expected = store.nextIncoming;
+    if (seq > expected) {
+      if (!resendRequested) {
+        resendRequested = true;
+        sendResendRequest(expected);
+      }
+      return false;
+    }
+    if (seq < expected) {
+      if (msg.getChar(TagValueProtocol.POSS_DUP_FLAG, 'N') != 'Y') {
+        sendLogout("MsgSeqNum too low, expecting " + expected + " but received " + seq);
+        disconnect = true;
+      }
+      return false;
+    }
+    store.nextIncoming = seq + 1;
+    resendRequested = false;
+    return true;
+  }
+
+  /**
+   * Logs the client on: claims its session state, connects a GatewayUser
+   * subscribed to its fills and cancels, and answers with a Logon
+   */
+  private void logon(long seq) {
+    String sender;
+    try {
+      sender = msg.getString(TagValueProtocol.SENDER_COMP_ID);
+    } catch (GatewayException e) {
+      disconnect = true;
+      return;
+    }
+    if (!msg.equals(TagValueProtocol.TARGET_COMP_ID, gateway.getCompId())) {
+      disconnect = true;
+      return;
+    }
+    TagValueSessionStore s = gateway.claim(sender);
+    if (s == null) {
+      disconnect = true;
+      return;
+    }
+    boolean reset = msg.getChar(TagValueProtocol.RESET_SEQ_NUM_FLAG, 'N') == 'Y';
+    if (reset) {
+      s.reset();
+    }
+    synchronized (this) {
+      store = s;
+      target = sender.getBytes(StandardCharsets.US_ASCII);
+    }
+    try {
+      heartBtMillis = 1000 * msg.getLong(TagValueProtocol.HEART_BT_INT, DEFAULT_HEART_BT_INT);
+      String name = msg.has(TagValueProtocol.USERNAME) ? msg.getString(TagValueProtocol.USERNAME) : sender;
+      GatewayUser u = new GatewayUser(name, this);
+      u.connect();
+      user = u;
+      UserCommandService.getInstance().subscribeAllMessages(name, u.connectionId());
+    } catch (Exception e) {
+      sendLogout(e.getMessage());
+      logout();
+      disconnect = true;
+      return;
+    }
+    synchronized (this) {
+      writer.begin()
+              .add(TagValueProtocol.ENCRYPT_METHOD, 0)
+              .add(TagValueProtocol.HEART_BT_INT, heartBtMillis / 1000);
+      if (reset) {
+        writer.add(TagValueProtocol.RESET_SEQ_NUM_FLAG, 'Y');
+      }
+      send(String.valueOf(TagValueProtocol.LOGON), false);
+    }
+    queued();
+    inSequence(seq);
+  }
+
+  /**
+   * Undoes the user's subscription, disconnects it and gives back the
+   * session state. Does nothing if not logged on.
+   */
+  private void logout() {
+    if (user != null && !user.isDropped()) {
+      try {
+        UserCommandService.getInstance().unSubscribeAllMessages(user.getUserName(), user.connectionId());
+      } catch (Exception e) {
+        System.out.println(e.getMessage());
+      }
+      try {
+        user.disConnect();
+      } catch (Exception e) {
+        System.out.println(e.getMessage());
+      }
+    }
+    user = null;
+    synchronized (this) {
+      if (store != null) {
+        gateway.release(store);
+        store = null;
+      }
+    }
+  }
+
+  void closing() {
+    logout();
+  }
+
+  void tick(long now) {
+    if (store != null && heartBtMillis > 0 && now - lastSent >= heartBtMillis) {
+      sendHeartbeat(null);
+    }
+  }
+
+  /**
+   * Enters a NewOrderSingle
+   */
+  private void newOrder() throws GatewayException {
+    String clOrdId = msg.getString(TagValueProtocol.CL_ORD_ID);
+    String product = null;
+    char side = msg.getChar(TagValueProtocol.SIDE, ' ');
+    int qty = 0;
+    try {
+      product = symbol(TagValueProtocol.SYMBOL);
+      qty = volume(TagValueProtocol.ORDER_QTY);
+      Price p = msg.getChar(TagValueProtocol.ORD_TYPE, TagValueProtocol.LIMIT) == TagValueProtocol.MARKET
+              ? PriceFactory.makeMarketPrice()
+              : PriceFactory.makeLimitPrice(msg.getCents(TagValueProtocol.PRICE));
+      Order o = new Order(user.getUserName(), product, p, qty, bookSide(side));
+      OrderState st = new OrderState(clOrdId, product, side, qty);
+      synchronized (this) {
+        if (orderIds.containsKey(clOrdId)) {
+          throw new GatewayException("Duplicate ClOrdID: " + clOrdId);
+        }
+        orders.put(o.getId(), st);
+        orderIds.put(clOrdId, o.getId());
+      }
+      CommandResult r = UserCommandService.getInstance().trySubmitOrder(user.getUserName(),
+              user.connectionId(), o);
+      if (r.isOk()) {
+        sendOrderReport(o.getId(), st, TagValueProtocol.NEW, r.getMessage());
+        reported(o.getId());
+      } else {
+        forget(o.getId());
+        sendOrderRejected(clOrdId, product, side, qty, r.getMessage());
+      }
+    } catch (Exception e) {
+      sendOrderRejected(clOrdId, product, side, qty, e.getMessage());
+    }
+  }
+
+  /**
+   * Cancels an order by its OrderID or OrigClOrdID
+   */
+  private void cancelOrder() throws GatewayException {
+    String clOrdId = msg.getString(TagValueProtocol.CL_ORD_ID);
+    String origClOrdId = msg.has(TagValueProtocol.ORIG_CL_ORD_ID)
+            ? msg.getString(TagValueProtocol.ORIG_CL_ORD_ID) : null;
+    String orderId;
+    OrderState st;
+    synchronized (this) {
+      orderId = msg.has(TagValueProtocol.ORDER_ID) ? msg.getString(TagValueProtocol.ORDER_ID)
+              : origClOrdId == null ? null : orderIds.get(origClOrdId);
+      st = orderId == null ? null : orders.get(orderId);
+      if (st != null) {
+        st.cancelClOrdId = clOrdId;
+        if (origClOrdId == null) {
+          origClOrdId = st.clOrdId;
+        }
+      }
+    }
+    if (orderId == null) {
+      sendCancelReject(clOrdId, origClOrdId, null, CommandResult.ORDER_NOT_FOUND.getMessage());
+      return;
+    }
+    CommandResult r;
+    try {
+      r = UserCommandService.getInstance().trySubmitOrderCancel(user.getUserName(), user.connectionId(),
+              symbol(TagValueProtocol.SYMBOL), bookSide(msg.getChar(TagValueProtocol.SIDE, ' ')), orderId);
+    } catch (Exception e) {
+      r = null;
+      sendCancelReject(clOrdId, origClOrdId, orderId, e.getMessage());
+    }
+    if (r != null && !r.isOk()) {
+      sendCancelReject(clOrdId, origClOrdId, orderId, r.getMessage());
+    }
+    if (r == null || !r.isOk()) {
+      synchronized (this) {
+        if (st != null) {
+          st.cancelClOrdId = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Enters a two-sided Quote
+   */
+  private void quote() throws GatewayException {
+    String quoteId = msg.getString(TagValueProtocol.QUOTE_ID);
+    String product = "";
+    try {
+      product = symbol(TagValueProtocol.SYMBOL);
+      int bv = volume(TagValueProtocol.BID_SIZE);
+      int sv = volume(TagValueProtocol.OFFER_SIZE);
+      Quote q = new Quote(user.getUserName(), product,
+              PriceFactory.makeLimitPrice(msg.getCents(TagValueProtocol.BID_PX)), bv,
+              PriceFactory.makeLimitPrice(msg.getCents(TagValueProtocol.OFFER_PX)), sv);
+      String[] ids = new String[] { q.getQuoteSide(BookSide.BUY).getId(), q.getQuoteSide(BookSide.SELL).getId() };
+      synchronized (this) {
+        String[] old = quoteSides.put(product, ids);
+        if (old != null) {
+          orders.remove(old[0]);
+          orders.remove(old[1]);
+        }
+        orders.put(ids[0], new OrderState(quoteId, product, TagValueProtocol.BUY, bv));
+        orders.put(ids[1], new OrderState(quoteId, product, TagValueProtocol.SELL, sv));
+      }
+      CommandResult r = UserCommandService.getInstance().trySubmitQuote(user.getUserName(),
+              user.connectionId(), q);
+      if (!r.isOk()) {
+        synchronized (this) {
+          orders.remove(ids[0]);
+          orders.remove(ids[1]);
+          quoteSides.remove(product);
+        }
+      }
+      sendQuoteStatus(quoteId, product,
+              r.isOk() ? TagValueProtocol.QUOTE_ACCEPTED : TagValueProtocol.QUOTE_REJECTED, r.getMessage());
+      if (r.isOk()) {
+        reported(ids[0]);
+        reported(ids[1]);
+      }
+    } catch (Exception e) {
+      sendQuoteStatus(quoteId, product, TagValueProtocol.QUOTE_REJECTED, e.getMessage());
+    }
+  }
+
+  /**
+   * Cancels the quote of one product, or of every product
+   */
+  private void cancelQuote() throws GatewayException {
+    String quoteId = msg.has(TagValueProtocol.QUOTE_ID) ? msg.getString(TagValueProtocol.QUOTE_ID) : "NONE";
+    String product = "";
+    try {
+      UserCommandService ucs = UserCommandService.getInstance();
+      CommandResult r = CommandResult.OK;
+      if (msg.getLong(TagValueProtocol.QUOTE_CANCEL_TYPE, TagValueProtocol.CANCEL_FOR_SYMBOL)
+              == TagValueProtocol.CANCEL_ALL_QUOTES) {
+        for (String p : ucs.getProducts(user.getUserName(), user.connectionId())) {
+          ucs.trySubmitQuoteCancel(user.getUserName(), user.connectionId(), p);
+        }
+      } else {
+        product = symbol(TagValueProtocol.SYMBOL);
+        r = ucs.trySubmitQuoteCancel(user.getUserName(), user.connectionId(), product);
+      }
+      sendQuoteStatus(quoteId, product,
+              r.isOk() ? TagValueProtocol.QUOTE_CANCELED : TagValueProtocol.QUOTE_REJECTED, r.getMessage());
+    } catch (Exception e) {
+      sendQuoteStatus(quoteId, product, TagValueProtocol.QUOTE_REJECTED, e.getMessage());
+    }
+  }
+
+  /**
+   * Cancels every open order and quote of the user in one product, or in
+   * every product
+   */
+  private void massCancel() throws GatewayException {
+    String clOrdId = msg.getString(TagValueProtocol.CL_ORD_ID);
+    long type = msg.getLong(TagValueProtocol.MASS_CANCEL_REQUEST_TYPE);
+    int affected = 0;
+    try {
+      UserCommandService ucs = UserCommandService.getInstance();
+      String name = user.getUserName();
+      long connId = user.connectionId();
+      ArrayList<String> products;
+      if (type == TagValueProtocol.CANCEL_ALL_ORDERS) {
+        products = ucs.getProducts(name, connId);
+      } else if (type == TagValueProtocol.CANCEL_FOR_SYMBOL) {
+        products = new ArrayList<>();
+        products.add(symbol(TagValueProtocol.SYMBOL));
+      } else {
+        sendMassCancelReport(clOrdId, type, 0, 0, "Unsupported MassCancelRequestType");
+        return;
+      }
+      ArrayList<TradableDTO> open = type == TagValueProtocol.CANCEL_ALL_ORDERS
+              ? ucs.getAllOrdersWithRemainingQty(name, connId)
+              : ucs.getOrdersWithRemainingQty(name, connId, products.get(0));
+      for (TradableDTO t : open) {
+        if (!t.isQuote && ucs.trySubmitOrderCancel(name, connId, t.product, t.side, t.id).isOk()) {
+          affected++;
+        }
+      }
+      for (String p : products) {
+        ucs.trySubmitQuoteCancel(name, connId, p);
+      }
+      sendMassCancelReport(clOrdId, type, type, affected, null);
+    } catch (Exception e) {
+      sendMassCancelReport(clOrdId, type, 0, affected, e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the stock symbol in a field, reusing the String made the last
+   * time the same symbol was seen
+   */
+  private String symbol(int tag) throws GatewayException {
+    for (int i = 0; i < symbolCount; i++) {
+      if (msg.equals(tag, symbolBytes[i])) {
+        return symbols[i];
+      }
+    }
+    String s = msg.getString(tag);
+    int i = symbolCount < SYMBOL_CACHE ? symbolCount++ : s.hashCode() & (SYMBOL_CACHE - 1);
+    symbolBytes[i] = s.getBytes(StandardCharsets.US_ASCII);
+    symbols[i] = s;
+    return s;
+  }
+
+  /**
+   * @return the volume in a field
+   * @throws GatewayException if the field is missing or too large
+   */
+  private int volume(int tag) throws GatewayException {
+    long v = msg.getLong(tag);
+    if (v > Integer.MAX_VALUE) {
+      throw new GatewayException("Incorrect value for tag " + tag);
+    }
+    return (int) v;
+  }
+
+  private static BookSide bookSide(char side) throws GatewayException {
+    if (side == TagValueProtocol.BUY) {
+      return BookSide.BUY;
+    }
+    if (side == TagValueProtocol.SELL) {
+      return BookSide.SELL;
+    }
+    throw new GatewayException("Incorrect value for tag " + TagValueProtocol.SIDE);
+  }
+
+  private static char side(BookSide side) {
+    return side == BookSide.BUY ? TagValueProtocol.BUY : TagValueProtocol.SELL;
+  }
+
+  private synchronized void forget(String orderId) {
+    OrderState st = orders.remove(orderId);
+    if (st != null) {
+      orderIds.remove(st.clOrdId);
+    }
+  }
+
+  public void fill(FillMessage fm) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      OrderState st = orders.get(fm.getID());
+      if (hold(st, fm)) {
+        return;
+      }
+      int v = fm.getVolume();
+      int leaves = 0;
+      int qty = v;
+      if (st != null) {
+        st.cumQty += v;
+        qty = st.orderQty;
+        leaves = Math.max(0, st.orderQty - st.cumQty);
+        if (leaves == 0) {
+          forget(fm.getID());
+        }
+      }
+      Price p = fm.getPrice();
+      writer.begin()
+              .add(TagValueProtocol.ORDER_ID, fm.getID())
+              .add(TagValueProtocol.CL_ORD_ID, st == null ? "NONE" : st.clOrdId)
+              .add(TagValueProtocol.EXEC_ID, ++store.lastExecId)
+              .add(TagValueProtocol.EXEC_TYPE, TagValueProtocol.TRADE)
+              .add(TagValueProtocol.ORD_STATUS, leaves == 0 ? TagValueProtocol.FILLED
+                      : TagValueProtocol.PARTIALLY_FILLED)
+              .add(TagValueProtocol.SYMBOL, fm.getProduct())
+              .add(TagValueProtocol.SIDE, side(fm.getSide()))
+              .add(TagValueProtocol.ORDER_QTY, qty);
+      if (p != null && !p.isMarket()) {
+        writer.addPrice(TagValueProtocol.LAST_PX, p.getCents());
+      }
+      writer.add(TagValueProtocol.LAST_QTY, v)
+              .add(TagValueProtocol.CUM_QTY, st == null ? v : st.cumQty)
+              .add(TagValueProtocol.LEAVES_QTY, leaves)
+              .add(TagValueProtocol.TEXT, text(fm.getDetails()));
+      send(String.valueOf(TagValueProtocol.EXECUTION_REPORT), true);
+    }
+    queued();
+  }
+
+  public void cancel(CancelMessage cm) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      OrderState st = orders.get(cm.getID());
+      if (hold(st, cm)) {
+        return;
+      }
+      forget(cm.getID());
+      writer.begin()
+              .add(TagValueProtocol.ORDER_ID, cm.getID());
+      if (st != null && st.cancelClOrdId != null) {
+        writer.add(TagValueProtocol.CL_ORD_ID, st.cancelClOrdId)
+                .add(TagValueProtocol.ORIG_CL_ORD_ID, st.clOrdId);
+      } else {
+        writer.add(TagValueProtocol.CL_ORD_ID, st == null ? "NONE" : st.clOrdId);
+      }
+      writer.add(TagValueProtocol.EXEC_ID, ++store.lastExecId)
+              .add(TagValueProtocol.EXEC_TYPE, TagValueProtocol.CANCELED)
+              .add(TagValueProtocol.ORD_STATUS, TagValueProtocol.CANCELED)
+              .add(TagValueProtocol.SYMBOL, cm.getProduct())
+              .add(TagValueProtocol.SIDE, side(cm.getSide()))
+              .add(TagValueProtocol.ORDER_QTY, st == null ? cm.getVolume() : st.orderQty)
+              .add(TagValueProtocol.CUM_QTY, st == null ? 0 : st.cumQty)
+              .add(TagValueProtocol.LEAVES_QTY, 0)
+              .add(TagValueProtocol.TEXT, text(cm.getDetails()));
+      send(String.valueOf(TagValueProtocol.EXECUTION_REPORT), true);
+    }
+    queued();
+  }
+
+  /**
+   * Keeps a fill or cancel of an order whose New report or quote status has
+   * not been sent yet; called under this session's lock
+   * @return true if the message was kept
+   */
+  private boolean hold(OrderState st, Object m) {
+    if (st == null || st.reported) {
+      return false;
+    }
+    if (st.held == null) {
+      st.held = new ArrayList<>();
+    }
+    st.held.add(m);
+    return true;
+  }
+
+  /**
+   * Marks an order or quote side as reported and sends the fills and cancels
+   * held back for it, in the order they arrived
+   */
+  private synchronized void reported(String orderId) {
+    OrderState st = orders.get(orderId);
+    if (st == null) {
+      return;
+    }
+    st.reported = true;
+    ArrayList<Object> held = st.held;
+    st.held = null;
+    if (held == null) {
+      return;
+    }
+    for (Object o : held) {
+      if (o instanceof FillMessage) {
+        fill((FillMessage) o);
+      } else {
+        cancel((CancelMessage) o);
+      }
+    }
+  }
+
+  /**
+   * Market data is not sent over this gateway
+   */
+  public void currentMarket(String product, Price bp, int bv, Price sp, int sv) {}
+
+  public void lastSale(String product, Price p, int volume) {}
+
+  public void ticker(String product, Price p, char direction) {}
+
+  public void marketState(String state) {}
+
+  /**
+   * Sends a Logout with the reason the trading system disconnected the user
+   * and closes the connection once it is written
+   */
+  public void disconnected(String reason) {
+    sendLogout(reason);
+    requestClose();
+  }
+
+  private void sendOrderReport(String orderId, OrderState st, char status, String text) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      writer.begin()
+              .add(TagValueProtocol.ORDER_ID, orderId)
+              .add(TagValueProtocol.CL_ORD_ID, st.clOrdId)
+              .add(TagValueProtocol.EXEC_ID, ++store.lastExecId)
+              .add(TagValueProtocol.EXEC_TYPE, status)
+              .add(TagValueProtocol.ORD_STATUS, status)
+              .add(TagValueProtocol.SYMBOL, st.product)
+              .add(TagValueProtocol.SIDE, st.side)
+              .add(TagValueProtocol.ORDER_QTY, st.orderQty)
+              .add(TagValueProtocol.CUM_QTY, 0)
+              .add(TagValueProtocol.LEAVES_QTY, st.orderQty)
+              .add(TagValueProtocol.TEXT, text(text));
+      send(String.valueOf(TagValueProtocol.EXECUTION_REPORT), true);
+    }
+    queued();
+  }
+
+  private void sendOrderRejected(String clOrdId, String product, char side, int qty, String text) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      writer.begin()
+              .add(TagValueProtocol.ORDER_ID, "NONE")
+              .add(TagValueProtocol.CL_ORD_ID, clOrdId)
+              .add(TagValueProtocol.EXEC_ID, ++store.lastExecId)
+              .add(TagValueProtocol.EXEC_TYPE, TagValueProtocol.REJECTED)
+              .add(TagValueProtocol.ORD_STATUS, TagValueProtocol.REJECTED)
+              .add(TagValueProtocol.SYMBOL, product == null ? "" : product)
+              .add(TagValueProtocol.SIDE, side)
+              .add(TagValueProtocol.ORDER_QTY, qty)
+              .add(TagValueProtocol.CUM_QTY, 0)
+              .add(TagValueProtocol.LEAVES_QTY, 0)
+              .add(TagValueProtocol.TEXT, text(text));
+      send(String.valueOf(TagValueProtocol.EXECUTION_REPORT), true);
+    }
+    queued();
+  }
+
+  private void sendCancelReject(String clOrdId, String origClOrdId, String orderId, String text) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      writer.begin()
+              .add(TagValueProtocol.ORDER_ID, orderId == null ? "NONE" : orderId)
+              .add(TagValueProtocol.CL_ORD_ID, clOrdId)
+              .add(TagValueProtocol.ORIG_CL_ORD_ID, origClOrdId == null ? "NONE" : origClOrdId)
+              .add(TagValueProtocol.ORD_STATUS, TagValueProtocol.REJECTED)
+              .add(TagValueProtocol.CXL_REJ_RESPONSE_TO, '1')
+              .add(TagValueProtocol.CXL_REJ_REASON, orderId == null ? 1 : 0)
+              .add(TagValueProtocol.TEXT, text(text));
+      send(String.valueOf(TagValueProtocol.ORDER_CANCEL_REJECT), true);
+    }
+    queued();
+  }
+
+  private void sendQuoteStatus(String quoteId, String product, int status, String text) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      writer.begin()
+              .add(TagValueProtocol.QUOTE_ID, quoteId)
+              .add(TagValueProtocol.SYMBOL, product)
+              .add(TagValueProtocol.QUOTE_STATUS, status)
+              .add(TagValueProtocol.TEXT, text(text));
+      send(TagValueProtocol.QUOTE_STATUS_REPORT, true);
+    }
+    queued();
+  }
+
+  private void sendMassCancelReport(String clOrdId, long type, long response, int affected, String text) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      writer.begin()
+              .add(TagValueProtocol.CL_ORD_ID, clOrdId)
+              .add(TagValueProtocol.ORDER_ID, clOrdId)
+              .add(TagValueProtocol.MASS_CANCEL_REQUEST_TYPE, type)
+              .add(TagValueProtocol.MASS_CANCEL_RESPONSE, response)
+              .add(TagValueProtocol.TOTAL_AFFECTED_ORDERS, affected);
+      if (text != null) {
+        writer.add(TagValueProtocol.TEXT, text(text));
+      }
+      send(String.valueOf(TagValueProtocol.ORDER_MASS_CANCEL_REPORT), true);
+    }
+    queued();
+  }
+
+  private void sendBusinessReject(long refSeq, char refType, String text) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      writer.begin()
+              .add(TagValueProtocol.REF_SEQ_NUM, refSeq)
+              .add(TagValueProtocol.REF_MSG_TYPE, refType)
+              .add(TagValueProtocol.BUSINESS_REJECT_REASON, 3)
+              .add(TagValueProtocol.TEXT, text(text));
+      send(String.valueOf(TagValueProtocol.BUSINESS_MESSAGE_REJECT), true);
+    }
+    queued();
+  }
+
+  private void sendReject(long refSeq, String text) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      writer.begin()
+              .add(TagValueProtocol.REF_SEQ_NUM, refSeq)
+              .add(TagValueProtocol.TEXT, text(text));
+      send(String.valueOf(TagValueProtocol.REJECT), false);
+    }
+    queued();
+  }
+
+  private void sendHeartbeat(String testReqId) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      writer.begin();
+      if (testReqId != null) {
+        writer.add(TagValueProtocol.TEST_REQ_ID, testReqId);
+      }
+      send(String.valueOf(TagValueProtocol.HEARTBEAT), false);
+    }
+    queued();
+  }
+
+  private void sendResendRequest(long from) {
+    synchronized (this) {
+      writer.begin()
+              .add(TagValueProtocol.BEGIN_SEQ_NO, from)
+              .add(TagValueProtocol.END_SEQ_NO, 0);
+      send(String.valueOf(TagValueProtocol.RESEND_REQUEST), false);
+    }
+    queued();
+  }
+
+  private void sendLogout(String text) {
+    synchronized (this) {
+      if (store == null) {
+        return;
+      }
+      writer.begin();
+      if (text != null) {
+        writer.add(TagValueProtocol.TEXT, text(text));
+      }
+      send(String.valueOf(TagValueProtocol.LOGOUT), false);
+    }
+    queued();
+  }
+
+  /**
+   * Resends the kept application messages with sequence numbers in
+   * [from, to], as possible duplicates; anything not kept is skipped with a
+   * SequenceReset-GapFill
+   * @param to last sequence number, or 0 for the last one sent
+   */
+  private void resend(long from, long to) {
+    synchronized (this) {
+      long last = store.nextOutgoing - 1;
+      if (to == 0 || to > last) {
+        to = last;
+      }
+      long now = System.currentTimeMillis();
+      long gap = 0;
+      for (long s = Math.max(1, from); s <= to; s++) {
+        byte[] f = store.fieldsOf(s);
+        if (f == null) {
+          if (gap == 0) {
+            gap = s;
+          }
+          continue;
+        }
+        if (gap != 0) {
+          gapFill(gap, s, now);
+          gap = 0;
+        }
+        write(writer.finish(store.typeOf(s), gateway.getCompId(), target, s, now, true, f, 0, f.length));
+      }
+      if (gap != 0) {
+        gapFill(gap, to + 1, now);
+      }
+      lastSent = now;
+    }
+    queued();
+  }
+
+  /**
+   * Sends a SequenceReset-GapFill numbered seq that moves the client on to
+   * newSeq. Must be called holding this session's lock.
+   */
+  private void gapFill(long seq, long newSeq, long now) {
+    writer.begin()
+            .add(TagValueProtocol.GAP_FILL_FLAG, 'Y')
+            .add(TagValueProtocol.NEW_SEQ_NO, newSeq);
+    write(writer.finish(String.valueOf(TagValueProtocol.SEQUENCE_RESET), gateway.getCompId(), target, seq,
+            now, true));
+  }
+
+  /**
+   * Numbers and sends the message built in writer, keeping it for resending
+   * if asked to. Must be called holding this session's lock.
+   */
+  private void send(String msgType, boolean keep) {
+    long seq = store.nextOutgoing++;
+    long now = System.currentTimeMillis();
+    if (keep) {
+      store.store(seq, msgType, writer.copyFields());
+    }
+    write(writer.finish(msgType, gateway.getCompId(), target, seq, now, false));
+    lastSent = now;
+  }
+
+  /**
+   * Copies a finished message into the outgoing buffer. Must be called
+   * holding this session's lock.
+   */
+  private void write(ByteBuffer m) {
+    ByteBuffer b = reserve(m.remaining());
+    if (b != null) {
+      b.put(m);
+    }
+  }
+
+  /**
+   * @return the text, cut to MAX_TEXT characters and with no SOH
+   */
+  private static String text(String s) {
+    if (s == null) {
+      return "";
+    }
+    if (s.length() > MAX_TEXT) {
+      s = s.substring(0, MAX_TEXT);
+    }
+    return s.indexOf(TagValueProtocol.SOH) < 0 ? s : s.replace((char) TagValueProtocol.SOH, ' ');
+  }
+}
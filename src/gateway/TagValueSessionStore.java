@@ -0,0 +1,90 @@
+package gateway;
+
+/**
+ * The sequence numbers and sent messages of one tag=value session, kept by
+ * the TagValueGateway under the client's SenderCompID so they survive a
+ * reconnect. The last application messages sent are kept for resending;
+ * anything older, and every session message, is filled with a
+ * SequenceReset-GapFill instead.
+ *
+ * A store is used under the lock of the connection logged on to it.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+final class TagValueSessionStore {
+
+  /**
+   * Next sequence number expected from the client, and next one to send
+   */
+  long nextIncoming = 1;
+  long nextOutgoing = 1;
+
+  /**
+   * Last ExecID sent
+   */
+  long lastExecId;
+
+  /**
+   * Set while a connection is logged on to the session
+   */
+  boolean active;
+
+  /**
+   * Kept application messages: message type and fields of the message sent
+   * with sequence number s sit at (s - 1) % size, if seqs holds s there
+   */
+  private final String[] types;
+  private final byte[][] sent;
+  private final long[] seqs;
+
+  TagValueSessionStore(int size) {
+    types = new String[size];
+    sent = new byte[size][];
+    seqs = new long[size];
+  }
+
+  /**
+   * Keeps an application message for resending
+   * @param seq its sequence number
+   * @param msgType its message type
+   * @param fields its application fields
+   */
+  void store(long seq, String msgType, byte[] fields) {
+    int i = (int) ((seq - 1) % seqs.length);
+    seqs[i] = seq;
+    types[i] = msgType;
+    sent[i] = fields;
+  }
+
+  /**
+   * @return the message type of the kept message, or null if the message was
+   * not kept
+   */
+  String typeOf(long seq) {
+    int i = (int) ((seq - 1) % seqs.length);
+    return seq > 0 && seqs[i] == seq ? types[i] : null;
+  }
+
+  /**
+   * @return the application fields of the kept message, or null if the
+   * message was not kept
+   */
+  byte[] fieldsOf(long seq) {
+    int i = (int) ((seq - 1) % seqs.length);
+    return seq > 0 && seqs[i] == seq ? sent[i] : null;
+  }
+
+  /**
+   * Starts both sequences again from 1 and forgets the kept messages
+   */
+  void reset() {
+    nextIncoming = 1;
+    nextOutgoing = 1;
+    lastExecId = 0;
+    for (int i = 0; i < seqs.length; i++) {
+      seqs[i] = 0;
+      types[i] = null;
+      sent[i] = null;
+    }
+  }
+}
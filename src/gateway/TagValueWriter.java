@@ -0,0 +1,215 @@
+package gateway;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds tag=value messages. Application fields are added to a scratch
+ * buffer with the add methods; finish then wraps them in the session header,
+ * body length and checksum. Numbers, prices and timestamps are written as
+ * digits directly, without formatting through a String.
+ *
+ * A writer is not thread-safe; each session guards its own.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+final class TagValueWriter {
+
+  private static final byte[] BEGIN = ("8=" + TagValueProtocol.BEGIN_STRING + "\u00019=")
+          .getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * Application fields of the message being built
+   */
+  private final ByteBuffer fields = ByteBuffer.allocate(TagValueProtocol.MAX_MESSAGE);
+
+  /**
+   * Header fields, from MsgType to the last session field
+   */
+  private final ByteBuffer header = ByteBuffer.allocate(256);
+
+  /**
+   * The finished message
+   */
+  private final ByteBuffer message = ByteBuffer.allocate(TagValueProtocol.MAX_MESSAGE + 64);
+
+  /**
+   * Starts a new message
+   * @return this writer
+   */
+  TagValueWriter begin() {
+    fields.clear();
+    return this;
+  }
+
+  TagValueWriter add(int tag, long value) {
+    putTag(fields, tag);
+    putLong(fields, value);
+    fields.put(TagValueProtocol.SOH);
+    return this;
+  }
+
+  TagValueWriter add(int tag, char value) {
+    putTag(fields, tag);
+    fields.put((byte) value);
+    fields.put(TagValueProtocol.SOH);
+    return this;
+  }
+
+  TagValueWriter add(int tag, String value) {
+    putTag(fields, tag);
+    putAscii(fields, value);
+    fields.put(TagValueProtocol.SOH);
+    return this;
+  }
+
+  /**
+   * Adds a price given in cents as a decimal with two places
+   */
+  TagValueWriter addPrice(int tag, long cents) {
+    putTag(fields, tag);
+    if (cents < 0) {
+      fields.put((byte) '-');
+      cents = -cents;
+    }
+    putLong(fields, cents / 100);
+    fields.put((byte) '.');
+    fields.put((byte) ('0' + cents % 100 / 10));
+    fields.put((byte) ('0' + cents % 10));
+    fields.put(TagValueProtocol.SOH);
+    return this;
+  }
+
+  /**
+   * @return a copy of the application fields added since begin
+   */
+  byte[] copyFields() {
+    return Arrays.copyOf(fields.array(), fields.position());
+  }
+
+  /**
+   * Finishes the message built since begin
+   * @return the complete message, from position 0 to its limit
+   */
+  ByteBuffer finish(String msgType, byte[] sender, byte[] target, long seq, long now, boolean possDup) {
+    return finish(msgType, sender, target, seq, now, possDup, fields.array(), 0, fields.position());
+  }
+
+  /**
+   * Wraps application fields, such as ones kept for a resend, in a header
+   * @return the complete message, from position 0 to its limit
+   */
+  ByteBuffer finish(String msgType, byte[] sender, byte[] target, long seq, long now, boolean possDup,
+          byte[] f, int off, int len) {
+    header.clear();
+    putTag(header, TagValueProtocol.MSG_TYPE);
+    putAscii(header, msgType);
+    header.put(TagValueProtocol.SOH);
+    putTag(header, TagValueProtocol.SENDER_COMP_ID);
+    header.put(sender);
+    header.put(TagValueProtocol.SOH);
+    putTag(header, TagValueProtocol.TARGET_COMP_ID);
+    header.put(target);
+    header.put(TagValueProtocol.SOH);
+    putTag(header, TagValueProtocol.MSG_SEQ_NUM);
+    putLong(header, seq);
+    header.put(TagValueProtocol.SOH);
+    putTag(header, TagValueProtocol.SENDING_TIME);
+    putTimestamp(header, now);
+    header.put(TagValueProtocol.SOH);
+    if (possDup) {
+      putTag(header, TagValueProtocol.POSS_DUP_FLAG);
+      header.put((byte) 'Y');
+      header.put(TagValueProtocol.SOH);
+    }
+    message.clear();
+    message.put(BEGIN);
+    putLong(message, header.position() + len);
+    message.put(TagValueProtocol.SOH);
+    message.put(header.array(), 0, header.position());
+    message.put(f, off, len);
+    int sum = 0;
+    byte[] m = message.array();
+    for (int i = 0; i < message.position(); i++) {
+      sum += m[i] & 0xFF;
+    }
+    sum &= 0xFF;
+    putTag(message, TagValueProtocol.CHECKSUM);
+    message.put((byte) ('0' + sum / 100));
+    message.put((byte) ('0' + sum / 10 % 10));
+    message.put((byte) ('0' + sum % 10));
+    message.put(TagValueProtocol.SOH);
+    message.flip();
+    return message;
+  }
+
+  private static void putTag(ByteBuffer b, int tag) {
+    putLong(b, tag);
+    b.put((byte) '=');
+  }
+
+  private static void putAscii(ByteBuffer b, String s) {
+    for (int i = 0; i < s.length(); i++) {
+      b.put((byte) s.charAt(i));
+    }
+  }
+
+  /**
+   * Writes the decimal digits of a non-negative number
+   */
+  private static void putLong(ByteBuffer b, long v) {
+    if (v < 10) {
+      b.put((byte) ('0' + v));
+      return;
+    }
+    int digits = 0;
+    for (long t = v; t > 0; t /= 10) {
+      digits++;
+    }
+    int end = b.position() + digits;
+    for (int i = end - 1; i >= b.position(); i--) {
+      b.put(i, (byte) ('0' + v % 10));
+      v /= 10;
+    }
+    b.position(end);
+  }
+
+  /**
+   * Writes a UTC timestamp as YYYYMMDD-HH:MM:SS.sss
+   */
+  private static void putTimestamp(ByteBuffer b, long millis) {
+    long days = Math.floorDiv(millis, 86400000L);
+    long ms = Math.floorMod(millis, 86400000L);
+    // civil date from days since 1970-01-01
+    long z = days + 719468;
+    long era = (z >= 0 ? z : z - 146096) / 146097;
+    long doe = z - era * 146097;
+    long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+    long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+    long mp = (5 * doy + 2) / 153;
+    long d = doy - (153 * mp + 2) / 5 + 1;
+    long m = mp < 10 ? mp + 3 : mp - 9;
+    long y = yoe + era * 400 + (m <= 2 ? 1 : 0);
+    putDigits(b, y, 4);
+    putDigits(b, m, 2);
+    putDigits(b, d, 2);
+    b.put((byte) '-');
+    putDigits(b, ms / 3600000, 2);
+    b.put((byte) ':');
+    putDigits(b, ms / 60000 % 60, 2);
+    b.put((byte) ':');
+    putDigits(b, ms / 1000 % 60, 2);
+    b.put((byte) '.');
+    putDigits(b, ms % 1000, 3);
+  }
+
+  private static void putDigits(ByteBuffer b, long v, int width) {
+    int end = b.position() + width;
+    for (int i = end - 1; i >= b.position(); i--) {
+      b.put(i, (byte) ('0' + v % 10));
+      v /= 10;
+    }
+    b.position(end);
+  }
+}
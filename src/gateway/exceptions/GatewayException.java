@@ -0,0 +1,14 @@
+package gateway.exceptions;
+
+/**
+ * The exception class dealing with exceptions which occur in the order entry
+ * gateways.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class GatewayException extends Exception {
+
+  public GatewayException(String msg) {
+    super(msg);
+  }
+}
@@ -0,0 +1,91 @@
+package gui;
+
+import java.sql.Timestamp;
+
+import messages.GenericMessage;
+
+/**
+ * One line of the market activity log: a fill or cancel message, a market
+ * state change, or other text, with the time it arrived. Only the message is
+ * kept; the line is formatted when the log shows it.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+final class ActivityEvent {
+
+    /**
+     * Kinds of activity, which the log can be filtered by
+     */
+    enum Kind {
+        FILL("Fill"), CANCEL("Cancel"), MARKET_STATE("Market State"), OTHER("Other");
+
+        private final String label;
+
+        private Kind(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final long time;
+    private final Kind kind;
+    private final GenericMessage message;
+    private final String text;
+
+    private ActivityEvent(Kind kind, GenericMessage message, String text) {
+        this.time = System.currentTimeMillis();
+        this.kind = kind;
+        this.message = message;
+        this.text = text;
+    }
+
+    static ActivityEvent fill(GenericMessage fm) {
+        return new ActivityEvent(Kind.FILL, fm, null);
+    }
+
+    static ActivityEvent cancel(GenericMessage cm) {
+        return new ActivityEvent(Kind.CANCEL, cm, null);
+    }
+
+    static ActivityEvent marketState(String state) {
+        return new ActivityEvent(Kind.MARKET_STATE, null, state);
+    }
+
+    static ActivityEvent other(String text) {
+        return new ActivityEvent(Kind.OTHER, null, text.trim());
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the product of a fill or cancel, or null for other activity
+     */
+    String getProduct() {
+        return message == null ? null : message.getProduct();
+    }
+
+    /**
+     * @return the text of the log line
+     */
+    @Override
+    public String toString() {
+        Timestamp t = new Timestamp(time);
+        switch (kind) {
+            case FILL:
+            case CANCEL:
+                return String.format("{%s} %s Message: %s %s %s at %s %s [Tradable Id: %s]", t.toString(),
+                        kind, message.getSide(), message.getVolume(), message.getProduct(),
+                        message.getPrice().toString(), message.getDetails(), message.getID());
+            case MARKET_STATE:
+                return "{" + t.toString() + "} Market State Changed to " + text;
+            default:
+                return text;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package gui;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * The ActivityLog keeps the last CAPACITY activity events of a market display
+ * in a ring buffer; older events are dropped as new ones arrive, so the log
+ * never grows past a fixed size. It is the model of a JList, which only asks
+ * for, and so only formats, the rows on screen.
+ *
+ * The log can be filtered by product, kind of activity, or both. The events
+ * that pass the filter are kept as a second ring of sequence numbers, so
+ * showing a filtered row does not scan the log. Like all Swing models it is
+ * only used on the EDT.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class ActivityLog extends AbstractListModel<ActivityEvent> {
+
+    /**
+     * Most events kept
+     */
+    static final int CAPACITY = 5000;
+
+    /**
+     * Events by sequence number modulo CAPACITY
+     */
+    private final ActivityEvent[] events = new ActivityEvent[CAPACITY];
+
+    /**
+     * Sequence number the next event will get
+     */
+    private long next;
+
+    /**
+     * Sequence numbers of the events that pass the filter, oldest first from
+     * viewStart, as a ring of viewSize entries
+     */
+    private final long[] view = new long[CAPACITY];
+    private int viewStart;
+    private int viewSize;
+
+    /**
+     * Filter; null lets everything through
+     */
+    private String product;
+    private ActivityEvent.Kind kind;
+
+    /**
+     * Adds an event, dropping the oldest if the log is full
+     * @param e the event
+     */
+    void add(ActivityEvent e) {
+        if (next >= CAPACITY) {
+            long dropped = next - CAPACITY;
+            if (viewSize > 0 && view[viewStart] == dropped) {
+                viewStart = (viewStart + 1) % CAPACITY;
+                viewSize--;
+                fireIntervalRemoved(this, 0, 0);
+            }
+        }
+        events[(int) (next % CAPACITY)] = e;
+        if (passes(e)) {
+            view[(viewStart + viewSize) % CAPACITY] = next;
+            viewSize++;
+            fireIntervalAdded(this, viewSize - 1, viewSize - 1);
+        }
+        next++;
+    }
+
+    /**
+     * Shows only the events of one product and kind
+     * @param p product to show, or null for all
+     * @param k kind of activity to show, or null for all
+     */
+    void setFilter(String p, ActivityEvent.Kind k) {
+        int oldSize = viewSize;
+        product = p;
+        kind = k;
+        viewStart = 0;
+        viewSize = 0;
+        for (long seq = Math.max(0, next - CAPACITY); seq < next; seq++) {
+            if (passes(events[(int) (seq % CAPACITY)])) {
+                view[viewSize++] = seq;
+            }
+        }
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (viewSize > 0) {
+            fireIntervalAdded(this, 0, viewSize - 1);
+        }
+    }
+
+    /**
+     * @return the product shown, or null if all are
+     */
+    String getProductFilter() {
+        return product;
+    }
+
+    /**
+     * @return the kind of activity shown, or null if all are
+     */
+    ActivityEvent.Kind getKindFilter() {
+        return kind;
+    }
+
+    private boolean passes(ActivityEvent e) {
+        return (kind == null || e.getKind() == kind)
+                && (product == null || product.equals(e.getProduct()));
+    }
+
+    @Override
+    public int getSize() {
+        return viewSize;
+    }
+
+    @Override
+    public ActivityEvent getElementAt(int index) {
+        return events[(int) (view[(viewStart + index) % CAPACITY] % CAPACITY)];
+    }
+}
@@ -6,13 +6,26 @@ package gui;
 
 import gui.MarketDisplay;
 
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.swing.DefaultListModel;
 
+import constants.global.BookSide;
+import messages.BookDepthDTO;
+import messages.BookDepthSnapshotDTO;
+
 
 /**
+ * Shows the depth of one product's book while the window is open. It takes a
+ * snapshot of the book, subscribes to the book's depth changes, and applies
+ * each change to its own copy of the levels, so only the rows that changed
+ * are redrawn. A change numbered at or before the snapshot is already in it
+ * and is skipped; a gap in the numbers means changes were lost, and a new
+ * snapshot is taken.
  *
  * @author hieldc
  */
@@ -21,12 +34,33 @@ public class BookDepthDisplay extends javax.swing.JFrame {
     private String product;
     private MarketDisplay marketDisplay;
 
+    /**
+     * The product whose depth changes we are subscribed to, or null
+     */
+    private String subscribed;
+
+    /**
+     * Number of the last depth change applied to the levels
+     */
+    private long sequence;
+
+    private BookDepthListModel buyModel = new BookDepthListModel(BookSide.BUY);
+    private BookDepthListModel sellModel = new BookDepthListModel(BookSide.SELL);
+
     /**
      * Creates new form BookDepthDisplay
      */
     public BookDepthDisplay(MarketDisplay md) {
         initComponents();
         marketDisplay = md;
+        buyList.setModel(buyModel);
+        sellList.setModel(sellModel);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                unsubscribe();
+            }
+        });
     }
 
     /**
@@ -41,10 +75,10 @@ public class BookDepthDisplay extends javax.swing.JFrame {
         jPanel1 = new javax.swing.JPanel();
         jLabel1 = new javax.swing.JLabel();
         jScrollPane1 = new javax.swing.JScrollPane();
-        buyList = new javax.swing.JList();
+        buyList = new javax.swing.JList<>();
         jLabel2 = new javax.swing.JLabel();
         jScrollPane2 = new javax.swing.JScrollPane();
-        sellList = new javax.swing.JList();
+        sellList = new javax.swing.JList<>();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
 
@@ -52,12 +86,12 @@ public class BookDepthDisplay extends javax.swing.JFrame {
 
         jLabel1.setText("Buy Side:");
 
-        buyList.setModel(new DefaultListModel());
+        buyList.setModel(new DefaultListModel<String>());
         jScrollPane1.setViewportView(buyList);
 
         jLabel2.setText("Sell Side:");
 
-        sellList.setModel(new DefaultListModel());
+        sellList.setModel(new DefaultListModel<String>());
         jScrollPane2.setViewportView(sellList);
 
         javax.swing.GroupLayout jPanel1Layout = new javax.swing.GroupLayout(jPanel1);
@@ -107,32 +141,80 @@ public class BookDepthDisplay extends javax.swing.JFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     public void setVisible(String p) {
+        if (subscribed != null && !subscribed.equals(p)) {
+            unsubscribe();
+        }
         product = p;
-        ((DefaultListModel) buyList.getModel()).clear();
-        ((DefaultListModel) sellList.getModel()).clear();
         try {
-            String[][] depth = marketDisplay.getUser().getBookDepth(product);
-            for (String s : depth[0])
-                ((DefaultListModel) buyList.getModel()).addElement(s);
-            for (String s : depth[1])
-                ((DefaultListModel) sellList.getModel()).addElement(s);
-            
+            if (subscribed == null) {
+                marketDisplay.getUser().subscribeBookDepth(product);
+                subscribed = product;
+            }
         } catch (Exception ex) {
             Logger.getLogger(BookDepthDisplay.class.getName()).log(Level.SEVERE, null, ex);
-        } 
-        
-        
+        }
+        takeSnapshot();
+
         setTitle("Book Depth for " + product);
         super.setVisible(true);
 
     }
+
+    /**
+     * Applies depth changes from the MarketUpdateQueue. Called on the EDT
+     * only.
+     * @param changes depth changes of any product, in the order they were made
+     */
+    void showDepthChanges(Collection<BookDepthDTO> changes) {
+        if (subscribed == null) {
+            return;
+        }
+        for (BookDepthDTO d : changes) {
+            if (!subscribed.equals(d.product) || d.sequence <= sequence) {
+                continue;
+            }
+            if (d.sequence != sequence + 1) {
+                takeSnapshot();
+                continue;
+            }
+            sequence = d.sequence;
+            if (d.side == BookSide.BUY) {
+                buyModel.setLevel(d.price, d.volume);
+            } else {
+                sellModel.setLevel(d.price, d.volume);
+            }
+        }
+    }
+
+    private void takeSnapshot() {
+        try {
+            BookDepthSnapshotDTO snapshot = marketDisplay.getUser().getBookDepthSnapshot(product);
+            sequence = snapshot.sequence;
+            buyModel.setLevels(snapshot.buyLevels);
+            sellModel.setLevels(snapshot.sellLevels);
+        } catch (Exception ex) {
+            Logger.getLogger(BookDepthDisplay.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void unsubscribe() {
+        if (subscribed == null) {
+            return;
+        }
+        try {
+            marketDisplay.getUser().unSubscribeBookDepth(subscribed);
+        } catch (Exception ex) {
+            Logger.getLogger(BookDepthDisplay.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        subscribed = null;
+    }
     // Variables declaration - do not modify//GEN-BEGIN:variables
-    private javax.swing.JList buyList;
+    private javax.swing.JList<String> buyList;
     private javax.swing.JLabel jLabel1;
     private javax.swing.JLabel jLabel2;
     private javax.swing.JPanel jPanel1;
     private javax.swing.JScrollPane jScrollPane1;
     private javax.swing.JScrollPane jScrollPane2;
-    private javax.swing.JList sellList;
+    private javax.swing.JList<String> sellList;
     // End of variables declaration//GEN-END:variables
 }
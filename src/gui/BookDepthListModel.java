@@ -0,0 +1,88 @@
+package gui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import javax.swing.AbstractListModel;
+
+import constants.global.BookSide;
+import messages.BookDepthDTO;
+import price.Price;
+
+/**
+ * The BookDepthListModel holds the price levels of one side of a book, best
+ * price first, as "price x volume" rows. A depth change only touches its own
+ * level: the row is found by binary search and only that row is redrawn,
+ * added or removed. Like all Swing models it is only used on the EDT.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class BookDepthListModel extends AbstractListModel<String> {
+
+    private final boolean buySide;
+
+    /**
+     * Level prices, best first, and the volume at each
+     */
+    private final ArrayList<Price> prices = new ArrayList<>();
+    private final ArrayList<Integer> volumes = new ArrayList<>();
+
+    BookDepthListModel(BookSide side) {
+        buySide = side == BookSide.BUY;
+    }
+
+    /**
+     * Replaces every level
+     * @param levels the levels, best price first
+     */
+    void setLevels(ArrayList<BookDepthDTO> levels) {
+        int oldSize = prices.size();
+        prices.clear();
+        volumes.clear();
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        for (BookDepthDTO d : levels) {
+            prices.add(d.price);
+            volumes.add(d.volume);
+        }
+        if (!prices.isEmpty()) {
+            fireIntervalAdded(this, 0, prices.size() - 1);
+        }
+    }
+
+    /**
+     * Applies a change to one level
+     * @param p price of the level
+     * @param volume new volume at the price; zero removes the level
+     */
+    void setLevel(Price p, int volume) {
+        int i = buySide ? Collections.binarySearch(prices, p, Collections.reverseOrder())
+                : Collections.binarySearch(prices, p);
+        if (i >= 0) {
+            if (volume == 0) {
+                prices.remove(i);
+                volumes.remove(i);
+                fireIntervalRemoved(this, i, i);
+            } else {
+                volumes.set(i, volume);
+                fireContentsChanged(this, i, i);
+            }
+        } else if (volume != 0) {
+            i = -i - 1;
+            prices.add(i, p);
+            volumes.add(i, volume);
+            fireIntervalAdded(this, i, i);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return prices.size();
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return prices.get(index) + " x " + volumes.get(index);
+    }
+}
@@ -4,9 +4,11 @@
  */
 package gui;
 
+import client.PositionSnapshot;
 import client.User;
 import client.exceptions.PositionException;
 
+import java.awt.FontMetrics;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
@@ -14,22 +16,25 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
+import javax.swing.JScrollBar;
 import javax.swing.JSeparator;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 
 import price.Price;
 import price.PriceFactory;
 import price.exceptions.InvalidPriceOperation;
 import price.exceptions.PriceException;
 import book.ProductService;
+import messages.BookDepthDTO;
 import messages.MarketDataDTO;
 
 
@@ -49,16 +54,23 @@ public class MarketDisplay extends javax.swing.JFrame {
     private OrderCancelDisplay orderCancelDisplay = new OrderCancelDisplay(this);
     private BookDepthDisplay bookDepthDisplay = new BookDepthDisplay(this);
     private PositionDisplay positionDisplay = new PositionDisplay();
+    private MarketTableModel marketModel = new MarketTableModel();
+    private ActivityLog activityLog = new ActivityLog();
+    private JList<ActivityEvent> activityList;
+    private JPopupMenu activityPopup;
+    private String activityMenuProduct;
 
     MarketDisplay(User u) {
         user = u;
 
         initComponents();
+        marketTable.setModel(marketModel);
 
         userNameText.setText(user.getUserName());
         positionDisplay.setTitle("User: " + user.getUserName());
 
         makePopUpMenu();
+        makeActivityList();
 
         renderer.setHorizontalAlignment(JLabel.CENTER);
         for (int i = 0; i < marketTable.getColumnCount(); i++) {
@@ -67,7 +79,6 @@ public class MarketDisplay extends javax.swing.JFrame {
         // repaint to show table cell changes
         marketTable.updateUI();
 
-        ((DefaultTableModel) marketTable.getModel()).setRowCount(0);
         symbolCombo.removeAllItems();
         symbolCombo.insertItemAt("", 0);
         for (int i = 0; i < user.getProductList().size(); i++) {
@@ -121,6 +132,34 @@ public class MarketDisplay extends javax.swing.JFrame {
         marketTable.addMouseListener(popupListener);
     }
 
+    /**
+     * Shows the activity log in a list in place of the activity text area.
+     * The list has fixed size cells, so it only formats the rows on screen.
+     */
+    private void makeActivityList() {
+        activityList = new JList<>(activityLog);
+        activityList.setFont(activityText.getFont());
+        activityList.setPrototypeCellValue(ActivityEvent.other(String.format(
+                "{%s} Cancel Message: SELL 10000 XXXX at $0000.00 Canceling order with order ID: %s",
+                new Timestamp(0), "XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX")));
+        jScrollPane2.setViewportView(activityList);
+
+        JMenuItem menuItem;
+        activityPopup = new JPopupMenu();
+        for (String command : new String[] {"All Activity", "Fills Only", "Cancels Only", "Market State Only"}) {
+            menuItem = new JMenuItem(command);
+            menuItem.addActionListener(new ActivityFilterListener());
+            activityPopup.add(menuItem);
+        }
+        activityPopup.add(new JSeparator()); // SEPARATOR
+        for (String command : new String[] {"This Symbol Only", "All Symbols"}) {
+            menuItem = new JMenuItem(command);
+            menuItem.addActionListener(new ActivityFilterListener());
+            activityPopup.add(menuItem);
+        }
+        activityList.addMouseListener(new ActivityPopupListener());
+    }
+
     /**
      * This method is called from within the constructor to initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is always
@@ -366,7 +405,7 @@ public class MarketDisplay extends javax.swing.JFrame {
                 md.sellPrice.toString(),
                 "" + md.sellVolume, ""};
 
-            ((DefaultTableModel) marketTable.getModel()).addRow(row);
+            marketModel.addRow(row);
 
             symbolCombo.setSelectedIndex(0);
 
@@ -380,9 +419,10 @@ public class MarketDisplay extends javax.swing.JFrame {
     }//GEN-LAST:event_symbolComboActionPerformed
 
     private void jButton1ActionPerformed(java.awt.event.ActionEvent evt) throws InvalidPriceOperation, PositionException, PriceException {//GEN-FIRST:event_jButton1ActionPerformed
-        positionDisplay.updateAccountBalance(user.getAccountCosts());
-        positionDisplay.updateStockValue(user.getAllStockValue());
-        positionDisplay.updateAccountValue(user.getNetAccountValue());
+        PositionSnapshot totals = user.getPositionSnapshot();
+        positionDisplay.updateAccountBalance(PriceFactory.makeLimitPrice(totals.getAccountCosts()));
+        positionDisplay.updateStockValue(PriceFactory.makeLimitPrice(totals.getStockValue()));
+        positionDisplay.updateAccountValue(PriceFactory.makeLimitPrice(totals.getNetAccountValue()));
 
         ArrayList<String[]> positions = new ArrayList<>();
         for (String sym : user.getHoldings()) {
@@ -397,14 +437,66 @@ public class MarketDisplay extends javax.swing.JFrame {
         positionDisplay.setVisible(true);
     }//GEN-LAST:event_jButton1ActionPerformed
 
-    void updateMarketData(String product, Price bp, int bv, Price sp, int sv) throws InvalidPriceOperation {
-        int row = getRowForProduct(product);
-        if (row < 0) {
-            return;
+    /**
+     * Draws one frame of updates from the MarketUpdateQueue. Called on the
+     * EDT only.
+     * @param products products whose book or last sale changed
+     * @param ticks ticker entries, oldest first
+     * @param activity activity events to add to the log
+     * @param depth book depth changes, in the order they were made
+     * @param state the new market state, or null if it has not changed
+     */
+    void showFrame(Collection<MarketUpdateQueue.ProductSlot> products,
+            Collection<MarketUpdateQueue.Tick> ticks, Collection<ActivityEvent> activity,
+            Collection<BookDepthDTO> depth, String state) {
+        for (MarketUpdateQueue.ProductSlot p : products) {
+            int row = marketModel.getRowForProduct(p.product);
+            if (row < 0) {
+                continue;
+            }
+            try {
+                if (p.marketShown) {
+                    showMarketData(row, p.shownBuyPrice, p.shownBuyVolume, p.shownSellPrice, p.shownSellVolume);
+                }
+                if (p.lastSaleShown) {
+                    showLastSale(row, p.shownLastPrice, p.shownLastVolume);
+                }
+            } catch (InvalidPriceOperation ex) {
+                Logger.getLogger(MarketDisplay.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        if (!ticks.isEmpty()) {
+            showTicker(ticks);
+        }
+        if (!activity.isEmpty()) {
+            showActivity(activity);
         }
+        if (!depth.isEmpty()) {
+            bookDepthDisplay.showDepthChanges(depth);
+        }
+        if (state != null) {
+            stateText.setText(state);
+        }
+    }
 
+    /**
+     * Adds events to the activity log, keeping the newest in view if the list
+     * was scrolled to the end
+     */
+    private void showActivity(Collection<ActivityEvent> activity) {
+        JScrollBar bar = jScrollPane2.getVerticalScrollBar();
+        boolean atEnd = bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum();
+        for (ActivityEvent e : activity) {
+            activityLog.add(e);
+        }
+        if (atEnd && activityLog.getSize() > 0) {
+            activityList.ensureIndexIsVisible(activityLog.getSize() - 1);
+        }
+    }
+
+    private void showMarketData(int row, Price bp, int bv, Price sp, int sv) throws InvalidPriceOperation {
         Price buyP = bp == null ? PriceFactory.makeLimitPrice("0.00") : bp;
-        Price sellP = bp == null ? PriceFactory.makeLimitPrice("0.00") : sp;
+        Price sellP = sp == null ? PriceFactory.makeLimitPrice("0.00") : sp;
 
         String width = "";
         try {
@@ -413,67 +505,37 @@ public class MarketDisplay extends javax.swing.JFrame {
             Logger.getLogger(MarketDisplay.class.getName()).log(Level.SEVERE, null, ex);
         }
 
-
-        ((DefaultTableModel) marketTable.getModel()).setValueAt(bv, row, 1);
-        ((DefaultTableModel) marketTable.getModel()).setValueAt(buyP.toString(), row, 2);
-        ((DefaultTableModel) marketTable.getModel()).setValueAt(width, row, 3);
-        ((DefaultTableModel) marketTable.getModel()).setValueAt(sellP.toString(), row, 4);
-        ((DefaultTableModel) marketTable.getModel()).setValueAt(sv, row, 5);
-    }
-
-    void updateLastSale(String product, Price p, int v) throws InvalidPriceOperation {
-
-        int row = getRowForProduct(product);
-        if (row < 0) {
-            return;
-        }
-        ((DefaultTableModel) marketTable.getModel()).setValueAt(
-                v + "@" + (p == null ? PriceFactory.makeLimitPrice("0.00").toString() : p.toString()), row, 6);
-
+        marketModel.setMarket(row, bv, buyP.toString(), width, sellP.toString(), sv);
     }
 
-    void updateMarketActivity(String activity) {
-        activityText.append(activity);
-        activityText.setCaretPosition(activityText.getDocument().getLength());
+    private void showLastSale(int row, Price p, int v) throws InvalidPriceOperation {
+        marketModel.setLastSale(row,
+                v + "@" + (p == null ? PriceFactory.makeLimitPrice("0.00").toString() : p.toString()));
     }
 
-    void updateMarketState(String state) {
-        Timestamp t = new Timestamp(System.currentTimeMillis());
-        activityText.append(String.format("{" + t.toString() + "} Market State Changed to " + state + "%n"));
-        activityText.setCaretPosition(activityText.getDocument().getLength());
-        stateText.setText(state);
-
-    }
-
-    void updateTicker(String product, Price p, char direction) {
-
-        int row = getRowForProduct(product);
-        if (row < 0) {
-            return;
+    /**
+     * Adds a frame's ticker entries for products in the table, then drops
+     * entries from the front until the text fits the field, measuring it once
+     */
+    private void showTicker(Collection<MarketUpdateQueue.Tick> ticks) {
+        StringBuilder sb = new StringBuilder(tickerText.getText());
+        for (MarketUpdateQueue.Tick t : ticks) {
+            if (marketModel.getRowForProduct(t.product) >= 0) {
+                sb.append(" ").append(t.product).append(" ").append(t.price).append(t.direction).append("    ");
+            }
         }
+        String s = sb.toString();
 
-        String newData = " " + product + " " + p + direction + "    ";
-        String s = tickerText.getText() + newData;
-
+        FontMetrics fm = tickerText.getFontMetrics(tickerText.getFont());
         int fieldWidth = tickerText.getWidth();
-        int dataWidth = tickerText.getFontMetrics(tickerText.getFont()).stringWidth(s);
-
-        if (dataWidth > fieldWidth) {
-            s = s.substring(newData.length());
+        int excess = fm.stringWidth(s) - fieldWidth;
+        int cut = 0;
+        while (excess > 0 && cut < s.length()) {
+            excess -= fm.charWidth(s.charAt(cut));
+            cut++;
         }
 
-        tickerText.setText(s);
-
-    }
-
-    private int getRowForProduct(String p) {
-        int rows = ((DefaultTableModel) marketTable.getModel()).getRowCount();
-        for (int i = 0; i < rows; i++) {
-            if (((DefaultTableModel) marketTable.getModel()).getValueAt(i, 0).equals(p)) {
-                return i;
-            }
-        }
-        return -1;
+        tickerText.setText(s.substring(cut));
     }
 
     private void showBookDepth(String product, String[][] bd) {
@@ -515,7 +577,7 @@ public class MarketDisplay extends javax.swing.JFrame {
         public void actionPerformed(ActionEvent ae) {
 
             Timestamp t = new Timestamp(System.currentTimeMillis());
-            String product = (String) ((DefaultTableModel) marketTable.getModel()).getValueAt(menuRow, 0);
+            String product = (String) marketModel.getValueAt(menuRow, MarketTableModel.SYMBOL);
             try {
             switch (ae.getActionCommand()) {
                 case "Enter Quote":
@@ -560,6 +622,63 @@ public class MarketDisplay extends javax.swing.JFrame {
         }
     }
 
+    class ActivityFilterListener implements ActionListener {
+
+        @Override
+        public void actionPerformed(ActionEvent ae) {
+            String product = activityLog.getProductFilter();
+            ActivityEvent.Kind kind = activityLog.getKindFilter();
+            switch (ae.getActionCommand()) {
+                case "All Activity":
+                    kind = null;
+                    break;
+                case "Fills Only":
+                    kind = ActivityEvent.Kind.FILL;
+                    break;
+                case "Cancels Only":
+                    kind = ActivityEvent.Kind.CANCEL;
+                    break;
+                case "Market State Only":
+                    kind = ActivityEvent.Kind.MARKET_STATE;
+                    break;
+                case "This Symbol Only":
+                    if (activityMenuProduct == null) {
+                        return;
+                    }
+                    product = activityMenuProduct;
+                    break;
+                case "All Symbols":
+                    product = null;
+                    break;
+            }
+            activityLog.setFilter(product, kind);
+            if (activityLog.getSize() > 0) {
+                activityList.ensureIndexIsVisible(activityLog.getSize() - 1);
+            }
+        }
+    }
+
+    class ActivityPopupListener extends MouseAdapter {
+
+        @Override
+        public void mousePressed(MouseEvent e) {
+            maybeShowPopup(e);
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent e) {
+            maybeShowPopup(e);
+        }
+
+        private void maybeShowPopup(MouseEvent e) {
+            if (e.isPopupTrigger()) {
+                int i = activityList.locationToIndex(e.getPoint());
+                activityMenuProduct = i < 0 ? null : activityLog.getElementAt(i).getProduct();
+                activityPopup.show(e.getComponent(), e.getX(), e.getY());
+            }
+        }
+    }
+
     class PopupListener extends MouseAdapter {
 
         @Override
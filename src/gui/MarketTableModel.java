@@ -0,0 +1,116 @@
+package gui;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * The MarketTableModel holds the rows of the market table, one per product,
+ * with an index from product to row so updates find their row without
+ * scanning the table. Like all Swing models it is only used on the EDT.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class MarketTableModel extends AbstractTableModel {
+
+    static final int SYMBOL = 0;
+    static final int BUY_VOLUME = 1;
+    static final int BUY_PRICE = 2;
+    static final int WIDTH = 3;
+    static final int SELL_PRICE = 4;
+    static final int SELL_VOLUME = 5;
+    static final int LAST_SALE = 6;
+
+    private static final String[] COLUMNS = {
+        "Symbol", "Buy Volume", "Buy Price", "Market Width", "Sell Price", "Sell Volume", "Last Sale"
+    };
+
+    /**
+     * Cell values by row, then column
+     */
+    private final ArrayList<Object[]> rows = new ArrayList<>();
+
+    /**
+     * Row of each product in the table
+     */
+    private final HashMap<String, Integer> rowIndex = new HashMap<>();
+
+    /**
+     * Adds a row for a product, or replaces the product's row if it has one
+     * @param row cell values, starting with the product's symbol
+     */
+    void addRow(Object[] row) {
+        String product = (String) row[SYMBOL];
+        int r = getRowForProduct(product);
+        if (r >= 0) {
+            rows.set(r, row.clone());
+            fireTableRowsUpdated(r, r);
+            return;
+        }
+        r = rows.size();
+        rows.add(row.clone());
+        rowIndex.put(product, r);
+        fireTableRowsInserted(r, r);
+    }
+
+    /**
+     * @param product Stock symbol
+     * @return the product's row, or -1 if it has none
+     */
+    int getRowForProduct(String product) {
+        Integer r = rowIndex.get(product);
+        return r == null ? -1 : r;
+    }
+
+    /**
+     * Sets the book columns of a row
+     */
+    void setMarket(int row, Object buyVolume, Object buyPrice, Object width, Object sellPrice, Object sellVolume) {
+        Object[] r = rows.get(row);
+        r[BUY_VOLUME] = buyVolume;
+        r[BUY_PRICE] = buyPrice;
+        r[WIDTH] = width;
+        r[SELL_PRICE] = sellPrice;
+        r[SELL_VOLUME] = sellVolume;
+        fireTableRowsUpdated(row, row);
+    }
+
+    /**
+     * Sets the last sale column of a row
+     */
+    void setLastSale(int row, Object lastSale) {
+        rows.get(row)[LAST_SALE] = lastSale;
+        fireTableCellUpdated(row, LAST_SALE);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return rows.get(row)[column];
+    }
+}
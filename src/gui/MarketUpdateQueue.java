@@ -0,0 +1,247 @@
+package gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.swing.Timer;
+
+import messages.BookDepthDTO;
+import messages.CancelMessage;
+import messages.FillMessage;
+import price.Price;
+
+/**
+ * The MarketUpdateQueue stands between the publishers and a MarketDisplay.
+ * Publishers call it on the thread that made the update, usually the one
+ * matching orders; it only stores the update and returns. Book and last sale
+ * updates go into one slot per product that keeps the latest values, ticker
+ * entries, activity events and book depth changes are queued, and a Swing
+ * timer hands whatever has changed to the display on the EDT once a frame.
+ * Depth changes are never merged, since each one is a step in its book's
+ * numbered sequence.
+ *
+ * So the matching thread never touches a Swing component, and a product
+ * that changes a thousand times between frames is drawn once.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class MarketUpdateQueue implements ActionListener {
+
+    /**
+     * Milliseconds between frames
+     */
+    static final int FRAME_MILLIS = 50;
+
+    /**
+     * Most ticker entries kept between frames; older ones would scroll off
+     * the ticker anyway
+     */
+    private static final int MAX_TICKS = 32;
+
+    /**
+     * Most depth changes kept between frames; if more arrive the oldest are
+     * dropped and the depth display takes a new snapshot when it sees the gap
+     */
+    private static final int MAX_DEPTH_CHANGES = 4096;
+
+    /**
+     * Latest values of one product. The pending fields are written by
+     * publishers under the queue's lock; the shown fields are copied from them
+     * at the start of a frame and only read on the EDT.
+     */
+    static final class ProductSlot {
+
+        final String product;
+
+        private boolean dirty;
+        private boolean marketPending;
+        private Price buyPrice, sellPrice;
+        private int buyVolume, sellVolume;
+        private boolean lastSalePending;
+        private Price lastPrice;
+        private int lastVolume;
+
+        boolean marketShown;
+        Price shownBuyPrice, shownSellPrice;
+        int shownBuyVolume, shownSellVolume;
+        boolean lastSaleShown;
+        Price shownLastPrice;
+        int shownLastVolume;
+
+        ProductSlot(String p) {
+            product = p;
+        }
+
+        private void take() {
+            marketShown = marketPending;
+            shownBuyPrice = buyPrice;
+            shownBuyVolume = buyVolume;
+            shownSellPrice = sellPrice;
+            shownSellVolume = sellVolume;
+            lastSaleShown = lastSalePending;
+            shownLastPrice = lastPrice;
+            shownLastVolume = lastVolume;
+            marketPending = false;
+            lastSalePending = false;
+            dirty = false;
+        }
+    }
+
+    /**
+     * A ticker entry
+     */
+    static final class Tick {
+
+        final String product;
+        final Price price;
+        final char direction;
+
+        Tick(String product, Price price, char direction) {
+            this.product = product;
+            this.price = price;
+            this.direction = direction;
+        }
+    }
+
+    private final MarketDisplay display;
+
+    private final HashMap<String, ProductSlot> slots = new HashMap<>();
+
+    /**
+     * Slots changed since the last frame, and the slots of the frame being
+     * drawn
+     */
+    private ArrayList<ProductSlot> dirty = new ArrayList<>();
+    private ArrayList<ProductSlot> frame = new ArrayList<>();
+
+    private ArrayDeque<Tick> ticks = new ArrayDeque<>();
+    private ArrayDeque<Tick> frameTicks = new ArrayDeque<>();
+
+    /**
+     * Activity events since the last frame; no more than the log keeps
+     */
+    private ArrayDeque<ActivityEvent> activity = new ArrayDeque<>();
+    private ArrayDeque<ActivityEvent> frameActivity = new ArrayDeque<>();
+
+    /**
+     * Book depth changes since the last frame, in the order they were made
+     */
+    private ArrayDeque<BookDepthDTO> depth = new ArrayDeque<>();
+    private ArrayDeque<BookDepthDTO> frameDepth = new ArrayDeque<>();
+
+    private String marketState;
+
+    MarketUpdateQueue(MarketDisplay md) {
+        display = md;
+        Timer timer = new Timer(FRAME_MILLIS, this);
+        timer.setCoalesce(true);
+        timer.start();
+    }
+
+    private ProductSlot slotFor(String product) {
+        ProductSlot s = slots.get(product);
+        if (s == null) {
+            s = new ProductSlot(product);
+            slots.put(product, s);
+        }
+        if (!s.dirty) {
+            s.dirty = true;
+            dirty.add(s);
+        }
+        return s;
+    }
+
+    synchronized void updateMarketData(String product, Price bp, int bv, Price sp, int sv) {
+        ProductSlot s = slotFor(product);
+        s.buyPrice = bp;
+        s.buyVolume = bv;
+        s.sellPrice = sp;
+        s.sellVolume = sv;
+        s.marketPending = true;
+    }
+
+    synchronized void updateLastSale(String product, Price p, int v) {
+        ProductSlot s = slotFor(product);
+        s.lastPrice = p;
+        s.lastVolume = v;
+        s.lastSalePending = true;
+    }
+
+    synchronized void updateTicker(String product, Price p, char direction) {
+        if (ticks.size() == MAX_TICKS) {
+            ticks.removeFirst();
+        }
+        ticks.addLast(new Tick(product, p, direction));
+    }
+
+    synchronized void updateFill(FillMessage fm) {
+        addActivity(ActivityEvent.fill(fm));
+    }
+
+    synchronized void updateCancel(CancelMessage cm) {
+        addActivity(ActivityEvent.cancel(cm));
+    }
+
+    synchronized void updateMarketActivity(String activityText) {
+        addActivity(ActivityEvent.other(activityText));
+    }
+
+    synchronized void updateMarketState(String state) {
+        addActivity(ActivityEvent.marketState(state));
+        marketState = state;
+    }
+
+    synchronized void updateBookDepth(BookDepthDTO d) {
+        if (depth.size() == MAX_DEPTH_CHANGES) {
+            depth.removeFirst();
+        }
+        depth.addLast(d);
+    }
+
+    private void addActivity(ActivityEvent e) {
+        if (activity.size() == ActivityLog.CAPACITY) {
+            activity.removeFirst();
+        }
+        activity.addLast(e);
+    }
+
+    /**
+     * Draws one frame on the EDT: takes what has changed under the lock, then
+     * hands it to the display without the lock held
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        String state;
+        synchronized (this) {
+            if (dirty.isEmpty() && ticks.isEmpty() && activity.isEmpty() && depth.isEmpty()
+                    && marketState == null) {
+                return;
+            }
+            for (ProductSlot s : dirty) {
+                s.take();
+            }
+            ArrayList<ProductSlot> d = frame;
+            frame = dirty;
+            dirty = d;
+            ArrayDeque<Tick> t = frameTicks;
+            frameTicks = ticks;
+            ticks = t;
+            ArrayDeque<ActivityEvent> a = frameActivity;
+            frameActivity = activity;
+            activity = a;
+            ArrayDeque<BookDepthDTO> b = frameDepth;
+            frameDepth = depth;
+            depth = b;
+            state = marketState;
+            marketState = null;
+        }
+        display.showFrame(frame, frameTicks, frameActivity, frameDepth, state);
+        frame.clear();
+        frameTicks.clear();
+        frameActivity.clear();
+        frameDepth.clear();
+    }
+}
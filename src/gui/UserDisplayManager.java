@@ -5,8 +5,10 @@
 package gui;
 
 import client.User;
+import messages.BookDepthDTO;
+import messages.CancelMessage;
+import messages.FillMessage;
 import price.Price;
-import price.exceptions.InvalidPriceOperation;
 
 /**
  *
@@ -16,33 +18,47 @@ public class UserDisplayManager {
 
     private User user;
     private MarketDisplay marketDisplay;
+    private MarketUpdateQueue updates;
 
     public UserDisplayManager(User u) {
         user = u;
         marketDisplay = new MarketDisplay(u);
+        updates = new MarketUpdateQueue(marketDisplay);
     }
 
     public void showMarketDisplay() throws Exception {
         marketDisplay.setVisible(true);
     }
 
-    public void updateMarketData(String product, Price bp, int bv, Price sp, int sv) throws InvalidPriceOperation {
-        marketDisplay.updateMarketData(product, bp, bv, sp, sv);
+    public void updateMarketData(String product, Price bp, int bv, Price sp, int sv) {
+        updates.updateMarketData(product, bp, bv, sp, sv);
     }
     
-    public void updateLastSale(String product, Price p, int v) throws InvalidPriceOperation {
-        marketDisplay.updateLastSale(product, p, v);
+    public void updateLastSale(String product, Price p, int v) {
+        updates.updateLastSale(product, p, v);
     }
     
     public void updateTicker(String product, Price p, char direction) {
-        marketDisplay.updateTicker(product, p, direction);
+        updates.updateTicker(product, p, direction);
     }
     
+    public void updateFill(FillMessage fm) {
+        updates.updateFill(fm);
+    }
+
+    public void updateCancel(CancelMessage cm) {
+        updates.updateCancel(cm);
+    }
+
     public void updateMarketActivity(String activityText) {
-        marketDisplay.updateMarketActivity(activityText);
+        updates.updateMarketActivity(activityText);
     }
     
     public void updateMarketState(String message) {
-        marketDisplay.updateMarketState(message);
+        updates.updateMarketState(message);
+    }
+
+    public void updateBookDepth(BookDepthDTO d) {
+        updates.updateBookDepth(d);
     }
 }
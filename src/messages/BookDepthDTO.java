@@ -0,0 +1,69 @@
+package messages;
+
+import constants.global.BookSide;
+import constants.global.DepthAction;
+import price.Price;
+
+/**
+ * The BookDepthDTO class is based upon the "Data Transfer Object" pattern.
+ * This DTO carries one change to the depth of a stock's book: the new total
+ * volume resting at one price on one side. The action tells whether the
+ * level is new (ADD), had its volume changed (CHANGE) or is gone (DELETE,
+ * with a volume of zero).
+ *
+ * Each book numbers its depth changes, one after another, so a subscriber
+ * can line the changes up with a BookDepthSnapshotDTO and notice when it has
+ * missed one.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class BookDepthDTO {
+
+  /**
+   * The stock product (i.e., IBM) whose book changed.
+   */
+  public String product;
+
+  /**
+   * The side (BUY/SELL) of the book that changed.
+   */
+  public BookSide side;
+
+  /**
+   * Whether the level was added, changed or deleted.
+   */
+  public DepthAction action;
+
+  /**
+   * The price of the level that changed.
+   */
+  public Price price;
+
+  /**
+   * The total volume now resting at the price; zero if the level is gone.
+   */
+  public int volume;
+
+  /**
+   * The number of this change in the book's sequence of depth changes.
+   */
+  public long sequence;
+
+  public BookDepthDTO(String product, BookSide side, DepthAction action,
+          Price price, int volume, long sequence) {
+    this.product = product;
+    this.side = side;
+    this.action = action;
+    this.price = price;
+    this.volume = volume;
+    this.sequence = sequence;
+  }
+
+  /**
+   * @return A String with the BookDepthDTO data
+   */
+  public String toString() {
+    return "Product: " + product + ". Side: " + side + ", Action: " + action + ", Price: " + price +
+            ", Volume: " + volume + ", Sequence: " + sequence;
+  }
+}
@@ -0,0 +1,51 @@
+package messages;
+
+import java.util.ArrayList;
+
+/**
+ * The BookDepthSnapshotDTO class is based upon the "Data Transfer Object"
+ * pattern. This DTO carries every price level of a stock's book, best price
+ * first on each side, as of one point in the book's sequence of depth
+ * changes. Applying the BookDepthDTOs numbered after that point keeps the
+ * levels up to date.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class BookDepthSnapshotDTO {
+
+  /**
+   * The stock product (i.e., IBM) the levels belong to.
+   */
+  public String product;
+
+  /**
+   * The number of the last depth change included in the levels.
+   */
+  public long sequence;
+
+  /**
+   * The BUY side levels, highest price first.
+   */
+  public ArrayList<BookDepthDTO> buyLevels;
+
+  /**
+   * The SELL side levels, lowest price first.
+   */
+  public ArrayList<BookDepthDTO> sellLevels;
+
+  public BookDepthSnapshotDTO(String product, long sequence,
+          ArrayList<BookDepthDTO> buyLevels, ArrayList<BookDepthDTO> sellLevels) {
+    this.product = product;
+    this.sequence = sequence;
+    this.buyLevels = buyLevels;
+    this.sellLevels = sellLevels;
+  }
+
+  /**
+   * @return A String with the BookDepthSnapshotDTO data
+   */
+  public String toString() {
+    return "Product: " + product + ". Sequence: " + sequence + ", Buy Levels: "
+            + buyLevels.size() + ", Sell Levels: " + sellLevels.size();
+  }
+}
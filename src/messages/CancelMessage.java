@@ -32,10 +32,33 @@ public class CancelMessage implements GenericMessage, Comparable<CancelMessage>
           String product, Price price, int volume, String details,
           BookSide side, String id)
           throws InvalidMessageException {
-    cancelMessageImpl = MessageFactory.createCancelMessageImpl(user,
+    cancelMessageImpl = MessageFactory.createMessageImpl(user,
             product, price, volume, details, side, id);
   }
 
+  /**
+   * Creates a cancel message with one of the standard details texts. The
+   * details text is only built if getDetails() is called.
+   *
+   * @param user The String username of the user whose order or quote-side is being cancelled.
+   * Cannot be null or empty
+   * @param product The string stock symbol that the cancelled order or quote-side was submitted for.
+   * Cannot be null or empty
+   * @param price The price specified in the cancelled order or quote-side. Cannot be null
+   * @param volume The quantity of the order or quote-side that was cancelled. Cannot be negative
+   * @param details The kind of details text. Cannot be null
+   * @param side The side (BUY/SELL) of the cancelled order or quote-side. Must be a valid side
+   * @param id The String identifier of the cancelled order or quote-side. Cannot be null
+   * @throws InvalidMessageException
+   */
+  public CancelMessage(String user,
+          String product, Price price, int volume, MessageDetails details,
+          BookSide side, String id)
+          throws InvalidMessageException {
+    cancelMessageImpl = MessageFactory.createMessageImpl(user,
+            product, price, volume, details, 0, side, id);
+  }
+
   /**
    * @return The username of the user whose order or quote-side is being cancelled.
    */
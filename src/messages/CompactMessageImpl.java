@@ -0,0 +1,236 @@
+package messages;
+
+import constants.global.BookSide;
+import price.Price;
+import registry.SymbolRegistry;
+import registry.UserRegistry;
+import messages.exceptions.InvalidMessageException;
+
+/**
+ * A compact implementation for Cancel and Fill Messages. The user and product
+ * are kept as their ids in the UserRegistry and SymbolRegistry, and details
+ * given as a MessageDetails kind are kept as the kind and its int argument;
+ * the text is rendered the first time getDetails() is called.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class CompactMessageImpl implements GenericMessage {
+
+  /**
+   * Registry ids of the user and product
+   */
+  private final int userId;
+  private final int productId;
+
+  /**
+   * The price of the order/quote side
+   */
+  private final Price price;
+
+  /**
+   * The volume of the order/quote side
+   */
+  private int volume;
+
+  /**
+   * The side of the order/quote side
+   */
+  private final BookSide side;
+
+  /**
+   * The String identifier of the cancelled/filled order or quote-side.
+   */
+  private final String id;
+
+  /**
+   * The details kind, or null if the details were given as text
+   */
+  private MessageDetails kind;
+
+  /**
+   * The int argument of the details kind
+   */
+  private int detailsArg;
+
+  /**
+   * Details given as text, or the rendered details once getDetails() ran
+   */
+  private String details;
+
+  /**
+   * Creates a message with text details.
+   * @throws InvalidMessageException
+   */
+  CompactMessageImpl(String user, String product, Price price, int volume,
+          String details, BookSide side, String id) throws InvalidMessageException {
+    this(user, product, price, volume, null, 0, details != null && !details.isEmpty(), side, id);
+    this.details = details;
+  }
+
+  /**
+   * Creates a message with lazily rendered details.
+   * @throws InvalidMessageException
+   */
+  CompactMessageImpl(String user, String product, Price price, int volume,
+          MessageDetails kind, int detailsArg, BookSide side, String id) throws InvalidMessageException {
+    this(user, product, price, volume, kind, detailsArg, kind != null, side, id);
+  }
+
+  private CompactMessageImpl(String user, String product, Price p, int theVolume,
+          MessageDetails theKind, int arg, boolean hasDetails, BookSide theSide,
+          String theId) throws InvalidMessageException {
+    validate(user, product, p, theVolume, hasDetails, theSide, theId);
+    userId = UserRegistry.getInstance().register(user);
+    productId = SymbolRegistry.getInstance().register(product);
+    price = p;
+    volume = theVolume;
+    kind = theKind;
+    detailsArg = arg;
+    side = theSide;
+    id = theId;
+  }
+
+  /**
+   * @return user user of the order/quote side associated with this
+   * cancel/fill message.
+   */
+  public final String getUser() {
+    return UserRegistry.getInstance().nameOf(userId);
+  }
+
+  /**
+   * @return product the product of the order/quote side associated with this
+   * cancel/fill message.
+   */
+  public final String getProduct() {
+    return SymbolRegistry.getInstance().nameOf(productId);
+  }
+
+  /**
+   * @return price the price of the order/quote side associated with this
+   * cancel/fill message.
+   */
+  public final Price getPrice() {
+    return price;
+  }
+
+  /**
+   * @return volume the volume of the order/quote side associated with this
+   * cancel/fill message.
+   */
+  public final int getVolume() {
+    return volume;
+  }
+
+  /**
+   * @return details the details associated with this cancel/fill message,
+   * rendered on the first call when the message has a details kind.
+   */
+  public final String getDetails() {
+    if (details == null && kind != null) {
+      details = kind.render(detailsArg, side, id);
+    }
+    return details;
+  }
+
+  /**
+   * @param k a standard details kind
+   * @return the int argument stored with the details, or -1 if the message
+   * does not have details of the passed kind
+   */
+  final int getDetailsArg(MessageDetails k) {
+    return kind == k ? detailsArg : -1;
+  }
+
+  /**
+   * @return side the side of the order/quote side associated with this
+   * cancel/fill message.
+   */
+  public final BookSide getSide() {
+    return side;
+  }
+
+  /**
+   * @return id the id of the order/quote side associated with this cancel/fill mesage
+   */
+  public final String getID() {
+    return id;
+  }
+
+  /**
+   * Set's the volume of the order/quote side associated with this
+   * cancel/fill message.
+   * @param volume set's the volume to the passed in volume
+   * @throws InvalidMessageException
+   */
+  public final void setVolume(int volume) throws InvalidMessageException {
+    if (volume < 0) {
+      throw new InvalidMessageException("Volume cannot be negative.");
+    }
+    this.volume = volume;
+  }
+
+  /**
+   * Set's the details associated with this cancel/fill message.
+   * @param details set's the details to the passed in details
+   * @throws InvalidMessageException
+   */
+  public final void setDetails(String details) throws InvalidMessageException {
+    if (details == null || details.isEmpty()) {
+      throw new InvalidMessageException("Details cannot be null or empty");
+    }
+    kind = null;
+    detailsArg = 0;
+    this.details = details;
+  }
+
+  /**
+   * Takes the details of another message, keeping its details kind and
+   * argument instead of rendering them.
+   * @param other the message whose details are copied
+   */
+  final void setDetails(CompactMessageImpl other) {
+    kind = other.kind;
+    detailsArg = other.detailsArg;
+    details = other.details;
+  }
+
+  /**
+   * Checks the values a message is built with; the messages are the same as
+   * the ones the GenericMessage setters used.
+   * @throws InvalidMessageException
+   */
+  private static void validate(String user, String product, Price price,
+          int volume, boolean hasDetails, BookSide side, String id) throws InvalidMessageException {
+    if (user == null || user.isEmpty()) {
+      throw new InvalidMessageException("User cannot be null or empty.");
+    }
+    if (product == null || product.isEmpty()) {
+      throw new InvalidMessageException("Product cannot be null or empty.");
+    }
+    if (price == null) {
+      throw new InvalidMessageException("Price cannot be null");
+    }
+    if (volume < 0) {
+      throw new InvalidMessageException("Volume cannot be negative.");
+    }
+    if (!hasDetails) {
+      throw new InvalidMessageException("Details cannot be null or empty");
+    }
+    if (side == null) {
+      throw new InvalidMessageException("Side must be a valid Book Side");
+    }
+    if (id == null || id.isEmpty()) {
+      throw new InvalidMessageException("ID cannot be null or empty.");
+    }
+  }
+
+  /**
+   * @return A String with the cancel/fill message
+   */
+  public String toString() {
+    return "User: " + getUser() + ", Product: " + getProduct() + ", Price: " + getPrice()
+            + ", Volume: " + getVolume() + ", Details: " + getDetails() + ", Side: "
+            + getSide() + ", ID: " + id;
+  }
+}
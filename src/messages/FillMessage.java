@@ -32,10 +32,33 @@ public class FillMessage implements GenericMessage,
           String product, Price price, int volume, String details,
           BookSide side, String id)
           throws InvalidMessageException {
-    fillMessageImpl = MessageFactory.createFillMessageImpl(user,
+    fillMessageImpl = MessageFactory.createMessageImpl(user,
             product, price, volume, details, side, id);
   }
 
+  /**
+   * Creates a fill message whose details read "leaving N". The details text is
+   * only built if getDetails() is called.
+   *
+   * @param user The String username of the user whose order or quote-side was filled. Cannot be null
+   * or empty
+   * @param product The string stock symbol that the filled order or quote-side was submitted for.
+   * Cannot be null or empty
+   * @param price The price that the order or quote-side was filled at. Cannot be null
+   * @param volume The quantity of the order or quote-side that was filled. Cannot be negative
+   * @param leaving The volume the order or quote-side has left after the fill
+   * @param side The side (BUY/SELL) of the filled order or quote-side. Must be a valid side
+   * @param id The String identifier of the filled order or quote-side. Cannot be null
+   * @throws InvalidMessageException
+   */
+  public FillMessage(String user,
+          String product, Price price, int volume, int leaving,
+          BookSide side, String id)
+          throws InvalidMessageException {
+    fillMessageImpl = MessageFactory.createMessageImpl(user,
+            product, price, volume, MessageDetails.LEAVING, leaving, side, id);
+  }
+
   /**
    * @return The username of the user whose order or quote-side is being filled.
    */
@@ -78,6 +101,17 @@ public class FillMessage implements GenericMessage,
     return fillMessageImpl.getSide();
   }
 
+  /**
+   * @return The volume the filled order or quote-side has left after the
+   * fill, or -1 if the message was made with a details text instead
+   */
+  public int getLeavingVolume() {
+    if (fillMessageImpl instanceof CompactMessageImpl) {
+      return ((CompactMessageImpl) fillMessageImpl).getDetailsArg(MessageDetails.LEAVING);
+    }
+    return -1;
+  }
+
   /**
    * Get's the Id of the FillMessage
    * @return Id of the Fill Message
@@ -99,7 +133,8 @@ public class FillMessage implements GenericMessage,
    * @return A String with the fill message
    */
   public String toString() {
-    return fillMessageImpl.toString();
+    String str = fillMessageImpl.toString();
+    return str.substring(0, str.indexOf("ID") - 2);
   }
 
   /**
@@ -119,4 +154,19 @@ public class FillMessage implements GenericMessage,
   public void setDetails(String details) throws InvalidMessageException {
     fillMessageImpl.setDetails(details);
   }
-}
\ No newline at end of file
+
+  /**
+   * Sets the details of a FillMessage to those of another fill, keeping
+   * "leaving N" details as a leaving volume so getLeavingVolume() still
+   * reads it.
+   * @param other the fill whose details are copied
+   * @throws InvalidMessageException
+   */
+  public void setDetails(FillMessage other) throws InvalidMessageException {
+    if (fillMessageImpl instanceof CompactMessageImpl && other.fillMessageImpl instanceof CompactMessageImpl) {
+      ((CompactMessageImpl) fillMessageImpl).setDetails((CompactMessageImpl) other.fillMessageImpl);
+    } else {
+      fillMessageImpl.setDetails(other.getDetails());
+    }
+  }
+}
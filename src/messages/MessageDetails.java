@@ -0,0 +1,58 @@
+package messages;
+
+import constants.global.BookSide;
+
+/**
+ * The standard details texts of fill and cancel messages. A message built with
+ * one of these keeps the kind and one int argument, and renders the text only
+ * when getDetails() is called.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public enum MessageDetails {
+
+  /**
+   * "leaving N", where N is the volume left after a fill
+   */
+  LEAVING {
+    String render(int arg, BookSide side, String id) {
+      return "leaving " + arg;
+    }
+  },
+
+  /**
+   * "Canceling order with order ID: id"
+   */
+  ORDER_CANCELLED {
+    String render(int arg, BookSide side, String id) {
+      return "Canceling order with order ID: " + id;
+    }
+  },
+
+  /**
+   * "Too late to cancel order ID: id"
+   */
+  TOO_LATE_TO_CANCEL {
+    String render(int arg, BookSide side, String id) {
+      return "Too late to cancel order ID: " + id;
+    }
+  },
+
+  /**
+   * "Quote BUY-Side Cancelled." or "Quote SELL-Side Cancelled."
+   */
+  QUOTE_SIDE_CANCELLED {
+    String render(int arg, BookSide side, String id) {
+      return "Quote " + side + "-Side Cancelled.";
+    }
+  };
+
+  /**
+   * Builds the details text of a message of this kind
+   * @param arg the int argument stored with the message
+   * @param side the side of the message
+   * @param id the id of the message
+   * @return the details text
+   */
+  abstract String render(int arg, BookSide side, String id);
+}
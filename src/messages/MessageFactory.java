@@ -13,7 +13,7 @@ import messages.exceptions.InvalidMessageException;
 class MessageFactory {
 
 	/**
-	 * Creates a CancelMessageImpl object the cancel message will delegate to.
+	 * Creates the CompactMessageImpl a cancel or fill message will delegate to.
 	 *
 	 * @param user String username of the user
 	 * @param product String stock symbol
@@ -22,34 +22,36 @@ class MessageFactory {
 	 * @param details Text description
 	 * @param side The side (BUY/SELL)
 	 * @param id String identifier
-	 * @return a cancel message impl object.
+	 * @return a message impl object.
 	 * @throws InvalidMessageException
 	 */
-	public static CancelMessageImpl createCancelMessageImpl(String user,
+	public static GenericMessage createMessageImpl(String user,
 			String product, Price price, int volume, String details,
 			BookSide side, String id) throws InvalidMessageException {
-		return new CancelMessageImpl(user, product, price, volume, details,
+		return new CompactMessageImpl(user, product, price, volume, details,
 				side, id);
 	}
 
-    /**
-     * Creates a FillMessageImpl object the fill message will delegate to.
-     *
-     * @param user String username of the user
-     * @param product String stock symbol
-     * @param price Price specified
-     * @param volume Quantity specified
-     * @param details Text description 
-     * @param side The side (BUY/SELL) 
-     * @param id String identifier 
-     * @return a fill message impl object.
-     * @throws InvalidMessageException
-     */
-	public static FillMessageImpl createFillMessageImpl(String user,
-			String product, Price price, int volume, String details,
-			BookSide side, String id) throws InvalidMessageException {
-		return new FillMessageImpl(user, product, price, volume, details, side,
-				id);
+	/**
+	 * Creates the CompactMessageImpl a cancel or fill message will delegate to,
+	 * with details rendered only when they are read.
+	 *
+	 * @param user String username of the user
+	 * @param product String stock symbol
+	 * @param price Price specified
+	 * @param volume Quantity specified
+	 * @param kind Kind of details text
+	 * @param detailsArg Int argument of the details text
+	 * @param side The side (BUY/SELL)
+	 * @param id String identifier
+	 * @return a message impl object.
+	 * @throws InvalidMessageException
+	 */
+	public static GenericMessage createMessageImpl(String user,
+			String product, Price price, int volume, MessageDetails kind,
+			int detailsArg, BookSide side, String id) throws InvalidMessageException {
+		return new CompactMessageImpl(user, product, price, volume, kind,
+				detailsArg, side, id);
 	}
 
 	/**
@@ -63,25 +65,4 @@ class MessageFactory {
 			throws InvalidMessageException {
 		return new MarketMessageImpl(state);
 	}
-
-	/**
-	 * Creates a generic Market Message used by the CancelMessageImpl and
-	 * FillMessageImpl to delegate requests to.
-	 *
-	 * @param user String username of the user
-	 * @param product String stock symbol
-	 * @param price Price specified
-	 * @param volume Quantity specified
-	 * @param details Text description 
-	 * @param side The side (BUY/SELL) 
-	 * @param id String identifier 
-	 * @return
-	 * @throws InvalidMessageException
-	 */
-	protected static GenericMessage createGenericMessageImpl(String user,
-			String product, Price price, int volume, String details,
-			BookSide side, String id) throws InvalidMessageException {
-		return new GenericMessageImpl(user, product, price, volume, details,
-				side, id);
-	}
 }
\ No newline at end of file
@@ -192,6 +192,14 @@ public final class Price implements Comparable<Price>	{
 		return this.isMarketPrice;
 	}
 	
+	/**
+	 * Returns the raw value of this Price in cents (1499 represents $14.99).
+	 * @return the value in cents, 0 for a Market Price
+	 */
+	public long getCents()	{
+		return this.value;
+	}
+	
 	/**
 	 * Boolean method that tells whether the Price is negative or not. Also
 	 * if the Price is a Market Price.  
@@ -0,0 +1,78 @@
+package publishers;
+
+import client.User;
+import publishers.exceptions.MessagePublisherException;
+import messages.BookDepthDTO;
+
+/**
+ * This publisher notifies users of each change to the price levels of the
+ * books they subscribe to: the new total volume at one price on one side.
+ * A user starts from ProductService.getBookDepthSnapshot and applies the
+ * changes numbered after the snapshot.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class BookDepthPublisher implements DistinctBookDepthPublisher {
+
+  private volatile static BookDepthPublisher instance;
+  private DistinctBookDepthPublisher messagePublisherTopicImpl;
+  private BookDepthPublisher()	{}
+
+  /**
+   * Making the Singleton multi-thread safe
+   * @return new instance of BookDepthPublisher
+   */
+  public static BookDepthPublisher getInstance() {
+    if (instance == null) {
+      synchronized (BookDepthPublisher.class) {
+        if (instance == null) {
+          instance = MessagePublisherTopicFactory.createBookDepthPublisher();
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Set's the BookDepthPublisher to the passed in MessagePublisherTopic
+   * @param impl MessagePublisherTopic that the BookDepthPublisher is set to
+   */
+  BookDepthPublisher(DistinctBookDepthPublisher impl) {
+    messagePublisherTopicImpl = impl;
+  }
+
+  /**
+   * Subscribes users
+   * @param u The user requesting the subscription
+   * @param product The product they are wishing to subscribe to
+   */
+  public synchronized void subscribe(User u, String product) throws MessagePublisherException {
+    messagePublisherTopicImpl.subscribe(u, product);
+  }
+
+  /**
+   * Unsubscribes users
+   * @param u The user requesting the unsubscription
+   * @param product The product they are wishing to unsubscribe from
+   */
+  public synchronized void unSubscribe(User u, String product) throws MessagePublisherException {
+    messagePublisherTopicImpl.unSubscribe(u, product);
+  }
+
+  /**
+   * Drops every subscription the user holds with this publisher
+   * @param u the disconnected user
+   */
+  public synchronized void removeSubscriber(User u) {
+    messagePublisherTopicImpl.removeSubscriber(u);
+  }
+
+  /**
+   * Method that the product books call to send depth changes out
+   * @param d BookDepthDTO object passed as argument
+   */
+  public void publishBookDepth(BookDepthDTO d)
+          throws MessagePublisherException {
+    messagePublisherTopicImpl.publishBookDepth(d);
+  }
+}
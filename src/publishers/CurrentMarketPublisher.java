@@ -57,12 +57,29 @@ public class CurrentMarketPublisher implements DistinctCurrentMarketPublisher {
     messagePublisherTopicImpl.unSubscribe(u, product);
   }
 
+  /**
+   * Drops every subscription the user holds with this publisher
+   * @param u the disconnected user
+   */
+  public synchronized void removeSubscriber(User u) {
+    messagePublisherTopicImpl.removeSubscriber(u);
+  }
+
   /**
    * Method that components of the trading system call to send the market updates out
    * @param m MarketDataDTO object passed as argument 
    */
-  public synchronized void publishCurrentMarket(MarketDataDTO m)
+  public void publishCurrentMarket(MarketDataDTO m)
           throws MessagePublisherException {
     messagePublisherTopicImpl.publishCurrentMarket(m);
   }
+
+  /**
+   * Turns conflation of current market updates on or off. Conflation only
+   * applies while the MarketDataDispatcher is asynchronous.
+   * @param on true to deliver only the newest update to slow subscribers
+   */
+  public void setConflating(boolean on) {
+    messagePublisherTopicImpl.setConflating(on);
+  }
 }
\ No newline at end of file
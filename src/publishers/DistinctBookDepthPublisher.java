@@ -0,0 +1,21 @@
+package publishers;
+
+import publishers.exceptions.MessagePublisherException;
+import messages.BookDepthDTO;
+
+/**
+ * Interface specifying the specific behaviors a BookDepthPublisher
+ * should implement.
+ *
+ * @author Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public interface DistinctBookDepthPublisher extends RoutineMessagePublisher {
+
+	/**
+	 * Notifies users of a change to the depth of the given stock's book.
+	 *
+	 * @param d passed in BookDepthDTO object
+	 */
+	public void publishBookDepth(BookDepthDTO d)
+          throws MessagePublisherException;
+}
@@ -18,4 +18,12 @@ public interface DistinctCurrentMarketPublisher extends RoutineMessagePublisher
 	 */
 	public void publishCurrentMarket(MarketDataDTO m)
           throws MessagePublisherException;
+
+	/**
+	 * Turns conflation on or off. While on, a subscriber that falls behind
+	 * receives only the newest current market of each stock.
+	 *
+	 * @param on true to conflate current market updates
+	 */
+	public void setConflating(boolean on);
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package publishers;
 
+import client.User;
 import publishers.exceptions.MessagePublisherException;
 import messages.CancelMessage;
 import messages.FillMessage;
@@ -12,6 +13,20 @@ import messages.MarketMessage;
  */
 public interface DistinctMessagePublisher extends RoutineMessagePublisher {
 
+	/**
+	 * Subscribes the user to their own fills and cancels for every product.
+	 *
+	 * @param userName The user requesting the subscription
+	 */
+	public void subscribeAll(User userName) throws MessagePublisherException;
+
+	/**
+	 * Unsubscribes the user from their own fills and cancels for every product.
+	 *
+	 * @param userName The user requesting the unsubscription
+	 */
+	public void unSubscribeAll(User userName) throws MessagePublisherException;
+
 	/**
 	 * Notifies the user of a canceled order.
 	 *
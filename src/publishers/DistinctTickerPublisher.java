@@ -18,4 +18,12 @@ public interface DistinctTickerPublisher extends RoutineMessagePublisher {
    * @param p Price of the stock
    */
 	public void publishTicker(String product, Price p) throws MessagePublisherException;
+
+  /**
+   * Turns conflation on or off. While on, a subscriber that falls behind
+   * receives only the newest ticker of each stock.
+   *
+   * @param on true to conflate ticker updates
+   */
+	public void setConflating(boolean on);
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import client.User;
 import price.Price;
 import price.exceptions.InvalidPriceOperation;
 import publishers.exceptions.MessagePublisherException;
+import risk.PositionKeeper;
 
 /**
  * This publisher notifies the user of the last sale of a stock symbol that user
@@ -59,14 +60,24 @@ public class LastSalePublisher implements DistinctLastSalePublisher {
   }
 
   /**
-   * Method that components of the trading system call to send the last sale out
+   * Drops every subscription the user holds with this publisher
+   * @param userName the disconnected user
+   */
+  public synchronized void removeSubscriber(User userName) {
+    messagePublisherTopicImpl.removeSubscriber(userName);
+  }
+
+  /**
+   * Method that components of the trading system call to send the last sale
+  * out; the PositionKeeper marks the product to it first
    * @param product Product with requested last sale
    * @param p Price of the last sale
    * @param v Volume of the last sale
  * @throws InvalidPriceOperation 
    */
 
-  public synchronized void publishLastSale(String product, Price p, int v) throws MessagePublisherException, InvalidPriceOperation {
+  public void publishLastSale(String product, Price p, int v) throws MessagePublisherException, InvalidPriceOperation {
+    PositionKeeper.getInstance().markToMarket(product, p);
     messagePublisherTopicImpl.publishLastSale(product, p, v);
   }
 }
\ No newline at end of file
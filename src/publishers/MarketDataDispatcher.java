@@ -0,0 +1,418 @@
+package publishers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import client.User;
+import client.UserCommandService;
+import price.exceptions.InvalidPriceOperation;
+import publishers.exceptions.MessagePublisherException;
+
+/**
+ * The MarketDataDispatcher decides how the publishers reach their subscribers.
+ * By default (synchronous mode) a publisher calls each subscriber on the
+ * publishing thread, while the book and service locks are held. In
+ * asynchronous mode the publisher only queues the event in the subscriber's
+ * bounded queue, and a pool of dispatcher threads makes the User calls.
+ * Events for one subscriber are delivered in the order they were published.
+ *
+ * Subscriber callbacks run on dispatcher threads in asynchronous mode and
+ * should not wait on the trading system.
+ *
+ * A SlowConsumerPolicy, set for all subscribers or for one, decides what
+ * happens when a subscriber's queue is full. The default, CONFLATE, and
+ * every other policy but BLOCK keep the publisher from waiting on a
+ * subscriber that stopped draining: market data is dropped or conflated,
+ * and a subscriber whose queue is full of fills, cancels or market messages
+ * is disconnected. Queue depth, lag and drop counts are reported through
+ * getMetrics.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class MarketDataDispatcher {
+
+  private volatile static MarketDataDispatcher instance;
+
+  /**
+   * Default number of events a subscriber's queue holds
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  /**
+   * True while events are queued instead of delivered on the publishing thread
+   */
+  private volatile boolean async;
+
+  /**
+   * The dispatcher threads, while in asynchronous mode
+   */
+  private volatile ExecutorService executor;
+
+  /**
+   * Held for reading while an event is queued and for writing while stop
+   * leaves asynchronous mode, so nothing is queued once stop has begun
+   */
+  private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
+
+  /**
+   * Capacity of each subscriber queue
+   */
+  private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+  /**
+   * Policy for subscribers without one of their own
+   */
+  private volatile SlowConsumerPolicy defaultPolicy = SlowConsumerPolicy.CONFLATE;
+
+  /**
+   * Policies and queue capacities set for single subscribers
+   */
+  private final ConcurrentHashMap<User, SlowConsumerPolicy> policies = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<User, Integer> capacities = new ConcurrentHashMap<>();
+
+  /**
+   * Registered sinks, copied on write so publishers read them without a lock
+   */
+  private volatile MarketDataSink[] sinks = new MarketDataSink[0];
+
+  /**
+   * Queue of each subscriber that has been sent an event
+   */
+  private final ConcurrentHashMap<User, SubscriberQueue> queues = new ConcurrentHashMap<>();
+
+  private MarketDataDispatcher() {}
+
+  /**
+   * Making the Singleton multi-thread safe
+   * @return the instance of the MarketDataDispatcher
+   */
+  public static MarketDataDispatcher getInstance() {
+    if (instance == null) {
+      synchronized (MarketDataDispatcher.class) {
+        if (instance == null) {
+          instance = new MarketDataDispatcher();
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Switches to asynchronous mode.
+   * @param threads number of dispatcher threads
+   * @param capacity number of events each subscriber queue holds
+   * @throws MessagePublisherException if already started or an argument is not positive
+   */
+  public synchronized void start(int threads, int capacity) throws MessagePublisherException {
+    if (async) {
+      throw new MessagePublisherException("The market data dispatcher is already started.");
+    }
+    if (threads <= 0 || capacity <= 0) {
+      throw new MessagePublisherException("Thread count and queue capacity must be greater than zero.");
+    }
+    queueCapacity = capacity;
+    queues.clear();
+    executor = Executors.newFixedThreadPool(threads, new DispatcherThreadFactory());
+    async = true;
+  }
+
+  /**
+   * Switches back to synchronous mode once every queued event has been
+   * delivered. A publisher that saw asynchronous mode just before the switch
+   * delivers its event on its own thread instead of queueing it, and events
+   * the dispatcher threads did not get to before they ended are delivered on
+   * the calling thread, so no event is lost.
+   * @throws InterruptedException
+   */
+  public synchronized void stop() throws InterruptedException {
+    if (!async) {
+      return;
+    }
+    gate.writeLock().lock();
+    try {
+      async = false;
+    } finally {
+      gate.writeLock().unlock();
+    }
+    awaitIdle();
+    ExecutorService ex = executor;
+    ex.shutdown();
+    ex.awaitTermination(1, TimeUnit.MINUTES);
+    executor = null;
+    for (SubscriberQueue q : queues.values()) {
+      q.drain();
+    }
+    queues.clear();
+  }
+
+  /**
+   * Waits until every queued event has been delivered
+   * @throws InterruptedException
+   */
+  public void awaitIdle() throws InterruptedException {
+    boolean idle = false;
+    while (!idle) {
+      idle = true;
+      for (SubscriberQueue q : queues.values()) {
+        if (!q.isIdle()) {
+          idle = false;
+          break;
+        }
+      }
+      if (!idle) {
+        Thread.sleep(1);
+      }
+    }
+  }
+
+  /**
+   * Sets the policy for every subscriber that does not have its own
+   * @param p the policy
+   * @throws MessagePublisherException if p is null
+   */
+  public void setSlowConsumerPolicy(SlowConsumerPolicy p) throws MessagePublisherException {
+    if (p == null) {
+      throw new MessagePublisherException("Slow consumer policy cannot be null.");
+    }
+    defaultPolicy = p;
+    for (Map.Entry<User, SubscriberQueue> q : queues.entrySet()) {
+      if (!policies.containsKey(q.getKey())) {
+        q.getValue().setPolicy(p);
+      }
+    }
+  }
+
+  /**
+   * Sets the policy and queue capacity of one subscriber. The policy applies
+   * at once; the capacity applies to the queue created at the next start.
+   * @param u the subscriber
+   * @param p the policy
+   * @param capacity most events the subscriber's queue holds
+   * @throws MessagePublisherException if an argument is null or capacity is not positive
+   */
+  public void setSlowConsumerPolicy(User u, SlowConsumerPolicy p, int capacity) throws MessagePublisherException {
+    if (u == null || p == null) {
+      throw new MessagePublisherException("User and slow consumer policy cannot be null.");
+    }
+    if (capacity <= 0) {
+      throw new MessagePublisherException("Queue capacity must be greater than zero.");
+    }
+    policies.put(u, p);
+    capacities.put(u, capacity);
+    SubscriberQueue q = queues.get(u);
+    if (q != null) {
+      q.setPolicy(p);
+    }
+  }
+
+  /**
+   * Registers a sink to receive every current market, last sale, ticker and
+   * book depth update
+   * @param s the sink
+   * @throws MessagePublisherException if s is null or already registered
+   */
+  public synchronized void addSink(MarketDataSink s) throws MessagePublisherException {
+    if (s == null) {
+      throw new MessagePublisherException("Market data sink cannot be null.");
+    }
+    for (MarketDataSink x : sinks) {
+      if (x == s) {
+        throw new MessagePublisherException("The market data sink is already registered.");
+      }
+    }
+    MarketDataSink[] copy = Arrays.copyOf(sinks, sinks.length + 1);
+    copy[sinks.length] = s;
+    sinks = copy;
+  }
+
+  /**
+   * Removes a registered sink
+   * @param s the sink
+   * @throws MessagePublisherException if s is not registered
+   */
+  public synchronized void removeSink(MarketDataSink s) throws MessagePublisherException {
+    MarketDataSink[] old = sinks;
+    for (int i = 0; i < old.length; i++) {
+      if (old[i] == s) {
+        MarketDataSink[] copy = new MarketDataSink[old.length - 1];
+        System.arraycopy(old, 0, copy, 0, i);
+        System.arraycopy(old, i + 1, copy, i, old.length - i - 1);
+        sinks = copy;
+        return;
+      }
+    }
+    throw new MessagePublisherException("The market data sink is not registered.");
+  }
+
+  /**
+   * @return the registered sinks; the array must not be changed
+   */
+  MarketDataSink[] sinks() {
+    return sinks;
+  }
+
+  /**
+   * @return a snapshot of every subscriber queue
+   */
+  public ArrayList<SubscriberMetrics> getMetrics() {
+    ArrayList<SubscriberMetrics> m = new ArrayList<>();
+    for (SubscriberQueue q : queues.values()) {
+      m.add(q.metrics());
+    }
+    return m;
+  }
+
+  /**
+   * @param u the subscriber
+   * @return a snapshot of the subscriber's queue, or null if it has none
+   */
+  public SubscriberMetrics getMetrics(User u) {
+    SubscriberQueue q = queues.get(u);
+    return q == null ? null : q.metrics();
+  }
+
+  /**
+   * Disconnects a subscriber that fell behind.
+   * The user's subscriptions with every publisher are dropped, its queue is
+   * forgotten so it gets a fresh one if it connects again, its session is
+   * ended and the user is told why. The publisher may hold book locks, so
+   * the disconnect runs on a dispatcher thread.
+   * @param u the subscriber
+   * @param q the subscriber's queue
+   */
+  void disconnect(final User u, final SubscriberQueue q) {
+    final ExecutorService ex = executor;
+    if (ex == null) {
+      queues.remove(u, q);
+      return;
+    }
+    try {
+      ex.execute(new Runnable() {
+        public void run() {
+          CurrentMarketPublisher.getInstance().removeSubscriber(u);
+          LastSalePublisher.getInstance().removeSubscriber(u);
+          TickerPublisher.getInstance().removeSubscriber(u);
+          MessagePublisher.getInstance().removeSubscriber(u);
+          BookDepthPublisher.getInstance().removeSubscriber(u);
+          queues.remove(u, q);
+          try {
+            UserCommandService.getInstance().disconnect(u);
+          } catch (Exception e) {
+            System.out.println(e.getMessage());
+          }
+          try {
+            u.acceptDisconnect("Fell too far behind the messages sent to it.");
+          } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      queues.remove(u, q);
+      System.out.println(e.getMessage());
+    }
+  }
+
+  /**
+   * @return true if events are queued for dispatcher threads
+   */
+  public boolean isAsync() {
+    return async;
+  }
+
+  /**
+   * Queues an event for a subscriber; if its queue is full, the subscriber's
+   * policy decides what happens. If the dispatcher stopped after the
+   * publisher saw isAsync, the event is delivered at once instead.
+   * @param u the subscriber
+   * @param e the event
+   * @throws MessagePublisherException
+   */
+  void enqueue(User u, SubscriberEvent e) throws MessagePublisherException {
+    gate.readLock().lock();
+    try {
+      if (async) {
+        queueOf(u).offer(e);
+      } else {
+        deliverNow(u, e);
+      }
+    } finally {
+      gate.readLock().unlock();
+    }
+  }
+
+  /**
+   * Queues a current market or ticker event for a subscriber, replacing any
+   * update of the same kind and product the subscriber has not received yet.
+   * If the dispatcher stopped after the publisher saw isAsync, the event is
+   * delivered at once instead.
+   * @param u the subscriber
+   * @param e the event
+   * @throws MessagePublisherException
+   */
+  void enqueueLatest(User u, SubscriberEvent e) throws MessagePublisherException {
+    gate.readLock().lock();
+    try {
+      if (async) {
+        queueOf(u).offerLatest(e);
+      } else {
+        deliverNow(u, e);
+      }
+    } finally {
+      gate.readLock().unlock();
+    }
+  }
+
+  /**
+   * Delivers an event on the publishing thread, as in synchronous mode
+   */
+  private void deliverNow(User u, SubscriberEvent e) {
+    try {
+      e.deliverTo(u);
+    } catch (InvalidPriceOperation ex) {
+      System.out.println(ex.getMessage());
+    }
+  }
+
+  /**
+   * Returns the queue of a subscriber, creating it if needed. Only called
+   * with the gate held for reading in asynchronous mode, so the executor is
+   * set.
+   */
+  private SubscriberQueue queueOf(User u) {
+    SubscriberQueue q = queues.get(u);
+    if (q == null) {
+      Integer capacity = capacities.get(u);
+      SlowConsumerPolicy p = policies.get(u);
+      q = new SubscriberQueue(u, capacity == null ? queueCapacity : capacity,
+              p == null ? defaultPolicy : p, executor);
+      SubscriberQueue prior = queues.putIfAbsent(u, q);
+      if (prior != null) {
+        q = prior;
+      }
+    }
+    return q;
+  }
+
+  /**
+   * Creates the daemon dispatcher threads
+   */
+  private static class DispatcherThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "market-data-dispatcher-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package publishers;
+
+import price.Price;
+import messages.BookDepthDTO;
+import messages.MarketDataDTO;
+
+/**
+ * A MarketDataSink receives every current market, last sale, ticker and book
+ * depth update the publishers send out, whether or not any User is subscribed
+ * to the stock. Sinks are registered with the MarketDataDispatcher and called on the
+ * publishing thread, so they must return quickly and must not call back into
+ * the trading system.
+ *
+ * @author Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public interface MarketDataSink {
+
+	/**
+	 * Receives a current market update.
+	 *
+	 * @param m the current market
+	 */
+	public void currentMarket(MarketDataDTO m);
+
+	/**
+	 * Receives a last sale update.
+	 *
+	 * @param product stock symbol
+	 * @param p price of the last sale
+	 * @param volume volume of the last sale
+	 */
+	public void lastSale(String product, Price p, int volume);
+
+	/**
+	 * Receives a ticker update.
+	 *
+	 * @param product stock symbol
+	 * @param p price of the last sale
+	 * @param direction direction of the price move, as sent to Users
+	 */
+	public void ticker(String product, Price p, char direction);
+
+	/**
+	 * Receives a change to one price level of a book. Changes of a product
+	 * arrive in the order of their sequence numbers, under the book's lock,
+	 * so a sink that applies them keeps the same levels as the book's
+	 * getBookDepthSnapshot. A sink registered after the book has taken orders
+	 * only sees the levels that change from then on.
+	 *
+	 * @param d the changed level
+	 */
+	public void bookDepth(BookDepthDTO d);
+}
@@ -5,6 +5,7 @@ import publishers.exceptions.MessagePublisherException;
 import messages.CancelMessage;
 import messages.FillMessage;
 import messages.MarketMessage;
+import risk.PositionKeeper;
 
 /**
  * Implements the cancel message, fill message, and market message publishers
@@ -60,19 +61,45 @@ public class MessagePublisher implements DistinctMessagePublisher {
     messagePublisherTopicImpl.unSubscribe(userName, product);
   }
 
+  /**
+   * Drops every subscription the user holds with this publisher
+   * @param userName the disconnected user
+   */
+  public synchronized void removeSubscriber(User userName) {
+    messagePublisherTopicImpl.removeSubscriber(userName);
+  }
+
+  /**
+   * Subscribes users to their own messages for every product
+   * @param userName The user requesting the subscription
+   */
+  public synchronized void subscribeAll(User userName) throws MessagePublisherException {
+    messagePublisherTopicImpl.subscribeAll(userName);
+  }
+
+  /**
+   * Unsubscribes users from their own messages for every product
+   * @param userName The user requesting the unsubscription
+   */
+  public synchronized void unSubscribeAll(User userName) throws MessagePublisherException {
+    messagePublisherTopicImpl.unSubscribeAll(userName);
+  }
+
   /**
    * Method that publishes a cancel message
    * @param cm Cancel message
    */
-  public synchronized void publishCancel(CancelMessage cm) throws MessagePublisherException {
+  public void publishCancel(CancelMessage cm) throws MessagePublisherException {
     messagePublisherTopicImpl.publishCancel(cm);
   }
 
   /**
-   * Method that publishes a fill message
+   * Method that publishes a fill message, recording it in the exchange's
+   * PositionKeeper first
    * @param fm Fill message
    */
-  public synchronized void publishFill(FillMessage fm) throws MessagePublisherException {
+  public void publishFill(FillMessage fm) throws MessagePublisherException {
+    PositionKeeper.getInstance().recordFill(fm);
     messagePublisherTopicImpl.publishFill(fm);
   }
 
@@ -80,7 +107,7 @@ public class MessagePublisher implements DistinctMessagePublisher {
    * Method that publishes a market message
    * @param mm Market message
    */
-  public synchronized void publishMarketMessage(MarketMessage mm) throws MessagePublisherException {
+  public void publishMarketMessage(MarketMessage mm) throws MessagePublisherException {
     messagePublisherTopicImpl.publishMarketMessage(mm);
   }
 }
\ No newline at end of file
@@ -2,7 +2,8 @@ package publishers;
 
 /**
  * A factory class used to create objects under our publisher package: MessagePublisherTopicImpl, 
- * CurrentMarketPublisher, LastSalePublisher, TickerPublisher, MessagePublisher
+ * CurrentMarketPublisher, LastSalePublisher, TickerPublisher, MessagePublisher,
+ * BookDepthPublisher
  * 
  * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
  */
@@ -40,6 +41,14 @@ class MessagePublisherTopicFactory {
     return new MessagePublisherTopicImpl();
   }
 
+  /**
+   * Creates a BookDepthPublisherTopicImpl object
+   * @return a BookDepthPublisherTopicImpl
+   */
+  private synchronized static DistinctBookDepthPublisher createBookDepthPublisherTopicImpl() {
+    return new MessagePublisherTopicImpl();
+  }
+
   /**
    * Creates a CurrentMarketPublisher object
    * @return a CurrentMarketPublisher
@@ -71,4 +80,12 @@ class MessagePublisherTopicFactory {
   synchronized static MessagePublisher createMessagePublisher() {
     return new MessagePublisher(createDistinctMessagePublisherTopicImpl());
   }
+
+  /**
+   * Creates a BookDepthPublisher object
+   * @return a BookDepthPublisher
+   */
+  synchronized static BookDepthPublisher createBookDepthPublisher() {
+    return new BookDepthPublisher(createBookDepthPublisherTopicImpl());
+  }
 }
\ No newline at end of file
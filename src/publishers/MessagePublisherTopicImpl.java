@@ -2,18 +2,20 @@ package publishers;
 
 import client.User;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import price.Price;
 import price.exceptions.InvalidPriceOperation;
 import publishers.exceptions.MessagePublisherException;
+import messages.BookDepthDTO;
 import messages.CancelMessage;
 import messages.FillMessage;
 import messages.MarketDataDTO;
 import messages.MarketMessage;
+import registry.SymbolRegistry;
+import registry.UserRegistry;
 
 /**
  * The implementation of the MessagePublisher interface that publishers will use
@@ -22,22 +24,161 @@ import messages.MarketMessage;
  * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
  */
 class MessagePublisherTopicImpl implements DistinctCurrentMarketPublisher,
-  DistinctLastSalePublisher, DistinctTickerPublisher, DistinctMessagePublisher {
+  DistinctLastSalePublisher, DistinctTickerPublisher, DistinctMessagePublisher,
+  DistinctBookDepthPublisher {
 
   /**
-   * A hash map of of keys representing stock symbols and a HashSet of users
-   * subscribed to those symbols for stock market updates.
+   * The users subscribed to each stock symbol for stock market updates,
+   * indexed by the symbol id from the SymbolRegistry. The array and the sets
+   * in it are never changed once published; subscribe and unsubscribe build
+   * a new copy and swap it in, so publishing reads a snapshot without a lock.
    */
-  private Map<String, Set<User>> subscribers;
+  private volatile Subscribers[] subscribers;
 
   /**
-   * A hash map of the most recent ticker price for a stock.
+   * Users subscribed to their own fills and cancels for every product,
+   * indexed by the user id from the UserRegistry. Copied on write like
+   * subscribers.
    */
-  private Map<String, Price> tickerVal;
+  private volatile User[] allMessages;
+
+  /**
+   * True if current market and ticker updates are conflated per subscriber
+   * while the dispatcher is asynchronous.
+   */
+  private volatile boolean conflating;
+
+  /**
+   * Number of subscriptions each user holds with this publisher. Only read
+   * and changed under the writer lock.
+   */
+  private final HashMap<User, Integer> subscriptionCounts = new HashMap<>();
+
+  /**
+   * Every distinct user holding at least one subscription with this
+   * publisher, in order of their first subscription. Copied on write, so a
+   * broadcast walks it without a lock, a dedup pass or any allocation.
+   */
+  private volatile User[] everyone = new User[0];
 
   MessagePublisherTopicImpl() {
-    subscribers = new HashMap<>();
-    tickerVal = new HashMap<>();
+    subscribers = new Subscribers[16];
+    allMessages = new User[16];
+  }
+
+  /**
+   * An immutable snapshot of the users subscribed to one stock symbol, kept
+   * next to their user ids so per-user messages can be matched by id. The
+   * slots array maps a user id to its position, so a fill or cancel finds its
+   * one recipient without scanning the other subscribers.
+   */
+  private static final class Subscribers {
+
+    /**
+     * Subscribed users, in subscription order
+     */
+    final User[] users;
+
+    /**
+     * UserRegistry id of each subscribed user
+     */
+    final int[] userIds;
+
+    /**
+     * Number of subscribed users
+     */
+    final int count;
+
+    /**
+     * Position of each user id in users, plus one; zero means not subscribed
+     */
+    final int[] slots;
+
+    /**
+     * The most recent ticker price for the stock, shared by every snapshot
+     * of the stock's subscribers
+     */
+    final AtomicReference<Price> lastTicker;
+
+    Subscribers() {
+      this(new User[0], new int[0], new AtomicReference<Price>());
+    }
+
+    private Subscribers(User[] theUsers, int[] theUserIds, AtomicReference<Price> ticker) {
+      users = theUsers;
+      userIds = theUserIds;
+      count = theUsers.length;
+      lastTicker = ticker;
+      int max = -1;
+      for (int id : theUserIds) {
+        max = Math.max(max, id);
+      }
+      slots = new int[max + 1];
+      for (int i = count - 1; i >= 0; i--) {
+        slots[theUserIds[i]] = i + 1;
+      }
+    }
+
+    int indexOf(User u) {
+      int i = find(UserRegistry.getInstance().idOf(u.getUserName()));
+      if (i >= 0 && users[i].equals(u)) {
+        return i;
+      }
+      for (i = 0; i < count; i++) {
+        if (users[i].equals(u)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * @return the position of the passed user id, or -1 if not subscribed
+     */
+    int find(int userId) {
+      if (userId < 0 || userId >= slots.length) {
+        return -1;
+      }
+      return slots[userId] - 1;
+    }
+
+    /**
+     * @return a copy of this set with the passed user added at the end
+     */
+    Subscribers with(User u, int userId) {
+      User[] u2 = Arrays.copyOf(users, count + 1);
+      int[] id2 = Arrays.copyOf(userIds, count + 1);
+      u2[count] = u;
+      id2[count] = userId;
+      return new Subscribers(u2, id2, lastTicker);
+    }
+
+    /**
+     * @return a copy of this set without the user at position i
+     */
+    Subscribers without(int i) {
+      User[] u2 = new User[count - 1];
+      int[] id2 = new int[count - 1];
+      System.arraycopy(users, 0, u2, 0, i);
+      System.arraycopy(users, i + 1, u2, i, count - i - 1);
+      System.arraycopy(userIds, 0, id2, 0, i);
+      System.arraycopy(userIds, i + 1, id2, i, count - i - 1);
+      return new Subscribers(u2, id2, lastTicker);
+    }
+  }
+
+  /**
+   * Returns the subscribers of the stock with the passed symbol, or null if
+   * no one has ever subscribed to it.
+   * @param product Stock being represented
+   */
+  private Subscribers subscribersOf(String product) {
+    Subscribers[] all = subscribers;
+    int id = SymbolRegistry.getInstance().idOf(product);
+    if (id < 0 || id >= all.length) {
+      return null;
+    }
+    return all[id];
   }
 
   /**
@@ -47,12 +188,40 @@ class MessagePublisherTopicImpl implements DistinctCurrentMarketPublisher,
    * @throws MessagePublisherException
    */
   public synchronized final void subscribe(User userName, String product) throws MessagePublisherException {
-    createUserSetForProduct(product);
-    Set<User> set = subscribers.get(product);
-    if (set.contains(userName)) {
+    if (product == null) {
+      throw new MessagePublisherException("Stock symbol cannot be null.");
+    }
+    int id = SymbolRegistry.getInstance().register(product);
+    Subscribers[] all = subscribers;
+    Subscribers set = id < all.length ? all[id] : null;
+    if (set == null) {
+      set = new Subscribers();
+    } else if (set.indexOf(userName) >= 0) {
       throw new MessagePublisherException("The users is already subscribed to receive updates for this stock symbol: " + product);
     }
-    set.add(userName);
+    Subscribers[] copy = Arrays.copyOf(all, Math.max(all.length, id + 1));
+    copy[id] = set.with(userName, UserRegistry.getInstance().register(userName.getUserName()));
+    subscribers = copy;
+    retain(userName);
+  }
+
+  /**
+   * Returns the subscriber set of the product, publishing an empty one if
+   * there is none yet. Used to keep the ticker state of a product that only
+   * sinks listen to.
+   * @param product Stock being represented
+   * @return the user set for product
+   */
+  private synchronized Subscribers createUserSetForProduct(String product) {
+    int id = SymbolRegistry.getInstance().register(product);
+    Subscribers[] all = subscribers;
+    if (id < all.length && all[id] != null) {
+      return all[id];
+    }
+    Subscribers[] copy = Arrays.copyOf(all, Math.max(all.length, id + 1));
+    copy[id] = new Subscribers();
+    subscribers = copy;
+    return copy[id];
   }
 
   /**
@@ -62,23 +231,157 @@ class MessagePublisherTopicImpl implements DistinctCurrentMarketPublisher,
    * @param product Stock being represented
    */
   public synchronized final void unSubscribe(User userName, String product) throws MessagePublisherException {
-    Set<User> set = subscribers.get(product);
+    Subscribers set = subscribersOf(product);
     if (set == null) {
       throw new MessagePublisherException("No one is registered for this stock symbol: " + product);
     }
-    if (!set.contains(userName)) {
+    int i = set.indexOf(userName);
+    if (i < 0) {
       throw new MessagePublisherException("The user is not subscribed to receive updates for this stock symbol: " + product);
     }
-    set.remove(userName);
+    Subscribers[] copy = subscribers.clone();
+    copy[SymbolRegistry.getInstance().idOf(product)] = set.without(i);
+    subscribers = copy;
+    release(userName);
   }
 
   /**
-   * Creates the user set for product
-   * @param product Stock being represented
+   * Subscribe a user to their own fills and cancels for every product.
+   * @param userName The user requesting the subscription
+   * @throws MessagePublisherException
+   */
+  public synchronized final void subscribeAll(User userName) throws MessagePublisherException {
+    if (userName == null) {
+      throw new MessagePublisherException("User cannot be null.");
+    }
+    int id = UserRegistry.getInstance().register(userName.getUserName());
+    if (allSubscriberOf(id) != null) {
+      throw new MessagePublisherException("The user is already subscribed to receive messages for all stock symbols.");
+    }
+    User[] copy = Arrays.copyOf(allMessages, Math.max(allMessages.length, id + 1));
+    copy[id] = userName;
+    allMessages = copy;
+    retain(userName);
+  }
+
+  /**
+   * Unsubscribe a user from their own fills and cancels for every product.
+   * @param userName The user requesting the unsubscription
+   * @throws MessagePublisherException
    */
-  private synchronized void createUserSetForProduct(String product) throws MessagePublisherException {
-    if (!subscribers.containsKey(product)) {
-      subscribers.put(product, new HashSet<User>());
+  public synchronized final void unSubscribeAll(User userName) throws MessagePublisherException {
+    int id = userName == null ? -1 : UserRegistry.getInstance().idOf(userName.getUserName());
+    User u = allSubscriberOf(id);
+    if (u == null || !u.equals(userName)) {
+      throw new MessagePublisherException("The user is not subscribed to receive messages for all stock symbols.");
+    }
+    User[] copy = allMessages.clone();
+    copy[id] = null;
+    allMessages = copy;
+    release(userName);
+  }
+
+  /**
+   * Drops every subscription the user holds: each product it subscribed to
+   * and its fills and cancels for every product.
+   * @param userName the disconnected user
+   */
+  public synchronized final void removeSubscriber(User userName) {
+    if (userName == null || !subscriptionCounts.containsKey(userName)) {
+      return;
+    }
+    Subscribers[] copy = subscribers.clone();
+    for (int id = 0; id < copy.length; id++) {
+      int i = copy[id] == null ? -1 : copy[id].indexOf(userName);
+      if (i >= 0) {
+        copy[id] = copy[id].without(i);
+      }
+    }
+    subscribers = copy;
+    int uid = UserRegistry.getInstance().idOf(userName.getUserName());
+    User u = allSubscriberOf(uid);
+    if (u != null && u.equals(userName)) {
+      User[] all = allMessages.clone();
+      all[uid] = null;
+      allMessages = all;
+    }
+    subscriptionCounts.put(userName, 1);
+    release(userName);
+  }
+
+  /**
+   * Counts one more subscription for the user, adding it to everyone if it
+   * is the user's first. Called under the writer lock.
+   */
+  private void retain(User u) {
+    Integer n = subscriptionCounts.get(u);
+    if (n == null) {
+      subscriptionCounts.put(u, 1);
+      User[] copy = Arrays.copyOf(everyone, everyone.length + 1);
+      copy[everyone.length] = u;
+      everyone = copy;
+    } else {
+      subscriptionCounts.put(u, n + 1);
+    }
+  }
+
+  /**
+   * Counts one less subscription for the user, removing it from everyone if
+   * it was the user's last. Called under the writer lock.
+   */
+  private void release(User u) {
+    Integer n = subscriptionCounts.get(u);
+    if (n == null) {
+      return;
+    }
+    if (n > 1) {
+      subscriptionCounts.put(u, n - 1);
+      return;
+    }
+    subscriptionCounts.remove(u);
+    User[] old = everyone;
+    User[] copy = new User[old.length - 1];
+    int j = 0;
+    for (User x : old) {
+      if (x != u) {
+        copy[j++] = x;
+      }
+    }
+    everyone = copy;
+  }
+
+  /**
+   * @return the user subscribed to all of their messages under the passed
+   * user id, or null if there is none
+   */
+  private User allSubscriberOf(int userId) {
+    User[] all = allMessages;
+    if (userId < 0 || userId >= all.length) {
+      return null;
+    }
+    return all[userId];
+  }
+
+  /**
+   * Turns conflation of current market and ticker updates on or off.
+   * @param on true to conflate
+   */
+  public void setConflating(boolean on) {
+    conflating = on;
+  }
+
+  /**
+   * Queues an event for every subscriber in the set, conflating it if this
+   * publisher conflates.
+   */
+  private void enqueueAll(MarketDataDispatcher d, Subscribers users, SubscriberEvent e) throws MessagePublisherException {
+    boolean latest = conflating;
+    for (int i = 0; i < users.count; i++) {
+      if (latest) {
+        d.enqueueLatest(users.users[i], e);
+      } else {
+        d.enqueue(users.users[i], e);
+      }
     }
   }
 
@@ -86,13 +389,55 @@ class MessagePublisherTopicImpl implements DistinctCurrentMarketPublisher,
    * Publish the current market price
    * @param m MarketDataDTO object
    */
-  public synchronized void publishCurrentMarket(MarketDataDTO m) throws MessagePublisherException {
-    if (!subscribers.containsKey(m.product)) { 
+  public void publishCurrentMarket(MarketDataDTO m) throws MessagePublisherException {
+    MarketDataDispatcher d = MarketDataDispatcher.getInstance();
+    for (MarketDataSink s : d.sinks()) {
+      try {
+        s.currentMarket(m);
+      } catch (RuntimeException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+    Subscribers users = subscribersOf(m.product);
+    if (users == null) { 
     	return; 
     	}
-    Set<User> users = subscribers.get(m.product);
-    for (User userName : users) {
-      userName.acceptCurrentMarket(m.product, m.buyPrice, m.buyVolume, m.sellPrice, m.sellVolume);
+    if (d.isAsync()) {
+      enqueueAll(d, users, new SubscriberEvent.CurrentMarket(m));
+      return;
+    }
+    for (int i = 0; i < users.count; i++) {
+      users.users[i].acceptCurrentMarket(m.product, m.buyPrice, m.buyVolume, m.sellPrice, m.sellVolume);
+    }
+  }
+
+  /**
+   * Publish a change to the depth of a book. Changes are never conflated,
+   * since each one is about a different price level.
+   * @param b BookDepthDTO object
+   */
+  public void publishBookDepth(BookDepthDTO b) throws MessagePublisherException {
+    MarketDataDispatcher d = MarketDataDispatcher.getInstance();
+    for (MarketDataSink s : d.sinks()) {
+      try {
+        s.bookDepth(b);
+      } catch (RuntimeException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+    Subscribers users = subscribersOf(b.product);
+    if (users == null) {
+      return;
+    }
+    if (d.isAsync()) {
+      SubscriberEvent e = new SubscriberEvent.BookDepth(b);
+      for (int i = 0; i < users.count; i++) {
+        d.enqueue(users.users[i], e);
+      }
+      return;
+    }
+    for (int i = 0; i < users.count; i++) {
+      users.users[i].acceptBookDepth(b);
     }
   }
 
@@ -103,13 +448,32 @@ class MessagePublisherTopicImpl implements DistinctCurrentMarketPublisher,
    * @param v quantity of the stock
  * @throws InvalidPriceOperation 
    */
-  public synchronized void publishLastSale(String product, Price p, int v) throws MessagePublisherException, InvalidPriceOperation {
-    if (!subscribers.containsKey(product)) { 
+  public void publishLastSale(String product, Price p, int v) throws MessagePublisherException, InvalidPriceOperation {
+    MarketDataDispatcher d = MarketDataDispatcher.getInstance();
+    MarketDataSink[] sinks = d.sinks();
+    for (MarketDataSink s : sinks) {
+      try {
+        s.lastSale(product, p, v);
+      } catch (RuntimeException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+    Subscribers users = subscribersOf(product);
+    if (users == null) { 
+      if (sinks.length > 0) {
+        TickerPublisher.getInstance().publishTicker(product, p);
+      }
     	return; 
     	}
-    Set<User> users = subscribers.get(product);
-    for (User userName : users) {
-      userName.acceptLastSale(product, p, v);
+    if (d.isAsync()) {
+      SubscriberEvent e = new SubscriberEvent.LastSale(product, p, v);
+      for (int i = 0; i < users.count; i++) {
+        d.enqueue(users.users[i], e);
+      }
+    } else {
+      for (int i = 0; i < users.count; i++) {
+        users.users[i].acceptLastSale(product, p, v);
+      }
     }
     TickerPublisher.getInstance().publishTicker(product, p);
   }
@@ -120,12 +484,18 @@ class MessagePublisherTopicImpl implements DistinctCurrentMarketPublisher,
    * @param p Price of the stock
    * @return direction Up arrow, down arrow or equal sign
    */
-  public synchronized void publishTicker(String product, Price p) throws MessagePublisherException {
-    if (!subscribers.containsKey(product)) { 
-    	return; 
+  public void publishTicker(String product, Price p) throws MessagePublisherException {
+    MarketDataDispatcher d = MarketDataDispatcher.getInstance();
+    MarketDataSink[] sinks = d.sinks();
+    Subscribers users = subscribersOf(product);
+    if (users == null) { 
+      if (sinks.length == 0) {
+        return;
+      }
+      users = createUserSetForProduct(product);
     	}
     char direction = ' ';
-    Price val = tickerVal.get(product);
+    Price val = users.lastTicker.getAndSet(p);
     if (val != null) {
       if (p.equals(val)) {
         direction = '=';
@@ -135,10 +505,19 @@ class MessagePublisherTopicImpl implements DistinctCurrentMarketPublisher,
         direction = '\u2193';
       }
     }
-    tickerVal.put(product, p);
-    Set<User> users = subscribers.get(product);
-    for (User userName : users) {
-      userName.acceptTicker(product, p, direction);
+    for (MarketDataSink s : sinks) {
+      try {
+        s.ticker(product, p, direction);
+      } catch (RuntimeException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+    if (d.isAsync()) {
+      enqueueAll(d, users, new SubscriberEvent.Ticker(product, p, direction));
+      return;
+    }
+    for (int i = 0; i < users.count; i++) {
+      users.users[i].acceptTicker(product, p, direction);
     }
   }
 
@@ -146,14 +525,27 @@ class MessagePublisherTopicImpl implements DistinctCurrentMarketPublisher,
    * Publish cancel messages
    * @param cm CancelMessage object
    */
-  public synchronized void publishCancel(CancelMessage cm) throws MessagePublisherException {
-    String p = cm.getProduct();
-    if (!subscribers.containsKey(p)) { 
-    	return; 
-    	}
-    for (User userName : subscribers.get(p)) {
-      if (userName.getUserName().equals(cm.getUser())) {
-        userName.acceptMessage(cm);
+  public void publishCancel(CancelMessage cm) throws MessagePublisherException {
+    int uid = UserRegistry.getInstance().idOf(cm.getUser());
+    User product = recipientOf(cm.getProduct(), uid);
+    User all = allSubscriberOf(uid);
+    if (product == null && all == null) {
+      return;
+    }
+    MarketDataDispatcher d = MarketDataDispatcher.getInstance();
+    SubscriberEvent e = d.isAsync() ? new SubscriberEvent.Cancel(cm) : null;
+    if (product != null) {
+      if (e != null) {
+        d.enqueue(product, e);
+      } else {
+        product.acceptMessage(cm);
+      }
+    }
+    if (all != null && !all.equals(product)) {
+      if (e != null) {
+        d.enqueue(all, e);
+      } else {
+        all.acceptMessage(cm);
       }
     }
   }
@@ -162,31 +554,64 @@ class MessagePublisherTopicImpl implements DistinctCurrentMarketPublisher,
    * Holds the object for FillMessage
    * @param fm FillMessage object
    */
-  public synchronized void publishFill(FillMessage fm) throws MessagePublisherException {
-    String p = fm.getProduct();
-    if (!subscribers.containsKey(p)) { return; }
-    for (User userName : subscribers.get(p)) {
-      if (userName.getUserName().equals(fm.getUser())) {
-        userName.acceptMessage(fm);
+  public void publishFill(FillMessage fm) throws MessagePublisherException {
+    int uid = UserRegistry.getInstance().idOf(fm.getUser());
+    User product = recipientOf(fm.getProduct(), uid);
+    User all = allSubscriberOf(uid);
+    if (product == null && all == null) {
+      return;
+    }
+    MarketDataDispatcher d = MarketDataDispatcher.getInstance();
+    SubscriberEvent e = d.isAsync() ? new SubscriberEvent.Fill(fm) : null;
+    if (product != null) {
+      if (e != null) {
+        d.enqueue(product, e);
+      } else {
+        product.acceptMessage(fm);
+      }
+    }
+    if (all != null && !all.equals(product)) {
+      if (e != null) {
+        d.enqueue(all, e);
+      } else {
+        all.acceptMessage(fm);
       }
     }
   }
 
+  /**
+   * Finds the subscriber of a product holding the passed user id with a
+   * single lookup.
+   * @param product Stock being represented
+   * @param userId UserRegistry id of the message's user
+   * @return the subscribed user, or null if the user is not subscribed
+   */
+  private User recipientOf(String product, int userId) {
+    Subscribers users = subscribersOf(product);
+    if (users == null) {
+      return null;
+    }
+    int i = users.find(userId);
+    return i < 0 ? null : users.users[i];
+  }
+
   /**
    * Publish the market message to all the users
    * @param mm MarketMessage object
    */
-  public synchronized void publishMarketMessage(MarketMessage mm) throws MessagePublisherException {
-    HashSet<User> everyUser = new HashSet<>();
-    for (Set<User> users : subscribers.values()) {
-      for (User userName : users) {
-        if (!everyUser.contains(userName)) {
-          everyUser.add(userName);
-        }
+  public void publishMarketMessage(MarketMessage mm) throws MessagePublisherException {
+    User[] everyUser = everyone;
+    String state = mm.getState().toString();
+    MarketDataDispatcher d = MarketDataDispatcher.getInstance();
+    if (d.isAsync()) {
+      SubscriberEvent e = new SubscriberEvent.MarketState(state);
+      for (User userName : everyUser) {
+        d.enqueue(userName, e);
       }
+      return;
     }
     for (User userName : everyUser) {
-      userName.acceptMarketMessage(mm.getState().toString());
+      userName.acceptMarketMessage(state);
     }
   } 
 }
\ No newline at end of file
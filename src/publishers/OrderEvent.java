@@ -0,0 +1,120 @@
+package publishers;
+
+import registry.SymbolRegistry;
+
+/**
+ * One market-by-order event read from the OrderEventPublisher's ring: an
+ * order or quote side coming to rest (ADD), trading against another (EXECUTE)
+ * or leaving the book (DELETE). Orders are known by the compact key their
+ * book gave them when they came to rest. Prices are held in cents.
+ *
+ * An OrderEvent is a holder that an OrderEventReader fills in, so a reader
+ * can tail the ring without creating an object per event.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class OrderEvent {
+
+  /**
+   * Event types
+   */
+  public static final byte ADD = 1;
+  public static final byte EXECUTE = 2;
+  public static final byte DELETE = 3;
+
+  /**
+   * Book sides
+   */
+  public static final byte BUY = 'B';
+  public static final byte SELL = 'S';
+
+  /**
+   * Price value standing for a market price
+   */
+  public static final long MARKET_PRICE = Long.MIN_VALUE;
+
+  long sequence;
+  byte type;
+  long orderKey;
+  int productId;
+  byte side;
+  long price;
+  int volume;
+  int leaves;
+
+  /**
+   * @return the event's number in the ring; events are numbered in the order
+   * the books made them, starting at 1
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @return ADD, EXECUTE or DELETE
+   */
+  public byte getType() {
+    return type;
+  }
+
+  /**
+   * @return the key of the order the event is about
+   */
+  public long getOrderKey() {
+    return orderKey;
+  }
+
+  /**
+   * @return the SymbolRegistry id of the order's product
+   */
+  public int getProductId() {
+    return productId;
+  }
+
+  /**
+   * @return the order's product symbol
+   */
+  public String getProduct() {
+    return SymbolRegistry.getInstance().nameOf(productId);
+  }
+
+  /**
+   * @return BUY or SELL
+   */
+  public byte getSide() {
+    return side;
+  }
+
+  /**
+   * @return the order's price for an ADD or DELETE, or the trade price of an
+   * EXECUTE, in cents
+   */
+  public long getPrice() {
+    return price;
+  }
+
+  /**
+   * @return the volume added for an ADD, or traded for an EXECUTE; 0 for a
+   * DELETE
+   */
+  public int getVolume() {
+    return volume;
+  }
+
+  /**
+   * @return the order's volume left in the book after the event
+   */
+  public int getLeaves() {
+    return leaves;
+  }
+
+  /**
+   * @return Formatted String
+   */
+  public String toString() {
+    String p = price == MARKET_PRICE ? "MKT" : String.format("$%,.2f", (double) price / 100.0);
+    String t = type == ADD ? "add" : type == EXECUTE ? "execute" : "delete";
+    return String.format("#%d %s %s %d %c %d@%s leaves %d", sequence, getProduct(), t, orderKey,
+            (char) side, volume, p, leaves);
+  }
+}
@@ -0,0 +1,171 @@
+package publishers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import price.Price;
+import constants.global.BookSide;
+import tradable.BookEntry;
+import tradable.Tradable;
+
+/**
+ * The OrderEventPublisher is the market-by-order feed: the product book sides
+ * and their trade processor report every order or quote side that comes to
+ * rest, trades and leaves the book, and the publisher writes each event into
+ * a fixed ring of CAPACITY slots in the order the books made them. Events of
+ * one product are made under its book's lock, so they are numbered in the
+ * order the book processed them.
+ *
+ * The ring takes no lock. A writer claims the next number from an atomic
+ * cursor and fills the slot; a slot is marked as being written while its
+ * fields change and holds the event's number once they are complete. Any
+ * number of OrderEventReaders tail the ring, each at its own pace. A reader
+ * never holds up the books: one that falls more than CAPACITY events behind
+ * finds its slots overwritten, skips ahead and counts the events it lost.
+ *
+ * Events are only written while at least one reader is open.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class OrderEventPublisher {
+
+  private volatile static OrderEventPublisher instance;
+
+  /**
+   * Number of events the ring holds; a power of two
+   */
+  public static final int CAPACITY = 1 << 16;
+
+  /**
+   * Longs of event data held per slot
+   */
+  static final int WORDS = 4;
+
+  /**
+   * Slot number value of a slot being written
+   */
+  static final long WRITING = -1;
+
+  static final int MASK = CAPACITY - 1;
+
+  /**
+   * Number of the last event claimed by a writer
+   */
+  final AtomicLong cursor = new AtomicLong();
+
+  /**
+   * Number of the event each slot holds, 0 if none yet, or WRITING
+   */
+  final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+
+  /**
+   * Event data, WORDS longs per slot: order key; price; volume and leaves;
+   * product id, type and side
+   */
+  final AtomicLongArray data = new AtomicLongArray(CAPACITY * WORDS);
+
+  /**
+   * Number of open readers
+   */
+  private final AtomicInteger readers = new AtomicInteger();
+
+  private OrderEventPublisher() {}
+
+  /**
+   * Making the Singleton multi-thread safe
+   * @return the instance of the OrderEventPublisher
+   */
+  public static OrderEventPublisher getInstance() {
+    if (instance == null) {
+      synchronized (OrderEventPublisher.class) {
+        if (instance == null) {
+          instance = new OrderEventPublisher();
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Opens a reader that starts after the last event written
+   * @return the reader; close it when done so the books stop writing events
+   * once no one reads them
+   */
+  public OrderEventReader newReader() {
+    readers.incrementAndGet();
+    return new OrderEventReader(this, cursor.get() + 1);
+  }
+
+  /**
+   * Called when a reader is closed
+   */
+  void readerClosed() {
+    readers.decrementAndGet();
+  }
+
+  /**
+   * Reports an order or quote side coming to rest in the book with its
+   * remaining volume
+   * @param t the entry, holding its order key
+   */
+  public void add(Tradable t) {
+    if (readers.get() == 0 || !(t instanceof BookEntry)) {
+      return;
+    }
+    BookEntry e = (BookEntry) t;
+    write(OrderEvent.ADD, e, cents(e.getPrice()), e.getRemainingVolume(), e.getRemainingVolume());
+  }
+
+  /**
+   * Reports a trade of a resting entry. Entries that have not rested in the
+   * book, such as the incoming side of a trade, are left out.
+   * @param t the entry, after its remaining volume was reduced
+   * @param p the trade price
+   * @param volume the volume traded
+   */
+  public void execute(Tradable t, Price p, int volume) {
+    if (readers.get() == 0 || !(t instanceof BookEntry)) {
+      return;
+    }
+    BookEntry e = (BookEntry) t;
+    if (e.getOrderKey() != 0) {
+      write(OrderEvent.EXECUTE, e, cents(p), volume, e.getRemainingVolume());
+    }
+  }
+
+  /**
+   * Reports an entry leaving the book, traded out, cancelled or replaced.
+   * Entries that never rested in the book are left out.
+   * @param t the entry
+   */
+  public void delete(Tradable t) {
+    if (readers.get() == 0 || !(t instanceof BookEntry)) {
+      return;
+    }
+    BookEntry e = (BookEntry) t;
+    if (e.getOrderKey() != 0) {
+      write(OrderEvent.DELETE, e, cents(e.getPrice()), 0, 0);
+    }
+  }
+
+  /**
+   * Claims the next slot and fills it
+   */
+  private void write(byte type, BookEntry e, long price, int volume, int leaves) {
+    long n = cursor.incrementAndGet();
+    int slot = (int) n & MASK;
+    int base = slot * WORDS;
+    byte side = e.getSide() == BookSide.BUY ? OrderEvent.BUY : OrderEvent.SELL;
+    published.set(slot, WRITING);
+    data.lazySet(base, e.getOrderKey());
+    data.lazySet(base + 1, price);
+    data.lazySet(base + 2, ((long) volume << 32) | (leaves & 0xFFFFFFFFL));
+    data.lazySet(base + 3, ((long) e.getProductId() << 32) | ((type & 0xFF) << 8) | (side & 0xFF));
+    published.lazySet(slot, n);
+  }
+
+  private static long cents(Price p) {
+    return p.isMarket() ? OrderEvent.MARKET_PRICE : p.getCents();
+  }
+}
@@ -0,0 +1,100 @@
+package publishers;
+
+/**
+ * Tails the OrderEventPublisher's ring from its own position. A reader is
+ * meant to be used by one thread; open as many as needed.
+ *
+ * A read copies a slot's fields and then checks that the slot still holds
+ * the same event, so an event overwritten while it was being copied is never
+ * handed out. When the reader finds its next event already overwritten it
+ * moves to the oldest event still in the ring and adds the events it missed
+ * to getLostCount.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class OrderEventReader {
+
+  private final OrderEventPublisher ring;
+
+  /**
+   * Number of the next event to read
+   */
+  private long next;
+
+  /**
+   * Events overwritten before they were read
+   */
+  private long lost;
+
+  private boolean closed;
+
+  OrderEventReader(OrderEventPublisher r, long start) {
+    ring = r;
+    next = start;
+  }
+
+  /**
+   * Reads the next event, without waiting
+   * @param e holder the event is copied into
+   * @return true if an event was read, false if the next one has not been
+   * written yet
+   */
+  public boolean poll(OrderEvent e) {
+    while (true) {
+      long n = next;
+      int slot = (int) n & OrderEventPublisher.MASK;
+      long held = ring.published.get(slot);
+      if (held == n) {
+        int base = slot * OrderEventPublisher.WORDS;
+        long key = ring.data.get(base);
+        long price = ring.data.get(base + 1);
+        long volumes = ring.data.get(base + 2);
+        long kind = ring.data.get(base + 3);
+        if (ring.published.get(slot) == n) {
+          e.sequence = n;
+          e.orderKey = key;
+          e.price = price;
+          e.volume = (int) (volumes >>> 32);
+          e.leaves = (int) volumes;
+          e.productId = (int) (kind >>> 32);
+          e.type = (byte) (kind >>> 8);
+          e.side = (byte) kind;
+          next = n + 1;
+          return true;
+        }
+      } else if (held < n && held != OrderEventPublisher.WRITING) {
+        return false;
+      } else if (held == OrderEventPublisher.WRITING
+              && ring.cursor.get() - n < OrderEventPublisher.CAPACITY) {
+        return false;
+      }
+      long oldest = ring.cursor.get() - OrderEventPublisher.CAPACITY + 1;
+      next = Math.max(n + 1, oldest);
+      lost += next - n;
+    }
+  }
+
+  /**
+   * @return the number of events overwritten before this reader got to them
+   */
+  public long getLostCount() {
+    return lost;
+  }
+
+  /**
+   * @return the number of events written but not yet read
+   */
+  public long getLag() {
+    return Math.max(0, ring.cursor.get() - next + 1);
+  }
+
+  /**
+   * Stops reading; once every reader is closed the books stop writing events
+   */
+  public void close() {
+    if (!closed) {
+      closed = true;
+      ring.readerClosed();
+    }
+  }
+}
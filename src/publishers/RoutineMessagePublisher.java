@@ -34,4 +34,12 @@ public interface RoutineMessagePublisher {
 	 * @throws MessagePublisherException
 	 */
 	public void unSubscribe(User userName, String product) throws MessagePublisherException;
-}
\ No newline at end of file
+
+	/**
+	 * Drops every subscription the user holds with the publisher, for a user
+	 * that has been disconnected. Does nothing if the user has none.
+	 *
+	 * @param userName the user being removed
+	 */
+	public void removeSubscriber(User userName);
+}
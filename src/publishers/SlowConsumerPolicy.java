@@ -0,0 +1,38 @@
+package publishers;
+
+/**
+ * What the MarketDataDispatcher does when a subscriber's queue is full.
+ * Fills, cancels and market messages are never dropped or conflated. Under
+ * BLOCK the publisher waits for room for them; under DROP_OLDEST and
+ * CONFLATE queued market data is dropped to make room, and if the queue
+ * holds none the subscriber is disconnected, so the publisher, which may
+ * hold a book lock, never waits on a subscriber.
+ *
+ * @author Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public enum SlowConsumerPolicy {
+
+  /**
+   * The publisher waits until the subscriber makes room. Only for
+   * subscribers known to keep up, since a stalled one stalls the publisher.
+   */
+  BLOCK,
+
+  /**
+   * The oldest queued market data update is dropped to make room
+   */
+  DROP_OLDEST,
+
+  /**
+   * Current market and ticker updates keep one slot per stock holding the
+   * newest value; last sales are dropped while the queue is full. The
+   * default policy.
+   */
+  CONFLATE,
+
+  /**
+   * The subscriber is disconnected through the UserCommandService and its
+   * queued updates are dropped
+   */
+  DISCONNECT
+}
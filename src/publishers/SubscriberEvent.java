@@ -0,0 +1,236 @@
+package publishers;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import client.User;
+import price.Price;
+import price.exceptions.InvalidPriceOperation;
+import messages.BookDepthDTO;
+import messages.CancelMessage;
+import messages.FillMessage;
+import messages.MarketDataDTO;
+
+/**
+ * One market-data event waiting in a subscriber's queue. An event is built
+ * once per publish and shared by every subscriber it is queued for, so it
+ * must not change after it is built.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+abstract class SubscriberEvent {
+
+  /**
+   * The stock symbol the event is about, or null for market messages
+   */
+  final String product;
+
+  /**
+   * System.nanoTime() when the event was published, used to report lag
+   */
+  volatile long publishedAt;
+
+  SubscriberEvent(String product) {
+    this.product = product;
+    this.publishedAt = System.nanoTime();
+  }
+
+  /**
+   * @return true for market data (current market, last sale, ticker, book
+   * depth), which a slow-consumer policy may drop; false for fills, cancels
+   * and market messages, which are always delivered
+   */
+  boolean isMarketData() {
+    return false;
+  }
+
+  /**
+   * Calls the User method that receives this event
+   * @param u the subscriber
+   * @throws InvalidPriceOperation
+   */
+  abstract void deliverTo(User u) throws InvalidPriceOperation;
+
+  /**
+   * Events of the same kind and product may be conflated, so that only the
+   * newest one is delivered. Fills, cancels, last sales and market messages
+   * are never conflated.
+   * @return the conflation kind of the event, or NOT_CONFLATABLE
+   */
+  int conflationKind() {
+    return NOT_CONFLATABLE;
+  }
+
+  /**
+   * Conflation kinds
+   */
+  static final int NOT_CONFLATABLE = -1;
+  static final int CURRENT_MARKET = 0;
+  static final int TICKER = 1;
+  static final int CONFLATION_KINDS = 2;
+
+  /**
+   * A current market (top of book) update
+   */
+  static final class CurrentMarket extends SubscriberEvent {
+    private final MarketDataDTO m;
+
+    CurrentMarket(MarketDataDTO m) {
+      super(m.product);
+      this.m = m;
+    }
+
+    boolean isMarketData() {
+      return true;
+    }
+
+    void deliverTo(User u) {
+      u.acceptCurrentMarket(m.product, m.buyPrice, m.buyVolume, m.sellPrice, m.sellVolume);
+    }
+
+    int conflationKind() {
+      return CURRENT_MARKET;
+    }
+  }
+
+  /**
+   * A last sale update
+   */
+  static final class LastSale extends SubscriberEvent {
+    private final Price price;
+    private final int volume;
+
+    LastSale(String product, Price price, int volume) {
+      super(product);
+      this.price = price;
+      this.volume = volume;
+    }
+
+    boolean isMarketData() {
+      return true;
+    }
+
+    void deliverTo(User u) throws InvalidPriceOperation {
+      u.acceptLastSale(product, price, volume);
+    }
+  }
+
+  /**
+   * A ticker update
+   */
+  static final class Ticker extends SubscriberEvent {
+    private final Price price;
+    private final char direction;
+
+    Ticker(String product, Price price, char direction) {
+      super(product);
+      this.price = price;
+      this.direction = direction;
+    }
+
+    boolean isMarketData() {
+      return true;
+    }
+
+    void deliverTo(User u) {
+      u.acceptTicker(product, price, direction);
+    }
+
+    int conflationKind() {
+      return TICKER;
+    }
+  }
+
+  /**
+   * A change to one price level of a book
+   */
+  static final class BookDepth extends SubscriberEvent {
+    private final BookDepthDTO d;
+
+    BookDepth(BookDepthDTO d) {
+      super(d.product);
+      this.d = d;
+    }
+
+    boolean isMarketData() {
+      return true;
+    }
+
+    void deliverTo(User u) {
+      u.acceptBookDepth(d);
+    }
+  }
+
+  /**
+   * A fill for one of the subscriber's orders or quote sides
+   */
+  static final class Fill extends SubscriberEvent {
+    private final FillMessage fm;
+
+    Fill(FillMessage fm) {
+      super(fm.getProduct());
+      this.fm = fm;
+    }
+
+    void deliverTo(User u) {
+      u.acceptMessage(fm);
+    }
+  }
+
+  /**
+   * A cancel of one of the subscriber's orders or quote sides
+   */
+  static final class Cancel extends SubscriberEvent {
+    private final CancelMessage cm;
+
+    Cancel(CancelMessage cm) {
+      super(cm.getProduct());
+      this.cm = cm;
+    }
+
+    void deliverTo(User u) {
+      u.acceptMessage(cm);
+    }
+  }
+
+  /**
+   * The place in a subscriber's queue of a conflated (kind, product) pair.
+   * The slot holds the newest value not yet delivered; null means the slot
+   * is clean. The slot sits in the queue at most once, at the position of
+   * the oldest undelivered update, and delivers whatever is newest when it
+   * is drained.
+   */
+  static final class Conflated extends SubscriberEvent {
+    final AtomicReference<SubscriberEvent> latest = new AtomicReference<>();
+
+    Conflated(String product) {
+      super(product);
+    }
+
+    boolean isMarketData() {
+      return true;
+    }
+
+    void deliverTo(User u) throws InvalidPriceOperation {
+      SubscriberEvent e = latest.getAndSet(null);
+      if (e != null) {
+        e.deliverTo(u);
+      }
+    }
+  }
+
+  /**
+   * A market state message
+   */
+  static final class MarketState extends SubscriberEvent {
+    private final String state;
+
+    MarketState(String state) {
+      super(null);
+      this.state = state;
+    }
+
+    void deliverTo(User u) {
+      u.acceptMarketMessage(state);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package publishers;
+
+/**
+ * A snapshot of one subscriber's queue, taken by the MarketDataDispatcher.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class SubscriberMetrics {
+
+  /**
+   * The subscriber's user name
+   */
+  private final String userName;
+
+  /**
+   * The policy applied when the queue is full
+   */
+  private final SlowConsumerPolicy policy;
+
+  /**
+   * Number of updates waiting in the queue
+   */
+  private final int queueDepth;
+
+  /**
+   * Most updates the queue holds
+   */
+  private final int queueCapacity;
+
+  /**
+   * Age of the oldest waiting update, in milliseconds
+   */
+  private final long lagMillis;
+
+  /**
+   * Updates delivered so far
+   */
+  private final long delivered;
+
+  /**
+   * Updates dropped so far
+   */
+  private final long dropped;
+
+  /**
+   * True once the subscriber has been disconnected for falling behind
+   */
+  private final boolean disconnected;
+
+  SubscriberMetrics(String userName, SlowConsumerPolicy policy, int queueDepth, int queueCapacity,
+          long lagMillis, long delivered, long dropped, boolean disconnected) {
+    this.userName = userName;
+    this.policy = policy;
+    this.queueDepth = queueDepth;
+    this.queueCapacity = queueCapacity;
+    this.lagMillis = lagMillis;
+    this.delivered = delivered;
+    this.dropped = dropped;
+    this.disconnected = disconnected;
+  }
+
+  /**
+   * @return the subscriber's user name
+   */
+  public String getUserName() {
+    return userName;
+  }
+
+  /**
+   * @return the policy applied when the queue is full
+   */
+  public SlowConsumerPolicy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * @return the number of updates waiting in the queue
+   */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /**
+   * @return the most updates the queue holds
+   */
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @return the age of the oldest waiting update in milliseconds, or 0 if
+   * nothing is waiting
+   */
+  public long getLagMillis() {
+    return lagMillis;
+  }
+
+  /**
+   * @return the number of updates delivered so far
+   */
+  public long getDelivered() {
+    return delivered;
+  }
+
+  /**
+   * @return the number of updates dropped so far
+   */
+  public long getDropped() {
+    return dropped;
+  }
+
+  /**
+   * @return true once the subscriber has been disconnected for falling behind
+   */
+  public boolean isDisconnected() {
+    return disconnected;
+  }
+
+  /**
+   * @return Formatted String
+   */
+  public String toString() {
+    return String.format("%s [%s] depth %d/%d, lag %d ms, delivered %d, dropped %d%s", userName, policy,
+            queueDepth, queueCapacity, lagMillis, delivered, dropped, disconnected ? ", disconnected" : "");
+  }
+}
@@ -0,0 +1,360 @@
+package publishers;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import client.User;
+import publishers.exceptions.MessagePublisherException;
+import registry.SymbolRegistry;
+
+/**
+ * The bounded queue of events waiting for one subscriber. At most one
+ * dispatcher thread drains a given queue at a time, so each subscriber sees
+ * its events in the order they were published.
+ *
+ * Conflated current market and ticker updates do not take a place each.
+ * Every (kind, product) pair has one Conflated slot holding its newest
+ * value, so the queue holds at most one entry per pair however fast the
+ * market moves.
+ *
+ * When the queue is full the subscriber's SlowConsumerPolicy decides whether
+ * the publisher waits, market data is dropped or conflated, or the
+ * subscriber is disconnected. Only BLOCK ever makes the publisher wait; the
+ * other policies disconnect a subscriber whose queue is full of events that
+ * may not be dropped.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+class SubscriberQueue implements Runnable {
+
+  /**
+   * Most events delivered in one turn before the queue yields its thread
+   */
+  private static final int BATCH = 64;
+
+  /**
+   * The subscriber the events are delivered to
+   */
+  private final User user;
+
+  /**
+   * Events waiting to be delivered
+   */
+  private final ArrayBlockingQueue<SubscriberEvent> events;
+
+  /**
+   * Most events the queue holds
+   */
+  private final int capacity;
+
+  /**
+   * True while the queue is waiting for, or running on, a dispatcher thread
+   */
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  /**
+   * The dispatcher threads
+   */
+  private final Executor executor;
+
+  /**
+   * Conflation slots, indexed by symbol id times CONFLATION_KINDS plus kind.
+   * Slots are only added, by copying the array.
+   */
+  private volatile SubscriberEvent.Conflated[] slots = new SubscriberEvent.Conflated[0];
+
+  /**
+   * What to do when the queue is full
+   */
+  private volatile SlowConsumerPolicy policy;
+
+  /**
+   * Events delivered and dropped so far
+   */
+  private final AtomicLong delivered = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+
+  /**
+   * Set once the subscriber has been disconnected for falling behind; no
+   * more events are queued after that. The dispatcher then forgets this
+   * queue, so a subscriber that connects again gets a new one.
+   */
+  private final AtomicBoolean disconnected = new AtomicBoolean();
+
+  SubscriberQueue(User user, int capacity, SlowConsumerPolicy policy, Executor executor) {
+    this.user = user;
+    this.capacity = capacity;
+    this.events = new ArrayBlockingQueue<>(capacity);
+    this.policy = policy;
+    this.executor = executor;
+  }
+
+  /**
+   * Changes the policy applied the next time the queue is full
+   * @param p the new policy
+   */
+  void setPolicy(SlowConsumerPolicy p) {
+    policy = p;
+  }
+
+  /**
+   * Queues an event. If the queue is full, the policy decides what happens.
+   * @param e the event
+   * @throws MessagePublisherException if interrupted while waiting for room
+   */
+  void offer(SubscriberEvent e) throws MessagePublisherException {
+    if (disconnected.get()) {
+      dropped.incrementAndGet();
+      return;
+    }
+    if (!events.offer(e)) {
+      overflow(e);
+    }
+    schedule();
+  }
+
+  /**
+   * Stores an update as the newest value of its (kind, product) slot. The
+   * slot is queued only if it was clean, so a burst of updates takes one
+   * place in the queue and only the newest is delivered.
+   * @param e a current market or ticker event
+   * @throws MessagePublisherException if interrupted while waiting for room
+   */
+  void offerLatest(SubscriberEvent e) throws MessagePublisherException {
+    int id = SymbolRegistry.getInstance().idOf(e.product);
+    if (id < 0 || e.conflationKind() == SubscriberEvent.NOT_CONFLATABLE) {
+      offer(e);
+      return;
+    }
+    SubscriberEvent.Conflated slot = slotFor(id * SubscriberEvent.CONFLATION_KINDS + e.conflationKind(), e.product);
+    if (slot.latest.getAndSet(e) == null) {
+      slot.publishedAt = e.publishedAt;
+      offer(slot);
+    }
+  }
+
+  /**
+   * Applies the policy to an event that did not fit in the queue. Under
+   * every policy but BLOCK the publisher never waits: fills, cancels, market
+   * messages and conflation slots, which are never dropped, get room by
+   * dropping queued market data, and if there is none to drop the
+   * subscriber is disconnected.
+   */
+  private void overflow(SubscriberEvent e) throws MessagePublisherException {
+    SlowConsumerPolicy p = policy;
+    boolean slot = e instanceof SubscriberEvent.Conflated;
+    switch (p) {
+      case BLOCK:
+        put(e);
+        return;
+      case DISCONNECT:
+        disconnect();
+        return;
+      case DROP_OLDEST:
+        if (e.isMarketData() && !slot) {
+          while (!events.offer(e)) {
+            if (!dropOldestMarketData(true)) {
+              dropped.incrementAndGet();
+              return;
+            }
+          }
+          return;
+        }
+        break;
+      case CONFLATE:
+        if (e.conflationKind() != SubscriberEvent.NOT_CONFLATABLE) {
+          offerLatest(e);
+          return;
+        }
+        if (e.isMarketData() && !slot) {
+          dropped.incrementAndGet();
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+    while (!events.offer(e)) {
+      if (!dropOldestMarketData(p == SlowConsumerPolicy.DROP_OLDEST)) {
+        disconnect();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Disconnects the subscriber, dropping everything queued for it
+   */
+  private void disconnect() {
+    if (disconnected.compareAndSet(false, true)) {
+      dropped.addAndGet(events.size() + 1);
+      events.clear();
+      MarketDataDispatcher.getInstance().disconnect(user, this);
+    } else {
+      dropped.incrementAndGet();
+    }
+  }
+
+  /**
+   * Removes the oldest market data update from the queue. A conflation slot
+   * is emptied before it is removed, so a publisher storing a newer value
+   * meanwhile queues the slot again instead of having its value thrown away.
+   * @param includeSlots true if conflation slots may be removed too
+   * @return false if the queue holds no market data that may be removed
+   */
+  private boolean dropOldestMarketData(boolean includeSlots) {
+    Iterator<SubscriberEvent> it = events.iterator();
+    while (it.hasNext()) {
+      SubscriberEvent old = it.next();
+      if (!old.isMarketData()) {
+        continue;
+      }
+      if (!(old instanceof SubscriberEvent.Conflated)) {
+        if (events.remove(old)) {
+          dropped.incrementAndGet();
+          return true;
+        }
+        continue;
+      }
+      if (!includeSlots) {
+        continue;
+      }
+      SubscriberEvent.Conflated c = (SubscriberEvent.Conflated) old;
+      SubscriberEvent value = c.latest.getAndSet(null);
+      if (events.remove(c)) {
+        if (value != null) {
+          dropped.incrementAndGet();
+        }
+        return true;
+      }
+      // a dispatcher thread took the slot first and found it empty; put the
+      // value back unless a newer one was stored meanwhile
+      if (value != null && c.latest.compareAndSet(null, value) && !events.offer(c)) {
+        if (c.latest.compareAndSet(value, null)) {
+          dropped.incrementAndGet();
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Waits for room in the queue
+   */
+  private void put(SubscriberEvent e) throws MessagePublisherException {
+    try {
+      events.put(e);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new MessagePublisherException("Interrupted while queueing an update for " + user.getUserName());
+    }
+  }
+
+  /**
+   * Returns the conflation slot at the passed index, creating it if needed
+   */
+  private SubscriberEvent.Conflated slotFor(int index, String product) {
+    SubscriberEvent.Conflated[] s = slots;
+    if (index < s.length && s[index] != null) {
+      return s[index];
+    }
+    synchronized (this) {
+      s = slots;
+      if (index < s.length && s[index] != null) {
+        return s[index];
+      }
+      s = Arrays.copyOf(s, Math.max(s.length, index + 1));
+      s[index] = new SubscriberEvent.Conflated(product);
+      slots = s;
+      return s[index];
+    }
+  }
+
+  /**
+   * @return true if no event is waiting or being delivered
+   */
+  boolean isIdle() {
+    return events.isEmpty() && !scheduled.get();
+  }
+
+  /**
+   * @return a snapshot of the queue's depth, lag and counters
+   */
+  SubscriberMetrics metrics() {
+    SubscriberEvent head = events.peek();
+    long lag = head == null ? 0 : Math.max(0, (System.nanoTime() - head.publishedAt) / 1000000);
+    return new SubscriberMetrics(user.getUserName(), policy, events.size(), capacity, lag,
+            delivered.get(), dropped.get(), disconnected.get());
+  }
+
+  /**
+   * Delivers every event left in the queue on the calling thread. Called by
+   * the dispatcher's stop once its threads have ended, for events queued
+   * after the last turn a dispatcher thread could take. Does nothing if a
+   * dispatcher thread still has the queue.
+   */
+  void drain() {
+    if (!scheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      SubscriberEvent e;
+      while ((e = events.poll()) != null) {
+        try {
+          e.deliverTo(user);
+          delivered.incrementAndGet();
+        } catch (Exception ex) {
+          System.out.println(ex.getMessage());
+        }
+      }
+    } finally {
+      scheduled.set(false);
+    }
+  }
+
+  /**
+   * Hands the queue to a dispatcher thread unless it already has one. Once
+   * the dispatcher is stopping its threads refuse new turns; the events are
+   * then left for drain.
+   */
+  private void schedule() {
+    if (scheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException ex) {
+        scheduled.set(false);
+      }
+    }
+  }
+
+  /**
+   * Delivers up to BATCH events, then gives the thread back
+   */
+  public void run() {
+    try {
+      for (int i = 0; i < BATCH; i++) {
+        SubscriberEvent e = events.poll();
+        if (e == null) {
+          break;
+        }
+        try {
+          e.deliverTo(user);
+          delivered.incrementAndGet();
+        } catch (Exception ex) {
+          System.out.println(ex.getMessage());
+        }
+      }
+    } finally {
+      scheduled.set(false);
+      if (!events.isEmpty()) {
+        schedule();
+      }
+    }
+  }
+}
@@ -60,12 +60,29 @@ public class TickerPublisher implements DistinctTickerPublisher {
     messagePublisherSubjectImpl.unSubscribe(userName, product);
   }
 
+  /**
+   * Drops every subscription the user holds with this publisher
+   * @param userName the disconnected user
+   */
+  public synchronized void removeSubscriber(User userName) {
+    messagePublisherSubjectImpl.removeSubscriber(userName);
+  }
+
   /**
    * This is the publishTicker
    * @param product Stock being represented
    * @param p Price of the stock
    */
-  public synchronized void publishTicker(String product, Price p) throws MessagePublisherException {
+  public void publishTicker(String product, Price p) throws MessagePublisherException {
     messagePublisherSubjectImpl.publishTicker(product, p);
   }
+
+  /**
+   * Turns conflation of ticker updates on or off. Conflation only applies
+   * while the MarketDataDispatcher is asynchronous.
+   * @param on true to deliver only the newest ticker to slow subscribers
+   */
+  public void setConflating(boolean on) {
+    messagePublisherSubjectImpl.setConflating(on);
+  }
 }
\ No newline at end of file
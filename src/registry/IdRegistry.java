@@ -0,0 +1,102 @@
+package registry;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An IdRegistry hands out dense int ids (0, 1, 2, ...) for names. A name keeps
+ * its id for the life of the registry, so the id can be used to index plain
+ * arrays instead of hashing the name on every call.
+ *
+ * Lookups take no lock. New names are registered under the registry's lock.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public class IdRegistry	{
+
+	/**
+	 * Id returned for a name that has not been registered
+	 */
+	public static final int NO_ID = -1;
+
+	/**
+	 * Name to id lookup
+	 */
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+	/**
+	 * Id to name lookup; replaced by a larger copy when it fills up
+	 */
+	private volatile String[] names = new String[64];
+
+	/**
+	 * Number of ids handed out so far
+	 */
+	private volatile int size;
+
+	/**
+	 * Registries are created by their singleton subclasses
+	 */
+	IdRegistry()	{}
+
+	/**
+	 * Returns the id of the passed name, assigning the next free id if the
+	 * name has not been seen before.
+	 * @param name the name to register
+	 * @return the name's id, or NO_ID if the name is null
+	 */
+	public int register(String name)	{
+		if (name == null)	{
+			return NO_ID;
+		}
+		Integer id = ids.get(name);
+		if (id != null)	{
+			return id;
+		}
+		synchronized (this)	{
+			id = ids.get(name);
+			if (id != null)	{
+				return id;
+			}
+			int next = size;
+			String[] n = names;
+			if (next == n.length)	{
+				n = Arrays.copyOf(n, next * 2);
+			}
+			n[next] = name;
+			names = n;
+			size = next + 1;
+			ids.put(name, next);
+			return next;
+		}
+	}
+
+	/**
+	 * @param name the name to look up
+	 * @return the name's id, or NO_ID if the name has not been registered
+	 */
+	public int idOf(String name)	{
+		if (name == null)	{
+			return NO_ID;
+		}
+		Integer id = ids.get(name);
+		return id == null ? NO_ID : id;
+	}
+
+	/**
+	 * @param id the id to look up
+	 * @return the name registered under the id, or null if there is none
+	 */
+	public String nameOf(int id)	{
+		String[] n = names;
+		return id >= 0 && id < n.length ? n[id] : null;
+	}
+
+	/**
+	 * @return the number of names registered
+	 */
+	public int size()	{
+		return size;
+	}
+}
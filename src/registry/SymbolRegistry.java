@@ -0,0 +1,31 @@
+package registry;
+
+/**
+ * The SymbolRegistry assigns the int ids used for product symbols inside the
+ * trading system. Ids are assigned at ProductService.createProduct; Strings are
+ * kept for display and for the external API.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public class SymbolRegistry extends IdRegistry	{
+
+	private volatile static SymbolRegistry instance;
+
+	private SymbolRegistry()	{}
+
+	/**
+	 * Making the Singleton multi-thread safe
+	 * @return the instance of the SymbolRegistry
+	 */
+	public static SymbolRegistry getInstance()	{
+		if (instance == null)	{
+			synchronized (SymbolRegistry.class)	{
+				if (instance == null)	{
+					instance = new SymbolRegistry();
+				}
+			}
+		}
+		return instance;
+	}
+}
@@ -0,0 +1,31 @@
+package registry;
+
+/**
+ * The UserRegistry assigns the int ids used for user names inside the
+ * trading system. Ids are assigned at UserCommandService.connect; Strings are
+ * kept for display and for the external API.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public class UserRegistry extends IdRegistry	{
+
+	private volatile static UserRegistry instance;
+
+	private UserRegistry()	{}
+
+	/**
+	 * Making the Singleton multi-thread safe
+	 * @return the instance of the UserRegistry
+	 */
+	public static UserRegistry getInstance()	{
+		if (instance == null)	{
+			synchronized (UserRegistry.class)	{
+				if (instance == null)	{
+					instance = new UserRegistry();
+				}
+			}
+		}
+		return instance;
+	}
+}
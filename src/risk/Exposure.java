@@ -0,0 +1,78 @@
+package risk;
+
+/**
+ * One user's aggregate position across all products, as computed by the
+ * PositionKeeper for a top exposures query. All amounts are in cents.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class Exposure {
+
+  /**
+   * The user's name
+   */
+  private final String userName;
+
+  /**
+   * Sum over products of the absolute value of net quantity times last sale
+   */
+  private final long grossExposure;
+
+  /**
+   * Sum over products of net quantity times last sale
+   */
+  private final long marketValue;
+
+  /**
+   * Running balance of sales less purchases
+   */
+  private final long cost;
+
+  Exposure(String userName, long grossExposure, long marketValue, long cost) {
+    this.userName = userName;
+    this.grossExposure = grossExposure;
+    this.marketValue = marketValue;
+    this.cost = cost;
+  }
+
+  /**
+   * @return the user's name
+   */
+  public String getUserName() {
+    return userName;
+  }
+
+  /**
+   * @return the value of long and short positions added together, in cents
+   */
+  public long getGrossExposure() {
+    return grossExposure;
+  }
+
+  /**
+   * @return the value of long positions less short positions, in cents
+   */
+  public long getMarketValue() {
+    return marketValue;
+  }
+
+  /**
+   * @return sales less purchases, in cents
+   */
+  public long getCost() {
+    return cost;
+  }
+
+  /**
+   * @return market value plus cost, in cents
+   */
+  public long getProfitAndLoss() {
+    return marketValue + cost;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("User: %s, Gross Exposure: %d, Market Value: %d, Cost: %d, P&L: %d",
+            userName, grossExposure, marketValue, cost, getProfitAndLoss());
+  }
+}
@@ -0,0 +1,313 @@
+package risk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import constants.global.BookSide;
+import messages.FillMessage;
+import price.Price;
+import registry.SymbolRegistry;
+import registry.UserRegistry;
+
+/**
+ * The PositionKeeper holds the exchange's view of every user's position,
+ * built from the fills sent through the MessagePublisher and marked to market
+ * with the last sales sent through the LastSalePublisher.
+ *
+ * Net quantity and cost are kept in primitive arrays indexed by user id and
+ * symbol id. Users are split across shards by user id, each with its own
+ * lock, so fills for different users are recorded on different cores without
+ * contending. Marks are kept once per symbol and read without a lock.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class PositionKeeper {
+
+  private volatile static PositionKeeper instance;
+
+  /**
+   * Making the Singleton multi-thread safe
+   * @return the instance of the PositionKeeper
+   */
+  public static PositionKeeper getInstance() {
+    if (instance == null) {
+      synchronized (PositionKeeper.class) {
+        if (instance == null) {
+          instance = new PositionKeeper();
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * The positions of the users whose id has the shard's low bits. A user's
+   * row in the shard is their id shifted right by the shard bits.
+   */
+  private static final class Shard {
+
+    /**
+     * Net quantity by row and symbol id; rows grow as symbols are added
+     */
+    long[][] quantity = new long[4][];
+
+    /**
+     * Sales less purchases in cents by row and symbol id
+     */
+    long[][] cost = new long[4][];
+  }
+
+  private final Shard[] shards;
+
+  /**
+   * Number of low user id bits choosing the shard
+   */
+  private final int shardBits;
+
+  /**
+   * Last sale in cents by symbol id; replaced by a larger copy when it fills
+   * up
+   */
+  private volatile AtomicLongArray marks = new AtomicLongArray(16);
+
+  private PositionKeeper() {
+    int bits = 0;
+    while ((1 << bits) < Runtime.getRuntime().availableProcessors()) {
+      bits++;
+    }
+    shardBits = bits;
+    shards = new Shard[1 << bits];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new Shard();
+    }
+  }
+
+  /**
+   * Records a fill against the position of the fill's user
+   * @param fm the fill
+   */
+  public void recordFill(FillMessage fm) {
+    Price price = fm.getPrice();
+    if (price == null || price.isMarket() || fm.getSide() == null) {
+      return;
+    }
+    int uid = UserRegistry.getInstance().register(fm.getUser());
+    int sym = SymbolRegistry.getInstance().register(fm.getProduct());
+    if (uid < 0 || sym < 0) {
+      return;
+    }
+    long qty = fm.getSide() == BookSide.BUY ? fm.getVolume() : -fm.getVolume();
+    Shard s = shards[uid & (shards.length - 1)];
+    int row = uid >>> shardBits;
+    synchronized (s) {
+      if (row >= s.quantity.length) {
+        int n = Math.max(row + 1, s.quantity.length * 2);
+        s.quantity = Arrays.copyOf(s.quantity, n);
+        s.cost = Arrays.copyOf(s.cost, n);
+      }
+      long[] q = s.quantity[row];
+      if (q == null || sym >= q.length) {
+        int n = Math.max(sym + 1, SymbolRegistry.getInstance().size());
+        q = s.quantity[row] = q == null ? new long[n] : Arrays.copyOf(q, n);
+        s.cost[row] = s.cost[row] == null ? new long[n] : Arrays.copyOf(s.cost[row], n);
+      }
+      q[sym] += qty;
+      s.cost[row][sym] -= qty * price.getCents();
+    }
+  }
+
+  /**
+   * Marks a product to market at its last sale
+   * @param product Stock symbol
+   * @param price Price of the last sale
+   */
+  public void markToMarket(String product, Price price) {
+    if (price == null || price.isMarket()) {
+      return;
+    }
+    int sym = SymbolRegistry.getInstance().register(product);
+    if (sym < 0) {
+      return;
+    }
+    AtomicLongArray m = marks;
+    if (sym >= m.length()) {
+      synchronized (this) {
+        m = marks;
+        if (sym >= m.length()) {
+          AtomicLongArray n = new AtomicLongArray(Math.max(sym + 1, m.length() * 2));
+          for (int i = 0; i < m.length(); i++) {
+            n.set(i, m.get(i));
+          }
+          marks = n;
+          m = n;
+        }
+      }
+    }
+    m.set(sym, price.getCents());
+  }
+
+  /**
+   * @param product Stock symbol
+   * @return the product's last sale in cents, or 0 if there has been none
+   */
+  public long getMark(String product) {
+    int sym = SymbolRegistry.getInstance().idOf(product);
+    AtomicLongArray m = marks;
+    return sym < 0 || sym >= m.length() ? 0 : m.get(sym);
+  }
+
+  /**
+   * @param userName the user's name
+   * @param product Stock symbol
+   * @return the user's net quantity in the product; negative when short
+   */
+  public long getNetQuantity(String userName, String product) {
+    return read(userName, product, true);
+  }
+
+  /**
+   * @param userName the user's name
+   * @param product Stock symbol
+   * @return the user's sales less purchases of the product, in cents
+   */
+  public long getCost(String userName, String product) {
+    return read(userName, product, false);
+  }
+
+  /**
+   * @param userName the user's name
+   * @param product Stock symbol
+   * @return the user's net quantity in the product times its last sale, in
+   * cents
+   */
+  public long getMarketValue(String userName, String product) {
+    int sym = SymbolRegistry.getInstance().idOf(product);
+    AtomicLongArray m = marks;
+    return sym < 0 || sym >= m.length() ? 0 : getNetQuantity(userName, product) * m.get(sym);
+  }
+
+  /**
+   * Reads one cell of a user's position
+   * @param quantity true for the net quantity, false for the cost
+   */
+  private long read(String userName, String product, boolean quantity) {
+    int uid = UserRegistry.getInstance().idOf(userName);
+    int sym = SymbolRegistry.getInstance().idOf(product);
+    if (uid < 0 || sym < 0) {
+      return 0;
+    }
+    Shard s = shards[uid & (shards.length - 1)];
+    int row = uid >>> shardBits;
+    synchronized (s) {
+      long[][] cells = quantity ? s.quantity : s.cost;
+      if (row >= cells.length || cells[row] == null || sym >= cells[row].length) {
+        return 0;
+      }
+      return cells[row][sym];
+    }
+  }
+
+  /**
+   * Finds the users with the largest gross exposure at the current marks.
+   * Each shard is scanned once under its own lock, keeping the best n in a
+   * small heap, so fills for other shards carry on during the scan.
+   * @param n most users to return
+   * @return up to n exposures, largest first; users with no exposure are left
+   * out
+   */
+  public List<Exposure> getTopExposures(int n) {
+    ArrayList<Exposure> result = new ArrayList<>();
+    n = Math.min(n, UserRegistry.getInstance().size());
+    if (n <= 0) {
+      return result;
+    }
+    AtomicLongArray m = marks;
+    long[] mark = new long[m.length()];
+    for (int i = 0; i < mark.length; i++) {
+      mark[i] = m.get(i);
+    }
+    // min-heap on gross exposure of the best n seen so far
+    long[] gross = new long[n];
+    long[] value = new long[n];
+    long[] cost = new long[n];
+    int[] user = new int[n];
+    int size = 0;
+    for (int shard = 0; shard < shards.length; shard++) {
+      Shard s = shards[shard];
+      synchronized (s) {
+        for (int row = 0; row < s.quantity.length; row++) {
+          long[] q = s.quantity[row];
+          if (q == null) {
+            continue;
+          }
+          long[] c = s.cost[row];
+          long g = 0;
+          long v = 0;
+          long k = 0;
+          int len = Math.min(q.length, mark.length);
+          for (int sym = 0; sym < q.length; sym++) {
+            k += c[sym];
+            if (sym < len) {
+              long mv = q[sym] * mark[sym];
+              v += mv;
+              g += mv < 0 ? -mv : mv;
+            }
+          }
+          if (g == 0 || (size == n && g <= gross[0])) {
+            continue;
+          }
+          int i;
+          if (size < n) {
+            i = size++;
+            while (i > 0 && gross[(i - 1) / 2] > g) {
+              int p = (i - 1) / 2;
+              gross[i] = gross[p];
+              value[i] = value[p];
+              cost[i] = cost[p];
+              user[i] = user[p];
+              i = p;
+            }
+          } else {
+            i = 0;
+            while (true) {
+              int child = 2 * i + 1;
+              if (child >= size) {
+                break;
+              }
+              if (child + 1 < size && gross[child + 1] < gross[child]) {
+                child++;
+              }
+              if (gross[child] >= g) {
+                break;
+              }
+              gross[i] = gross[child];
+              value[i] = value[child];
+              cost[i] = cost[child];
+              user[i] = user[child];
+              i = child;
+            }
+          }
+          gross[i] = g;
+          value[i] = v;
+          cost[i] = k;
+          user[i] = (row << shardBits) | shard;
+        }
+      }
+    }
+    UserRegistry users = UserRegistry.getInstance();
+    for (int i = 0; i < size; i++) {
+      result.add(new Exposure(users.nameOf(user[i]), gross[i], value[i], cost[i]));
+    }
+    Collections.sort(result, new Comparator<Exposure>() {
+      @Override
+      public int compare(Exposure a, Exposure b) {
+        return Long.compare(b.getGrossExposure(), a.getGrossExposure());
+      }
+    });
+    return result;
+  }
+}
@@ -0,0 +1,429 @@
+package risk;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import book.CommandResult;
+import constants.global.BookSide;
+import messages.CancelMessage;
+import messages.exceptions.InvalidMessageException;
+import price.Price;
+import price.exceptions.InvalidPriceOperation;
+import publishers.MessagePublisher;
+import publishers.exceptions.MessagePublisherException;
+import registry.SymbolRegistry;
+import registry.UserRegistry;
+import risk.exceptions.RiskException;
+import tradable.Order;
+import tradable.Quote;
+import tradable.Tradable;
+import tradable.exceptions.TradableException;
+
+/**
+ * The PreTradeRisk stage checks each order and quote against its user's
+ * limits before the ProductService hands it to a product book: largest order
+ * volume, largest notional, most open orders per product, and a messages per
+ * second throttle.
+ *
+ * Checks take no lock. Each user's throttle is a token bucket held in one
+ * AtomicLong, and open orders are counted in per-user, per-product atomics;
+ * totals of checks and rejects are kept in LongAdders. A rejected order or
+ * quote is not booked and is reported to its user as a cancel message
+ * through the MessagePublisher.
+ *
+ * The limits come from a RiskConfig that can be replaced at any time, by
+ * setConfig or by watching a config file for changes.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class PreTradeRisk {
+
+  private volatile static PreTradeRisk instance;
+
+  /**
+   * Making the Singleton multi-thread safe
+   * @return the instance of the PreTradeRisk stage
+   */
+  public static PreTradeRisk getInstance() {
+    if (instance == null) {
+      synchronized (PreTradeRisk.class) {
+        if (instance == null) {
+          instance = new PreTradeRisk();
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Risk state of one user
+   */
+  private static final class UserRisk {
+
+    private final String name;
+
+    /**
+     * The config the limits were taken from; written after limits
+     */
+    private volatile RiskConfig seen;
+    private volatile RiskLimits limits;
+
+    /**
+     * Token bucket, as the time at which the bucket will be full again: a
+     * message is allowed when that time is no more than burst - 1 intervals
+     * ahead of now, and pushes it one interval further
+     */
+    private final AtomicLong full = new AtomicLong(System.nanoTime());
+
+    /**
+     * Open orders by symbol id; counters are never replaced, so the array is
+     * copied under this object's lock when it grows
+     */
+    private volatile AtomicInteger[] open = new AtomicInteger[0];
+
+    UserRisk(String name) {
+      this.name = name;
+    }
+
+    RiskLimits limits(RiskConfig c) {
+      if (seen != c) {
+        limits = c.limitsFor(name);
+        seen = c;
+      }
+      return limits;
+    }
+
+    /**
+     * Takes a token from the bucket
+     * @return false if the bucket is empty
+     */
+    boolean take(RiskLimits l, long now) {
+      long interval = l.interval();
+      if (interval == 0) {
+        return true;
+      }
+      long tolerance = interval * (l.getBurst() - 1);
+      while (true) {
+        long f = full.get();
+        long from = Math.max(f, now);
+        if (from - now > tolerance) {
+          return false;
+        }
+        if (full.compareAndSet(f, from + interval)) {
+          return true;
+        }
+      }
+    }
+
+    AtomicInteger openOrders(int sym) {
+      AtomicInteger[] o = open;
+      if (sym < o.length) {
+        return o[sym];
+      }
+      synchronized (this) {
+        o = open;
+        if (sym >= o.length) {
+          AtomicInteger[] n = Arrays.copyOf(o, Math.max(sym + 1, Math.max(16, o.length * 2)));
+          for (int i = o.length; i < n.length; i++) {
+            n[i] = new AtomicInteger();
+          }
+          open = n;
+          o = n;
+        }
+        return o[sym];
+      }
+    }
+  }
+
+  /**
+   * The limits in force
+   */
+  private volatile RiskConfig config = RiskConfig.NONE;
+
+  /**
+   * Risk state by user id; replaced by a larger copy when it fills up
+   */
+  private volatile AtomicReferenceArray<UserRisk> users = new AtomicReferenceArray<>(16);
+
+  /**
+   * Orders and quotes checked, and rejects by CommandResult ordinal
+   */
+  private final LongAdder checked = new LongAdder();
+  private final LongAdder[] rejected = new LongAdder[CommandResult.values().length];
+
+  /**
+   * Thread reloading the config file, if one is being watched
+   */
+  private Thread watcher;
+
+  private PreTradeRisk() {
+    for (int i = 0; i < rejected.length; i++) {
+      rejected[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Checks an order against its user's limits. An order that passes counts
+   * as open in its product until orderClosed is called for it.
+   * @param o the order
+   * @return OK, or ORDER_VOLUME_LIMIT, NOTIONAL_LIMIT, NO_MARK_PRICE,
+   * OPEN_ORDER_LIMIT or THROTTLED after the rejection has been sent to the
+   * user
+   * @throws InvalidMessageException
+   * @throws MessagePublisherException
+   */
+  public CommandResult checkOrder(Order o) throws InvalidMessageException, MessagePublisherException {
+    checked.increment();
+    UserRisk u = userOf(UserRegistry.getInstance().register(o.getUser()), o.getUser());
+    RiskLimits l = u.limits(config);
+    CommandResult r;
+    if (!u.take(l, System.nanoTime())) {
+      r = CommandResult.THROTTLED;
+    } else {
+      r = checkSize(o, l);
+    }
+    if (r.isOk()) {
+      AtomicInteger open = u.openOrders(SymbolRegistry.getInstance().register(o.getProduct()));
+      if (open.incrementAndGet() > l.getMaxOpenOrders() && l.getMaxOpenOrders() > 0) {
+        open.decrementAndGet();
+        r = CommandResult.OPEN_ORDER_LIMIT;
+      }
+    }
+    if (!r.isOk()) {
+      reject(o, r);
+    }
+    return r;
+  }
+
+  /**
+   * Checks both sides of a quote against its user's limits
+   * @param q the quote
+   * @return OK, or ORDER_VOLUME_LIMIT, NOTIONAL_LIMIT or THROTTLED after the
+   * rejection of both sides has been sent to the user
+   * @throws InvalidMessageException
+   * @throws MessagePublisherException
+   * @throws TradableException
+   * @throws InvalidPriceOperation
+   */
+  public CommandResult checkQuote(Quote q) throws InvalidMessageException, MessagePublisherException,
+          TradableException, InvalidPriceOperation {
+    checked.increment();
+    UserRisk u = userOf(UserRegistry.getInstance().register(q.getUserName()), q.getUserName());
+    RiskLimits l = u.limits(config);
+    Tradable buy = q.getQuoteSide(BookSide.BUY);
+    Tradable sell = q.getQuoteSide(BookSide.SELL);
+    CommandResult r;
+    if (!u.take(l, System.nanoTime())) {
+      r = CommandResult.THROTTLED;
+    } else {
+      r = checkSize(buy, l);
+      if (r.isOk()) {
+        r = checkSize(sell, l);
+      }
+    }
+    if (!r.isOk()) {
+      reject(buy, r);
+      reject(sell, r);
+    }
+    return r;
+  }
+
+  /**
+   * Checks the volume and notional of an order or quote-side. A market order
+   * is valued at its product's last sale; while the product has none, a
+   * market order cannot be valued and is rejected if a notional limit is set.
+   */
+  private CommandResult checkSize(Tradable t, RiskLimits l) {
+    int volume = t.getOriginalVolume();
+    if (l.getMaxOrderVolume() > 0 && volume > l.getMaxOrderVolume()) {
+      return CommandResult.ORDER_VOLUME_LIMIT;
+    }
+    if (l.getMaxNotional() > 0) {
+      Price p = t.getPrice();
+      long cents = p.isMarket() ? PositionKeeper.getInstance().getMark(t.getProduct()) : p.getCents();
+      if (p.isMarket() && cents == 0) {
+        return CommandResult.NO_MARK_PRICE;
+      }
+      if (Math.abs(cents) * volume > l.getMaxNotional()) {
+        return CommandResult.NOTIONAL_LIMIT;
+      }
+    }
+    return CommandResult.OK;
+  }
+
+  /**
+   * Counts a rejection and sends it to the user as a cancel message
+   */
+  private void reject(Tradable t, CommandResult r) throws InvalidMessageException, MessagePublisherException {
+    rejected[r.ordinal()].increment();
+    MessagePublisher.getInstance().publishCancel(new CancelMessage(t.getUser(), t.getProduct(),
+            t.getPrice(), t.getOriginalVolume(), r.getMessage(), t.getSide(), t.getId()));
+  }
+
+  /**
+   * Stops counting an order as open: called when an order that passed
+   * checkOrder leaves the book, or is not booked after all
+   * @param userName the order's user
+   * @param product the order's product
+   */
+  public void orderClosed(String userName, String product) {
+    orderClosed(UserRegistry.getInstance().idOf(userName), SymbolRegistry.getInstance().idOf(product));
+  }
+
+  /**
+   * Stops counting an order as open
+   * @param userId the order's UserRegistry id
+   * @param productId the order's SymbolRegistry id
+   */
+  public void orderClosed(int userId, int productId) {
+    UserRisk u = userOf(userId, null);
+    if (u == null || productId < 0) {
+      return;
+    }
+    // orders booked without passing checkOrder were never counted
+    AtomicInteger open = u.openOrders(productId);
+    int n;
+    do {
+      n = open.get();
+    } while (n > 0 && !open.compareAndSet(n, n - 1));
+  }
+
+  /**
+   * @param userName the user's name
+   * @param product Stock symbol
+   * @return the number of the user's orders open in the product
+   */
+  public int getOpenOrders(String userName, String product) {
+    UserRisk u = userOf(UserRegistry.getInstance().idOf(userName), null);
+    int sym = SymbolRegistry.getInstance().idOf(product);
+    return u == null || sym < 0 ? 0 : u.openOrders(sym).get();
+  }
+
+  /**
+   * @return the number of orders and quotes checked
+   */
+  public long getChecked() {
+    return checked.sum();
+  }
+
+  /**
+   * @param r a risk reject result
+   * @return the number of orders and quotes rejected with the result
+   */
+  public long getRejected(CommandResult r) {
+    return rejected[r.ordinal()].sum();
+  }
+
+  /**
+   * Finds the risk state of a user, making it if a name is passed
+   * @param id the user's UserRegistry id
+   * @param name the user's name, or null to only look up
+   * @return the user's state, or null if there is none and no name was passed
+   */
+  private UserRisk userOf(int id, String name) {
+    if (id < 0) {
+      return null;
+    }
+    AtomicReferenceArray<UserRisk> a = users;
+    UserRisk u = id < a.length() ? a.get(id) : null;
+    if (u != null || name == null) {
+      return u;
+    }
+    synchronized (this) {
+      a = users;
+      if (id >= a.length()) {
+        AtomicReferenceArray<UserRisk> n = new AtomicReferenceArray<>(Math.max(id + 1, a.length() * 2));
+        for (int i = 0; i < a.length(); i++) {
+          n.set(i, a.get(i));
+        }
+        users = n;
+        a = n;
+      }
+      u = a.get(id);
+      if (u == null) {
+        u = new UserRisk(name);
+        a.set(id, u);
+      }
+      return u;
+    }
+  }
+
+  /**
+   * @return the limits in force
+   */
+  public RiskConfig getConfig() {
+    return config;
+  }
+
+  /**
+   * Puts new limits in force. Checks already running finish with the old
+   * limits; open order counts and throttles carry over.
+   * @param c the new limits
+   */
+  public void setConfig(RiskConfig c) {
+    config = c == null ? RiskConfig.NONE : c;
+  }
+
+  /**
+   * Loads a config file and puts its limits in force
+   * @param file the properties file
+   * @throws RiskException if the file cannot be read or has an invalid value;
+   * the limits in force are kept
+   */
+  public void loadConfig(File file) throws RiskException {
+    setConfig(RiskConfig.load(file));
+  }
+
+  /**
+   * Loads a config file, then reloads it whenever it changes, until
+   * stopWatching is called. A reload that fails keeps the limits in force.
+   * @param file the properties file
+   * @param intervalMillis how often to look for changes
+   * @throws RiskException if the file cannot be loaded the first time
+   */
+  public synchronized void watchConfig(final File file, final long intervalMillis) throws RiskException {
+    stopWatching();
+    loadConfig(file);
+    watcher = new Thread("risk-config-watcher") {
+      @Override
+      public void run() {
+        long modified = file.lastModified();
+        while (!isInterrupted()) {
+          try {
+            Thread.sleep(intervalMillis);
+          } catch (InterruptedException e) {
+            return;
+          }
+          long m = file.lastModified();
+          if (m != modified) {
+            modified = m;
+            try {
+              loadConfig(file);
+            } catch (RiskException e) {
+              Logger.getLogger(PreTradeRisk.class.getName()).log(Level.WARNING,
+                      "Could not reload the risk config " + file, e);
+            }
+          }
+        }
+      }
+    };
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  /**
+   * Stops reloading the watched config file
+   */
+  public synchronized void stopWatching() {
+    if (watcher != null) {
+      watcher.interrupt();
+      watcher = null;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package risk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import price.PriceFactory;
+import price.exceptions.InvalidPriceOperation;
+import risk.exceptions.RiskException;
+
+/**
+ * A complete set of pre-trade limits: the default limits, and the limits of
+ * users who have their own. A config never changes once made, so the
+ * PreTradeRisk stage can swap in a new one while orders are being checked.
+ *
+ * A config file is a properties file. The keys maxOrderVolume, maxNotional
+ * (a price such as 250000.00), maxOpenOrders, messagesPerSecond and burst set
+ * the defaults; the same keys prefixed by "user.NAME." set the limits of user
+ * NAME, with any key not given taken from the defaults.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class RiskConfig {
+
+  /**
+   * A config with no limits
+   */
+  public static final RiskConfig NONE = new RiskConfig(RiskLimits.NONE, new HashMap<String, RiskLimits>());
+
+  private static final String USER_PREFIX = "user.";
+
+  private final RiskLimits defaults;
+
+  private final Map<String, RiskLimits> users;
+
+  /**
+   * @param defaults limits of users without their own
+   * @param users limits by user name
+   */
+  public RiskConfig(RiskLimits defaults, Map<String, RiskLimits> users) {
+    this.defaults = defaults;
+    this.users = Collections.unmodifiableMap(new HashMap<>(users));
+  }
+
+  /**
+   * @param userName the user's name
+   * @return the user's own limits, or the defaults if they have none
+   */
+  public RiskLimits limitsFor(String userName) {
+    RiskLimits l = users.get(userName);
+    return l == null ? defaults : l;
+  }
+
+  /**
+   * @return the limits of users without their own
+   */
+  public RiskLimits getDefaults() {
+    return defaults;
+  }
+
+  /**
+   * Reads a config file
+   * @param file the properties file
+   * @return the config
+   * @throws RiskException if the file cannot be read or has an invalid value
+   */
+  public static RiskConfig load(File file) throws RiskException {
+    Properties p = new Properties();
+    try (InputStream in = new FileInputStream(file)) {
+      p.load(in);
+    } catch (IOException e) {
+      throw new RiskException("Cannot read risk config " + file + ": " + e.getMessage());
+    }
+    return parse(p);
+  }
+
+  /**
+   * Builds a config from properties
+   * @param p the properties
+   * @return the config
+   * @throws RiskException if a value is invalid
+   */
+  public static RiskConfig parse(Properties p) throws RiskException {
+    RiskLimits defaults = limits(p, "", RiskLimits.NONE);
+    HashMap<String, RiskLimits> users = new HashMap<>();
+    for (String key : p.stringPropertyNames()) {
+      int dot = key.lastIndexOf('.');
+      if (key.startsWith(USER_PREFIX) && dot > USER_PREFIX.length()) {
+        String name = key.substring(USER_PREFIX.length(), dot);
+        if (!users.containsKey(name)) {
+          users.put(name, limits(p, USER_PREFIX + name + ".", defaults));
+        }
+      }
+    }
+    return new RiskConfig(defaults, users);
+  }
+
+  /**
+   * Reads the limits under a key prefix, taking any not given from base
+   */
+  private static RiskLimits limits(Properties p, String prefix, RiskLimits base) throws RiskException {
+    return new RiskLimits(
+            (int) number(p, prefix + "maxOrderVolume", base.getMaxOrderVolume()),
+            notional(p, prefix + "maxNotional", base.getMaxNotional()),
+            (int) number(p, prefix + "maxOpenOrders", base.getMaxOpenOrders()),
+            (int) number(p, prefix + "messagesPerSecond", base.getMessagesPerSecond()),
+            (int) number(p, prefix + "burst", base.getBurst()));
+  }
+
+  private static long number(Properties p, String key, long dflt) throws RiskException {
+    String v = p.getProperty(key);
+    if (v == null) {
+      return dflt;
+    }
+    try {
+      int n = Integer.parseInt(v.trim());
+      if (n < 0) {
+        throw new RiskException("Risk limit " + key + " cannot be negative.");
+      }
+      return n;
+    } catch (NumberFormatException e) {
+      throw new RiskException("Risk limit " + key + " is not a number: " + v);
+    }
+  }
+
+  private static long notional(Properties p, String key, long dflt) throws RiskException {
+    String v = p.getProperty(key);
+    if (v == null) {
+      return dflt;
+    }
+    try {
+      long cents = PriceFactory.makeLimitPrice(v.trim()).getCents();
+      if (cents < 0) {
+        throw new RiskException("Risk limit " + key + " cannot be negative.");
+      }
+      return cents;
+    } catch (InvalidPriceOperation | NumberFormatException e) {
+      throw new RiskException("Risk limit " + key + " is not a price: " + v);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package risk;
+
+/**
+ * The pre-trade limits applied to one user's orders and quotes. A limit of
+ * zero means no limit. Limits never change once made; new limits are put in
+ * place by loading a new RiskConfig.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class RiskLimits {
+
+  /**
+   * Limits that let everything through
+   */
+  public static final RiskLimits NONE = new RiskLimits(0, 0, 0, 0, 0);
+
+  /**
+   * Largest volume of one order or quote-side
+   */
+  private final int maxOrderVolume;
+
+  /**
+   * Largest price times volume of one order or quote-side, in cents
+   */
+  private final long maxNotional;
+
+  /**
+   * Most orders the user may have open in one product
+   */
+  private final int maxOpenOrders;
+
+  /**
+   * Orders and quotes allowed per second, on average
+   */
+  private final int messagesPerSecond;
+
+  /**
+   * Orders and quotes allowed at once after a quiet spell
+   */
+  private final int burst;
+
+  /**
+   * @param maxOrderVolume largest volume of one order or quote-side
+   * @param maxNotional largest price times volume of one order or
+   * quote-side, in cents
+   * @param maxOpenOrders most orders open in one product
+   * @param messagesPerSecond orders and quotes allowed per second
+   * @param burst orders and quotes allowed at once; taken as 1 if less
+   */
+  public RiskLimits(int maxOrderVolume, long maxNotional, int maxOpenOrders, int messagesPerSecond, int burst) {
+    this.maxOrderVolume = Math.max(0, maxOrderVolume);
+    this.maxNotional = Math.max(0, maxNotional);
+    this.maxOpenOrders = Math.max(0, maxOpenOrders);
+    this.messagesPerSecond = Math.max(0, messagesPerSecond);
+    this.burst = Math.max(1, burst);
+  }
+
+  /**
+   * @return the largest volume of one order or quote-side; 0 for no limit
+   */
+  public int getMaxOrderVolume() {
+    return maxOrderVolume;
+  }
+
+  /**
+   * @return the largest price times volume of one order or quote-side, in
+   * cents; 0 for no limit
+   */
+  public long getMaxNotional() {
+    return maxNotional;
+  }
+
+  /**
+   * @return the most orders open in one product; 0 for no limit
+   */
+  public int getMaxOpenOrders() {
+    return maxOpenOrders;
+  }
+
+  /**
+   * @return the orders and quotes allowed per second; 0 for no limit
+   */
+  public int getMessagesPerSecond() {
+    return messagesPerSecond;
+  }
+
+  /**
+   * @return the orders and quotes allowed at once after a quiet spell
+   */
+  public int getBurst() {
+    return burst;
+  }
+
+  /**
+   * @return nanoseconds between messages at the allowed rate, or 0 if the
+   * rate is not limited
+   */
+  long interval() {
+    return messagesPerSecond == 0 ? 0 : 1000000000L / messagesPerSecond;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Max Volume: %d, Max Notional: %d, Max Open Orders: %d, Messages/s: %d, Burst: %d",
+            maxOrderVolume, maxNotional, maxOpenOrders, messagesPerSecond, burst);
+  }
+}
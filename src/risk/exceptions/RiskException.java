@@ -0,0 +1,14 @@
+package risk.exceptions;
+
+/**
+ * The exception class dealing with exceptions which occur while loading the
+ * pre-trade risk configuration.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+public class RiskException extends Exception {
+
+  public RiskException(String msg) {
+    super(msg);
+  }
+}
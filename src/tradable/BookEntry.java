@@ -0,0 +1,35 @@
+package tradable;
+
+/**
+ * A BookEntry is the copy of an Order or QuoteSide held by a product book
+ * side. Besides the Tradable values it carries the int ids of its user and
+ * product, so book scans can compare ids instead of Strings, and the long
+ * key it is known by in the book's order events.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public interface BookEntry extends Tradable	{
+
+	/**
+	 * @return the UserRegistry id of the entry's user
+	 */
+	int getUserId();
+
+	/**
+	 * @return the SymbolRegistry id of the entry's product
+	 */
+	int getProductId();
+
+	/**
+	 * @return the key the book gave the entry when it came to rest, or 0 if
+	 * it has not rested in the book
+	 */
+	long getOrderKey();
+
+	/**
+	 * Sets the key the entry is known by in the book's order events
+	 * @param key the key, unique among the entries of all books
+	 */
+	void setOrderKey(long key);
+}
@@ -0,0 +1,172 @@
+package tradable;
+
+import price.Price;
+import price.exceptions.InvalidPriceOperation;
+import constants.global.BookSide;
+
+/**
+ * A thin Tradable view over one slot of an OffHeapTradableStore. The view
+ * holds no order state itself; every getter and setter reads or writes the
+ * store's columns.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public final class OffHeapTradable implements BookEntry	{
+
+	/**
+	 * The store holding this view's state
+	 */
+	final OffHeapTradableStore store;
+
+	/**
+	 * The slot this view reads and writes
+	 */
+	final int slot;
+
+	OffHeapTradable(OffHeapTradableStore theStore, int theSlot)	{
+		store = theStore;
+		slot = theSlot;
+	}
+
+	/**
+	 * @return the product symbol held in the slot
+	 */
+	public String getProduct()	{
+		return store.product(slot);
+	}
+
+	/**
+	 * @return the price held in the slot
+	 */
+	public Price getPrice()	{
+		return store.price(slot);
+	}
+
+	/**
+	 * @return the price held in the slot, in cents
+	 */
+	public long getPriceTicks()	{
+		return store.priceTicks(slot);
+	}
+
+	/**
+	 * @return the original volume held in the slot
+	 */
+	public int getOriginalVolume()	{
+		return store.original(slot);
+	}
+
+	/**
+	 * @return the remaining volume held in the slot
+	 */
+	public int getRemainingVolume()	{
+		return store.remaining(slot);
+	}
+
+	/**
+	 * @return the cancelled volume held in the slot
+	 */
+	public int getCancelledVolume()	{
+		return store.cancelled(slot);
+	}
+
+	/**
+	 * Sets the cancelled volume held in the slot
+	 * @param newCancelledVolume must be type int
+	 * @throws InvalidPriceOperation
+	 */
+	public void setCancelledVolume(int newCancelledVolume) throws InvalidPriceOperation	{
+		checkArg(newCancelledVolume);
+		store.cancelled(slot, newCancelledVolume);
+	}
+
+	/**
+	 * Sets the remaining volume held in the slot
+	 * @param newRemainingVolume must be type int
+	 * @throws InvalidPriceOperation
+	 */
+	public void setRemainingVolume(int newRemainingVolume) throws InvalidPriceOperation	{
+		checkArg(newRemainingVolume);
+		store.remaining(slot, newRemainingVolume);
+	}
+
+	/**
+	 * @return the user name held in the slot
+	 */
+	public String getUser()	{
+		return store.user(slot);
+	}
+
+	/**
+	 * @return the UserRegistry id held in the slot
+	 */
+	public int getUserId()	{
+		return store.userId(slot);
+	}
+
+	/**
+	 * @return the SymbolRegistry id held in the slot
+	 */
+	public int getProductId()	{
+		return store.productId(slot);
+	}
+
+	/**
+	 * @return the side held in the slot
+	 */
+	public BookSide getSide()	{
+		return store.side(slot);
+	}
+
+	/**
+	 * @return true if the slot holds a QuoteSide, false otherwise
+	 */
+	public boolean isQuote()	{
+		return store.isQuote(slot);
+	}
+
+	/**
+	 * @return the id held in the slot
+	 */
+	public String getId()	{
+		return store.id(slot);
+	}
+
+	/**
+	 * @return the order event key held in the slot, or 0
+	 */
+	public long getOrderKey()	{
+		return store.orderKey(slot);
+	}
+
+	/**
+	 * Sets the order event key held in the slot
+	 * @param key must be type long
+	 */
+	public void setOrderKey(long key)	{
+		store.orderKey(slot, key);
+	}
+
+	/**
+	 * Method to determine if the volume passed is within the original volume
+	 * @param s must be of type int
+	 * @throws InvalidPriceOperation
+	 */
+	private void checkArg(int s) throws InvalidPriceOperation	{
+		if (s < 0 || s > store.original(slot))	{
+			throw new InvalidPriceOperation("Argument cannot be negative "
+					+ "or greater than the original volume.");
+		}
+	}
+
+	/**
+	 * @return Formatted String
+	 */
+	public String toString()	{
+		return String.format("%s %s: %s %s %s at %s " +
+				"(Original Vol: %s, CXL'd: %s), ID: %s", getUser(), isQuote() ? "quote side" : "order",
+				getSide(), getRemainingVolume(), getProduct(), getPrice(), getOriginalVolume(),
+				getCancelledVolume(), getId());
+	}
+}
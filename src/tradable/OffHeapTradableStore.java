@@ -0,0 +1,363 @@
+package tradable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import price.Price;
+import constants.global.BookSide;
+import registry.SymbolRegistry;
+import registry.UserRegistry;
+
+/**
+ * A TradableStore that keeps the numeric fields of resting entries outside
+ * the Java heap. Each field is its own column (struct-of-arrays) in a direct
+ * ByteBuffer, indexed by slot number. The book holds OffHeapTradable views,
+ * and each view only knows its store and its slot. Views are created once
+ * per slot and reused with the slot, so a warm store allocates nothing per
+ * order.
+ *
+ * Not everything leaves the heap. Each slot keeps its view and its order id
+ * String on the heap, and the book side still finds its entries through its
+ * own on-heap price level lists of views; the store does not walk levels.
+ * Prices are interned into a small on-heap table, counted per slot and
+ * dropped once no slot uses them. Users and products are held as their
+ * UserRegistry and SymbolRegistry ids.
+ *
+ * Free slots are chained through the next column.
+ *
+ * The store is not thread-safe; it is guarded by the lock of the
+ * ProductBookSide that owns it.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public class OffHeapTradableStore implements TradableStore	{
+
+	/**
+	 * Default number of slots allocated up front
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Link value meaning "no slot"
+	 */
+	private static final int NIL = -1;
+
+	/**
+	 * Flag bits held in the flags column
+	 */
+	private static final byte LIVE = 1;
+	private static final byte QUOTE = 2;
+	private static final byte MARKET = 4;
+
+	/**
+	 * Side codes held in the side column
+	 */
+	private static final byte BUY = 0;
+	private static final byte SELL = 1;
+
+	/**
+	 * Number of slots the columns currently hold
+	 */
+	private int capacity;
+
+	/**
+	 * Off-heap columns, one entry per slot
+	 */
+	private LongBuffer priceTicks;
+	private LongBuffer orderKey;
+	private IntBuffer priceRef;
+	private IntBuffer remaining;
+	private IntBuffer original;
+	private IntBuffer cancelled;
+	private IntBuffer userId;
+	private IntBuffer productId;
+	private IntBuffer next;
+	private ByteBuffer side;
+	private ByteBuffer flags;
+
+	/**
+	 * On-heap order id column
+	 */
+	private String[] ids;
+
+	/**
+	 * One reusable view per slot
+	 */
+	private OffHeapTradable[] views;
+
+	/**
+	 * Interned Prices referenced from the priceRef column, the number of
+	 * live slots using each, and the table entries free for reuse
+	 */
+	private ArrayList<Price> prices = new ArrayList<>();
+	private HashMap<Price, Integer> priceIds = new HashMap<>();
+	private ArrayList<Integer> priceUses = new ArrayList<>();
+	private ArrayList<Integer> freePriceRefs = new ArrayList<>();
+
+	/**
+	 * Head of the free list
+	 */
+	private int freeHead = NIL;
+
+	/**
+	 * Number of live slots
+	 */
+	private int liveCount;
+
+	/**
+	 * Highest slot number ever handed out, plus one
+	 */
+	private int used;
+
+	/**
+	 * Creates a store with DEFAULT_CAPACITY slots
+	 */
+	public OffHeapTradableStore()	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a store with the passed number of slots. The store grows
+	 * when the slots run out.
+	 * @param initialCapacity number of slots to allocate up front
+	 */
+	public OffHeapTradableStore(int initialCapacity)	{
+		allocate(Math.max(16, initialCapacity));
+	}
+
+	/**
+	 * Copies the passed Tradable into a free slot
+	 * @param src Order or QuoteSide entering the book
+	 * @return the view over the slot
+	 */
+	public BookEntry acquire(Tradable src)	{
+		int slot = freeHead;
+		if (slot != NIL)	{
+			freeHead = next.get(slot);
+		} else {
+			if (used == capacity)	{
+				allocate(capacity * 2);
+			}
+			slot = used++;
+		}
+		Price p = src.getPrice();
+		priceTicks.put(slot, p.getCents());
+		orderKey.put(slot, 0);
+		priceRef.put(slot, intern(p));
+		original.put(slot, src.getOriginalVolume());
+		remaining.put(slot, src.getRemainingVolume());
+		cancelled.put(slot, src.getCancelledVolume());
+		userId.put(slot, UserRegistry.getInstance().register(src.getUser()));
+		productId.put(slot, SymbolRegistry.getInstance().register(src.getProduct()));
+		side.put(slot, src.getSide() == BookSide.BUY ? BUY : SELL);
+		byte f = LIVE;
+		if (src.isQuote())	{
+			f |= QUOTE;
+		}
+		if (p.isMarket())	{
+			f |= MARKET;
+		}
+		flags.put(slot, f);
+		ids[slot] = src.getId();
+		liveCount++;
+		if (views[slot] == null)	{
+			views[slot] = new OffHeapTradable(this, slot);
+		}
+		return views[slot];
+	}
+
+	/**
+	 * Frees the slot behind the passed view
+	 * @param t the Tradable leaving the book
+	 */
+	public void release(Tradable t)	{
+		if (!(t instanceof OffHeapTradable))	{
+			return;
+		}
+		OffHeapTradable v = (OffHeapTradable) t;
+		if (v.store != this || !isLive(v.slot))	{
+			return;
+		}
+		int slot = v.slot;
+		liveCount--;
+		forget(priceRef.get(slot));
+		flags.put(slot, (byte) 0);
+		ids[slot] = null;
+		next.put(slot, freeHead);
+		freeHead = slot;
+	}
+
+	/**
+	 * @return the number of entries currently held
+	 */
+	public int size()	{
+		return liveCount;
+	}
+
+	/**
+	 * @return the number of slots allocated
+	 */
+	public int capacity()	{
+		return capacity;
+	}
+
+	boolean isLive(int slot)	{
+		return (flags.get(slot) & LIVE) != 0;
+	}
+
+	long priceTicks(int slot)	{
+		return priceTicks.get(slot);
+	}
+
+	long orderKey(int slot)	{
+		return orderKey.get(slot);
+	}
+
+	void orderKey(int slot, long key)	{
+		orderKey.put(slot, key);
+	}
+
+	Price price(int slot)	{
+		return prices.get(priceRef.get(slot));
+	}
+
+	int original(int slot)	{
+		return original.get(slot);
+	}
+
+	int remaining(int slot)	{
+		return remaining.get(slot);
+	}
+
+	void remaining(int slot, int v)	{
+		remaining.put(slot, v);
+	}
+
+	int cancelled(int slot)	{
+		return cancelled.get(slot);
+	}
+
+	void cancelled(int slot, int v)	{
+		cancelled.put(slot, v);
+	}
+
+	String user(int slot)	{
+		return UserRegistry.getInstance().nameOf(userId.get(slot));
+	}
+
+	int userId(int slot)	{
+		return userId.get(slot);
+	}
+
+	String product(int slot)	{
+		return SymbolRegistry.getInstance().nameOf(productId.get(slot));
+	}
+
+	int productId(int slot)	{
+		return productId.get(slot);
+	}
+
+	BookSide side(int slot)	{
+		return side.get(slot) == BUY ? BookSide.BUY : BookSide.SELL;
+	}
+
+	boolean isQuote(int slot)	{
+		return (flags.get(slot) & QUOTE) != 0;
+	}
+
+	String id(int slot)	{
+		return ids[slot];
+	}
+
+	/**
+	 * Returns the table index of a Price, adding it if needed, and counts
+	 * one more slot using it
+	 */
+	private int intern(Price p)	{
+		Integer i = priceIds.get(p);
+		if (i == null)	{
+			if (freePriceRefs.isEmpty())	{
+				i = prices.size();
+				prices.add(p);
+				priceUses.add(0);
+			} else {
+				i = freePriceRefs.remove(freePriceRefs.size() - 1);
+				prices.set(i, p);
+			}
+			priceIds.put(p, i);
+		}
+		priceUses.set(i, priceUses.get(i) + 1);
+		return i;
+	}
+
+	/**
+	 * Counts one slot less using a table entry, dropping the Price once no
+	 * slot uses it
+	 */
+	private void forget(int ref)	{
+		int uses = priceUses.get(ref) - 1;
+		priceUses.set(ref, uses);
+		if (uses == 0)	{
+			priceIds.remove(prices.get(ref));
+			prices.set(ref, null);
+			freePriceRefs.add(ref);
+		}
+	}
+
+	/**
+	 * (Re)allocates every column with room for newCapacity slots, copying
+	 * the slots already in use.
+	 */
+	private void allocate(int newCapacity)	{
+		priceTicks = copy(priceTicks, direct(newCapacity * 8).asLongBuffer());
+		orderKey = copy(orderKey, direct(newCapacity * 8).asLongBuffer());
+		priceRef = copy(priceRef, direct(newCapacity * 4).asIntBuffer());
+		remaining = copy(remaining, direct(newCapacity * 4).asIntBuffer());
+		original = copy(original, direct(newCapacity * 4).asIntBuffer());
+		cancelled = copy(cancelled, direct(newCapacity * 4).asIntBuffer());
+		userId = copy(userId, direct(newCapacity * 4).asIntBuffer());
+		productId = copy(productId, direct(newCapacity * 4).asIntBuffer());
+		next = copy(next, direct(newCapacity * 4).asIntBuffer());
+		side = copy(side, direct(newCapacity));
+		flags = copy(flags, direct(newCapacity));
+		String[] newIds = new String[newCapacity];
+		OffHeapTradable[] newViews = new OffHeapTradable[newCapacity];
+		if (ids != null)	{
+			System.arraycopy(ids, 0, newIds, 0, used);
+			System.arraycopy(views, 0, newViews, 0, used);
+		}
+		ids = newIds;
+		views = newViews;
+		capacity = newCapacity;
+	}
+
+	private static ByteBuffer direct(int bytes)	{
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
+	private LongBuffer copy(LongBuffer from, LongBuffer to)	{
+		for (int i = 0; from != null && i < used; i++)	{
+			to.put(i, from.get(i));
+		}
+		return to;
+	}
+
+	private IntBuffer copy(IntBuffer from, IntBuffer to)	{
+		for (int i = 0; from != null && i < used; i++)	{
+			to.put(i, from.get(i));
+		}
+		return to;
+	}
+
+	private ByteBuffer copy(ByteBuffer from, ByteBuffer to)	{
+		for (int i = 0; from != null && i < used; i++)	{
+			to.put(i, from.get(i));
+		}
+		return to;
+	}
+}
@@ -17,8 +17,8 @@ public class Quote {
 
   private String user;
   private String product;
-  private Tradable buyQuoteSide;
-  private Tradable sellQuoteSide;
+  private QuoteSide buyQuoteSide;
+  private QuoteSide sellQuoteSide;
 
   public Quote(String userName, String productSymbol, Price buyPrice,
           int buyVolume, Price sellPrice, int sellVolume)
@@ -37,12 +37,20 @@ public class Quote {
     return product;
   }
 
+  /**
+   * Returns the requested side of this Quote. The side is not copied: the
+   * product book copies it into its own record when it enters the book, so
+   * callers never share mutable state with the book.
+   *
+   * @param side BUY or SELL
+   * @return the QuoteSide for that side
+   */
   public QuoteSide getQuoteSide(BookSide side)
           throws TradableException, InvalidPriceOperation {
     if (side.equals(BookSide.BUY)) {
-      return new QuoteSide((QuoteSide)buyQuoteSide);
+      return buyQuoteSide;
     }
-    return new QuoteSide((QuoteSide)sellQuoteSide);
+    return sellQuoteSide;
   }
 
   @Override
@@ -0,0 +1,268 @@
+package tradable;
+
+import price.Price;
+import price.exceptions.InvalidPriceOperation;
+import constants.global.BookSide;
+import registry.SymbolRegistry;
+import registry.UserRegistry;
+
+/**
+ * TradableRecord is the flattened form of an Order or QuoteSide that rests in a
+ * product book. Unlike Order and QuoteSide it does not delegate to an
+ * OrderQSImpl, so each resting entry is a single object. Records are handed out
+ * and taken back by a TradableRecordPool and reused once they leave the book.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public final class TradableRecord implements BookEntry	{
+
+	/**
+	 * Product the record works with
+	 */
+	private String product;
+
+	/**
+	 * Price of the record
+	 */
+	private Price price;
+
+	/**
+	 * Original quantity of the record
+	 */
+	private int originalVolume;
+
+	/**
+	 * Remaining quantity of the record
+	 */
+	private int remainingVolume;
+
+	/**
+	 * Cancelled quantity of the record
+	 */
+	private int cancelledVolume;
+
+	/**
+	 * User id for the record
+	 */
+	private String user;
+
+	/**
+	 * UserRegistry id of the record's user
+	 */
+	private int userId;
+
+	/**
+	 * SymbolRegistry id of the record's product
+	 */
+	private int productId;
+
+	/**
+	 * "Side" (BUY/SELL) of the record
+	 */
+	private BookSide side;
+
+	/**
+	 * True if the record came from a QuoteSide, false otherwise
+	 */
+	private boolean isQuote;
+
+	/**
+	 * The record "id", taken from the Tradable it was copied from
+	 */
+	private String id;
+
+	/**
+	 * Key of the record in the book's order events; 0 until it rests
+	 */
+	private long orderKey;
+
+	/**
+	 * True while the record sits in its pool's free list
+	 */
+	boolean pooled;
+
+	/**
+	 * The pool that created this record, and the only one it goes back to
+	 */
+	final TradableRecordPool owner;
+
+	/**
+	 * Records are only created by a TradableRecordPool
+	 * @param owner the pool creating the record
+	 */
+	TradableRecord(TradableRecordPool owner)	{
+		this.owner = owner;
+	}
+
+	/**
+	 * Copies every value of the source Tradable into this record. The source
+	 * has already been validated when it was built, so no checks are repeated.
+	 * @param src Order or QuoteSide to copy
+	 */
+	void init(Tradable src)	{
+		product = src.getProduct();
+		price = src.getPrice();
+		originalVolume = src.getOriginalVolume();
+		remainingVolume = src.getRemainingVolume();
+		cancelledVolume = src.getCancelledVolume();
+		user = src.getUser();
+		userId = UserRegistry.getInstance().register(user);
+		productId = SymbolRegistry.getInstance().register(product);
+		side = src.getSide();
+		isQuote = src.isQuote();
+		id = src.getId();
+		orderKey = 0;
+		pooled = false;
+	}
+
+	/**
+	 * Drops the references held by this record so a pooled record does not keep
+	 * Strings or Prices of a finished order alive.
+	 */
+	void clear()	{
+		product = null;
+		price = null;
+		user = null;
+		side = null;
+		id = null;
+		originalVolume = 0;
+		remainingVolume = 0;
+		cancelledVolume = 0;
+		isQuote = false;
+		orderKey = 0;
+	}
+
+	/**
+	 * @return the record's product symbol
+	 */
+	public String getProduct()	{
+		return product;
+	}
+
+	/**
+	 * @return the record's price
+	 */
+	public Price getPrice()	{
+		return price;
+	}
+
+	/**
+	 * @return the record's original volume
+	 */
+	public int getOriginalVolume()	{
+		return originalVolume;
+	}
+
+	/**
+	 * @return the record's remaining volume
+	 */
+	public int getRemainingVolume()	{
+		return remainingVolume;
+	}
+
+	/**
+	 * @return the record's cancelled volume
+	 */
+	public int getCancelledVolume()	{
+		return cancelledVolume;
+	}
+
+	/**
+	 * Sets the record's cancelled volume to the passed argument
+	 * @param newCancelledVolume must be type int
+	 * @throws InvalidPriceOperation
+	 */
+	public void setCancelledVolume(int newCancelledVolume) throws InvalidPriceOperation	{
+		checkArg(newCancelledVolume);
+		cancelledVolume = newCancelledVolume;
+	}
+
+	/**
+	 * Sets the record's remaining volume to the passed argument
+	 * @param newRemainingVolume must be type int
+	 * @throws InvalidPriceOperation
+	 */
+	public void setRemainingVolume(int newRemainingVolume) throws InvalidPriceOperation	{
+		checkArg(newRemainingVolume);
+		remainingVolume = newRemainingVolume;
+	}
+
+	/**
+	 * @return the record's user name
+	 */
+	public String getUser()	{
+		return user;
+	}
+
+	/**
+	 * @return the UserRegistry id of the record's user
+	 */
+	public int getUserId()	{
+		return userId;
+	}
+
+	/**
+	 * @return the SymbolRegistry id of the record's product
+	 */
+	public int getProductId()	{
+		return productId;
+	}
+
+	/**
+	 * @return the side of the record
+	 */
+	public BookSide getSide()	{
+		return side;
+	}
+
+	/**
+	 * @return true if the record came from a QuoteSide, false otherwise
+	 */
+	public boolean isQuote()	{
+		return isQuote;
+	}
+
+	/**
+	 * @return the record's Id
+	 */
+	public String getId()	{
+		return id;
+	}
+
+	/**
+	 * @return the record's key in the book's order events, or 0
+	 */
+	public long getOrderKey()	{
+		return orderKey;
+	}
+
+	/**
+	 * Sets the record's key in the book's order events
+	 * @param key must be type long
+	 */
+	public void setOrderKey(long key)	{
+		orderKey = key;
+	}
+
+	/**
+	 * Method to determine if the volume passed is within the original volume
+	 * @param s must be of type int
+	 * @throws InvalidPriceOperation
+	 */
+	private void checkArg(int s) throws InvalidPriceOperation	{
+		if (s < 0 || s > originalVolume)	{
+			throw new InvalidPriceOperation("Argument cannot be negative "
+					+ "or greater than the original volume.");
+		}
+	}
+
+	/**
+	 * @return Formatted String
+	 */
+	public String toString()	{
+		return String.format("%s %s: %s %s %s at %s " +
+				"(Original Vol: %s, CXL'd: %s), ID: %s", user, isQuote ? "quote side" : "order",
+				side, remainingVolume, product, price, originalVolume, cancelledVolume, id);
+	}
+}
@@ -0,0 +1,92 @@
+package tradable;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of TradableRecord objects, and the default (on-heap) TradableStore.
+ * A product book side takes a record from the pool when an Order or QuoteSide
+ * enters the book and gives it back once the entry has been traded out or
+ * cancelled, so a busy book reuses the same records instead of allocating new
+ * ones.
+ *
+ * The pool is not thread-safe; it is guarded by the lock of the
+ * ProductBookSide that owns it.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public class TradableRecordPool implements TradableStore	{
+
+	/**
+	 * Default number of free records a pool holds on to
+	 */
+	public static final int DEFAULT_MAX_RETAINED = 4096;
+
+	/**
+	 * Records ready to be handed out again
+	 */
+	private ArrayDeque<TradableRecord> free;
+
+	/**
+	 * The most free records this pool keeps; extras are left to the GC
+	 */
+	private int maxRetained;
+
+	/**
+	 * Creates a pool that keeps up to DEFAULT_MAX_RETAINED free records
+	 */
+	public TradableRecordPool()	{
+		this(DEFAULT_MAX_RETAINED);
+	}
+
+	/**
+	 * Creates a pool that keeps up to maxRetained free records
+	 * @param maxRetained most free records to keep; negative values keep none
+	 */
+	public TradableRecordPool(int maxRetained)	{
+		this.maxRetained = Math.max(0, maxRetained);
+		free = new ArrayDeque<>(Math.min(this.maxRetained, 256));
+	}
+
+	/**
+	 * Returns a record holding a copy of the passed Tradable's values
+	 * @param src Order or QuoteSide to copy into the record
+	 * @return a record from the free list, or a new one if the list is empty
+	 */
+	public BookEntry acquire(Tradable src)	{
+		TradableRecord r = free.pollFirst();
+		if (r == null)	{
+			r = new TradableRecord(this);
+		}
+		r.init(src);
+		return r;
+	}
+
+	/**
+	 * Gives a record back to the pool. Tradables that are not records,
+	 * records created by another pool, and records that are already in the
+	 * pool, are ignored.
+	 * @param t the Tradable leaving the book
+	 */
+	public void release(Tradable t)	{
+		if (!(t instanceof TradableRecord))	{
+			return;
+		}
+		TradableRecord r = (TradableRecord) t;
+		if (r.owner != this || r.pooled)	{
+			return;
+		}
+		r.clear();
+		r.pooled = true;
+		if (free.size() < maxRetained)	{
+			free.addFirst(r);
+		}
+	}
+
+	/**
+	 * @return the number of free records currently held
+	 */
+	public int available()	{
+		return free.size();
+	}
+}
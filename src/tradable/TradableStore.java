@@ -0,0 +1,28 @@
+package tradable;
+
+/**
+ * The TradableStore interface is the storage strategy a product book side uses
+ * for the Orders and QuoteSides resting in it. When a Tradable enters the book,
+ * the book side asks its store for a copy. When the entry leaves the book
+ * (traded out, cancelled or replaced), the book side releases it back to the
+ * store.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public interface TradableStore	{
+
+	/**
+	 * Copies the passed Tradable into storage owned by this store
+	 * @param src Order or QuoteSide entering the book
+	 * @return the BookEntry the book should hold from now on
+	 */
+	BookEntry acquire(Tradable src);
+
+	/**
+	 * Gives storage back once the Tradable has left the book. Tradables that
+	 * were not handed out by this store, or were already released, are ignored.
+	 * @param t the Tradable leaving the book
+	 */
+	void release(Tradable t);
+}
@@ -0,0 +1,39 @@
+package tradable;
+
+import tradable.exceptions.TradableStoreFactoryException;
+
+/**
+ * A factory to create the TradableStore a product book side keeps its entries in.
+ *
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public class TradableStoreFactory	{
+
+	/**
+	 * Creates a TradableStore based on the type passed in. "off-heap" keeps
+	 * entries in direct buffers (OffHeapTradableStore); "heap" keeps them in
+	 * pooled TradableRecords (TradableRecordPool).
+	 *
+	 * @param type the storage type
+	 * @return a new TradableStore
+	 * @throws TradableStoreFactoryException if the type is null or unknown
+	 */
+	public synchronized static TradableStore createTradableStore(String type) throws TradableStoreFactoryException	{
+		if (type == null)	{
+			throw new TradableStoreFactoryException("Storage type cannot be null.");
+		}
+		TradableStore store;
+		switch(type)	{
+			case "off-heap":
+				store = new OffHeapTradableStore();
+				break;
+			case "heap":
+				store = new TradableRecordPool();
+				break;
+			default:
+				throw new TradableStoreFactoryException("Unknown storage type: " + type);
+		}
+		return store;
+	}
+}
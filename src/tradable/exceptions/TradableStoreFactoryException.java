@@ -0,0 +1,15 @@
+package tradable.exceptions;
+
+/**
+ *   TradableStoreFactoryException class to be thrown when the
+ *   TradableStoreFactory is asked for a storage type it does not know
+ *   
+ * @authors Matthew Swan, Nithyanandh Mahalingam, Duely Yung
+ */
+
+public class TradableStoreFactoryException extends Exception {
+
+  public TradableStoreFactoryException(String message) {
+    super(message);
+  }
+}